@@ -16,6 +16,7 @@
 package com.lmax.disruptor;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import com.lmax.disruptor.util.Util;
@@ -35,11 +36,22 @@ public abstract class AbstractSequencer implements Sequencer
     protected final int bufferSize;
     // 表示这个生产者的等待策略
     protected final WaitStrategy waitStrategy;
+    // 队列满时生产者的等待策略
+    protected final ProducerWaitStrategy producerWaitStrategy;
     // 生产定位，初始为-1
     protected final Sequence cursor = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
     // 需要跟踪处理的sequences（标记消费者消费的位置！）
     protected volatile Sequence[] gatingSequences = new Sequence[0];
 
+    // 消费者推进sequence后需要唤醒的等待方
+    private final boolean signalConsumers;
+    private final boolean signalProducers;
+    // 生产者因队列满而等待的次数和时间，只在慢路径上更新
+    private final AtomicLong producerBlockedCount = new AtomicLong();
+    private final AtomicLong producerBlockedNanos = new AtomicLong();
+    // 高低水位监听，未设置时为null
+    private volatile Watermark watermark;
+
     /**
      * Create with the specified buffer size and wait strategy.
      *
@@ -47,6 +59,18 @@ public abstract class AbstractSequencer implements Sequencer
      * @param waitStrategy The wait strategy used by this sequencer
      */
     public AbstractSequencer(int bufferSize, WaitStrategy waitStrategy)
+    {
+        this(bufferSize, waitStrategy, new ParkingProducerWaitStrategy());
+    }
+
+    /**
+     * Create with the specified buffer size, wait strategy and producer wait strategy.
+     *
+     * @param bufferSize           The total number of entries, must be a positive power of 2.
+     * @param waitStrategy         The wait strategy used by this sequencer
+     * @param producerWaitStrategy The strategy used by producers when the ring buffer is full
+     */
+    public AbstractSequencer(int bufferSize, WaitStrategy waitStrategy, ProducerWaitStrategy producerWaitStrategy)
     {
         // bufferSize不能小于1并且bufferSize必须是2的n次方
         // 为了简化取余定位操作：m % 2^n = m & ( 2^n - 1 )
@@ -61,6 +85,9 @@ public abstract class AbstractSequencer implements Sequencer
 
         this.bufferSize = bufferSize;
         this.waitStrategy = waitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+        this.signalConsumers = waitStrategy instanceof TargetedBlockingWaitStrategy;
+        this.signalProducers = producerWaitStrategy instanceof BlockingProducerWaitStrategy;
     }
 
     /**
@@ -138,11 +165,148 @@ public abstract class AbstractSequencer implements Sequencer
         return EventPoller.newInstance(dataProvider, this, new Sequence(), cursor, gatingSequences);
     }
 
+    /**
+     * @return the number of claims that found the ring buffer full and waited on the {@link ProducerWaitStrategy}.
+     */
+    public long getProducerBlockedCount()
+    {
+        return producerBlockedCount.get();
+    }
+
+    /**
+     * @return the total time producers have spent waiting for capacity, summed over all producer threads.
+     */
+    public long getProducerBlockedNanos()
+    {
+        return producerBlockedNanos.get();
+    }
+
+    /**
+     * Record a claim that waited for capacity.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the producer found the ring buffer full.
+     * @param stall      the flight recorder event begun at the same time, null if it is not being recorded.
+     * @param requested  the number of sequences being claimed.
+     */
+    protected final void producerUnblocked(final long startNanos, final Object stall, final int requested)
+    {
+        producerBlockedCount.incrementAndGet();
+        producerBlockedNanos.addAndGet(System.nanoTime() - startNanos);
+        if (stall != null)
+        {
+            FlightRecorderEvents.commitProducerStall(stall, bufferSize, requested);
+        }
+    }
+
+    /**
+     * Set the listener called when the occupancy crosses the watermarks, replacing any previous listener.
+     *
+     * @param listener      to call, or null to remove the current listener.
+     * @param highWatermark occupancy at or above which {@link WatermarkListener#onHighWatermark(long)} is called.
+     * @param lowWatermark  occupancy at or below which {@link WatermarkListener#onLowWatermark(long)} is called.
+     */
+    void setWatermarkListener(final WatermarkListener listener, final int highWatermark, final int lowWatermark)
+    {
+        if (listener == null)
+        {
+            watermark = null;
+            return;
+        }
+        if (lowWatermark < 0 || lowWatermark >= highWatermark || highWatermark > bufferSize)
+        {
+            throw new IllegalArgumentException(
+                "Watermarks must satisfy 0 <= lowWatermark < highWatermark <= bufferSize, got low=" + lowWatermark +
+                    ", high=" + highWatermark + ", bufferSize=" + bufferSize);
+        }
+        watermark = new Watermark(listener, highWatermark, lowWatermark);
+    }
+
+    /**
+     * Check the high watermark after a claim by a single producer.
+     *
+     * @param nextSequence         the highest sequence claimed.
+     * @param cachedGatingSequence the producer's cached minimum gating sequence.
+     * @return the value to cache as the minimum gating sequence.
+     */
+    protected final long checkHighWatermark(final long nextSequence, final long cachedGatingSequence)
+    {
+        final Watermark watermark = this.watermark;
+        if (watermark == null)
+        {
+            return cachedGatingSequence;
+        }
+        return watermark.checkHigh(nextSequence, cachedGatingSequence, gatingSequences);
+    }
+
+    /**
+     * Check the high watermark after a claim by one of several producers.
+     *
+     * @param nextSequence        the highest sequence claimed.
+     * @param gatingSequenceCache the shared cache of the minimum gating sequence.
+     */
+    protected final void checkHighWatermark(final long nextSequence, final Sequence gatingSequenceCache)
+    {
+        final Watermark watermark = this.watermark;
+        if (watermark == null)
+        {
+            return;
+        }
+        final long cachedGatingSequence = gatingSequenceCache.get();
+        final long minSequence = watermark.checkHigh(nextSequence, cachedGatingSequence, gatingSequences);
+        if (minSequence != cachedGatingSequence)
+        {
+            gatingSequenceCache.set(minSequence);
+        }
+    }
+
+    /**
+     * Signal everything waiting on the event processors gated by this sequencer to advance: consumers parked in a
+     * {@link TargetedBlockingWaitStrategy} and producers blocked in a {@link BlockingProducerWaitStrategy}, and check
+     * the low watermark.
+     */
+    void signalProgress()
+    {
+        if (signalConsumers)
+        {
+            waitStrategy.signalAllWhenBlocking();
+        }
+        if (signalProducers)
+        {
+            producerWaitStrategy.signalAllWhenBlocking();
+        }
+        final Watermark watermark = this.watermark;
+        if (watermark != null)
+        {
+            watermark.checkLow(cursor, gatingSequences);
+        }
+    }
+
+    /**
+     * @param barrier of an {@link EventProcessor}.
+     * @return the sequencer to signal when the processor advances its sequence, or null if the barrier does not
+     * belong to an {@link AbstractSequencer}.  A watermark listener can be set after the processor is created, so
+     * this does not depend on whether anything waits yet.
+     */
+    static AbstractSequencer progressSignalFor(final SequenceBarrier barrier)
+    {
+        if (barrier instanceof ProcessingSequenceBarrier)
+        {
+            final Sequencer sequencer = ((ProcessingSequenceBarrier) barrier).getSequencer();
+            if (sequencer instanceof AbstractSequencer)
+            {
+                return (AbstractSequencer) sequencer;
+            }
+        }
+
+        return null;
+    }
+
     @Override
     public String toString()
     {
         return "AbstractSequencer{" +
             "waitStrategy=" + waitStrategy +
+            ", producerWaitStrategy=" + producerWaitStrategy +
             ", cursor=" + cursor +
             ", gatingSequences=" + Arrays.toString(gatingSequences) +
             '}';
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link WorkerPool} whose number of {@link WorkProcessor}s follows the backlog.  A monitor thread checks the lag,
+ * the number of available events not yet claimed by a worker, several times per idle period.  While the lag is at
+ * or above the scale up lag it starts another worker on each check, up to the maximum.  Once the lag has stayed at
+ * or below the scale down lag for the whole idle period it retires one worker, down to the minimum, and starts the
+ * idle period again.  Lags between the two thresholds neither add nor retire workers.
+ *
+ * <p>All workers share one work sequence, as in a {@link WorkerPool}.  Workers are added to the {@link SequenceGroup}
+ * returned by {@link #getWorkerSequences()} with {@link SequenceGroup#addWhileRunning(Cursored, Sequence)}, so the
+ * ring buffer or the next stage gating on the group sees them as they come and go.</p>
+ *
+ * <p>The pool retires the worker with the highest claimed sequence.  Each worker waits on a barrier of its own, so
+ * a retired worker waiting for its claimed event in a quiet period is woken, gives the claim back to the work
+ * sequence and stops; one that cannot give it back, because a later sequence has been claimed since, stops after
+ * processing that event.  It is removed from the group only once it has stopped, so no event is lost.</p>
+ *
+ * 根据积压自动增减WorkProcessor，增减之间有阈值差和空闲时间作为滞后，避免抖动
+ *
+ * @param <T> event to be processed by a pool of workers
+ */
+public final class AutoScalingWorkerPool<T>
+{
+    private static final long MIN_CHECK_INTERVAL_NANOS = 1000L;
+
+    /**
+     * Creates the {@link WorkHandler} for each worker the pool starts.
+     *
+     * @param <T> event to be processed by a pool of workers
+     */
+    public interface WorkHandlerFactory<T>
+    {
+        /**
+         * @return a new handler, called on the monitor thread or the thread starting the pool.
+         */
+        WorkHandler<? super T> newWorkHandler();
+    }
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile boolean running;
+    private final Sequence workSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+    private final SequenceGroup workerSequences = new SequenceGroup();
+    private final List<WorkProcessor<T>> activeWorkers = new CopyOnWriteArrayList<>();
+    private final List<WorkProcessor<T>> retiredWorkers = new CopyOnWriteArrayList<>();
+    private final RingBuffer<T> ringBuffer;
+    private final ProcessingSequenceBarrier sequenceBarrier;
+    private final ExceptionHandler<? super T> exceptionHandler;
+    private final WorkHandlerFactory<T> handlerFactory;
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final long scaleUpLag;
+    private final long scaleDownLag;
+    private final long idleNanos;
+    private final long checkIntervalNanos;
+    // 以下在持有this锁时访问
+    private Executor executor;
+    private boolean idle;
+    private long idleSinceNanos;
+
+    /**
+     * Create an auto scaling worker pool.
+     * <p>
+     * This option requires a pre-configured {@link RingBuffer} which must have
+     * {@link RingBuffer#addGatingSequences(Sequence...)} called with {@link #getWorkerSequences()} before the pool is
+     * started.
+     *
+     * @param ringBuffer       of events to be consumed.
+     * @param sequenceBarrier  on which the workers will depend, created by {@link RingBuffer#newBarrier(Sequence...)}.
+     * @param exceptionHandler to callback when an error occurs which is not handled by the {@link WorkHandler}s.
+     * @param handlerFactory   to create the handler of each worker.
+     * @param minWorkers       number of workers to start with and to keep when idle, at least 1.
+     * @param maxWorkers       most workers to run, at least minWorkers.
+     * @param scaleUpLag       lag at or above which a worker is added.
+     * @param scaleDownLag     lag at or below which, for the whole idle period, a worker is retired.
+     * @param idleNanos        idle period in nanoseconds.
+     * @throws IllegalArgumentException if the barrier was not created by a {@link RingBuffer}.
+     */
+    public AutoScalingWorkerPool(
+        final RingBuffer<T> ringBuffer,
+        final SequenceBarrier sequenceBarrier,
+        final ExceptionHandler<? super T> exceptionHandler,
+        final WorkHandlerFactory<T> handlerFactory,
+        final int minWorkers,
+        final int maxWorkers,
+        final long scaleUpLag,
+        final long scaleDownLag,
+        final long idleNanos)
+    {
+        if (minWorkers < 1 || maxWorkers < minWorkers)
+        {
+            throw new IllegalArgumentException("Workers must satisfy 1 <= minWorkers <= maxWorkers");
+        }
+        if (scaleDownLag < 0 || scaleUpLag <= scaleDownLag)
+        {
+            throw new IllegalArgumentException("Lags must satisfy 0 <= scaleDownLag < scaleUpLag");
+        }
+        if (idleNanos <= 0)
+        {
+            throw new IllegalArgumentException("idleNanos must be positive");
+        }
+        if (!(sequenceBarrier instanceof ProcessingSequenceBarrier))
+        {
+            throw new IllegalArgumentException("sequenceBarrier must be created by RingBuffer.newBarrier");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.sequenceBarrier = (ProcessingSequenceBarrier) sequenceBarrier;
+        this.exceptionHandler = exceptionHandler;
+        this.handlerFactory = handlerFactory;
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+        this.scaleUpLag = scaleUpLag;
+        this.scaleDownLag = scaleDownLag;
+        this.idleNanos = idleNanos;
+        this.checkIntervalNanos = Math.max(idleNanos / 8, MIN_CHECK_INTERVAL_NANOS);
+
+        workerSequences.add(workSequence);
+    }
+
+    /**
+     * Get the sequence to gate the {@link RingBuffer} or the following stage on.
+     *
+     * @return an array holding the {@link SequenceGroup} of the work sequence and the sequences of the workers.
+     */
+    public Sequence[] getWorkerSequences()
+    {
+        return new Sequence[]{workerSequences};
+    }
+
+    /**
+     * @return the number of workers currently running, not counting retired workers finishing their last event.
+     */
+    public int getWorkerCount()
+    {
+        return activeWorkers.size();
+    }
+
+    /**
+     * Start the minimum number of workers and the monitor.
+     *
+     * @param executor providing threads for the monitor and for each worker as it is added.
+     * @return the {@link RingBuffer} used for the work queue.
+     * @throws IllegalStateException if the pool has already been started and not halted yet
+     */
+    public synchronized RingBuffer<T> start(final Executor executor)
+    {
+        if (!started.compareAndSet(false, true))
+        {
+            throw new IllegalStateException("AutoScalingWorkerPool has already been started and cannot be restarted until halted.");
+        }
+
+        // 上一次运行留下的worker已经halt，移除它们的sequence
+        for (final WorkProcessor<T> processor : retiredWorkers)
+        {
+            workerSequences.remove(processor.getSequence());
+        }
+        retiredWorkers.clear();
+
+        this.executor = executor;
+        workSequence.set(ringBuffer.getCursor());
+        idle = false;
+        running = true;
+
+        for (int i = 0; i < minWorkers; i++)
+        {
+            addWorker();
+        }
+        executor.execute(new Monitor());
+
+        return ringBuffer;
+    }
+
+    /**
+     * Wait for the {@link RingBuffer} to drain of published events then halt the workers.
+     */
+    public void drainAndHalt()
+    {
+        while (ringBuffer.getCursor() > workerSequences.get())
+        {
+            Thread.yield();
+        }
+
+        halt();
+    }
+
+    /**
+     * Halt all workers immediately at the end of their current cycle.
+     */
+    public synchronized void halt()
+    {
+        running = false;
+        for (final WorkProcessor<T> processor : activeWorkers)
+        {
+            processor.halt();
+            retiredWorkers.add(processor);
+        }
+        activeWorkers.clear();
+        for (final WorkProcessor<T> processor : retiredWorkers)
+        {
+            processor.halt();
+        }
+
+        started.set(false);
+    }
+
+    public boolean isRunning()
+    {
+        return started.get();
+    }
+
+    /**
+     * Add or retire a worker if the lag calls for it, called by the monitor.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}.
+     */
+    synchronized void scale(final long nowNanos)
+    {
+        // halt与scale互斥，halt之后不会再添加worker
+        if (!running)
+        {
+            return;
+        }
+        removeStoppedWorkers();
+
+        final long lag = sequenceBarrier.getCursor() - workSequence.get();
+        if (lag >= scaleUpLag)
+        {
+            idle = false;
+            if (activeWorkers.size() < maxWorkers)
+            {
+                addWorker();
+            }
+        }
+        else if (lag <= scaleDownLag)
+        {
+            if (!idle)
+            {
+                idle = true;
+                idleSinceNanos = nowNanos;
+            }
+            else if (nowNanos - idleSinceNanos >= idleNanos && activeWorkers.size() > minWorkers)
+            {
+                retireWorker();
+                idleSinceNanos = nowNanos;
+            }
+        }
+        else
+        {
+            idle = false;
+        }
+    }
+
+    private void addWorker()
+    {
+        // 每个worker一个barrier，退役时只唤醒它自己
+        final WorkProcessor<T> processor = new WorkProcessor<>(
+            ringBuffer, sequenceBarrier.newSibling(), handlerFactory.newWorkHandler(), exceptionHandler, workSequence);
+        workerSequences.addWhileRunning(ringBuffer, processor.getSequence());
+        activeWorkers.add(processor);
+        executor.execute(processor);
+    }
+
+    private void retireWorker()
+    {
+        // 退役申请了最大sequence的worker，空闲时它的申请一定能归还给workSequence
+        WorkProcessor<T> processor = activeWorkers.get(0);
+        for (final WorkProcessor<T> worker : activeWorkers)
+        {
+            if (worker.getSequence().get() > processor.getSequence().get())
+            {
+                processor = worker;
+            }
+        }
+        activeWorkers.remove(processor);
+        processor.retire();
+        retiredWorkers.add(processor);
+    }
+
+    private void removeStoppedWorkers()
+    {
+        for (final WorkProcessor<T> processor : retiredWorkers)
+        {
+            if (!processor.isRunning())
+            {
+                workerSequences.remove(processor.getSequence());
+                retiredWorkers.remove(processor);
+            }
+        }
+    }
+
+    private final class Monitor implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            while (running)
+            {
+                scale(System.nanoTime());
+                LockSupport.parkNanos(checkIntervalNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * Ordered writes and volatile reads of the availability flags of a {@link MultiProducerSequencer}.  A Java 9+
+ * version of this class, packaged under <code>META-INF/versions/9</code>, uses a {@link java.lang.invoke.VarHandle}
+ * instead of <code>sun.misc.Unsafe</code>.
+ */
+final class AvailabilityFlags
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    // 数组首元素地址
+    private static final long BASE = UNSAFE.arrayBaseOffset(int[].class);
+    // 步长
+    private static final long SCALE = UNSAFE.arrayIndexScale(int[].class);
+
+    private AvailabilityFlags()
+    {
+    }
+
+    static void set(final int[] availableBuffer, final int index, final int flag)
+    {
+        // 每个数组值的地址：Base + Scale*下标
+        long bufferAddress = (index * SCALE) + BASE;
+        UNSAFE.putOrderedInt(availableBuffer, bufferAddress, flag);
+    }
+
+    static boolean isSet(final int[] availableBuffer, final int index, final int flag)
+    {
+        long bufferAddress = (index * SCALE) + BASE;
+        return UNSAFE.getIntVolatile(availableBuffer, bufferAddress) == flag;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Implemented by an {@link EventHandler} that can process a batch of events in one call, e.g. a bulk write or a
+ * checksum over many events.  When its handler implements this interface, a {@link BatchEventProcessor} calls
+ * {@link #onBatch(DataProvider, long, long)} for each batch it gets from its barrier, split into chunks of at most
+ * {@link #getMaxBatchSize()} events, and does not call {@link EventHandler#onEvent(Object, long, boolean)}.
+ *
+ * <p>If <code>onBatch</code> throws, the exception handler is given the first sequence and event of the chunk and
+ * the whole chunk is treated as processed.</p>
+ *
+ * @param <T> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public interface BatchEventHandler<T>
+{
+    /**
+     * Called when a publisher has published the events from <code>lo</code> to <code>hi</code> inclusive.
+     *
+     * @param dataProvider to get the events from with {@link DataProvider#get(long)}.
+     * @param lo           first sequence of the chunk.
+     * @param hi           last sequence of the chunk.
+     * @throws Exception if the handler wishes the exception to be handled further up the chain.
+     */
+    void onBatch(DataProvider<? extends T> dataProvider, long lo, long hi) throws Exception;
+
+    /**
+     * @return the largest number of events to pass to one {@link #onBatch(DataProvider, long, long)} call,
+     * {@link Integer#MAX_VALUE} for no limit.  The processor advances its sequence after each chunk.
+     */
+    int getMaxBatchSize();
+}
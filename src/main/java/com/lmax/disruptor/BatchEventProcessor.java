@@ -38,6 +38,11 @@ public final class BatchEventProcessor<T>
     private static final int HALTED = IDLE + 1;
     private static final int RUNNING = HALTED + 1;
 
+    /**
+     * Most events a processor handles between reads of the clock when its handler is {@link DeadlineAware}.
+     */
+    public static final int DEADLINE_CHUNK_SIZE = 64;
+
     private final AtomicInteger running = new AtomicInteger(IDLE);
     private ExceptionHandler<? super T> exceptionHandler = new FatalExceptionHandler();
     private final DataProvider<T> dataProvider;
@@ -46,6 +51,13 @@ public final class BatchEventProcessor<T>
     private final Sequence sequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
     private final TimeoutHandler timeoutHandler;
     private final BatchStartAware batchStartAware;
+    private final BatchEventHandler<? super T> batchEventHandler;
+    private final long maxBatchSize;
+    private final AbstractSequencer progressSignal;
+    private final DeadlineAware<? super T> deadlineAware;
+    private final boolean deadlineOrdered;
+    private final ExpiredEventHandler<? super T> expiredEventHandler;
+    private volatile long expiredCount;
 
     /**
      * Construct a {@link EventProcessor} that will automatically track the progress by updating its sequence when
@@ -57,7 +69,12 @@ public final class BatchEventProcessor<T>
      * @param sequenceBarrier on which it is waiting. 依赖关系，通过构造不同的SequenceBarrier，
      *                        用互相的dependentSequence，我们可以构造出先后消费关系
      * @param eventHandler    is the delegate to which events are dispatched. 用户实现的处理消费的event的业务消费者
+     *                        If it is also a {@link BatchEventHandler} events are dispatched a batch at a time.
+     *                        If it is also {@link DeadlineAware} expired events are shed rather than dispatched.
+     * @throws IllegalArgumentException if the handler is a {@link BatchEventHandler} with a max batch size below 1,
+     *                                  or is both a {@link BatchEventHandler} and {@link DeadlineAware}.
      */
+    @SuppressWarnings("unchecked")
     public BatchEventProcessor(
         final DataProvider<T> dataProvider,
         final SequenceBarrier sequenceBarrier,
@@ -79,6 +96,26 @@ public final class BatchEventProcessor<T>
         // 超时处理回调
         timeoutHandler =
             (eventHandler instanceof TimeoutHandler) ? (TimeoutHandler) eventHandler : null;
+        // 整批处理回调，有则代替逐个onEvent
+        batchEventHandler =
+            (eventHandler instanceof BatchEventHandler) ? (BatchEventHandler<? super T>) eventHandler : null;
+        maxBatchSize = (batchEventHandler != null) ? batchEventHandler.getMaxBatchSize() : Integer.MAX_VALUE;
+        if (maxBatchSize < 1)
+        {
+            throw new IllegalArgumentException("maxBatchSize must be > 0");
+        }
+        // 截止时间回调，过期事件跳过但仍推进sequence
+        deadlineAware =
+            (eventHandler instanceof DeadlineAware) ? (DeadlineAware<? super T>) eventHandler : null;
+        if (deadlineAware != null && batchEventHandler != null)
+        {
+            throw new IllegalArgumentException("A BatchEventHandler cannot also be DeadlineAware");
+        }
+        deadlineOrdered = deadlineAware != null && deadlineAware.isDeadlineOrdered();
+        expiredEventHandler = (deadlineAware != null && eventHandler instanceof ExpiredEventHandler) ?
+            (ExpiredEventHandler<? super T>) eventHandler : null;
+        // 使用TargetedBlockingWaitStrategy或BlockingProducerWaitStrategy时，推进sequence后需要唤醒下游或生产者
+        progressSignal = AbstractSequencer.progressSignalFor(sequenceBarrier);
     }
 
     @Override
@@ -117,6 +154,17 @@ public final class BatchEventProcessor<T>
         this.exceptionHandler = exceptionHandler;
     }
 
+    /**
+     * Get the number of events shed because their deadline had passed, always 0 unless the handler is
+     * {@link DeadlineAware}.
+     *
+     * @return the number of expired events this processor has not dispatched to its handler.
+     */
+    public long getExpiredCount()
+    {
+        return expiredCount;
+    }
+
     /**
      * It is ok to have another thread rerun this method after a halt().
      *
@@ -133,6 +181,7 @@ public final class BatchEventProcessor<T>
 
             // 如果用户实现的EventHandler继承了LifecycleAware，则执行其onStart方法
             notifyStart();
+            FlightRecorderEvents.processorLifecycle(eventHandler, "started");
             try
             {
                 if (running.get() == RUNNING)
@@ -144,6 +193,7 @@ public final class BatchEventProcessor<T>
             {
                 // 如果用户实现的EventHandler继承了LifecycleAware，则执行其onShutdown方法
                 notifyShutdown();
+                FlightRecorderEvents.processorLifecycle(eventHandler, "stopped");
                 running.set(IDLE);
             }
         }
@@ -168,6 +218,12 @@ public final class BatchEventProcessor<T>
         T event = null;
         // sequence初始值为-1，设计上当前值是已经消费过的
         long nextSequence = sequence.get() + 1L;
+        // 当前交给batchEventHandler的一批的最后一个sequence
+        long batchEnd = -1L;
+        // DeadlineAware：已告知handler后面还有事件（endOfBatch为false）时承诺派发的事件，之后即使过期也要派发
+        long promisedSequence = -1L;
+        // DeadlineAware：本块丢弃的事件数，每块结束时才写入volatile的expiredCount
+        long expired = 0L;
 
         while (true)
         {
@@ -176,21 +232,124 @@ public final class BatchEventProcessor<T>
                 // 获取当前可以消费的最大sequence（只要某个消费者获取到了availableSequence，
                 // 就代表其可以安全的消费这些event了！）
                 final long availableSequence = sequenceBarrier.waitFor(nextSequence);
+                final long firstSequence = nextSequence;
+                final Object batchSpan = FlightRecorderEvents.beginBatchProcessed();
                 if (batchStartAware != null)
                 {
-                    batchStartAware.onBatchStart(availableSequence - nextSequence + 1);
+                    final long batchSize = (deadlineAware != null) ?
+                        liveCount(nextSequence, availableSequence, promisedSequence) : availableSequence - nextSequence + 1;
+                    if (batchSize > 0)
+                    {
+                        batchStartAware.onBatchStart(batchSize);
+                    }
                 }
 
-                while (nextSequence <= availableSequence)
+                if (batchEventHandler != null)
                 {
-                    // 获取并处理
-                    event = dataProvider.get(nextSequence);
-                    eventHandler.onEvent(event, nextSequence, nextSequence == availableSequence);
-                    nextSequence++;
+                    while (nextSequence <= availableSequence)
+                    {
+                        batchEnd = Math.min(availableSequence, nextSequence + maxBatchSize - 1L);
+                        batchEventHandler.onBatch(dataProvider, nextSequence, batchEnd);
+                        nextSequence = batchEnd + 1L;
+                        // 分块处理时每块处理完就推进sequence，尽早释放容量
+                        if (nextSequence <= availableSequence)
+                        {
+                            sequence.set(batchEnd);
+                            if (progressSignal != null)
+                            {
+                                progressSignal.signalProgress();
+                            }
+                        }
+                    }
+                }
+                else if (deadlineAware != null)
+                {
+                    while (nextSequence <= availableSequence)
+                    {
+                        // 每块读一次时钟；不需要逐个回调时，过期的事件整段跳过，不读取
+                        final long chunkEnd = Math.min(availableSequence, nextSequence + DEADLINE_CHUNK_SIZE - 1L);
+                        final long now = System.nanoTime();
+                        long firstLive = deadlineOrdered ? firstLiveSequence(nextSequence, chunkEnd, now) : nextSequence;
+                        long lastLive = deadlineOrdered ? chunkEnd : lastLiveSequence(nextSequence, chunkEnd, now);
+                        if (promisedSequence >= nextSequence && promisedSequence <= chunkEnd)
+                        {
+                            firstLive = Math.min(firstLive, promisedSequence);
+                            lastLive = Math.max(lastLive, promisedSequence);
+                        }
+                        if (expiredEventHandler == null && firstLive > nextSequence)
+                        {
+                            expired += firstLive - nextSequence;
+                            nextSequence = firstLive;
+                        }
+                        final long end = (expiredEventHandler == null) ? lastLive : chunkEnd;
+                        while (nextSequence <= end)
+                        {
+                            event = dataProvider.get(nextSequence);
+                            if (nextSequence != promisedSequence &&
+                                (nextSequence < firstLive || nextSequence > lastLive || (!deadlineOrdered && isExpired(event, now))))
+                            {
+                                expired++;
+                                if (expiredEventHandler != null)
+                                {
+                                    expiredEventHandler.onExpired(event, nextSequence);
+                                }
+                            }
+                            else
+                            {
+                                // 块内最后一个未过期事件：只有这一批后面的事件都已过期时才提前结束这一批
+                                boolean endOfBatch = false;
+                                if (nextSequence == lastLive && promisedSequence <= chunkEnd)
+                                {
+                                    final long laterLive = lastLiveAfter(chunkEnd, availableSequence, now);
+                                    endOfBatch = laterLive <= chunkEnd;
+                                    promisedSequence = endOfBatch ? -1L : laterLive;
+                                }
+                                eventHandler.onEvent(event, nextSequence, endOfBatch);
+                            }
+                            nextSequence++;
+                        }
+                        if (nextSequence <= chunkEnd)
+                        {
+                            expired += chunkEnd - nextSequence + 1L;
+                            nextSequence = chunkEnd + 1L;
+                        }
+                        if (expired != 0L)
+                        {
+                            expiredCount += expired;
+                            expired = 0L;
+                        }
+                        if (nextSequence <= availableSequence)
+                        {
+                            sequence.set(chunkEnd);
+                            if (progressSignal != null)
+                            {
+                                progressSignal.signalProgress();
+                            }
+                        }
+                    }
+                }
+                else
+                {
+                    while (nextSequence <= availableSequence)
+                    {
+                        // 获取并处理
+                        event = dataProvider.get(nextSequence);
+                        eventHandler.onEvent(event, nextSequence, nextSequence == availableSequence);
+                        nextSequence++;
+                    }
                 }
 
                 // 设置本消费者当前的sequence，注意，出现异常需要特殊处理，防止重复消费
                 sequence.set(availableSequence);
+                if (progressSignal != null)
+                {
+                    progressSignal.signalProgress();
+                }
+                if (batchSpan != null)
+                {
+                    FlightRecorderEvents.commitBatchProcessed(
+                        batchSpan, eventHandler, firstSequence, availableSequence - firstSequence + 1L);
+                }
             }
             catch (final TimeoutException e)
             {
@@ -207,14 +366,126 @@ public final class BatchEventProcessor<T>
             }
             catch (final Throwable ex)
             {
-                exceptionHandler.handleEventException(ex, nextSequence, event);
-                // 如果出现异常，则设置为nextSequence
-                sequence.set(nextSequence);
-                nextSequence++;
+                FlightRecorderEvents.handlerException(eventHandler, nextSequence, ex);
+                if (expired != 0L)
+                {
+                    expiredCount += expired;
+                    expired = 0L;
+                }
+                if (batchEnd >= nextSequence)
+                {
+                    // onBatch出现异常，整块视为已处理
+                    exceptionHandler.handleEventException(ex, nextSequence, dataProvider.get(nextSequence));
+                    sequence.set(batchEnd);
+                    nextSequence = batchEnd + 1L;
+                }
+                else
+                {
+                    exceptionHandler.handleEventException(ex, nextSequence, event);
+                    // 如果出现异常，则设置为nextSequence
+                    sequence.set(nextSequence);
+                    nextSequence++;
+                }
+                // 跳过的事件也要唤醒下游，否则下游阶段会一直等待
+                if (progressSignal != null)
+                {
+                    progressSignal.signalProgress();
+                }
             }
         }
     }
 
+    private boolean isExpired(final T event, final long now)
+    {
+        final long deadline = deadlineAware.getDeadline(event);
+        return deadline != Long.MAX_VALUE && deadline - now < 0;
+    }
+
+    /**
+     * With ordered deadlines, the first sequence in [lo, hi] that has not expired, hi + 1 if none.
+     */
+    private long firstLiveSequence(final long lo, final long hi, final long now)
+    {
+        if (isExpired(dataProvider.get(hi), now))
+        {
+            return hi + 1L;
+        }
+
+        long low = lo;
+        long high = hi;
+        while (low < high)
+        {
+            final long mid = (low + high) >>> 1;
+            if (isExpired(dataProvider.get(mid), now))
+            {
+                low = mid + 1L;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The last sequence after chunkEnd, up to availableSequence, that has not expired, chunkEnd if none.
+     */
+    private long lastLiveAfter(final long chunkEnd, final long availableSequence, final long now)
+    {
+        if (chunkEnd == availableSequence)
+        {
+            return chunkEnd;
+        }
+        if (deadlineOrdered)
+        {
+            // 有序时过期的总是前缀，只看最后一个
+            return isExpired(dataProvider.get(availableSequence), now) ? chunkEnd : availableSequence;
+        }
+        return lastLiveSequence(chunkEnd + 1L, availableSequence, now);
+    }
+
+    /**
+     * The number of events in [lo, hi] that have not expired, or that were promised to the handler, at the start of
+     * a batch.
+     */
+    private long liveCount(final long lo, final long hi, final long promisedSequence)
+    {
+        final long now = System.nanoTime();
+        if (deadlineOrdered)
+        {
+            long firstLive = firstLiveSequence(lo, hi, now);
+            if (promisedSequence >= lo && promisedSequence <= hi)
+            {
+                firstLive = Math.min(firstLive, promisedSequence);
+            }
+            return hi - firstLive + 1L;
+        }
+
+        long count = 0L;
+        for (long s = lo; s <= hi; s++)
+        {
+            if (s == promisedSequence || !isExpired(dataProvider.get(s), now))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The last sequence in [lo, hi] that has not expired, lo - 1 if none.
+     */
+    private long lastLiveSequence(final long lo, final long hi, final long now)
+    {
+        long s = hi;
+        while (s >= lo && isExpired(dataProvider.get(s), now))
+        {
+            s--;
+        }
+        return s;
+    }
+
     private void earlyExit()
     {
         notifyStart();
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * Blocking strategy for producers waiting on a full ring buffer, using a lock and condition variable.  The producer
+ * sleeps until an event processor advances its sequence, so a long stall costs no CPU and a short one is not
+ * stretched to the length of a park.
+ * <p>
+ * {@link BatchEventProcessor} and {@link WorkProcessor} signal after advancing their sequence.  Sequences advanced
+ * by anything else, such as an {@link EventPoller}, are not signalled, so waiting producers also check the gating
+ * sequences every <code>recheckNanos</code>, 1ms by default.
+ * <p>
+ * Signalling costs a fence and a read of the waiting count while no producer waits.
+ */
+public final class BlockingProducerWaitStrategy implements ProducerWaitStrategy
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    private static final long DEFAULT_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Object mutex = new Object();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+    private final long recheckNanos;
+
+    public BlockingProducerWaitStrategy()
+    {
+        this(DEFAULT_RECHECK_NANOS);
+    }
+
+    /**
+     * @param recheckNanos the longest a producer sleeps before checking the gating sequences again without a signal.
+     */
+    public BlockingProducerWaitStrategy(final long recheckNanos)
+    {
+        if (recheckNanos < 1)
+        {
+            throw new IllegalArgumentException("recheckNanos must be > 0");
+        }
+
+        this.recheckNanos = recheckNanos;
+    }
+
+    @Override
+    public void waitForCapacity(final long wrapPoint, final Sequence[] gatingSequences, final int attempt)
+    {
+        // 先登记再检查条件（incrementAndGet是完整屏障），与signalAllWhenBlocking中的fullFence配对，保证不会丢失唤醒
+        waitingProducers.incrementAndGet();
+        try
+        {
+            synchronized (mutex)
+            {
+                if (Util.getMinimumSequence(gatingSequences) < wrapPoint)
+                {
+                    TimeUnit.NANOSECONDS.timedWait(mutex, recheckNanos);
+                }
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            // next()不能抛出InterruptedException，保留中断标志交给调用方处理
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            waitingProducers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking()
+    {
+        // 消费者对sequence是有序写(store/store)，这里需要store/load屏障，才能看到刚开始等待的生产者
+        UNSAFE.fullFence();
+
+        if (waitingProducers.get() != 0)
+        {
+            synchronized (mutex)
+            {
+                mutex.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BlockingProducerWaitStrategy{" +
+            "waitingProducers=" + waitingProducers.get() +
+            ", recheckNanos=" + recheckNanos +
+            '}';
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.util.ThreadHints;
+
+/**
+ * Busy Spin strategy for producers waiting on a full ring buffer.
+ * <p>
+ * This strategy has the lowest latency for short stalls but burns a core for as long as the consumers are behind.
+ * It is best used when the producing thread is bound to an isolated core.
+ */
+public final class BusySpinProducerWaitStrategy implements ProducerWaitStrategy
+{
+    @Override
+    public void waitForCapacity(final long wrapPoint, final Sequence[] gatingSequences, final int attempt)
+    {
+        ThreadHints.onSpinWait();
+    }
+
+    @Override
+    public void signalAllWhenBlocking()
+    {
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Publisher owned by a single thread that stages the events it is given and claims and publishes them in one
+ * {@link RingBuffer#next(int)}/{@link RingBuffer#publish(long, long)}, so a thread publishing bursts of single
+ * events pays for one claim per burst instead of one per event.  With a {@link MultiProducerSequencer} that is one
+ * CAS on the shared cursor per batch.
+ *
+ * <p>Events are staged as translator and arguments and translated into the ring buffer when flushed.  The staged
+ * events are flushed when the batch size is reached, when the first of them has been staged for longer than the
+ * linger time, or when {@link #flush()} is called.  The linger time is only checked when an event is published or
+ * {@link #flushIfLingering()} is called, and not at all with a linger time of {@link Long#MAX_VALUE}, so a thread that may stop publishing must call one of the flush methods
+ * before it goes idle.</p>
+ *
+ * <p>Not thread safe, create one per publishing thread with {@link RingBuffer#newCoalescingPublisher(int, long)}.
+ * Arguments are held until the events are flushed, so must not be reused by the caller before then.</p>
+ *
+ * 线程私有的合并发布器：先暂存translator和参数，攒够一批（或超时、手动flush）后一次next(n)/publish(lo, hi)发布
+ *
+ * @param <E> type of the events in the ring buffer.
+ */
+public final class CoalescingPublisher<E>
+{
+    private final RingBuffer<E> ringBuffer;
+    private final int batchSize;
+    private final long maxLingerNanos;
+
+    private final Object[] translators;
+    private final Object[] args0;
+    private final Object[] args1;
+    private final Object[] args2;
+    private final byte[] arities;
+    private int size;
+    private long firstStagedNanos;
+
+    CoalescingPublisher(final RingBuffer<E> ringBuffer, final int batchSize, final long maxLingerNanos)
+    {
+        if (batchSize < 1 || batchSize > ringBuffer.getBufferSize())
+        {
+            throw new IllegalArgumentException("batchSize must be between 1 and the buffer size, got " + batchSize);
+        }
+        if (maxLingerNanos < 0)
+        {
+            throw new IllegalArgumentException("maxLingerNanos must not be negative");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.batchSize = batchSize;
+        this.maxLingerNanos = maxLingerNanos;
+        this.translators = new Object[batchSize];
+        this.args0 = new Object[batchSize];
+        this.args1 = new Object[batchSize];
+        this.args2 = new Object[batchSize];
+        this.arities = new byte[batchSize];
+    }
+
+    /**
+     * Stage an event, flushing if that completes a batch or the linger time has passed.
+     *
+     * @param translator to translate the event with when flushed.
+     */
+    public void publishEvent(final EventTranslator<E> translator)
+    {
+        stage(translator, null, null, null, (byte) 0);
+    }
+
+    /**
+     * Stage an event, flushing if that completes a batch or the linger time has passed.
+     *
+     * @param <A>        type of the argument.
+     * @param translator to translate the event with when flushed.
+     * @param arg0       passed to the translator.
+     */
+    public <A> void publishEvent(final EventTranslatorOneArg<E, A> translator, final A arg0)
+    {
+        stage(translator, arg0, null, null, (byte) 1);
+    }
+
+    /**
+     * Stage an event, flushing if that completes a batch or the linger time has passed.
+     *
+     * @param <A>        type of the first argument.
+     * @param <B>        type of the second argument.
+     * @param translator to translate the event with when flushed.
+     * @param arg0       passed to the translator.
+     * @param arg1       passed to the translator.
+     */
+    public <A, B> void publishEvent(final EventTranslatorTwoArg<E, A, B> translator, final A arg0, final B arg1)
+    {
+        stage(translator, arg0, arg1, null, (byte) 2);
+    }
+
+    /**
+     * Stage an event, flushing if that completes a batch or the linger time has passed.
+     *
+     * @param <A>        type of the first argument.
+     * @param <B>        type of the second argument.
+     * @param <C>        type of the third argument.
+     * @param translator to translate the event with when flushed.
+     * @param arg0       passed to the translator.
+     * @param arg1       passed to the translator.
+     * @param arg2       passed to the translator.
+     */
+    public <A, B, C> void publishEvent(
+        final EventTranslatorThreeArg<E, A, B, C> translator, final A arg0, final B arg1, final C arg2)
+    {
+        stage(translator, arg0, arg1, arg2, (byte) 3);
+    }
+
+    /**
+     * Claim and publish all staged events, blocking in {@link RingBuffer#next(int)} if there is not enough capacity.
+     * If a translator throws the whole batch is still published, as {@link RingBuffer#publishEvents(EventTranslator[])}
+     * does, and the exception rethrown.
+     */
+    @SuppressWarnings("unchecked")
+    public void flush()
+    {
+        final int n = size;
+        if (n == 0)
+        {
+            return;
+        }
+
+        final long hi = ringBuffer.next(n);
+        final long lo = hi - (n - 1);
+        try
+        {
+            for (int i = 0; i < n; i++)
+            {
+                final long sequence = lo + i;
+                final E event = ringBuffer.get(sequence);
+                switch (arities[i])
+                {
+                    case 0:
+                        ((EventTranslator<E>) translators[i]).translateTo(event, sequence);
+                        break;
+                    case 1:
+                        ((EventTranslatorOneArg<E, Object>) translators[i]).translateTo(event, sequence, args0[i]);
+                        break;
+                    case 2:
+                        ((EventTranslatorTwoArg<E, Object, Object>) translators[i]).translateTo(event, sequence, args0[i], args1[i]);
+                        break;
+                    default:
+                        ((EventTranslatorThreeArg<E, Object, Object, Object>) translators[i])
+                            .translateTo(event, sequence, args0[i], args1[i], args2[i]);
+                        break;
+                }
+            }
+        }
+        finally
+        {
+            ringBuffer.publish(lo, hi);
+            clear(n);
+        }
+    }
+
+    /**
+     * Flush the staged events if the first of them has been staged for longer than the linger time, for a thread
+     * to call when it has nothing more to publish for now.
+     *
+     * @return true if events were flushed.
+     */
+    public boolean flushIfLingering()
+    {
+        if (size != 0 && System.nanoTime() - firstStagedNanos >= maxLingerNanos)
+        {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of events staged and not yet published.
+     */
+    public int getStagedCount()
+    {
+        return size;
+    }
+
+    private void stage(final Object translator, final Object arg0, final Object arg1, final Object arg2, final byte arity)
+    {
+        final int index = size;
+        translators[index] = translator;
+        args0[index] = arg0;
+        args1[index] = arg1;
+        args2[index] = arg2;
+        arities[index] = arity;
+        size = index + 1;
+
+        if (size == batchSize)
+        {
+            flush();
+        }
+        else if (maxLingerNanos != Long.MAX_VALUE)
+        {
+            // 只有设置了linger时间才读取时钟
+            final long now = System.nanoTime();
+            if (index == 0)
+            {
+                firstStagedNanos = now;
+            }
+            if (now - firstStagedNanos >= maxLingerNanos)
+            {
+                flush();
+            }
+        }
+    }
+
+    private void clear(final int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            translators[i] = null;
+            args0[i] = null;
+            args1[i] = null;
+            args2[i] = null;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.Arrays;
+
+import com.lmax.disruptor.util.Util;
+import sun.misc.Unsafe;
+
+/**
+ * Tracks events completed out of order by the workers of an ordered {@link WorkerPool} and advances a single
+ * {@link Sequence} over the contiguous prefix of completed events, so that anything gating on it sees events
+ * strictly in sequence order.
+ *
+ * 每个worker完成后在completed数组中标记自己的sequence，然后尝试推进连续完成的前缀，
+ * 与MultiProducerSequencer的availableBuffer类似。
+ */
+final class CompletionSequence
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    private static final long BASE = UNSAFE.arrayBaseOffset(long[].class);
+    private static final long SCALE = UNSAFE.arrayIndexScale(long[].class);
+
+    private final Sequence sequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+    private final long[] completed;
+    private final int indexMask;
+
+    CompletionSequence(final int bufferSize)
+    {
+        completed = new long[bufferSize];
+        indexMask = bufferSize - 1;
+        Arrays.fill(completed, Sequencer.INITIAL_CURSOR_VALUE);
+    }
+
+    Sequence getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Mark a sequence as completed and advance the completion sequence as far as the completed events are
+     * contiguous.  The volatile mark followed by the volatile read of the sequence pairs with the CAS followed by
+     * the read of the mark in another worker, so one of the two always sees the other and no completion is missed.
+     *
+     * @param completedSequence the sequence this worker has finished with.
+     */
+    void complete(final long completedSequence)
+    {
+        UNSAFE.putLongVolatile(completed, address(completedSequence), completedSequence);
+
+        long current = sequence.get();
+        while (true)
+        {
+            final long next = current + 1;
+            if (UNSAFE.getLongVolatile(completed, address(next)) != next)
+            {
+                return;
+            }
+
+            if (sequence.compareAndSet(current, next))
+            {
+                current = next;
+            }
+            else
+            {
+                current = sequence.get();
+            }
+        }
+    }
+
+    private long address(final long sequence)
+    {
+        return ((sequence & indexMask) * SCALE) + BASE;
+    }
+}
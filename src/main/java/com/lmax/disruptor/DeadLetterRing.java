@@ -0,0 +1,563 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A small side ring for events whose handler threw, so a failing event neither halts the pipeline, as the
+ * {@link FatalExceptionHandler} does, nor is lost, as with the {@link IgnoreExceptionHandler}, nor stalls the ring
+ * while it is retried inline.  Each processor is given its own {@link Source} from
+ * {@link #newExceptionHandler(ExceptionHandler)} as its exception handler.  When its handler throws, the source copies
+ * the event into the dead-letter ring with a user translator, claiming with {@link RingBuffer#tryNext()}, and returns
+ * straight away so the processor carries on with the next event.
+ *
+ * <p>A retry processor, started with {@link #start(Executor)}, retries the letters in the ring in the order they
+ * fall due, not in ring order, calling {@link RetryHandler#onRetry(Object, int)} once a letter's backoff has passed.
+ * If it throws, the backoff is doubled, up to the maximum, and the letter is published again at the back of the ring
+ * so that it does not hold back the processor's sequence; letters behind it that fall due earlier are retried first.
+ * After the maximum number of attempts {@link RetryHandler#onExhausted(Object, Throwable)} is called instead.  A
+ * recovered letter can be published back to a ring, see {@link #publishRecoveredTo(RingBuffer, EventTranslatorOneArg)}.</p>
+ *
+ * <p>If the dead-letter ring is full, or the translator throws, the source counts the event as dropped and passes
+ * the exception to its fallback handler.  Each source counts the events it dead-lettered, dropped, recovered,
+ * requeued and gave up on.</p>
+ *
+ * 失败事件复制到旁路小环，由重试线程退避重试，主处理线程不等待
+ *
+ * @param <T> event of the ring whose handlers may fail.
+ * @param <D> dead letter payload, preallocated in the dead-letter ring.
+ */
+public final class DeadLetterRing<T, D>
+{
+    /**
+     * Retries dead letters on the retry processor thread.
+     *
+     * @param <D> dead letter payload.
+     */
+    public interface RetryHandler<D>
+    {
+        /**
+         * Retry a dead letter, throwing if it failed again.
+         *
+         * @param payload copied from the failed event.
+         * @param attempt number of this retry, starting at 1.
+         * @throws Exception if the retry failed and the letter should be tried again after a backoff.
+         */
+        void onRetry(D payload, int attempt) throws Exception;
+
+        /**
+         * Called instead of another retry once the maximum number of attempts have failed.
+         *
+         * @param payload   copied from the failed event.
+         * @param lastCause thrown by the last retry.
+         * @throws Exception passed to the retry processor's exception handler, which logs it.
+         */
+        void onExhausted(D payload, Throwable lastCause) throws Exception;
+    }
+
+    private final RingBuffer<Letter<D>> ringBuffer;
+    private final BatchEventProcessor<Letter<D>> retryProcessor;
+    private final ProcessingSequenceBarrier retryBarrier;
+    private final ExceptionHandler<Object> retryExceptionHandler = new IgnoreExceptionHandler();
+    private final EventTranslatorOneArg<D, ? super T> translator;
+    private final RetryHandler<D> retryHandler;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private RingBuffer<T> recoveredRingBuffer;
+    private EventTranslatorOneArg<T, D> recoveredTranslator;
+    private volatile boolean halted;
+    private volatile Thread retryThread;
+
+    /**
+     * Construct a dead-letter ring.
+     *
+     * @param payloadFactory      to preallocate the payload of each dead letter.
+     * @param bufferSize          of the dead-letter ring, must be power of 2.
+     * @param translator          copies a failed event into a payload, called on the thread of the failing processor.
+     * @param retryHandler        to retry dead letters.
+     * @param maxAttempts         most calls to {@link RetryHandler#onRetry(Object, int)} for one letter.
+     * @param initialBackoffNanos wait between the failure and the first retry, doubled after each failed retry.
+     * @param maxBackoffNanos     longest wait between retries.
+     * @throws IllegalArgumentException if maxAttempts is below 1 or the backoffs are negative or out of order.
+     */
+    public DeadLetterRing(
+        final EventFactory<D> payloadFactory,
+        final int bufferSize,
+        final EventTranslatorOneArg<D, ? super T> translator,
+        final RetryHandler<D> retryHandler,
+        final int maxAttempts,
+        final long initialBackoffNanos,
+        final long maxBackoffNanos)
+    {
+        if (maxAttempts < 1)
+        {
+            throw new IllegalArgumentException("maxAttempts must be > 0");
+        }
+        if (initialBackoffNanos < 0 || maxBackoffNanos < initialBackoffNanos)
+        {
+            throw new IllegalArgumentException("Backoffs must satisfy 0 <= initialBackoffNanos <= maxBackoffNanos");
+        }
+
+        this.translator = translator;
+        this.retryHandler = retryHandler;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+
+        // 失败事件少见，重试线程用阻塞等待，不占CPU
+        this.ringBuffer = RingBuffer.createMultiProducer(
+            new EventFactory<Letter<D>>()
+            {
+                @Override
+                public Letter<D> newInstance()
+                {
+                    return new Letter<D>(payloadFactory.newInstance());
+                }
+            },
+            bufferSize,
+            new BlockingWaitStrategy());
+        this.retryBarrier = (ProcessingSequenceBarrier) ringBuffer.newBarrier();
+        this.retryProcessor = new BatchEventProcessor<Letter<D>>(ringBuffer, retryBarrier, new RetryEventHandler());
+        this.retryProcessor.setExceptionHandler(new ExceptionHandler<Letter<D>>()
+        {
+            @Override
+            public void handleEventException(final Throwable ex, final long sequence, final Letter<D> letter)
+            {
+                if (ex == RetryHalted.INSTANCE)
+                {
+                    // 抛出处理器，它的sequence停在未处理完的信件之前
+                    throw RetryHalted.INSTANCE;
+                }
+                retryExceptionHandler.handleEventException(ex, sequence, letter);
+            }
+
+            @Override
+            public void handleOnStartException(final Throwable ex)
+            {
+                retryExceptionHandler.handleOnStartException(ex);
+            }
+
+            @Override
+            public void handleOnShutdownException(final Throwable ex)
+            {
+                retryExceptionHandler.handleOnShutdownException(ex);
+            }
+        });
+        ringBuffer.addGatingSequences(retryProcessor.getSequence());
+    }
+
+    /**
+     * Create the exception handler for one processor, with its own counters.
+     *
+     * @param fallback given the exception when the event cannot be dead-lettered, and exceptions from
+     *                 onStart and onShutdown.
+     * @return the exception handler to set on the processor.
+     */
+    public Source newExceptionHandler(final ExceptionHandler<? super T> fallback)
+    {
+        if (null == fallback)
+        {
+            throw new NullPointerException();
+        }
+
+        return new Source(fallback);
+    }
+
+    /**
+     * Publish the payload of each recovered letter to a ring buffer, e.g. back to the ring it failed on.  Must be
+     * called before {@link #start(Executor)}.  The retry processor blocks while that ring is full.
+     *
+     * @param ringBuffer to publish recovered letters to.
+     * @param translator copies a recovered payload into an event of that ring.
+     */
+    public void publishRecoveredTo(final RingBuffer<T> ringBuffer, final EventTranslatorOneArg<T, D> translator)
+    {
+        this.recoveredRingBuffer = ringBuffer;
+        this.recoveredTranslator = translator;
+    }
+
+    /**
+     * Start the retry processor.
+     *
+     * @param executor providing the thread for the retry processor.
+     */
+    public void start(final Executor executor)
+    {
+        halted = false;
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    retryProcessor.run();
+                }
+                catch (final RetryHalted e)
+                {
+                    // halted while letters were pending, they stay in the ring
+                }
+            }
+        });
+    }
+
+    /**
+     * Halt the retry processor after the retry in progress, if any, without waiting for any backoff.  Letters not
+     * yet recovered or given up on stay in the ring and are retried when the processor is started again.
+     */
+    public void halt()
+    {
+        halted = true;
+        retryProcessor.halt();
+        wakeRetryThread();
+    }
+
+    public boolean isRunning()
+    {
+        return retryProcessor.isRunning();
+    }
+
+    /**
+     * @return the number of dead letters published and not yet recovered or given up on.
+     */
+    public long getBacklog()
+    {
+        return ringBuffer.getCursor() - retryProcessor.getSequence().get();
+    }
+
+    private long backoffNanos(final int attempts)
+    {
+        // 指数退避，溢出或超过上限时取上限
+        final int shift = Math.min(attempts, 62);
+        final long backoff = initialBackoffNanos << shift;
+        return ((backoff >> shift) != initialBackoffNanos || backoff > maxBackoffNanos) ? maxBackoffNanos : backoff;
+    }
+
+    private void wakeRetryThread()
+    {
+        final Thread thread = retryThread;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Exception handler for one processor, dead-lettering the events its handler fails on.
+     */
+    public final class Source implements ExceptionHandler<T>
+    {
+        private final ExceptionHandler<? super T> fallback;
+        private final AtomicLong deadLettered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong recovered = new AtomicLong();
+        private final AtomicLong requeued = new AtomicLong();
+        private final AtomicLong exhausted = new AtomicLong();
+
+        private Source(final ExceptionHandler<? super T> fallback)
+        {
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void handleEventException(final Throwable ex, final long sequence, final T event)
+        {
+            final long letterSequence;
+            try
+            {
+                letterSequence = ringBuffer.tryNext();
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                dropped.incrementAndGet();
+                fallback.handleEventException(ex, sequence, event);
+                return;
+            }
+
+            final Letter<D> letter = ringBuffer.get(letterSequence);
+            // source为空的槽位由重试线程跳过，复制失败时也要发布以免阻塞序号
+            letter.source = null;
+            boolean copied = false;
+            try
+            {
+                translator.translateTo(letter.payload, sequence, event);
+                letter.source = this;
+                letter.cause = ex;
+                letter.attempts = 0;
+                letter.dueNanos = System.nanoTime() + initialBackoffNanos;
+                copied = true;
+            }
+            catch (final Throwable copyFailure)
+            {
+                ex.addSuppressed(copyFailure);
+            }
+            finally
+            {
+                ringBuffer.publish(letterSequence);
+            }
+
+            if (copied)
+            {
+                deadLettered.incrementAndGet();
+                // 新信件可能比重试线程正在等待的信件先到期
+                wakeRetryThread();
+            }
+            else
+            {
+                dropped.incrementAndGet();
+                fallback.handleEventException(ex, sequence, event);
+            }
+        }
+
+        @Override
+        public void handleOnStartException(final Throwable ex)
+        {
+            fallback.handleOnStartException(ex);
+        }
+
+        @Override
+        public void handleOnShutdownException(final Throwable ex)
+        {
+            fallback.handleOnShutdownException(ex);
+        }
+
+        /**
+         * @return the number of failed events copied into the dead-letter ring.
+         */
+        public long getDeadLetteredCount()
+        {
+            return deadLettered.get();
+        }
+
+        /**
+         * @return the number of failed events passed to the fallback because the ring was full or the copy failed.
+         */
+        public long getDroppedCount()
+        {
+            return dropped.get();
+        }
+
+        /**
+         * @return the number of dead letters a retry succeeded for.
+         */
+        public long getRecoveredCount()
+        {
+            return recovered.get();
+        }
+
+        /**
+         * @return the number of failed retries that were published again for a later retry.
+         */
+        public long getRequeuedCount()
+        {
+            return requeued.get();
+        }
+
+        /**
+         * @return the number of dead letters given up on after the maximum number of attempts.
+         */
+        public long getExhaustedCount()
+        {
+            return exhausted.get();
+        }
+    }
+
+    /**
+     * Thrown out of the retry processor by {@link #halt()} so that it stops without moving its sequence past
+     * letters still pending.
+     */
+    private static final class RetryHalted extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+        private static final RetryHalted INSTANCE = new RetryHalted();
+
+        private RetryHalted()
+        {
+        }
+
+        @Override
+        public Throwable fillInStackTrace()
+        {
+            return this;
+        }
+    }
+
+    private static final class Letter<D>
+    {
+        private D payload;
+        private DeadLetterRing<?, D>.Source source;
+        private Throwable cause;
+        private int attempts;
+        private long dueNanos;
+
+        private Letter(final D payload)
+        {
+            this.payload = payload;
+        }
+    }
+
+    private final class RetryEventHandler implements EventHandler<Letter<D>>, LifecycleAware
+    {
+        @Override
+        public void onEvent(final Letter<D> letter, final long sequence, final boolean endOfBatch)
+        {
+            // 队头的信件处理完（恢复、放弃或移到环尾）之前，按到期时间先后重试它和它后面已发布的信件
+            while (letter.source != null)
+            {
+                if (halted)
+                {
+                    throw RetryHalted.INSTANCE;
+                }
+
+                final Letter<D> due = earliestDue(letter, sequence);
+                final long remaining = due.dueNanos - System.nanoTime();
+                if (remaining > 0)
+                {
+                    // 由halt或新发布的信件唤醒，然后重新选择
+                    LockSupport.parkNanos(this, remaining);
+                }
+                else
+                {
+                    retry(due, sequence);
+                }
+            }
+        }
+
+        @Override
+        public void onStart()
+        {
+            retryThread = Thread.currentThread();
+        }
+
+        @Override
+        public void onShutdown()
+        {
+            retryThread = null;
+        }
+
+        /**
+         * The pending letter due first among the one at sequence and the letters published after it.
+         */
+        private Letter<D> earliestDue(final Letter<D> head, final long sequence)
+        {
+            Letter<D> due = head;
+            final long available = retryBarrier.getAvailableSequence(sequence + 1L);
+            for (long s = sequence + 1L; s <= available; s++)
+            {
+                final Letter<D> letter = ringBuffer.get(s);
+                if (letter.source != null && letter.dueNanos - due.dueNanos < 0)
+                {
+                    due = letter;
+                }
+            }
+            return due;
+        }
+
+        /**
+         * Make one attempt at a letter.  Unless it is to be retried in place, the letter is cleared so that the
+         * processor skips it when it reaches its slot.
+         */
+        private void retry(final Letter<D> letter, final long sequence)
+        {
+            final DeadLetterRing<?, D>.Source source = letter.source;
+            letter.attempts++;
+            try
+            {
+                retryHandler.onRetry(letter.payload, letter.attempts);
+            }
+            catch (final Throwable ex)
+            {
+                letter.cause = ex;
+                letter.dueNanos = System.nanoTime() + backoffNanos(letter.attempts);
+                if (letter.attempts < maxAttempts)
+                {
+                    // 环满时留在原处，到期后再重试
+                    if (requeue(letter))
+                    {
+                        clear(letter);
+                        source.requeued.incrementAndGet();
+                    }
+                    return;
+                }
+
+                clear(letter);
+                source.exhausted.incrementAndGet();
+                try
+                {
+                    retryHandler.onExhausted(letter.payload, ex);
+                }
+                catch (final Throwable exhaustedFailure)
+                {
+                    retryExceptionHandler.handleEventException(exhaustedFailure, sequence, letter.payload);
+                }
+                return;
+            }
+
+            clear(letter);
+            source.recovered.incrementAndGet();
+            if (recoveredRingBuffer != null)
+            {
+                try
+                {
+                    recoveredRingBuffer.publishEvent(recoveredTranslator, letter.payload);
+                }
+                catch (final Throwable publishFailure)
+                {
+                    retryExceptionHandler.handleEventException(publishFailure, sequence, letter.payload);
+                }
+            }
+        }
+
+        private void clear(final Letter<D> letter)
+        {
+            letter.source = null;
+            letter.cause = null;
+        }
+
+        /**
+         * Move a letter to the back of the ring, swapping payloads so both slots keep a preallocated one.  The
+         * retry processor is the only consumer so it must not wait for space; if the ring is full the letter is
+         * retried in place after its backoff instead.
+         */
+        private boolean requeue(final Letter<D> letter)
+        {
+            final long next;
+            try
+            {
+                next = ringBuffer.tryNext();
+            }
+            catch (final InsufficientCapacityException e)
+            {
+                return false;
+            }
+
+            final Letter<D> target = ringBuffer.get(next);
+            final D payload = target.payload;
+            target.payload = letter.payload;
+            letter.payload = payload;
+            target.source = letter.source;
+            target.cause = letter.cause;
+            target.attempts = letter.attempts;
+            target.dueNanos = letter.dueNanos;
+            ringBuffer.publish(next);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Implemented by an {@link EventHandler} whose events stop being worth processing after a deadline, e.g. a quote
+ * that is stale or a request whose caller has already timed out.  When its handler implements this interface, a
+ * {@link BatchEventProcessor} reads the clock once per chunk of at most {@link BatchEventProcessor#DEADLINE_CHUNK_SIZE}
+ * events and does not call {@link EventHandler#onEvent(Object, long, boolean)} for events whose deadline has passed.
+ * Expired events are still counted as processed, so the processor's sequence moves past them and a backlog drains
+ * in a time bounded by the events that are still live.
+ *
+ * <p>Expired events are passed to the handler's {@link ExpiredEventHandler#onExpired(Object, long)} if it also
+ * implements {@link ExpiredEventHandler}, otherwise they are only counted, see
+ * {@link BatchEventProcessor#getExpiredCount()}.  <code>endOfBatch == true</code> is given to the last event of the
+ * batch that is dispatched, which is before the end of the batch only when the events after it were shed.  Once an
+ * event has been dispatched with <code>endOfBatch == false</code>, a later event of the batch is always dispatched,
+ * even if it expires in the meantime, so the handler always sees the end of the batch.  A handler that is also
+ * {@link BatchStartAware} is given the number of events not expired when the batch starts, events that expire while
+ * the batch is processed are shed as well.</p>
+ *
+ * @param <T> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public interface DeadlineAware<T>
+{
+    /**
+     * @param event to get the deadline of.
+     * @return the {@link System#nanoTime()} after which the event has expired, {@link Long#MAX_VALUE} for never.
+     */
+    long getDeadline(T event);
+
+    /**
+     * Deadlines are ordered when they never decrease with the sequence, e.g. each publisher stamps
+     * <code>System.nanoTime() + ttl</code> with a single producer.  The processor then checks only the last event of
+     * a chunk to skip it whole and binary searches for the first live event, without reading the rest.
+     *
+     * @return true if {@link #getDeadline(Object)} never decreases as the sequence increases.
+     */
+    boolean isDeadlineOrdered();
+}
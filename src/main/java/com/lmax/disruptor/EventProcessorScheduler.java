@@ -0,0 +1,281 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs many {@link ScheduledEventProcessor}s on a small, fixed number of threads.  Suited to a large number of
+ * low-rate pipelines (one {@link RingBuffer} per venue or session, say), which would otherwise each hold a thread
+ * that spends nearly all of its time in a {@link WaitStrategy}.
+ *
+ * <p>Each processor is pinned to one scheduler thread when it is started.  A thread repeatedly gives every one of
+ * its processors a bounded batch of their available events, in turn, and parks only when none of them had any
+ * work, backing off from {@link #MIN_PARK_NANOS} up to the configured maximum.  The maximum park time is therefore
+ * the worst case added latency for an event arriving at an idle scheduler thread.</p>
+ *
+ * <pre><code>
+ * EventProcessorScheduler scheduler = new EventProcessorScheduler(threadFactory, 2, 64, TimeUnit.MICROSECONDS.toNanos(100));
+ * scheduler.start();
+ * ScheduledEventProcessor&lt;Event&gt; processor = scheduler.newProcessor(ringBuffer, ringBuffer.newBarrier(), handler);
+ * ringBuffer.addGatingSequences(processor.getSequence());
+ * processor.run(); // returns immediately, the handler is now called from one of the scheduler threads
+ * </code></pre>
+ *
+ * 用少量线程轮询大量低频处理器，所有处理器都空闲时才park线程
+ */
+public final class EventProcessorScheduler
+{
+    static final long MIN_PARK_NANOS = 1000L;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final ThreadFactory threadFactory;
+    private final int maxBatchSize;
+    private final long maxParkNanos;
+    private final Worker[] workers;
+
+    /**
+     * @param threadFactory for the scheduler threads.
+     * @param threadCount   number of threads to spread the processors over.
+     * @param maxBatchSize  maximum number of events a processor handles before the thread moves on to the next one.
+     * @param maxParkNanos  longest time an idle thread parks before polling its processors again.
+     */
+    public EventProcessorScheduler(
+        final ThreadFactory threadFactory,
+        final int threadCount,
+        final int maxBatchSize,
+        final long maxParkNanos)
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("threadCount must not be less than 1");
+        }
+        if (maxBatchSize < 1)
+        {
+            throw new IllegalArgumentException("maxBatchSize must not be less than 1");
+        }
+        if (maxParkNanos < MIN_PARK_NANOS)
+        {
+            throw new IllegalArgumentException("maxParkNanos must not be less than " + MIN_PARK_NANOS);
+        }
+
+        this.threadFactory = threadFactory;
+        this.maxBatchSize = maxBatchSize;
+        this.maxParkNanos = maxParkNanos;
+        workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            workers[i] = new Worker();
+        }
+    }
+
+    /**
+     * Create a scheduler with a batch size of 256 events and a maximum park time of 100 microseconds.
+     *
+     * @param threadFactory for the scheduler threads.
+     * @param threadCount   number of threads to spread the processors over.
+     */
+    public EventProcessorScheduler(final ThreadFactory threadFactory, final int threadCount)
+    {
+        this(threadFactory, threadCount, 256, TimeUnit.MICROSECONDS.toNanos(100));
+    }
+
+    /**
+     * Create a processor whose events will be handled on the threads of this scheduler once it is started with
+     * {@link ScheduledEventProcessor#run()}.
+     *
+     * @param dataProvider    to which events are published, usually the {@link RingBuffer}.
+     * @param sequenceBarrier on which it is waiting, created with {@link RingBuffer#newBarrier(Sequence...)}.
+     * @param eventHandler    is the delegate to which events are dispatched.
+     * @param <T>             event implementation storing the data for sharing during exchange or parallel coordination of an event.
+     * @return the processor, whose sequence should be added to the gating sequences of the ring buffer.
+     * @throws IllegalArgumentException if the handler is a {@link TimeoutHandler}, {@link BatchEventHandler} or
+     *                                  {@link DeadlineAware}.
+     */
+    public <T> ScheduledEventProcessor<T> newProcessor(
+        final DataProvider<T> dataProvider,
+        final SequenceBarrier sequenceBarrier,
+        final EventHandler<? super T> eventHandler)
+    {
+        return new ScheduledEventProcessor<>(this, dataProvider, sequenceBarrier, eventHandler);
+    }
+
+    /**
+     * Start the scheduler threads.  Processors may be started before or after the scheduler.
+     *
+     * @throws IllegalStateException if the scheduler has already been started.
+     */
+    public void start()
+    {
+        if (!started.compareAndSet(false, true))
+        {
+            throw new IllegalStateException("Scheduler has already been started");
+        }
+
+        for (final Worker worker : workers)
+        {
+            final Thread thread = threadFactory.newThread(worker);
+            if (null == thread)
+            {
+                throw new RuntimeException("Failed to create thread to run: " + worker);
+            }
+            worker.thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the scheduler threads, after notifying the handlers of all their processors of shutdown.
+     */
+    public void halt()
+    {
+        for (final Worker worker : workers)
+        {
+            worker.running = false;
+            worker.wakeUp();
+        }
+    }
+
+    void attach(final ScheduledEventProcessor<?> processor)
+    {
+        final Worker worker = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+        worker.inbox.offer(processor);
+        worker.wakeUp();
+    }
+
+    void wakeUp()
+    {
+        for (final Worker worker : workers)
+        {
+            worker.wakeUp();
+        }
+    }
+
+    private final class Worker implements Runnable
+    {
+        private final Queue<ScheduledEventProcessor<?>> inbox = new ConcurrentLinkedQueue<>();
+        // 只由本线程访问
+        private final List<ScheduledEventProcessor<?>> processors = new ArrayList<>();
+        private volatile boolean running = true;
+        private volatile Thread thread;
+
+        @Override
+        public void run()
+        {
+            long parkNanos = MIN_PARK_NANOS;
+            try
+            {
+                while (running)
+                {
+                    acceptNewProcessors();
+
+                    int processed = 0;
+                    for (int i = processors.size() - 1; i >= 0; i--)
+                    {
+                        processed += poll(i);
+                    }
+
+                    if (processed > 0)
+                    {
+                        parkNanos = MIN_PARK_NANOS;
+                    }
+                    else
+                    {
+                        LockSupport.parkNanos(this, parkNanos);
+                        parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+                    }
+                }
+            }
+            finally
+            {
+                acceptNewProcessors();
+                for (int i = processors.size() - 1; i >= 0; i--)
+                {
+                    shutdown(i);
+                }
+            }
+        }
+
+        private int poll(final int index)
+        {
+            final ScheduledEventProcessor<?> processor = processors.get(index);
+            if (processor.isHalted())
+            {
+                shutdown(index);
+                return 0;
+            }
+
+            try
+            {
+                return processor.processBatch(maxBatchSize);
+            }
+            catch (final Throwable ex)
+            {
+                // 与BatchEventProcessor一样，异常处理器抛出的异常会停止这个处理器，但不影响同一线程上的其他处理器
+                shutdown(index);
+                return 0;
+            }
+        }
+
+        private void acceptNewProcessors()
+        {
+            ScheduledEventProcessor<?> processor;
+            while ((processor = inbox.poll()) != null)
+            {
+                processors.add(processor);
+                try
+                {
+                    processor.notifyStart();
+                }
+                catch (final Throwable ex)
+                {
+                    shutdown(processors.size() - 1);
+                }
+            }
+        }
+
+        private void shutdown(final int index)
+        {
+            final ScheduledEventProcessor<?> processor = processors.remove(index);
+            try
+            {
+                processor.notifyShutdown();
+            }
+            catch (final Throwable ex)
+            {
+                // the processor is stopped regardless, keep going with the others
+            }
+        }
+
+        private void wakeUp()
+        {
+            final Thread thread = this.thread;
+            if (thread != null)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Implemented by a {@link DeadlineAware} handler that wants to see the events a {@link BatchEventProcessor} sheds
+ * because their deadline has passed, e.g. to reply with a timeout or to count them per type.  It is called on the
+ * processor thread in place of {@link EventHandler#onEvent(Object, long, boolean)} so should be cheap.
+ *
+ * <p>If <code>onExpired</code> throws, the exception handler is given the sequence and event as for
+ * <code>onEvent</code>.</p>
+ *
+ * @param <T> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public interface ExpiredEventHandler<T>
+{
+    /**
+     * Called for each event whose deadline has passed before it could be processed.
+     *
+     * @param event    that has expired.
+     * @param sequence of the event.
+     * @throws Exception if the handler wishes the exception to be handled further up the chain.
+     */
+    void onExpired(T event, long sequence) throws Exception;
+}
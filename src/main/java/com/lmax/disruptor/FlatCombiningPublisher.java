@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publisher shared by many threads that uses flat combining to claim sequences: each thread posts its translator
+ * and arguments to its own padded request slot, and whichever thread takes the combiner role claims one contiguous
+ * range for all posted requests and translates and publishes them in one pass.  Producers then contend on the
+ * combiner role rather than on the cursor, and the claim is made by one thread at a time, so a ring buffer used only
+ * through this publisher can be created with {@link com.lmax.disruptor.dsl.ProducerType#SINGLE}.
+ *
+ * <p>A thread takes a slot on its first publish and keeps it for the life of the publisher, so the publisher
+ * supports at most {@code maxThreads} distinct publishing threads.  Exceptions thrown by a translator are rethrown
+ * on the thread that posted the request; the event is still published, as with
+ * {@link RingBuffer#publishEvent(EventTranslator)}.</p>
+ *
+ * 扁平合并发布：各线程把请求放到自己的槽位，拿到combiner角色的线程一次性为所有请求申请连续区间并完成发布
+ *
+ * @param <E> type of the events in the ring buffer.
+ */
+public final class FlatCombiningPublisher<E>
+{
+    private static final int EMPTY = 0;
+    private static final int POSTED = 1;
+    private static final int DONE = 2;
+    private static final int SPIN_TRIES = 100;
+
+    private final RingBuffer<E> ringBuffer;
+    private final Slot[] slots;
+    private final AtomicInteger slotCount = new AtomicInteger();
+    private final Sequence combiner = new Sequence(0L);
+    private final ThreadLocal<Slot> threadSlot = new ThreadLocal<Slot>()
+    {
+        @Override
+        protected Slot initialValue()
+        {
+            final int index = slotCount.getAndIncrement();
+            if (index >= slots.length)
+            {
+                throw new IllegalStateException("More than " + slots.length + " threads have published");
+            }
+            final Slot slot = new Slot();
+            slots[index] = slot;
+            return slot;
+        }
+    };
+
+    FlatCombiningPublisher(final RingBuffer<E> ringBuffer, final int maxThreads)
+    {
+        if (maxThreads < 1 || maxThreads > ringBuffer.getBufferSize())
+        {
+            throw new IllegalArgumentException("maxThreads must be between 1 and the buffer size, got " + maxThreads);
+        }
+        this.ringBuffer = ringBuffer;
+        this.slots = new Slot[maxThreads];
+    }
+
+    /**
+     * Publish an event, waiting until it has been published by this or another thread.
+     *
+     * @param translator to translate the event with.
+     */
+    public void publishEvent(final EventTranslator<E> translator)
+    {
+        post(translator, null, null, null, 0);
+    }
+
+    /**
+     * Publish an event, waiting until it has been published by this or another thread.
+     *
+     * @param <A>        type of the argument.
+     * @param translator to translate the event with.
+     * @param arg0       passed to the translator.
+     */
+    public <A> void publishEvent(final EventTranslatorOneArg<E, A> translator, final A arg0)
+    {
+        post(translator, arg0, null, null, 1);
+    }
+
+    /**
+     * Publish an event, waiting until it has been published by this or another thread.
+     *
+     * @param <A>        type of the first argument.
+     * @param <B>        type of the second argument.
+     * @param translator to translate the event with.
+     * @param arg0       passed to the translator.
+     * @param arg1       passed to the translator.
+     */
+    public <A, B> void publishEvent(final EventTranslatorTwoArg<E, A, B> translator, final A arg0, final B arg1)
+    {
+        post(translator, arg0, arg1, null, 2);
+    }
+
+    /**
+     * Publish an event, waiting until it has been published by this or another thread.
+     *
+     * @param <A>        type of the first argument.
+     * @param <B>        type of the second argument.
+     * @param <C>        type of the third argument.
+     * @param translator to translate the event with.
+     * @param arg0       passed to the translator.
+     * @param arg1       passed to the translator.
+     * @param arg2       passed to the translator.
+     */
+    public <A, B, C> void publishEvent(
+        final EventTranslatorThreeArg<E, A, B, C> translator, final A arg0, final B arg1, final C arg2)
+    {
+        post(translator, arg0, arg1, arg2, 3);
+    }
+
+    private void post(final Object translator, final Object arg0, final Object arg1, final Object arg2, final int arity)
+    {
+        final Slot slot = threadSlot.get();
+        slot.translator = translator;
+        slot.arg0 = arg0;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.arity = arity;
+        slot.state = POSTED;
+
+        int counter = SPIN_TRIES;
+        while (slot.state != DONE)
+        {
+            if (combiner.get() == 0L && combiner.compareAndSet(0L, 1L))
+            {
+                try
+                {
+                    combine();
+                }
+                finally
+                {
+                    combiner.set(0L);
+                }
+            }
+            else if (counter > 0)
+            {
+                --counter;
+            }
+            else
+            {
+                // 其他线程正在合并，让出CPU
+                Thread.yield();
+            }
+        }
+
+        final Throwable failure = slot.failure;
+        slot.translator = null;
+        slot.arg0 = null;
+        slot.arg1 = null;
+        slot.arg2 = null;
+        slot.failure = null;
+        slot.state = EMPTY;
+
+        if (failure != null)
+        {
+            throwUnchecked(failure);
+        }
+    }
+
+    private void combine()
+    {
+        final Slot[] slots = this.slots;
+        final int count = Math.min(slotCount.get(), slots.length);
+
+        int n = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final Slot slot = slots[i];
+            if (slot != null && slot.state == POSTED)
+            {
+                n++;
+            }
+        }
+        if (n == 0)
+        {
+            return;
+        }
+
+        // 只有combiner会把POSTED改成DONE，所以第二遍扫描时POSTED的槽位至少有n个
+        final long hi = ringBuffer.next(n);
+        long sequence = hi - (n - 1);
+        try
+        {
+            for (int i = 0; i < count && sequence <= hi; i++)
+            {
+                final Slot slot = slots[i];
+                if (slot != null && slot.state == POSTED)
+                {
+                    translate(slot, sequence++);
+                }
+            }
+        }
+        finally
+        {
+            ringBuffer.publish(hi - (n - 1), hi);
+        }
+
+        for (int i = 0, done = 0; i < count && done < n; i++)
+        {
+            final Slot slot = slots[i];
+            if (slot != null && slot.state == POSTED && slot.claimed)
+            {
+                slot.claimed = false;
+                slot.state = DONE;
+                done++;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void translate(final Slot slot, final long sequence)
+    {
+        slot.claimed = true;
+        try
+        {
+            final E event = ringBuffer.get(sequence);
+            switch (slot.arity)
+            {
+                case 0:
+                    ((EventTranslator<E>) slot.translator).translateTo(event, sequence);
+                    break;
+                case 1:
+                    ((EventTranslatorOneArg<E, Object>) slot.translator).translateTo(event, sequence, slot.arg0);
+                    break;
+                case 2:
+                    ((EventTranslatorTwoArg<E, Object, Object>) slot.translator).translateTo(event, sequence, slot.arg0, slot.arg1);
+                    break;
+                default:
+                    ((EventTranslatorThreeArg<E, Object, Object, Object>) slot.translator)
+                        .translateTo(event, sequence, slot.arg0, slot.arg1, slot.arg2);
+                    break;
+            }
+        }
+        catch (final Throwable t)
+        {
+            slot.failure = t;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> void throwUnchecked(final Throwable t) throws T
+    {
+        throw (T) t;
+    }
+
+    private static class SlotLhsPadding
+    {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class SlotFields extends SlotLhsPadding
+    {
+        protected volatile int state = EMPTY;
+        protected int arity;
+        protected boolean claimed;
+        protected Object translator;
+        protected Object arg0;
+        protected Object arg1;
+        protected Object arg2;
+        protected Throwable failure;
+    }
+
+    private static final class Slot extends SlotFields
+    {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+    }
+}
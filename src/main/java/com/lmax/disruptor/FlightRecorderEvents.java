@@ -0,0 +1,316 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Java Flight Recorder events for the places the Disruptor stalls or spends its time.  The events are defined at
+ * runtime with <code>jdk.jfr.EventFactory</code> through method handles, so the library still builds and runs on a
+ * JDK without JFR, where every hook is a test of a static final null and is compiled away.
+ *
+ * <p>Each hook first asks JFR whether its event type is enabled in a running recording, so with no recording it
+ * costs one call to a getter.  Duration events are committed only when JFR's own threshold for the type is met,
+ * which defaults to the value below and can be changed in the recording settings like any other event, e.g.
+ * <code>com.lmax.disruptor.BatchProcessed#threshold=100 us</code>.</p>
+ *
+ * <table summary="events">
+ * <tr><th>Event</th><th>Default threshold</th><th>Recorded by</th></tr>
+ * <tr><td>com.lmax.disruptor.ProducerStall</td><td>100 us</td><td>a claim that waited for capacity</td></tr>
+ * <tr><td>com.lmax.disruptor.ConsumerWait</td><td>10 ms</td><td>a barrier wait that had to wait</td></tr>
+ * <tr><td>com.lmax.disruptor.BatchProcessed</td><td>1 ms</td><td>a batch in a {@link BatchEventProcessor}</td></tr>
+ * <tr><td>com.lmax.disruptor.HandlerException</td><td>none</td><td>an exception from a handler</td></tr>
+ * <tr><td>com.lmax.disruptor.ProcessorLifecycle</td><td>none</td><td>a processor starting and stopping</td></tr>
+ * </table>
+ *
+ * 通过反射定义JFR事件，没有JFR或没有录制时几乎没有开销
+ */
+final class FlightRecorderEvents
+{
+    private static final String PREFIX = "com.lmax.disruptor.";
+
+    private static final MethodHandle BEGIN;
+    private static final MethodHandle END;
+    private static final MethodHandle SHOULD_COMMIT;
+    private static final MethodHandle SET;
+    private static final MethodHandle COMMIT;
+
+    // 每种事件两个已绑定的句柄：EventType.isEnabled()和EventFactory.newEvent()
+    private static final MethodHandle PRODUCER_STALL_ENABLED;
+    private static final MethodHandle PRODUCER_STALL_NEW;
+    private static final MethodHandle CONSUMER_WAIT_ENABLED;
+    private static final MethodHandle CONSUMER_WAIT_NEW;
+    private static final MethodHandle BATCH_PROCESSED_ENABLED;
+    private static final MethodHandle BATCH_PROCESSED_NEW;
+    private static final MethodHandle HANDLER_EXCEPTION_ENABLED;
+    private static final MethodHandle HANDLER_EXCEPTION_NEW;
+    private static final MethodHandle PROCESSOR_LIFECYCLE_ENABLED;
+    private static final MethodHandle PROCESSOR_LIFECYCLE_NEW;
+
+    static
+    {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        MethodHandle[] eventHandles = new MethodHandle[5];
+        MethodHandle[] producerStall = new MethodHandle[2];
+        MethodHandle[] consumerWait = new MethodHandle[2];
+        MethodHandle[] batchProcessed = new MethodHandle[2];
+        MethodHandle[] handlerException = new MethodHandle[2];
+        MethodHandle[] processorLifecycle = new MethodHandle[2];
+        try
+        {
+            final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            eventHandles[0] = lookup.findVirtual(eventClass, "begin", methodType(void.class))
+                .asType(methodType(void.class, Object.class));
+            eventHandles[1] = lookup.findVirtual(eventClass, "end", methodType(void.class))
+                .asType(methodType(void.class, Object.class));
+            eventHandles[2] = lookup.findVirtual(eventClass, "shouldCommit", methodType(boolean.class))
+                .asType(methodType(boolean.class, Object.class));
+            eventHandles[3] = lookup.findVirtual(eventClass, "set", methodType(void.class, int.class, Object.class))
+                .asType(methodType(void.class, Object.class, int.class, Object.class));
+            eventHandles[4] = lookup.findVirtual(eventClass, "commit", methodType(void.class))
+                .asType(methodType(void.class, Object.class));
+
+            producerStall = define(
+                lookup, "ProducerStall", "Producer Stall", "100 us",
+                "bufferSize", int.class, "requested", int.class);
+            consumerWait = define(
+                lookup, "ConsumerWait", "Consumer Wait", "10 ms",
+                "sequence", long.class, "availableSequence", long.class);
+            batchProcessed = define(
+                lookup, "BatchProcessed", "Batch Processed", "1 ms",
+                "handler", String.class, "firstSequence", long.class, "batchSize", long.class);
+            handlerException = define(
+                lookup, "HandlerException", "Handler Exception", null,
+                "handler", String.class, "sequence", long.class, "exception", String.class);
+            processorLifecycle = define(
+                lookup, "ProcessorLifecycle", "Processor Lifecycle", null,
+                "handler", String.class, "state", String.class);
+        }
+        catch (final Throwable ignore)
+        {
+            // 没有JFR（或定义失败）时所有句柄为null，钩子什么都不做
+            eventHandles = new MethodHandle[5];
+            producerStall = new MethodHandle[2];
+            consumerWait = producerStall;
+            batchProcessed = producerStall;
+            handlerException = producerStall;
+            processorLifecycle = producerStall;
+        }
+
+        BEGIN = eventHandles[0];
+        END = eventHandles[1];
+        SHOULD_COMMIT = eventHandles[2];
+        SET = eventHandles[3];
+        COMMIT = eventHandles[4];
+        PRODUCER_STALL_ENABLED = producerStall[0];
+        PRODUCER_STALL_NEW = producerStall[1];
+        CONSUMER_WAIT_ENABLED = consumerWait[0];
+        CONSUMER_WAIT_NEW = consumerWait[1];
+        BATCH_PROCESSED_ENABLED = batchProcessed[0];
+        BATCH_PROCESSED_NEW = batchProcessed[1];
+        HANDLER_EXCEPTION_ENABLED = handlerException[0];
+        HANDLER_EXCEPTION_NEW = handlerException[1];
+        PROCESSOR_LIFECYCLE_ENABLED = processorLifecycle[0];
+        PROCESSOR_LIFECYCLE_NEW = processorLifecycle[1];
+    }
+
+    private FlightRecorderEvents()
+    {
+    }
+
+    /**
+     * @return true if JFR is available, whether or not it is recording.
+     */
+    static boolean isAvailable()
+    {
+        return null != PROCESSOR_LIFECYCLE_ENABLED;
+    }
+
+    /**
+     * Begin a producer stall, called when a claim finds the ring buffer full.
+     *
+     * @return the event to pass to {@link #commitProducerStall(Object, int, int)}, null if not recording it.
+     */
+    static Object beginProducerStall()
+    {
+        return begin(PRODUCER_STALL_ENABLED, PRODUCER_STALL_NEW);
+    }
+
+    static void commitProducerStall(final Object event, final int bufferSize, final int requested)
+    {
+        commit(event, bufferSize, requested, null);
+    }
+
+    /**
+     * Begin a consumer wait, called when a barrier wait finds nothing available yet.
+     *
+     * @return the event to pass to {@link #commitConsumerWait(Object, long, long)}, null if not recording it.
+     */
+    static Object beginConsumerWait()
+    {
+        return begin(CONSUMER_WAIT_ENABLED, CONSUMER_WAIT_NEW);
+    }
+
+    static void commitConsumerWait(final Object event, final long sequence, final long availableSequence)
+    {
+        commit(event, sequence, availableSequence, null);
+    }
+
+    /**
+     * Begin a batch, called when a processor's wait returns.
+     *
+     * @return the event to pass to {@link #commitBatchProcessed(Object, Object, long, long)}, null if not recording it.
+     */
+    static Object beginBatchProcessed()
+    {
+        return begin(BATCH_PROCESSED_ENABLED, BATCH_PROCESSED_NEW);
+    }
+
+    static void commitBatchProcessed(final Object event, final Object handler, final long firstSequence, final long batchSize)
+    {
+        commit(event, handler.getClass().getName(), firstSequence, batchSize);
+    }
+
+    /**
+     * Record an exception from a handler, not normally a hot path so no begin is needed.
+     */
+    static void handlerException(final Object handler, final long sequence, final Throwable ex)
+    {
+        final Object event = begin(HANDLER_EXCEPTION_ENABLED, HANDLER_EXCEPTION_NEW);
+        if (event != null)
+        {
+            commit(event, handler.getClass().getName(), sequence, String.valueOf(ex));
+        }
+    }
+
+    /**
+     * Record a processor starting or stopping.
+     */
+    static void processorLifecycle(final Object handler, final String state)
+    {
+        final Object event = begin(PROCESSOR_LIFECYCLE_ENABLED, PROCESSOR_LIFECYCLE_NEW);
+        if (event != null)
+        {
+            commit(event, handler.getClass().getName(), state, null);
+        }
+    }
+
+    private static Object begin(final MethodHandle isEnabled, final MethodHandle newEvent)
+    {
+        if (null == isEnabled)
+        {
+            return null;
+        }
+
+        try
+        {
+            if (!(boolean) isEnabled.invokeExact())
+            {
+                return null;
+            }
+            final Object event = (Object) newEvent.invokeExact();
+            BEGIN.invokeExact(event);
+            return event;
+        }
+        catch (final Throwable ignore)
+        {
+            return null;
+        }
+    }
+
+    private static void commit(final Object event, final Object value0, final Object value1, final Object value2)
+    {
+        try
+        {
+            END.invokeExact(event);
+            if ((boolean) SHOULD_COMMIT.invokeExact(event))
+            {
+                SET.invokeExact(event, 0, value0);
+                SET.invokeExact(event, 1, value1);
+                if (value2 != null)
+                {
+                    SET.invokeExact(event, 2, value2);
+                }
+                COMMIT.invokeExact(event);
+            }
+        }
+        catch (final Throwable ignore)
+        {
+        }
+    }
+
+    /**
+     * Define an event type with <code>jdk.jfr.EventFactory</code>.
+     *
+     * @return handles for the type's isEnabled() and for creating an event, both bound and taking no arguments.
+     */
+    private static MethodHandle[] define(
+        final MethodHandles.Lookup lookup,
+        final String name,
+        final String label,
+        final String threshold,
+        final Object... fields) throws Throwable
+    {
+        final Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+        final Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+        final Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+        final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+        final Constructor<?> newAnnotation = annotationElementClass.getConstructor(Class.class, Object.class);
+
+        final List<Object> annotations = new ArrayList<>();
+        annotations.add(newAnnotation.newInstance(annotation("jdk.jfr.Name"), PREFIX + name));
+        annotations.add(newAnnotation.newInstance(annotation("jdk.jfr.Label"), label));
+        annotations.add(newAnnotation.newInstance(annotation("jdk.jfr.Category"), new String[] {"Disruptor"}));
+        annotations.add(newAnnotation.newInstance(annotation("jdk.jfr.StackTrace"), Boolean.FALSE));
+        if (threshold != null)
+        {
+            annotations.add(newAnnotation.newInstance(annotation("jdk.jfr.Threshold"), threshold));
+        }
+
+        final Constructor<?> newField = valueDescriptorClass.getConstructor(Class.class, String.class);
+        final List<Object> descriptors = new ArrayList<>();
+        for (int i = 0; i < fields.length; i += 2)
+        {
+            descriptors.add(newField.newInstance(fields[i + 1], fields[i]));
+        }
+
+        final Object factory = eventFactoryClass.getMethod("create", List.class, List.class)
+            .invoke(null, annotations, descriptors);
+        final Object eventType = eventFactoryClass.getMethod("getEventType").invoke(factory);
+
+        final MethodHandle isEnabled = lookup.findVirtual(eventTypeClass, "isEnabled", methodType(boolean.class))
+            .bindTo(eventType);
+        final MethodHandle newEvent = lookup.findVirtual(eventFactoryClass, "newEvent", methodType(Class.forName("jdk.jfr.Event")))
+            .bindTo(factory)
+            .asType(methodType(Object.class));
+
+        return new MethodHandle[] {isEnabled, newEvent};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotation(final String className) throws ClassNotFoundException
+    {
+        return (Class<? extends Annotation>) Class.forName(className);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Runs several pipeline stages on one {@link EventProcessor}: each event is passed to the handlers in order, as if
+ * each handler ran on its own processor gated on the one before, without the event crossing threads between stages.
+ *
+ * <p>Every handler keeps its own {@link Sequence}, set once per batch as soon as that handler has processed the last
+ * event of the batch and before the next handler sees it, so that other stages can gate on, and monitoring can
+ * inspect, the progress of an individual handler.  An exception from one handler is reported once by the
+ * processor's {@link ExceptionHandler}, and the later handlers in the fused stage do not see that event.  As the
+ * processor treats the failed event as processed, the sequences of all the handlers move to it, so that stages gated
+ * on any one of them carry on.</p>
+ *
+ * <p>The handlers may be {@link LifecycleAware} and {@link BatchStartAware}.  Roles that the processor takes from its
+ * own handler, {@link SequenceReportingEventHandler}, {@link BatchEventHandler}, {@link DeadlineAware} and
+ * {@link TimeoutHandler}, cannot be honoured for a single member of the stage, and such handlers are rejected.</p>
+ *
+ * 将多个短小的handler放在同一个线程上执行，省去事件在线程间传递的开销
+ *
+ * @param <T> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public final class FusedEventHandler<T>
+    implements EventHandler<T>, LifecycleAware, BatchStartAware
+{
+    private final EventHandler<? super T>[] eventHandlers;
+    private final Sequence[] sequences;
+
+    /**
+     * Construct a fused stage of {@link EventHandler}s to be called in order.
+     *
+     * @param eventHandlers to be called in order.
+     * @throws IllegalArgumentException if a handler is a {@link SequenceReportingEventHandler},
+     *                                  {@link BatchEventHandler}, {@link DeadlineAware} or {@link TimeoutHandler}.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public FusedEventHandler(final EventHandler<? super T>... eventHandlers)
+    {
+        for (final EventHandler<? super T> eventHandler : eventHandlers)
+        {
+            if (eventHandler instanceof SequenceReportingEventHandler ||
+                eventHandler instanceof BatchEventHandler ||
+                eventHandler instanceof DeadlineAware ||
+                eventHandler instanceof TimeoutHandler)
+            {
+                throw new IllegalArgumentException("Handler cannot be fused: " + eventHandler);
+            }
+        }
+
+        this.eventHandlers = eventHandlers.clone();
+        this.sequences = new Sequence[eventHandlers.length];
+        for (int i = 0; i < sequences.length; i++)
+        {
+            sequences[i] = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        }
+    }
+
+    /**
+     * Get the {@link Sequence} tracking the progress of one of the fused handlers.
+     *
+     * @param index of the handler, in the order given to the constructor.
+     * @return the sequence of the last event processed by that handler.
+     */
+    public Sequence getSequence(final int index)
+    {
+        return sequences[index];
+    }
+
+    @Override
+    public void onEvent(final T event, final long sequence, final boolean endOfBatch)
+        throws Exception
+    {
+        try
+        {
+            for (int i = 0; i < eventHandlers.length; i++)
+            {
+                eventHandlers[i].onEvent(event, sequence, endOfBatch);
+                if (endOfBatch)
+                {
+                    sequences[i].set(sequence);
+                }
+            }
+        }
+        catch (final Throwable ex)
+        {
+            // 处理器会把这个事件当作已处理，所有handler的sequence都要跟上，否则依赖后面handler的消费者会卡住
+            for (final Sequence handlerSequence : sequences)
+            {
+                handlerSequence.set(sequence);
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public void onBatchStart(final long batchSize)
+    {
+        for (final EventHandler<? super T> eventHandler : eventHandlers)
+        {
+            if (eventHandler instanceof BatchStartAware)
+            {
+                ((BatchStartAware) eventHandler).onBatchStart(batchSize);
+            }
+        }
+    }
+
+    @Override
+    public void onStart()
+    {
+        for (final EventHandler<? super T> eventHandler : eventHandlers)
+        {
+            if (eventHandler instanceof LifecycleAware)
+            {
+                ((LifecycleAware) eventHandler).onStart();
+            }
+        }
+    }
+
+    @Override
+    public void onShutdown()
+    {
+        for (final EventHandler<? super T> eventHandler : eventHandlers)
+        {
+            if (eventHandler instanceof LifecycleAware)
+            {
+                ((LifecycleAware) eventHandler).onShutdown();
+            }
+        }
+    }
+}
@@ -15,10 +15,6 @@
  */
 package com.lmax.disruptor;
 
-import java.util.concurrent.locks.LockSupport;
-
-import sun.misc.Unsafe;
-
 import com.lmax.disruptor.util.Util;
 
 
@@ -32,12 +28,6 @@ import com.lmax.disruptor.util.Util;
  */
 public final class MultiProducerSequencer extends AbstractSequencer
 {
-    private static final Unsafe UNSAFE = Util.getUnsafe();
-    // 数组首元素地址
-    private static final long BASE = UNSAFE.arrayBaseOffset(int[].class);
-    // 步长
-    private static final long SCALE = UNSAFE.arrayIndexScale(int[].class);
-
     // gatingSequence的缓存，和之前的单一生产者的类似
     private final Sequence gatingSequenceCache = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
 
@@ -59,7 +49,19 @@ public final class MultiProducerSequencer extends AbstractSequencer
      */
     public MultiProducerSequencer(int bufferSize, final WaitStrategy waitStrategy)
     {
-        super(bufferSize, waitStrategy);
+        this(bufferSize, waitStrategy, new ParkingProducerWaitStrategy());
+    }
+
+    /**
+     * Construct a Sequencer with the selected wait strategies and buffer size.
+     *
+     * @param bufferSize           the size of the buffer that this will sequence over.
+     * @param waitStrategy         for those waiting on sequences.
+     * @param producerWaitStrategy for producers when the buffer is full.
+     */
+    public MultiProducerSequencer(int bufferSize, final WaitStrategy waitStrategy, final ProducerWaitStrategy producerWaitStrategy)
+    {
+        super(bufferSize, waitStrategy, producerWaitStrategy);
         availableBuffer = new int[bufferSize];
         indexMask = bufferSize - 1;
         // 对2取对数
@@ -133,6 +135,9 @@ public final class MultiProducerSequencer extends AbstractSequencer
 
         long current;
         long next;
+        int attempt = 0;
+        long startNanos = 0L;
+        Object stall = null;
 
         do
         {
@@ -149,12 +154,15 @@ public final class MultiProducerSequencer extends AbstractSequencer
                 // 重新获取最小的Sequence
                 long gatingSequence = Util.getMinimumSequence(gatingSequences, current);
 
-                // 如果空间不足，则唤醒消费者消费，并让出CPU
+                // 如果空间不足，则按生产者等待策略等待消费者消费
                 if (wrapPoint > gatingSequence)
                 {
-                    // hhp added.
-                    //waitStrategy.signalAllWhenBlocking();
-                    LockSupport.parkNanos(1); // TODO, should we spin based on the wait strategy?
+                    if (attempt == 0)
+                    {
+                        startNanos = System.nanoTime();
+                        stall = FlightRecorderEvents.beginProducerStall();
+                    }
+                    producerWaitStrategy.waitForCapacity(wrapPoint, gatingSequences, attempt++);
                     continue;
                 }
 
@@ -169,6 +177,13 @@ public final class MultiProducerSequencer extends AbstractSequencer
         }
         while (true);
 
+        if (attempt != 0)
+        {
+            producerUnblocked(startNanos, stall, n);
+        }
+
+        checkHighWatermark(next, gatingSequenceCache);
+
         // 返回最新的cursor值
         return next;
     }
@@ -211,6 +226,8 @@ public final class MultiProducerSequencer extends AbstractSequencer
         }
         while (!cursor.compareAndSet(current, next));
 
+        checkHighWatermark(next, gatingSequenceCache);
+
         return next;
     }
 
@@ -292,9 +309,7 @@ public final class MultiProducerSequencer extends AbstractSequencer
 
     private void setAvailableBufferValue(int index, int flag)
     {
-        // 每个数组值的地址：Base + Scale*下标
-        long bufferAddress = (index * SCALE) + BASE;
-        UNSAFE.putOrderedInt(availableBuffer, bufferAddress, flag);
+        AvailabilityFlags.set(availableBuffer, index, flag);
     }
 
     /**
@@ -305,9 +320,8 @@ public final class MultiProducerSequencer extends AbstractSequencer
     {
         int index = calculateIndex(sequence);
         int flag = calculateAvailabilityFlag(sequence);
-        long bufferAddress = (index * SCALE) + BASE;
         // 判断该sequence号应该在的槽的上面的flag是否与计算出来的值相等（即这个号还没被转一圈覆盖掉）
-        return UNSAFE.getIntVolatile(availableBuffer, bufferAddress) == flag;
+        return AvailabilityFlags.isSet(availableBuffer, index, flag);
     }
 
     @Override
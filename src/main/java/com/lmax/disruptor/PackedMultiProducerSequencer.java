@@ -0,0 +1,333 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+
+/**
+ * <p>Variant of {@link MultiProducerSequencer} that tracks published slots as one bit per slot packed into
+ * <code>long</code> words, so a consumer confirms up to 64 published slots with a single volatile read instead of
+ * one read per slot.  Suited to consumers that wake to large batches.</p>
+ *
+ * <p>The bit of a slot holds the parity of the lap (<code>sequence &gt;&gt;&gt; log2(bufferSize)</code>) it was last
+ * published for.  Parity is enough: a sequence can only be claimed once the sequence one lap behind it has been
+ * consumed, and so published, so the bit is either from the previous lap or the current one.  Only the producer
+ * that claimed a sequence changes its bit and it knows the bit's current value, so flipping it is an exact
+ * addition or subtraction of <code>1L &lt;&lt; bit</code> with no carry into other bits.  That makes
+ * {@link #publish(long)} a single <code>getAndAddLong</code> with no retry loop, and {@link #publish(long, long)}
+ * one per 64 slots.</p>
+ *
+ * <p>The trade off against {@link MultiProducerSequencer} is an atomic read-modify-write per publish in place of
+ * an ordered store, which costs more for single event publication.</p>
+ *
+ * <p>Note on {@link Sequencer#getCursor()}: as with {@link MultiProducerSequencer} the cursor is updated on
+ * {@link Sequencer#next()}, {@link Sequencer#getHighestPublishedSequence(long, long)} gives the highest readable
+ * sequence.</p>
+ */
+public final class PackedMultiProducerSequencer extends AbstractSequencer
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    private static final long BASE = UNSAFE.arrayBaseOffset(long[].class);
+    private static final long SCALE = UNSAFE.arrayIndexScale(long[].class);
+
+    private final Sequence gatingSequenceCache = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+
+    // 每个槽一位，存最近一次发布时所在圈数的奇偶性，64个槽共用一个long
+    private final long[] availableWords;
+    private final int indexMask;
+    private final int indexShift;
+
+    /**
+     * Construct a Sequencer with the selected wait strategy and buffer size.
+     *
+     * @param bufferSize   the size of the buffer that this will sequence over.
+     * @param waitStrategy for those waiting on sequences.
+     */
+    public PackedMultiProducerSequencer(int bufferSize, final WaitStrategy waitStrategy)
+    {
+        this(bufferSize, waitStrategy, new ParkingProducerWaitStrategy());
+    }
+
+    /**
+     * Construct a Sequencer with the selected wait strategies and buffer size.
+     *
+     * @param bufferSize           the size of the buffer that this will sequence over.
+     * @param waitStrategy         for those waiting on sequences.
+     * @param producerWaitStrategy for producers when the buffer is full.
+     */
+    public PackedMultiProducerSequencer(int bufferSize, final WaitStrategy waitStrategy, final ProducerWaitStrategy producerWaitStrategy)
+    {
+        super(bufferSize, waitStrategy, producerWaitStrategy);
+        availableWords = new long[(bufferSize + 63) >>> 6];
+        indexMask = bufferSize - 1;
+        indexShift = Util.log2(bufferSize);
+
+        // 初始状态相当于第-1圈已发布，奇偶位为1
+        for (int i = 0; i < availableWords.length; i++)
+        {
+            availableWords[i] = -1L;
+        }
+    }
+
+    /**
+     * @see Sequencer#hasAvailableCapacity(int)
+     */
+    @Override
+    public boolean hasAvailableCapacity(final int requiredCapacity)
+    {
+        return hasAvailableCapacity(gatingSequences, requiredCapacity, cursor.get());
+    }
+
+    private boolean hasAvailableCapacity(Sequence[] gatingSequences, final int requiredCapacity, long cursorValue)
+    {
+        long wrapPoint = (cursorValue + requiredCapacity) - bufferSize;
+        long cachedGatingSequence = gatingSequenceCache.get();
+
+        if (wrapPoint > cachedGatingSequence || cachedGatingSequence > cursorValue)
+        {
+            long minSequence = Util.getMinimumSequence(gatingSequences, cursorValue);
+            gatingSequenceCache.set(minSequence);
+
+            if (wrapPoint > minSequence)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @see Sequencer#claim(long)
+     */
+    @Override
+    public void claim(long sequence)
+    {
+        cursor.set(sequence);
+    }
+
+    /**
+     * @see Sequencer#next()
+     */
+    @Override
+    public long next()
+    {
+        return next(1);
+    }
+
+    /**
+     * @see Sequencer#next(int)
+     */
+    @Override
+    public long next(int n)
+    {
+        if (n < 1)
+        {
+            throw new IllegalArgumentException("n must be > 0");
+        }
+
+        long current;
+        long next;
+        int attempt = 0;
+        long startNanos = 0L;
+        Object stall = null;
+
+        do
+        {
+            current = cursor.get();
+            next = current + n;
+
+            long wrapPoint = next - bufferSize;
+            long cachedGatingSequence = gatingSequenceCache.get();
+
+            if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current)
+            {
+                long gatingSequence = Util.getMinimumSequence(gatingSequences, current);
+
+                if (wrapPoint > gatingSequence)
+                {
+                    if (attempt == 0)
+                    {
+                        startNanos = System.nanoTime();
+                        stall = FlightRecorderEvents.beginProducerStall();
+                    }
+                    producerWaitStrategy.waitForCapacity(wrapPoint, gatingSequences, attempt++);
+                    continue;
+                }
+
+                gatingSequenceCache.set(gatingSequence);
+            }
+            else if (cursor.compareAndSet(current, next))
+            {
+                break;
+            }
+        }
+        while (true);
+
+        if (attempt != 0)
+        {
+            producerUnblocked(startNanos, stall, n);
+        }
+
+        checkHighWatermark(next, gatingSequenceCache);
+
+        return next;
+    }
+
+    /**
+     * @see Sequencer#tryNext()
+     */
+    @Override
+    public long tryNext() throws InsufficientCapacityException
+    {
+        return tryNext(1);
+    }
+
+    /**
+     * @see Sequencer#tryNext(int)
+     */
+    @Override
+    public long tryNext(int n) throws InsufficientCapacityException
+    {
+        if (n < 1)
+        {
+            throw new IllegalArgumentException("n must be > 0");
+        }
+
+        long current;
+        long next;
+
+        do
+        {
+            current = cursor.get();
+            next = current + n;
+
+            if (!hasAvailableCapacity(gatingSequences, n, current))
+            {
+                throw InsufficientCapacityException.INSTANCE;
+            }
+        }
+        while (!cursor.compareAndSet(current, next));
+
+        checkHighWatermark(next, gatingSequenceCache);
+
+        return next;
+    }
+
+    /**
+     * @see Sequencer#remainingCapacity()
+     */
+    @Override
+    public long remainingCapacity()
+    {
+        long consumed = Util.getMinimumSequence(gatingSequences, cursor.get());
+        long produced = cursor.get();
+        return getBufferSize() - (produced - consumed);
+    }
+
+    /**
+     * @see Sequencer#publish(long)
+     */
+    @Override
+    public void publish(final long sequence)
+    {
+        final int index = calculateIndex(sequence);
+        UNSAFE.getAndAddLong(availableWords, wordAddress(index), flipDelta(sequence, 1L << index));
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    /**
+     * @see Sequencer#publish(long, long)
+     */
+    @Override
+    public void publish(long lo, long hi)
+    {
+        long sequence = lo;
+        while (sequence <= hi)
+        {
+            // 一次处理同一个word内且同一圈的连续槽
+            final int index = calculateIndex(sequence);
+            final int runEnd = Math.min(index | 63, indexMask);
+            final long count = Math.min(runEnd - index, hi - sequence) + 1;
+            final long bits = count == 64 ? -1L : ((1L << count) - 1) << index;
+
+            UNSAFE.getAndAddLong(availableWords, wordAddress(index), flipDelta(sequence, bits));
+            sequence += count;
+        }
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    /**
+     * @see Sequencer#isAvailable(long)
+     */
+    @Override
+    public boolean isAvailable(long sequence)
+    {
+        final int index = calculateIndex(sequence);
+        final long word = UNSAFE.getLongVolatile(availableWords, wordAddress(index));
+        return ((word >>> index) & 1L) == calculateParity(sequence);
+    }
+
+    @Override
+    public long getHighestPublishedSequence(long lowerBound, long availableSequence)
+    {
+        long sequence = lowerBound;
+        while (sequence <= availableSequence)
+        {
+            final int index = calculateIndex(sequence);
+            final int runEnd = Math.min(index | 63, indexMask);
+            final long count = Math.min(runEnd - index, availableSequence - sequence) + 1;
+
+            final long word = UNSAFE.getLongVolatile(availableWords, wordAddress(index));
+            // 将已发布的位统一成1，再数从index开始连续的1
+            final long published = calculateParity(sequence) == 1L ? word : ~word;
+            final int run = Long.numberOfTrailingZeros(~(published >>> index));
+
+            if (run < count)
+            {
+                return sequence + run - 1;
+            }
+            sequence += count;
+        }
+
+        return availableSequence;
+    }
+
+    private long flipDelta(final long sequence, final long bits)
+    {
+        // 新一圈奇偶为1时，这些位当前必为0，加上即置位；反之必为1，减去即清零，都不会产生进位
+        return calculateParity(sequence) == 1L ? bits : -bits;
+    }
+
+    private long calculateParity(final long sequence)
+    {
+        return (sequence >>> indexShift) & 1L;
+    }
+
+    private int calculateIndex(final long sequence)
+    {
+        return ((int) sequence) & indexMask;
+    }
+
+    private static long wordAddress(final int index)
+    {
+        return BASE + (index >>> 6) * SCALE;
+    }
+}
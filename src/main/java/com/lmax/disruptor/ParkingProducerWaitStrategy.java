@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parking strategy for producers waiting on a full ring buffer, parking for <code>minParkNanos</code> on the first
+ * attempt and doubling the park on every further attempt up to <code>maxParkNanos</code>.
+ * <p>
+ * The default, <code>new ParkingProducerWaitStrategy()</code>, parks for 1ns on every attempt, which is what the
+ * sequencers did before producer wait strategies were configurable.  On most platforms a park lasts at least the
+ * timer slack (around 50us on Linux) whatever is asked for, so a backoff mostly matters for long stalls, where it
+ * keeps a blocked producer from waking up thousands of times a second.
+ */
+public final class ParkingProducerWaitStrategy implements ProducerWaitStrategy
+{
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    public ParkingProducerWaitStrategy()
+    {
+        this(1L, 1L);
+    }
+
+    /**
+     * @param minParkNanos to park for on the first attempt.
+     * @param maxParkNanos the longest park, reached by doubling <code>minParkNanos</code>.
+     */
+    public ParkingProducerWaitStrategy(final long minParkNanos, final long maxParkNanos)
+    {
+        if (minParkNanos < 1 || maxParkNanos < minParkNanos)
+        {
+            throw new IllegalArgumentException("Require 0 < minParkNanos <= maxParkNanos");
+        }
+
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void waitForCapacity(final long wrapPoint, final Sequence[] gatingSequences, final int attempt)
+    {
+        LockSupport.parkNanos(parkNanos(attempt));
+    }
+
+    @Override
+    public void signalAllWhenBlocking()
+    {
+    }
+
+    long parkNanos(final int attempt)
+    {
+        // 左移到符号位就会溢出，尝试次数较大时直接使用最大值
+        if (attempt >= Long.numberOfLeadingZeros(minParkNanos))
+        {
+            return maxParkNanos;
+        }
+
+        return Math.min(minParkNanos << attempt, maxParkNanos);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lmax.disruptor.util.ThreadHints;
+
+/**
+ * <p>Off-heap byte log that stores a variable length payload alongside each sequence of a {@link RingBuffer}, so
+ * events can carry variable sized messages without allocating a <code>byte[]</code> per publish.</p>
+ *
+ * <p>A publisher reserves bytes for the sequence it has claimed, writes the payload and then publishes the sequence
+ * as usual.  Consumers read the payload through a flyweight {@link ByteBuffer} positioned over the bytes for the
+ * sequence.  Space is reclaimed implicitly: bytes become reusable once the slowest gating sequence of the ring buffer
+ * has passed the sequence that reserved them, there is no explicit free.</p>
+ *
+ * <pre>
+ * long sequence = ringBuffer.next();
+ * try {
+ *     ByteBuffer payload = arena.reserve(sequence, message.length);
+ *     payload.put(message);
+ *     ringBuffer.get(sequence).setType(type);
+ * } finally {
+ *     ringBuffer.publish(sequence);
+ * }
+ * </pre>
+ *
+ * <p>Reservations are made in sequence order, a publisher waits for the publisher of the previous sequence to
+ * reserve before it reserves.  This keeps the byte log in the same order as the ring buffer, which is what makes
+ * reclamation a single comparison.  As a consequence <b>every sequence published to the ring buffer must reserve</b>,
+ * use a length of 0 for events without a payload, otherwise later publishers will wait forever.</p>
+ *
+ * <p>Views returned by {@link #reserve(long, int)} and {@link #get(long)} are per thread and are repositioned by the
+ * next call on the same thread.  The payload starts at {@link ByteBuffer#position()} of the view, not at 0.</p>
+ *
+ * @param <E> the type of event stored in the ring buffer.
+ */
+public final class PayloadArena<E>
+{
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * Implementations translate data into an event and its payload.
+     *
+     * @param <E> the type of event stored in the ring buffer.
+     * @param <A> the type of the user supplied argument.
+     */
+    public interface Translator<E, A>
+    {
+        /**
+         * @param event    into which the data should be translated.
+         * @param sequence that is assigned to event.
+         * @param payload  view over the bytes reserved for this sequence, positioned at the start of the payload.
+         * @param arg0     the user specified argument to the translator.
+         */
+        void translateTo(E event, long sequence, ByteBuffer payload, A arg0);
+    }
+
+    private final RingBuffer<E> ringBuffer;
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int capacityMask;
+    private final int indexMask;
+    // 每个槽对应payload的逻辑起始偏移和长度，逻辑偏移单调递增，物理位置 = 偏移 & capacityMask
+    private final long[] slotOffsets;
+    private final int[] slotLengths;
+    // 最后一个完成预留的sequence，用来保证按sequence顺序预留
+    private final Sequence reservedSequence;
+    private final long initialSequence;
+    // 只有持有预留权的发布者读写，reservedSequence的volatile读写保证可见性
+    private long nextOffset;
+    private long cachedReleasedOffset;
+
+    private final ThreadLocal<ByteBuffer> views = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return buffer.duplicate().order(ByteOrder.nativeOrder());
+        }
+    };
+
+    /**
+     * Create an arena for <code>ringBuffer</code>.  Must be created before any sequence is claimed from the ring
+     * buffer that will need a payload.
+     *
+     * @param ringBuffer the payloads belong to.
+     * @param capacity   of the arena in bytes, must be a power of 2.  The largest single payload is
+     *                   <code>capacity</code> bytes.
+     * @throws IllegalArgumentException if capacity is less than 1 or not a power of 2
+     */
+    public PayloadArena(final RingBuffer<E> ringBuffer, final int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("capacity must not be less than 1");
+        }
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.capacity = capacity;
+        this.capacityMask = capacity - 1;
+        this.indexMask = ringBuffer.getBufferSize() - 1;
+        this.slotOffsets = new long[ringBuffer.getBufferSize()];
+        this.slotLengths = new int[ringBuffer.getBufferSize()];
+        this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        this.initialSequence = ringBuffer.getCursor();
+        this.reservedSequence = new Sequence(initialSequence);
+    }
+
+    /**
+     * Reserve <code>length</code> bytes for a sequence claimed from the ring buffer, waiting if necessary for
+     * consumers to release enough space.
+     *
+     * @param sequence claimed from the ring buffer and not yet published.
+     * @param length   of the payload in bytes, may be 0.
+     * @return a view positioned over the reserved bytes, limited to <code>length</code>.
+     * @throws IllegalArgumentException if length is negative or larger than the capacity of the arena.
+     */
+    public ByteBuffer reserve(final long sequence, final int length)
+    {
+        checkLength(length);
+
+        int spins = 0;
+        while (reservedSequence.get() != sequence - 1)
+        {
+            // 前一个sequence的发布者可能已被换出CPU，自旋一段时间后park让出CPU
+            if (++spins < SPIN_TRIES)
+            {
+                ThreadHints.onSpinWait();
+            }
+            else
+            {
+                LockSupport.parkNanos(1L);
+            }
+        }
+
+        long start = nextOffset;
+        if ((start & capacityMask) + length > capacity)
+        {
+            // 不跨越缓冲区末尾，剩余的尾部空间直接跳过
+            start = (start | capacityMask) + 1;
+        }
+        final long end = start + length;
+        // 跳过的尾部空间不属于任何sequence，只需等待已占用的部分 [released, nextOffset) 被释放
+        final long wrapPoint = Math.min(end - capacity, nextOffset);
+
+        if (wrapPoint > cachedReleasedOffset)
+        {
+            long releasedOffset;
+            while (wrapPoint > (releasedOffset = releasedOffset(sequence)))
+            {
+                LockSupport.parkNanos(1L);
+            }
+            cachedReleasedOffset = releasedOffset;
+        }
+
+        final int index = (int) sequence & indexMask;
+        slotOffsets[index] = start;
+        slotLengths[index] = length;
+        nextOffset = end;
+        reservedSequence.set(sequence);
+
+        return view(start, length);
+    }
+
+    /**
+     * Get the payload for a published sequence.  Only valid between waiting for the sequence on a
+     * {@link SequenceBarrier} and advancing past it.
+     *
+     * @param sequence of the event.
+     * @return a view positioned over the payload, limited to its length.
+     */
+    public ByteBuffer get(final long sequence)
+    {
+        final int index = (int) sequence & indexMask;
+        return view(slotOffsets[index], slotLengths[index]);
+    }
+
+    /**
+     * @param sequence of the event.
+     * @return the length of the payload for a published sequence.
+     */
+    public int getLength(final long sequence)
+    {
+        return slotLengths[(int) sequence & indexMask];
+    }
+
+    /**
+     * Claim the next sequence, reserve a payload and translate into both before publishing.
+     *
+     * @param translator   writing the event and its payload.
+     * @param length       of the payload in bytes.
+     * @param arg0         passed to the translator.
+     * @param <A>          type of the argument.
+     */
+    public <A> void publishEvent(final Translator<E, A> translator, final int length, final A arg0)
+    {
+        checkLength(length);
+
+        final long sequence = ringBuffer.next();
+        try
+        {
+            translator.translateTo(ringBuffer.get(sequence), sequence, reserve(sequence, length), arg0);
+        }
+        finally
+        {
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    /**
+     * @return the capacity of the arena in bytes.
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    private long releasedOffset(final long sequence)
+    {
+        final long minimumGatingSequence = Math.min(ringBuffer.getMinimumGatingSequence(), sequence - 1);
+        if (minimumGatingSequence <= initialSequence)
+        {
+            return 0;
+        }
+
+        // 所有小于sequence的槽都已完成预留，而覆盖该槽的sequence至少是当前sequence本身，所以这里读到的是最慢消费者所处的槽
+        final int index = (int) minimumGatingSequence & indexMask;
+        return slotOffsets[index] + slotLengths[index];
+    }
+
+    private ByteBuffer view(final long offset, final int length)
+    {
+        final int position = (int) offset & capacityMask;
+        final ByteBuffer view = views.get();
+        view.limit(position + length).position(position);
+        return view;
+    }
+
+    private void checkLength(final int length)
+    {
+        if (length < 0 || length > capacity)
+        {
+            throw new IllegalArgumentException("length must be between 0 and " + capacity);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PayloadArena{" +
+            "capacity=" + capacity +
+            ", reservedSequence=" + reservedSequence +
+            '}';
+    }
+}
@@ -52,6 +52,29 @@ final class ProcessingSequenceBarrier implements SequenceBarrier
         }
     }
 
+    private ProcessingSequenceBarrier(
+        final Sequencer sequencer,
+        final WaitStrategy waitStrategy,
+        final Sequence cursorSequence,
+        final Sequence dependentSequence)
+    {
+        this.sequencer = sequencer;
+        this.waitStrategy = waitStrategy;
+        this.cursorSequence = cursorSequence;
+        this.dependentSequence = dependentSequence;
+    }
+
+    /**
+     * Create a barrier over the same sequences with an alert of its own, so that one processor can be alerted
+     * without disturbing the others.
+     *
+     * @return the new barrier.
+     */
+    ProcessingSequenceBarrier newSibling()
+    {
+        return new ProcessingSequenceBarrier(sequencer, waitStrategy, cursorSequence, dependentSequence);
+    }
+
     @Override
     public long waitFor(final long sequence)
         throws AlertException, InterruptedException, TimeoutException
@@ -61,7 +84,14 @@ final class ProcessingSequenceBarrier implements SequenceBarrier
 
         // 通过等待策略获取下一个可消费的sequence，这个sequence需要大于sequence，小于cursorSequence和dependentSequence
         // 我们可以通过dependentSequence实现先后消费
+        // 只有确实需要等待时才开始JFR事件
+        final Object wait = (FlightRecorderEvents.isAvailable() && dependentSequence.get() < sequence) ?
+            FlightRecorderEvents.beginConsumerWait() : null;
         long availableSequence = waitStrategy.waitFor(sequence, cursorSequence, dependentSequence, this);
+        if (wait != null)
+        {
+            FlightRecorderEvents.commitConsumerWait(wait, sequence, availableSequence);
+        }
 
         // 等待可能被中断，所以检查availableSequence是否小于sequence
         if (availableSequence < sequence)
@@ -74,6 +104,28 @@ final class ProcessingSequenceBarrier implements SequenceBarrier
         return sequencer.getHighestPublishedSequence(sequence, availableSequence);
     }
 
+    /**
+     * Non-blocking form of {@link #waitFor(long)}, for processors that must not park their thread.
+     *
+     * @param sequence to check for.
+     * @return the highest sequence available to process, less than sequence if none is.
+     */
+    long getAvailableSequence(final long sequence)
+    {
+        final long availableSequence = dependentSequence.get();
+        if (availableSequence < sequence)
+        {
+            return availableSequence;
+        }
+
+        return sequencer.getHighestPublishedSequence(sequence, availableSequence);
+    }
+
+    Sequencer getSequencer()
+    {
+        return sequencer;
+    }
+
     // 获取当前cursorSequence（并没有什么用，就是为了监控）
     @Override
     public long getCursor()
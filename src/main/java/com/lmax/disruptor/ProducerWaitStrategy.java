@@ -0,0 +1,41 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Strategy employed by a producer when it claims sequences with {@link Sequencer#next(int)} and the ring buffer is
+ * full, the producer side counterpart of {@link WaitStrategy}.
+ *
+ * <p>The sequencer checks the gating sequences again each time {@link #waitForCapacity(long, Sequence[], int)}
+ * returns, so returning early is always safe.</p>
+ */
+public interface ProducerWaitStrategy
+{
+    /**
+     * Wait for the event processors to free capacity.
+     *
+     * @param wrapPoint       the sequence the slowest gating sequence must reach for the claim to succeed.
+     * @param gatingSequences the sequences gating the producer.
+     * @param attempt         the number of times the producer has already waited for this claim, starting at 0.
+     */
+    void waitForCapacity(long wrapPoint, Sequence[] gatingSequences, int attempt);
+
+    /**
+     * Implementations should signal the waiting producers that a gating sequence has advanced.
+     * {@link BatchEventProcessor} and {@link WorkProcessor} call this after advancing their sequence.
+     */
+    void signalAllWhenBlocking();
+}
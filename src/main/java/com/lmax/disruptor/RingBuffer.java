@@ -16,6 +16,9 @@
 package com.lmax.disruptor;
 
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import sun.misc.Unsafe;
 
 import com.lmax.disruptor.dsl.ProducerType;
@@ -35,6 +38,8 @@ abstract class RingBufferFields<E> extends RingBufferPad
     // 2^n 每个数组对象引用所占空间，这个n就是REF_ELEMENT_SHIFT
     private static final int REF_ELEMENT_SHIFT;
     private static final Unsafe UNSAFE = Util.getUnsafe();
+    // 16字节数组头 + 14 * 8字节 = 128字节，PADDED布局下每个event后面的填充对象
+    private static final int FILLER_LONGS = 14;
 
     // 一般现在的电脑CPU缓存行是64字节
     static
@@ -63,22 +68,36 @@ abstract class RingBufferFields<E> extends RingBufferPad
     }
 
     private final long indexMask;
+    // 槽号转换为entries偏移的位移，PADDED布局下每个槽占两个引用
+    private final int slotShift;
+    private final boolean padded;
+    private final boolean lazy;
+    // EAGER/PARALLEL + COMPACT：槽位已全部创建且连续存放，按原实现直接读取
+    private final boolean prefilledCompact;
     // 保存整个RingBuffer每个槽（entry或者slot）的Event对象
     // 这些对象只在RingBuffer初始化时被建立，之后就是修改这些对象（初始化Event和填充Event），并不会重新建立新的对象
     //================因为entries里的对象会被多线程频繁访问，但不会被修改（因为这个数组保存的是对象的具体应用，是不会变的）
     //================但是我们需要避免这些对象与可以被修改的其他对象读取到同一个缓存行，避免缓存行失效重新读取
     //================因此，需要对entries数组的开始和结尾部分进行缓存行的填充！具体应该是填充64字节？还是128字节？
     private final Object[] entries;
+    private final EventFactory<E> eventFactory;
+    private final SlotEventFactory<E> slotEventFactory;
     protected final int bufferSize;
     // 队列头，用来协调生产者向RingBuffer中填充数据。
     // 表示队列尾的Sequence并没有在RingBuffer中，而是由消费者维护。
     protected final Sequencer sequencer;
 
     // 包内可见的构造函数，用户不可用！
+    @SuppressWarnings("unchecked")
     RingBufferFields(
         EventFactory<E> eventFactory,
-        Sequencer sequencer)
+        Sequencer sequencer,
+        SlotAllocation slotAllocation,
+        SlotLayout slotLayout)
     {
+        this.eventFactory = eventFactory;
+        // 按槽号创建event的工厂（如堆外flyweight），与调用顺序和线程无关
+        this.slotEventFactory = (eventFactory instanceof SlotEventFactory) ? (SlotEventFactory<E>) eventFactory : null;
         this.sequencer = sequencer;
         this.bufferSize = sequencer.getBufferSize();
 
@@ -93,6 +112,10 @@ abstract class RingBufferFields<E> extends RingBufferPad
 
         // m % 2^n  <=>  m & (2^n - 1)
         this.indexMask = bufferSize - 1;
+        this.padded = slotLayout == SlotLayout.PADDED;
+        this.slotShift = REF_ELEMENT_SHIFT + (padded ? 1 : 0);
+        this.lazy = slotAllocation == SlotAllocation.LAZY;
+        this.prefilledCompact = !padded && !lazy;
         /**
          * 结构：缓存行填充，避免频繁访问的任一entry与另一被修改的无关变量写入同一缓存行
          * ----------------
@@ -105,25 +128,126 @@ abstract class RingBufferFields<E> extends RingBufferPad
          * *   Padding  * 128字节
          * -----------------
          */
-        this.entries = new Object[sequencer.getBufferSize() + 2 * BUFFER_PAD];
+        this.entries = new Object[(bufferSize << (slotShift - REF_ELEMENT_SHIFT)) + 2 * BUFFER_PAD];
         //利用eventFactory初始化RingBuffer的每个槽的event
-        fill(eventFactory);
+        switch (slotAllocation)
+        {
+            case EAGER:
+                fill(0, bufferSize);
+                break;
+            case PARALLEL:
+                ForkJoinPool.commonPool().invoke(new FillTask(0, bufferSize));
+                break;
+            case LAZY:
+                // 槽位保持为null，首次访问时再创建
+                break;
+            default:
+                throw new IllegalStateException(slotAllocation.toString());
+        }
+    }
+
+    private void fill(int from, int to)
+    {
+        final int stride = padded ? 2 : 1;
+        for (int i = from; i < to; i++)
+        {
+            final int index = BUFFER_PAD + i * stride;
+            entries[index] = newEvent(i);
+            if (padded)
+            {
+                entries[index + 1] = new long[FILLER_LONGS];
+            }
+        }
     }
 
-    private void fill(EventFactory<E> eventFactory)
+    /**
+     * Create the events of any slots that have not been accessed yet from the calling thread.
+     */
+    protected final void fillEmptySlots()
     {
-        for (int i = 0; i < bufferSize; i++)
+        for (long i = 0; i < bufferSize; i++)
         {
-            entries[BUFFER_PAD + i] = eventFactory.newInstance();
+            final long offset = REF_ARRAY_BASE + (i << slotShift);
+            if (UNSAFE.getObjectVolatile(entries, offset) == null)
+            {
+                allocate(offset, (int) i);
+            }
         }
     }
 
     @SuppressWarnings("unchecked")
     protected final E elementAt(long sequence)
     {
-        // 数组起始位置+ （槽数 << REF_ELEMENT_SHIFT   <==>   槽数*scale）
-        // （数组基址+数组头+引用偏移）
-        return (E) UNSAFE.getObject(entries, REF_ARRAY_BASE + ((sequence & indexMask) << REF_ELEMENT_SHIFT));
+        if (prefilledCompact)
+        {
+            // 数组起始位置+ （槽数 << REF_ELEMENT_SHIFT   <==>   槽数*scale）
+            // （数组基址+数组头+引用偏移）
+            return (E) UNSAFE.getObject(entries, REF_ARRAY_BASE + ((sequence & indexMask) << REF_ELEMENT_SHIFT));
+        }
+
+        return slotAt(sequence);
+    }
+
+    /**
+     * Element access for the PADDED layout and LAZY allocation, kept out of {@link #elementAt(long)} so the default
+     * layout reads the slot exactly as before.
+     */
+    @SuppressWarnings("unchecked")
+    private E slotAt(long sequence)
+    {
+        final long offset = REF_ARRAY_BASE + ((sequence & indexMask) << slotShift);
+        final Object event = UNSAFE.getObject(entries, offset);
+        // 只有LAZY模式下才会读到null
+        return (E) (event != null || !lazy ? event : allocate(offset, (int) (sequence & indexMask)));
+    }
+
+    private E newEvent(int slot)
+    {
+        return slotEventFactory != null ? slotEventFactory.newInstance(slot) : eventFactory.newInstance();
+    }
+
+    private Object allocate(long offset, int slot)
+    {
+        final Object event = newEvent(slot);
+        if (UNSAFE.compareAndSwapObject(entries, offset, null, event))
+        {
+            if (padded)
+            {
+                UNSAFE.putOrderedObject(entries, offset + (1L << REF_ELEMENT_SHIFT), new long[FILLER_LONGS]);
+            }
+            return event;
+        }
+
+        return UNSAFE.getObjectVolatile(entries, offset);
+    }
+
+    private final class FillTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 1 << 14;
+
+        private final int from;
+        private final int to;
+
+        private FillTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= THRESHOLD)
+            {
+                fill(from, to);
+            }
+            else
+            {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new FillTask(from, middle), new FillTask(middle, to));
+            }
+        }
     }
 }
 
@@ -159,7 +283,25 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         EventFactory<E> eventFactory,
         Sequencer sequencer)
     {
-        super(eventFactory, sequencer);
+        this(eventFactory, sequencer, SlotAllocation.EAGER, SlotLayout.COMPACT);
+    }
+
+    /**
+     * Construct a RingBuffer that creates its events as specified by the slot allocation.
+     *
+     * @param eventFactory   to newInstance entries for filling the RingBuffer
+     * @param sequencer      sequencer to handle the ordering of events moving through the RingBuffer.
+     * @param slotAllocation when and on which thread events are created.
+     * @param slotLayout     how events are laid out relative to each other.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     */
+    RingBuffer(
+        EventFactory<E> eventFactory,
+        Sequencer sequencer,
+        SlotAllocation slotAllocation,
+        SlotLayout slotLayout)
+    {
+        super(eventFactory, sequencer, slotAllocation, slotLayout);
     }
 
     /**
@@ -199,6 +341,28 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         return createMultiProducer(factory, bufferSize, new BlockingWaitStrategy());
     }
 
+    /**
+     * Create a new multiple producer RingBuffer that tracks published slots in packed words, for consumers that
+     * typically wake to large batches.
+     *
+     * @param <E> Class of the event stored in the ring buffer.
+     * @param factory      used to create the events within the ring buffer.
+     * @param bufferSize   number of elements to create within the ring buffer.
+     * @param waitStrategy used to determine how to wait for new elements to become available.
+     * @return a constructed ring buffer.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     * @see PackedMultiProducerSequencer
+     */
+    public static <E> RingBuffer<E> createPackedMultiProducer(
+        EventFactory<E> factory,
+        int bufferSize,
+        WaitStrategy waitStrategy)
+    {
+        PackedMultiProducerSequencer sequencer = new PackedMultiProducerSequencer(bufferSize, waitStrategy);
+
+        return new RingBuffer<E>(factory, sequencer);
+    }
+
     /**
      * Create a new single producer RingBuffer with the specified wait strategy.
      *
@@ -236,7 +400,7 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
     }
 
     /**
-     * Create a new Ring Buffer with the specified producer type (SINGLE or MULTI)
+     * Create a new Ring Buffer with the specified producer type (SINGLE, MULTI or MULTI_PACKED)
      * 用户组装一个RingBuffer需要如下元素：实现EventFactory的Event的工厂，实现Sequencer的生产者，等待策略waitStrategy还有bufferSize。
      *
      * @param <E> Class of the event stored in the ring buffer.
@@ -259,11 +423,131 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
                 return createSingleProducer(factory, bufferSize, waitStrategy);
             case MULTI:
                 return createMultiProducer(factory, bufferSize, waitStrategy);
+            case MULTI_PACKED:
+                return createPackedMultiProducer(factory, bufferSize, waitStrategy);
             default:
                 throw new IllegalStateException(producerType.toString());
         }
     }
 
+    /**
+     * Create a new Ring Buffer with the specified producer type, creating its events as specified by the slot
+     * allocation.  Use {@link SlotAllocation#PARALLEL} or {@link SlotAllocation#LAZY} to shorten the start up of
+     * very large ring buffers.
+     *
+     * @param <E> Class of the event stored in the ring buffer.
+     * @param producerType   producer type to use {@link ProducerType}.
+     * @param factory        used to create events within the ring buffer.
+     * @param bufferSize     number of elements to create within the ring buffer.
+     * @param waitStrategy   used to determine how to wait for new elements to become available.
+     * @param slotAllocation when and on which thread events are created.
+     * @return a constructed ring buffer.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     */
+    public static <E> RingBuffer<E> create(
+        ProducerType producerType,
+        EventFactory<E> factory,
+        int bufferSize,
+        WaitStrategy waitStrategy,
+        SlotAllocation slotAllocation)
+    {
+        return create(producerType, factory, bufferSize, waitStrategy, slotAllocation, SlotLayout.COMPACT);
+    }
+
+    /**
+     * Create a new Ring Buffer with the specified producer type, creating its events as specified by the slot
+     * allocation and laying them out as specified by the slot layout.  Use {@link SlotLayout#PADDED} for small
+     * events written and read concurrently by different threads.
+     *
+     * @param <E> Class of the event stored in the ring buffer.
+     * @param producerType   producer type to use {@link ProducerType}.
+     * @param factory        used to create events within the ring buffer.
+     * @param bufferSize     number of elements to create within the ring buffer.
+     * @param waitStrategy   used to determine how to wait for new elements to become available.
+     * @param slotAllocation when and on which thread events are created.
+     * @param slotLayout     how events are laid out relative to each other.
+     * @return a constructed ring buffer.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     */
+    public static <E> RingBuffer<E> create(
+        ProducerType producerType,
+        EventFactory<E> factory,
+        int bufferSize,
+        WaitStrategy waitStrategy,
+        SlotAllocation slotAllocation,
+        SlotLayout slotLayout)
+    {
+        return create(
+            producerType, factory, bufferSize, waitStrategy, new ParkingProducerWaitStrategy(), slotAllocation, slotLayout);
+    }
+
+    /**
+     * Create a new Ring Buffer with the specified producer type, whose producers wait on a full ring buffer as
+     * specified by the producer wait strategy.
+     *
+     * @param <E> Class of the event stored in the ring buffer.
+     * @param producerType         producer type to use {@link ProducerType}.
+     * @param factory              used to create events within the ring buffer.
+     * @param bufferSize           number of elements to create within the ring buffer.
+     * @param waitStrategy         used to determine how to wait for new elements to become available.
+     * @param producerWaitStrategy used to determine how producers wait for capacity when the ring buffer is full.
+     * @return a constructed ring buffer.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     */
+    public static <E> RingBuffer<E> create(
+        ProducerType producerType,
+        EventFactory<E> factory,
+        int bufferSize,
+        WaitStrategy waitStrategy,
+        ProducerWaitStrategy producerWaitStrategy)
+    {
+        return create(
+            producerType, factory, bufferSize, waitStrategy, producerWaitStrategy, SlotAllocation.EAGER, SlotLayout.COMPACT);
+    }
+
+    /**
+     * Create a new Ring Buffer with the specified producer type, producer wait strategy, slot allocation and slot
+     * layout.
+     *
+     * @param <E> Class of the event stored in the ring buffer.
+     * @param producerType         producer type to use {@link ProducerType}.
+     * @param factory              used to create events within the ring buffer.
+     * @param bufferSize           number of elements to create within the ring buffer.
+     * @param waitStrategy         used to determine how to wait for new elements to become available.
+     * @param producerWaitStrategy used to determine how producers wait for capacity when the ring buffer is full.
+     * @param slotAllocation       when and on which thread events are created.
+     * @param slotLayout           how events are laid out relative to each other.
+     * @return a constructed ring buffer.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     */
+    public static <E> RingBuffer<E> create(
+        ProducerType producerType,
+        EventFactory<E> factory,
+        int bufferSize,
+        WaitStrategy waitStrategy,
+        ProducerWaitStrategy producerWaitStrategy,
+        SlotAllocation slotAllocation,
+        SlotLayout slotLayout)
+    {
+        final Sequencer sequencer;
+        switch (producerType)
+        {
+            case SINGLE:
+                sequencer = new SingleProducerSequencer(bufferSize, waitStrategy, producerWaitStrategy);
+                break;
+            case MULTI:
+                sequencer = new MultiProducerSequencer(bufferSize, waitStrategy, producerWaitStrategy);
+                break;
+            case MULTI_PACKED:
+                sequencer = new PackedMultiProducerSequencer(bufferSize, waitStrategy, producerWaitStrategy);
+                break;
+            default:
+                throw new IllegalStateException(producerType.toString());
+        }
+
+        return new RingBuffer<E>(factory, sequencer, slotAllocation, slotLayout);
+    }
+
     /**
      * <p>Get the event for a given sequence in the RingBuffer.</p>
      *
@@ -385,6 +669,16 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         sequencer.publish(sequence);
     }
 
+    /**
+     * Create the events of all slots that have not been accessed yet, on the calling thread.  With
+     * {@link SlotAllocation#LAZY} this lets the thread that will use the events, e.g. the consumer, own their
+     * allocation before any event is published.  Has no effect on other slot allocations.
+     */
+    public void preallocate()
+    {
+        fillEmptySlots();
+    }
+
     /**
      * Sets the cursor to a specific sequence and returns the preallocated entry that is stored there.  This
      * can cause a data race and should only be done in controlled circumstances, e.g. during initialisation.
@@ -472,6 +766,31 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         return sequencer.newPoller(this, gatingSequences);
     }
 
+    /**
+     * Creates a publisher for one thread that stages events and publishes them in batches.
+     *
+     * @param batchSize      number of staged events that triggers a flush, at most the buffer size.
+     * @param maxLingerNanos how long the first staged event may wait for a flush, {@link Long#MAX_VALUE} for no limit.
+     * @return A publisher to be used by a single thread.
+     * @see CoalescingPublisher
+     */
+    public CoalescingPublisher<E> newCoalescingPublisher(final int batchSize, final long maxLingerNanos)
+    {
+        return new CoalescingPublisher<>(this, batchSize, maxLingerNanos);
+    }
+
+    /**
+     * Creates a publisher to be shared by many threads that claims sequences for all of them by flat combining.
+     *
+     * @param maxThreads number of distinct threads that may publish through it, at most the buffer size.
+     * @return A publisher that is safe to use from up to maxThreads threads.
+     * @see FlatCombiningPublisher
+     */
+    public FlatCombiningPublisher<E> newFlatCombiningPublisher(final int maxThreads)
+    {
+        return new FlatCombiningPublisher<>(this, maxThreads);
+    }
+
     /**
      * Get the current cursor value for the ring buffer.  The actual value received
      * will depend on the type of {@link Sequencer} that is being used.
@@ -957,6 +1276,71 @@ public final class RingBuffer<E> extends RingBufferFields<E> implements Cursored
         return sequencer.remainingCapacity();
     }
 
+    /**
+     * Get the number of claims that found the ring buffer full and had to wait for the event processors.
+     *
+     * @return the number of blocked claims, 0 if the sequencer does not record them.
+     */
+    public long getProducerBlockedCount()
+    {
+        return sequencer instanceof AbstractSequencer ? ((AbstractSequencer) sequencer).getProducerBlockedCount() : 0L;
+    }
+
+    /**
+     * Get the total time producers have spent waiting for capacity, summed over all producer threads.
+     *
+     * @return the blocked time in nanoseconds, 0 if the sequencer does not record it.
+     */
+    public long getProducerBlockedNanos()
+    {
+        return sequencer instanceof AbstractSequencer ? ((AbstractSequencer) sequencer).getProducerBlockedNanos() : 0L;
+    }
+
+    /**
+     * Set a listener to be told when the occupancy, the number of claimed events not yet processed by the slowest
+     * gating sequence, reaches the high watermark and when it then falls back to the low watermark.  Replaces any
+     * listener set before.
+     *
+     * <p>The high watermark is checked by producers on each claim against their cached gating sequence, so costs a
+     * comparison until the occupancy gets close.  The low watermark is checked by {@link BatchEventProcessor}s and
+     * {@link WorkProcessor}s as they advance, and only while above the high watermark; consumers using an
+     * {@link EventPoller} do not check it.</p>
+     *
+     * @param listener      to call on the producer and event processor threads.
+     * @param highWatermark occupancy at or above which {@link WatermarkListener#onHighWatermark(long)} is called.
+     * @param lowWatermark  occupancy at or below which {@link WatermarkListener#onLowWatermark(long)} is called.
+     * @throws IllegalArgumentException if not {@code 0 <= lowWatermark < highWatermark <= bufferSize}.
+     * @throws UnsupportedOperationException if the sequencer is not an {@link AbstractSequencer}.
+     */
+    public void setWatermarkListener(final WatermarkListener listener, final int highWatermark, final int lowWatermark)
+    {
+        if (listener == null)
+        {
+            throw new NullPointerException("listener");
+        }
+        abstractSequencer().setWatermarkListener(listener, highWatermark, lowWatermark);
+    }
+
+    /**
+     * Remove the listener set with {@link #setWatermarkListener(WatermarkListener, int, int)}, if any.
+     */
+    public void removeWatermarkListener()
+    {
+        if (sequencer instanceof AbstractSequencer)
+        {
+            ((AbstractSequencer) sequencer).setWatermarkListener(null, 0, 0);
+        }
+    }
+
+    private AbstractSequencer abstractSequencer()
+    {
+        if (!(sequencer instanceof AbstractSequencer))
+        {
+            throw new UnsupportedOperationException("Watermarks are not supported by " + sequencer.getClass().getName());
+        }
+        return (AbstractSequencer) sequencer;
+    }
+
     private void checkBounds(final EventTranslator<E>[] translators, final int batchStartsAt, final int batchSize)
     {
         checkBatchSizing(batchStartsAt, batchSize);
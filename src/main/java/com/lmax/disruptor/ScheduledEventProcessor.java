@@ -0,0 +1,224 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link EventProcessor} that does not own a thread.  Instead of blocking in a {@link WaitStrategy} it is polled
+ * by one of the threads of an {@link EventProcessorScheduler}, which processes a bounded batch of available events
+ * at a time and then moves on to its other processors.
+ *
+ * <p>The {@link EventHandler} sees the same contract as under a {@link BatchEventProcessor}: events in sequence order
+ * from a single thread, endOfBatch on the last event of each batch, {@link BatchStartAware} and
+ * {@link LifecycleAware} callbacks from the thread that processes its events, and exceptions reported to the
+ * {@link ExceptionHandler} before moving on to the next event.  Handlers that are {@link TimeoutHandler}, as the
+ * processor never waits, or {@link BatchEventHandler} or {@link DeadlineAware}, are not supported and rejected.</p>
+ *
+ * 不独占线程的处理器，由{@link EventProcessorScheduler}的线程轮询执行
+ *
+ * @param <T> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public final class ScheduledEventProcessor<T>
+    implements EventProcessor
+{
+    private static final int IDLE = 0;
+    private static final int HALTED = IDLE + 1;
+    private static final int RUNNING = HALTED + 1;
+
+    private final AtomicInteger running = new AtomicInteger(IDLE);
+    private ExceptionHandler<? super T> exceptionHandler = new FatalExceptionHandler();
+    private final EventProcessorScheduler scheduler;
+    private final DataProvider<T> dataProvider;
+    private final ProcessingSequenceBarrier sequenceBarrier;
+    private final EventHandler<? super T> eventHandler;
+    private final Sequence sequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+    private final BatchStartAware batchStartAware;
+    private final AbstractSequencer progressSignal;
+
+    ScheduledEventProcessor(
+        final EventProcessorScheduler scheduler,
+        final DataProvider<T> dataProvider,
+        final SequenceBarrier sequenceBarrier,
+        final EventHandler<? super T> eventHandler)
+    {
+        if (!(sequenceBarrier instanceof ProcessingSequenceBarrier))
+        {
+            throw new IllegalArgumentException("A scheduled processor needs a barrier created by its ring buffer");
+        }
+        if (eventHandler instanceof TimeoutHandler ||
+            eventHandler instanceof BatchEventHandler ||
+            eventHandler instanceof DeadlineAware)
+        {
+            throw new IllegalArgumentException("Handler is not supported by a scheduled processor: " + eventHandler);
+        }
+
+        this.scheduler = scheduler;
+        this.dataProvider = dataProvider;
+        this.sequenceBarrier = (ProcessingSequenceBarrier) sequenceBarrier;
+        this.eventHandler = eventHandler;
+
+        if (eventHandler instanceof SequenceReportingEventHandler)
+        {
+            ((SequenceReportingEventHandler<?>) eventHandler).setSequenceCallback(sequence);
+        }
+
+        batchStartAware = (eventHandler instanceof BatchStartAware) ? (BatchStartAware) eventHandler : null;
+        progressSignal = AbstractSequencer.progressSignalFor(sequenceBarrier);
+    }
+
+    @Override
+    public Sequence getSequence()
+    {
+        return sequence;
+    }
+
+    @Override
+    public void halt()
+    {
+        running.set(HALTED);
+        scheduler.wakeUp();
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running.get() != IDLE;
+    }
+
+    /**
+     * Set a new {@link ExceptionHandler} for handling exceptions propagated out of the {@link ScheduledEventProcessor}
+     *
+     * @param exceptionHandler to replace the existing exceptionHandler.
+     */
+    public void setExceptionHandler(final ExceptionHandler<? super T> exceptionHandler)
+    {
+        if (null == exceptionHandler)
+        {
+            throw new NullPointerException();
+        }
+
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Hand this processor to one of the threads of its scheduler and return immediately.  Events are processed on
+     * that thread until {@link #halt()} is called.  This allows the processor to be started like any other, for
+     * example by {@link com.lmax.disruptor.dsl.Disruptor#start()}, although the thread used to call this method
+     * is then not needed any more.
+     *
+     * It is ok to rerun this method after a halt() once {@link #isRunning()} returns false.
+     *
+     * @throws IllegalStateException if this processor is already running
+     */
+    @Override
+    public void run()
+    {
+        if (!running.compareAndSet(IDLE, RUNNING))
+        {
+            throw new IllegalStateException("Processor is already running");
+        }
+
+        scheduler.attach(this);
+    }
+
+    boolean isHalted()
+    {
+        return running.get() != RUNNING;
+    }
+
+    /**
+     * Process up to maxBatchSize available events, without waiting if there are none.
+     *
+     * @param maxBatchSize the maximum number of events to process.
+     * @return the number of events processed.
+     */
+    int processBatch(final int maxBatchSize)
+    {
+        final long nextSequence = sequence.get() + 1L;
+        final long availableSequence = sequenceBarrier.getAvailableSequence(nextSequence);
+        if (availableSequence < nextSequence)
+        {
+            return 0;
+        }
+
+        final long endSequence = Math.min(availableSequence, nextSequence + maxBatchSize - 1L);
+        if (batchStartAware != null)
+        {
+            batchStartAware.onBatchStart(endSequence - nextSequence + 1L);
+        }
+
+        for (long current = nextSequence; current <= endSequence; current++)
+        {
+            final T event = dataProvider.get(current);
+            try
+            {
+                eventHandler.onEvent(event, current, current == endSequence);
+            }
+            catch (final Throwable ex)
+            {
+                // 异常处理器再抛出异常时，处理器停在这个事件之前，由调度线程将其关闭
+                sequence.set(current - 1L);
+                exceptionHandler.handleEventException(ex, current, event);
+            }
+        }
+
+        sequence.set(endSequence);
+        if (progressSignal != null)
+        {
+            progressSignal.signalProgress();
+        }
+
+        return (int) (endSequence - nextSequence + 1L);
+    }
+
+    void notifyStart()
+    {
+        if (eventHandler instanceof LifecycleAware)
+        {
+            try
+            {
+                ((LifecycleAware) eventHandler).onStart();
+            }
+            catch (final Throwable ex)
+            {
+                exceptionHandler.handleOnStartException(ex);
+            }
+        }
+    }
+
+    void notifyShutdown()
+    {
+        try
+        {
+            if (eventHandler instanceof LifecycleAware)
+            {
+                try
+                {
+                    ((LifecycleAware) eventHandler).onShutdown();
+                }
+                catch (final Throwable ex)
+                {
+                    exceptionHandler.handleOnShutdownException(ex);
+                }
+            }
+        }
+        finally
+        {
+            running.set(IDLE);
+        }
+    }
+}
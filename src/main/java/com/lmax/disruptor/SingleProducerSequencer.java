@@ -15,8 +15,6 @@
  */
 package com.lmax.disruptor;
 
-import java.util.concurrent.locks.LockSupport;
-
 import com.lmax.disruptor.util.Util;
 
 abstract class SingleProducerSequencerPad extends AbstractSequencer
@@ -24,17 +22,17 @@ abstract class SingleProducerSequencerPad extends AbstractSequencer
     // 利用long冗余避免CPU的false sharing
     protected long p1, p2, p3, p4, p5, p6, p7;
 
-    SingleProducerSequencerPad(int bufferSize, WaitStrategy waitStrategy)
+    SingleProducerSequencerPad(int bufferSize, WaitStrategy waitStrategy, ProducerWaitStrategy producerWaitStrategy)
     {
-        super(bufferSize, waitStrategy);
+        super(bufferSize, waitStrategy, producerWaitStrategy);
     }
 }
 
 abstract class SingleProducerSequencerFields extends SingleProducerSequencerPad
 {
-    SingleProducerSequencerFields(int bufferSize, WaitStrategy waitStrategy)
+    SingleProducerSequencerFields(int bufferSize, WaitStrategy waitStrategy, ProducerWaitStrategy producerWaitStrategy)
     {
-        super(bufferSize, waitStrategy);
+        super(bufferSize, waitStrategy, producerWaitStrategy);
     }
 
     /**
@@ -66,7 +64,19 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
      */
     public SingleProducerSequencer(int bufferSize, WaitStrategy waitStrategy)
     {
-        super(bufferSize, waitStrategy);
+        this(bufferSize, waitStrategy, new ParkingProducerWaitStrategy());
+    }
+
+    /**
+     * Construct a Sequencer with the selected wait strategies and buffer size.
+     *
+     * @param bufferSize           the size of the buffer that this will sequence over.
+     * @param waitStrategy         for those waiting on sequences.
+     * @param producerWaitStrategy for the producer when the buffer is full.
+     */
+    public SingleProducerSequencer(int bufferSize, WaitStrategy waitStrategy, ProducerWaitStrategy producerWaitStrategy)
+    {
+        super(bufferSize, waitStrategy, producerWaitStrategy);
     }
 
     /**
@@ -144,13 +154,19 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
             cursor.setVolatile(nextValue);  // StoreLoad fence
 
             long minSequence;
-            // 只要wrapPoint大于最小的gatingSequences，那么不断唤醒消费者去消费，并利用LockSupport让出CPU，
+            // 只要wrapPoint大于最小的gatingSequences，就按生产者等待策略等待，
             // 直到wrapPoint不大于最小的gatingSequences
-            while (wrapPoint > (minSequence = Util.getMinimumSequence(gatingSequences, nextValue)))
+            if (wrapPoint > (minSequence = Util.getMinimumSequence(gatingSequences, nextValue)))
             {
-                // hhp add!
-                //waitStrategy.signalAllWhenBlocking();
-                LockSupport.parkNanos(1L); // TODO: Use waitStrategy to spin?
+                final long startNanos = System.nanoTime();
+                final Object stall = FlightRecorderEvents.beginProducerStall();
+                int attempt = 0;
+                do
+                {
+                    producerWaitStrategy.waitForCapacity(wrapPoint, gatingSequences, attempt++);
+                }
+                while (wrapPoint > (minSequence = Util.getMinimumSequence(gatingSequences, nextValue)));
+                producerUnblocked(startNanos, stall, n);
             }
 
             // 缓存最小的gatingSequences,记录当前消费最慢消费者的位置
@@ -158,6 +174,7 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
         }
 
         this.nextValue = nextSequence;
+        this.cachedValue = checkHighWatermark(nextSequence, this.cachedValue);
 
         return nextSequence;
     }
@@ -189,6 +206,7 @@ public final class SingleProducerSequencer extends SingleProducerSequencerFields
         }
 
         long nextSequence = this.nextValue += n;
+        this.cachedValue = checkHighWatermark(nextSequence, this.cachedValue);
 
         return nextSequence;
     }
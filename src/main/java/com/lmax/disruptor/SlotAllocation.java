@@ -0,0 +1,41 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Defines when and by which thread the events of a {@link RingBuffer} are created by its {@link EventFactory}.
+ */
+public enum SlotAllocation
+{
+    /**
+     * Create every event on the constructing thread before the RingBuffer is returned.
+     */
+    EAGER,
+
+    /**
+     * Create every event before the RingBuffer is returned, splitting the slots across the
+     * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.  The factory must be thread safe and must
+     * not depend on the order it is called in, a {@link SlotEventFactory} is given the slot instead.
+     */
+    PARALLEL,
+
+    /**
+     * Create the event of a slot the first time it is accessed, normally by the producer that first claims it, or
+     * ahead of time on a chosen thread with {@link RingBuffer#preallocate()}.  The factory must be thread safe and
+     * must not depend on the order it is called in, a {@link SlotEventFactory} is given the slot instead.
+     */
+    LAZY
+}
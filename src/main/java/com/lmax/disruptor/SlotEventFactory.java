@@ -0,0 +1,34 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * An {@link EventFactory} whose events depend on the slot they are created for, e.g. flyweights over a region of a
+ * shared buffer.  A {@link RingBuffer} calls {@link #newInstance(int)} with the index of the slot, in
+ * <code>[0, bufferSize)</code>, instead of {@link #newInstance()}, so the factory does not depend on the order or
+ * the thread it is called from and works with every {@link SlotAllocation}.  {@link #newInstance()} must still
+ * return a usable event, for the places that create events outside a ring buffer.
+ *
+ * @param <T> event implementation storing the data for sharing during exchange or parallel coordination of an event.
+ */
+public interface SlotEventFactory<T> extends EventFactory<T>
+{
+    /**
+     * @param slot index of the slot in the ring buffer the event is created for.
+     * @return the event for that slot.
+     */
+    T newInstance(int slot);
+}
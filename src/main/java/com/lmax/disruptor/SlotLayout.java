@@ -0,0 +1,36 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Defines how the events of a {@link RingBuffer} are laid out relative to each other on the heap.
+ */
+public enum SlotLayout
+{
+    /**
+     * Events are allocated back to back, so a small event shares cache lines with the events of its neighbouring
+     * slots.
+     */
+    COMPACT,
+
+    /**
+     * Each event is followed by a 128 byte filler allocated straight after it and held in the slot next to it, so a
+     * producer writing one slot does not invalidate the cache line a consumer is reading the previous slot from.
+     * Copying collectors trace the slots in order and so keep the filler between events, though the JVM does not
+     * guarantee it.  Costs the filler per slot and one more shift per access.
+     */
+    PADDED
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import sun.misc.Unsafe;
+
+import com.lmax.disruptor.util.Util;
+
+/**
+ * <p>Blocking strategy that wakes only the {@link EventProcessor}s whose wait is over, for pipelines at low event
+ * rates where most stages are idle most of the time.</p>
+ *
+ * <p>{@link BlockingWaitStrategy} blocks on the cursor only, wakes every waiting thread on every publication and then
+ * busy spins on the dependent sequence, so the stages of a <code>then()</code> chain burn a core each while the
+ * stages ahead of them work.  Here each waiting thread registers the sequence it waits for and the sequence it
+ * depends on, and parks until that dependent sequence reaches it.  {@link #signalAllWhenBlocking()} unparks only the
+ * threads whose dependent sequence has reached their target, or whose barrier has been alerted.  A parked thread
+ * rechecks at least once a millisecond, so a stage that advances without signalling delays its followers but never
+ * stalls them.</p>
+ *
+ * <p>Publishers signal as with any blocking strategy.  {@link BatchEventProcessor} and {@link WorkProcessor} signal
+ * after advancing their own sequence when their barrier uses this strategy, so a stage wakes when the stage before
+ * it finishes the event rather than when the event is published.</p>
+ */
+public final class TargetedBlockingWaitStrategy implements WaitStrategy
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+    private static final Waiter[] NO_WAITERS = new Waiter[0];
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Object registrationLock = new Object();
+    private final ThreadLocal<Waiter> localWaiter = new ThreadLocal<>();
+    private volatile Waiter[] waiters = NO_WAITERS;
+
+    @Override
+    public long waitFor(long sequence, Sequence cursorSequence, Sequence dependentSequence, SequenceBarrier barrier)
+        throws AlertException, InterruptedException
+    {
+        long availableSequence = dependentSequence.get();
+        if (availableSequence >= sequence)
+        {
+            return availableSequence;
+        }
+
+        final Waiter waiter = waiter();
+        waiter.dependentSequence = dependentSequence;
+        waiter.barrier = barrier;
+        waiter.sequence = sequence;
+        waiter.waiting = true;
+        // store/load屏障，与signalAllWhenBlocking中的fullFence配对，保证不会丢失唤醒：
+        // 依赖序号的读取可能只是getAcquire，不能越过上面的写
+        UNSAFE.fullFence();
+        try
+        {
+            while ((availableSequence = dependentSequence.get()) < sequence)
+            {
+                checkAlert(barrier);
+                // 有界的park作为兜底，即使错过了唤醒也会重新检查
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                if (Thread.interrupted())
+                {
+                    throw new InterruptedException();
+                }
+            }
+        }
+        finally
+        {
+            waiter.waiting = false;
+        }
+
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking()
+    {
+        // 发布方对sequence是有序写(store/store)，这里需要store/load屏障，才能看到刚开始等待的线程
+        UNSAFE.fullFence();
+
+        for (final Waiter waiter : waiters)
+        {
+            if (waiter.waiting &&
+                (waiter.dependentSequence.get() >= waiter.sequence || waiter.barrier.isAlerted()))
+            {
+                LockSupport.unpark(waiter.thread);
+            }
+        }
+    }
+
+    /**
+     * @return the number of threads registered with this strategy, which stay registered until their barrier is
+     * alerted while they wait.
+     */
+    public int getRegisteredWaiterCount()
+    {
+        return waiters.length;
+    }
+
+    private void checkAlert(final SequenceBarrier barrier) throws AlertException
+    {
+        if (barrier.isAlerted())
+        {
+            // 处理器停止时注销，线程可能不会再回来等待
+            unregister(localWaiter.get());
+            localWaiter.remove();
+            throw AlertException.INSTANCE;
+        }
+    }
+
+    private Waiter waiter()
+    {
+        Waiter waiter = localWaiter.get();
+        if (waiter == null)
+        {
+            waiter = new Waiter(Thread.currentThread());
+            localWaiter.set(waiter);
+            register(waiter);
+        }
+
+        return waiter;
+    }
+
+    private void register(final Waiter waiter)
+    {
+        synchronized (registrationLock)
+        {
+            final Waiter[] current = waiters;
+            final Waiter[] updated = new Waiter[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = waiter;
+            waiters = updated;
+        }
+    }
+
+    private void unregister(final Waiter waiter)
+    {
+        synchronized (registrationLock)
+        {
+            final Waiter[] current = waiters;
+            for (int i = 0; i < current.length; i++)
+            {
+                if (current[i] == waiter)
+                {
+                    final Waiter[] updated = new Waiter[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    waiters = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TargetedBlockingWaitStrategy{" +
+            "waiters=" + waiters.length +
+            '}';
+    }
+
+    private static final class Waiter
+    {
+        private final Thread thread;
+        private Sequence dependentSequence;
+        private SequenceBarrier barrier;
+        private long sequence;
+        private volatile boolean waiting;
+
+        private Waiter(final Thread thread)
+        {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.util.Util;
+import sun.misc.Unsafe;
+
+/**
+ * High/low watermark state of a sequencer.  The high watermark is checked by producers against their cached
+ * minimum gating sequence, so the gating sequences are only scanned when that cached value suggests the high
+ * watermark may have been reached.  The low watermark is only checked, by the event processors as they advance,
+ * while above the high watermark.
+ *
+ * 高水位由生产者在申请sequence时检查，低水位由消费者推进时检查，状态切换和回调在锁内完成，保证回调交替出现
+ */
+final class Watermark
+{
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+
+    private final WatermarkListener listener;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private volatile boolean aboveHigh;
+
+    Watermark(final WatermarkListener listener, final int highWatermark, final int lowWatermark)
+    {
+        this.listener = listener;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    /**
+     * @param nextSequence         the highest sequence just claimed.
+     * @param cachedGatingSequence the producer's cached minimum gating sequence.
+     * @param gatingSequences      to scan if the cached value is not conclusive.
+     * @return the minimum gating sequence if it had to be read, otherwise the cached value.
+     */
+    long checkHigh(final long nextSequence, final long cachedGatingSequence, final Sequence[] gatingSequences)
+    {
+        if (aboveHigh || nextSequence - cachedGatingSequence < highWatermark)
+        {
+            return cachedGatingSequence;
+        }
+
+        final long minSequence = Util.getMinimumSequence(gatingSequences, nextSequence);
+        final long occupancy = nextSequence - minSequence;
+        if (occupancy >= highWatermark)
+        {
+            synchronized (this)
+            {
+                if (!aboveHigh)
+                {
+                    aboveHigh = true;
+                    listener.onHighWatermark(occupancy);
+                }
+            }
+        }
+
+        return minSequence;
+    }
+
+    void checkLow(final Sequence cursor, final Sequence[] gatingSequences)
+    {
+        if (!aboveHigh)
+        {
+            return;
+        }
+
+        // 消费者用lazySet推进sequence，这里需要StoreLoad屏障，否则多个消费者可能都读到对方旧的sequence而错过低水位
+        UNSAFE.fullFence();
+        if (occupancy(cursor, gatingSequences) > lowWatermark)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            final long occupancy = occupancy(cursor, gatingSequences);
+            if (aboveHigh && occupancy <= lowWatermark)
+            {
+                aboveHigh = false;
+                listener.onLowWatermark(occupancy);
+            }
+        }
+    }
+
+    boolean isAboveHigh()
+    {
+        return aboveHigh;
+    }
+
+    private static long occupancy(final Sequence cursor, final Sequence[] gatingSequences)
+    {
+        final long cursorValue = cursor.get();
+        return cursorValue - Util.getMinimumSequence(gatingSequences, cursorValue);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Callback for ring buffer occupancy crossing the watermarks set with
+ * {@link RingBuffer#setWatermarkListener(WatermarkListener, int, int)}, so that producers fed from the network can
+ * stop reading before the ring buffer is full and resume once the event processors have caught up.
+ *
+ * <p>The two callbacks always alternate, starting with {@link #onHighWatermark(long)}, and are never called
+ * concurrently.  They are called on the thread that noticed the crossing, so must be quick and must not throw.</p>
+ *
+ * 水位回调，用于在RingBuffer被填满之前让上游停止读取（例如TCP背压）
+ */
+public interface WatermarkListener
+{
+    /**
+     * Called on a producer thread when a claim takes the occupancy to the high watermark or above.
+     *
+     * @param occupancy number of claimed events not yet processed by the slowest event processor.
+     */
+    void onHighWatermark(long occupancy);
+
+    /**
+     * Called on an event processor thread when, after the high watermark, the occupancy has fallen to the low
+     * watermark or below.
+     *
+     * @param occupancy number of claimed events not yet processed by the slowest event processor.
+     */
+    void onLowWatermark(long occupancy);
+}
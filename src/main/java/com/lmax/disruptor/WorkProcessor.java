@@ -31,12 +31,14 @@ public final class WorkProcessor<T>
     implements EventProcessor
 {
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean retiring;
     private final Sequence sequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
     private final RingBuffer<T> ringBuffer;
     private final SequenceBarrier sequenceBarrier;
     private final WorkHandler<? super T> workHandler;
     private final ExceptionHandler<? super T> exceptionHandler;
     private final Sequence workSequence;
+    private final CompletionSequence completionSequence;
 
     private final EventReleaser eventReleaser = new EventReleaser()
     {
@@ -48,6 +50,7 @@ public final class WorkProcessor<T>
     };
 
     private final TimeoutHandler timeoutHandler;
+    private final AbstractSequencer progressSignal;
 
     /**
      * Construct a {@link WorkProcessor}.
@@ -65,12 +68,24 @@ public final class WorkProcessor<T>
         final WorkHandler<? super T> workHandler,
         final ExceptionHandler<? super T> exceptionHandler,
         final Sequence workSequence)
+    {
+        this(ringBuffer, sequenceBarrier, workHandler, exceptionHandler, workSequence, null);
+    }
+
+    WorkProcessor(
+        final RingBuffer<T> ringBuffer,
+        final SequenceBarrier sequenceBarrier,
+        final WorkHandler<? super T> workHandler,
+        final ExceptionHandler<? super T> exceptionHandler,
+        final Sequence workSequence,
+        final CompletionSequence completionSequence)
     {
         this.ringBuffer = ringBuffer;
         this.sequenceBarrier = sequenceBarrier;
         this.workHandler = workHandler;
         this.exceptionHandler = exceptionHandler;
         this.workSequence = workSequence;
+        this.completionSequence = completionSequence;
 
         if (this.workHandler instanceof EventReleaseAware)
         {
@@ -78,6 +93,7 @@ public final class WorkProcessor<T>
         }
 
         timeoutHandler = (workHandler instanceof TimeoutHandler) ? (TimeoutHandler) workHandler : null;
+        progressSignal = AbstractSequencer.progressSignalFor(sequenceBarrier);
     }
 
     @Override
@@ -99,6 +115,19 @@ public final class WorkProcessor<T>
         return running.get();
     }
 
+    /**
+     * Stop this processor without leaving an event unprocessed.  A processor busy with an event stops before
+     * claiming the next one.  A processor waiting for the event it has claimed is alerted and gives the claim back
+     * to the work sequence if no other processor has claimed a later sequence since, otherwise it stops once that
+     * event has been processed.  The processor is alerted through its {@link SequenceBarrier}, which must therefore
+     * not be shared with other processors.
+     */
+    void retire()
+    {
+        retiring = true;
+        sequenceBarrier.alert();
+    }
+
     /**
      * It is ok to have another thread re-run this method after a halt().
      *
@@ -125,6 +154,11 @@ public final class WorkProcessor<T>
             {
                 if (processedSequence)
                 {
+                    // 退役的worker在申请下一个sequence之前退出，不会丢下已申请但未处理的事件
+                    if (retiring)
+                    {
+                        break;
+                    }
                     processedSequence = false;
                     // 获取下一个可以消费的Sequence
                     do
@@ -135,6 +169,11 @@ public final class WorkProcessor<T>
                     // 多个WorkProcessor之间，如果共享一个workSequence，那么，可以实现互斥消费，因为只有一个线程可以CAS更新成功
                     // 先抢占到下一个，当前workSequence在nextSequence上
                     while (!workSequence.compareAndSet(nextSequence - 1L, nextSequence));
+
+                    if (progressSignal != null)
+                    {
+                        progressSignal.signalProgress();
+                    }
                 }
 
                 // 判断当前可消费的sequence是否大于nextSequence，如果大于，则进行消费处理（此时光标还在nextSequence上）
@@ -143,6 +182,7 @@ public final class WorkProcessor<T>
                     event = ringBuffer.get(nextSequence);
                     workHandler.onEvent(event);
                     processedSequence = true;
+                    notifyCompleted(nextSequence);
                 }
                 else
                 {
@@ -159,12 +199,31 @@ public final class WorkProcessor<T>
                 {
                     break;
                 }
+                if (retiring && !processedSequence)
+                {
+                    // 退役时还在等待已申请的sequence：若之后没有其他worker申请过，归还给workSequence后退出
+                    if (workSequence.compareAndSet(nextSequence, nextSequence - 1L))
+                    {
+                        break;
+                    }
+                    // 否则继续等待并处理这个事件，处理完后在申请下一个之前退出
+                    sequenceBarrier.clearAlert();
+                    if (!running.get())
+                    {
+                        break;
+                    }
+                }
             }
             catch (final Throwable ex)
             {
                 // handle, mark as processed, unless the exception handler threw an exception
                 exceptionHandler.handleEventException(ex, nextSequence, event);
                 processedSequence = true;
+                // 只有事件确实交给了handler才算完成，waitFor抛出的异常不能让后续消费者越过未发布的事件
+                if (cachedAvailableSequence >= nextSequence)
+                {
+                    notifyCompleted(nextSequence);
+                }
             }
         }
 
@@ -173,6 +232,14 @@ public final class WorkProcessor<T>
         running.set(false);
     }
 
+    private void notifyCompleted(final long completedSequence)
+    {
+        if (completionSequence != null)
+        {
+            completionSequence.complete(completedSequence);
+        }
+    }
+
     private void notifyTimeout(final long availableSequence)
     {
         try
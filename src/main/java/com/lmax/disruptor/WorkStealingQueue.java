@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+/**
+ * Bounded queue of ring buffer sequences owned by one worker of a {@link WorkStealingWorkerPool}.  A single
+ * dispatcher thread offers at the tail, and the owning worker and any thieves take batches from the head with a CAS
+ * on this queue's own head, so workers only contend with each other when one of them is stealing.
+ *
+ * 单生产者（dispatcher）写入tail，owner和窃取者都从head按批CAS领取
+ */
+final class WorkStealingQueue
+{
+    private final long[] entries;
+    private final int mask;
+    private final Sequence head = new Sequence(0L);
+    private final Sequence tail = new Sequence(0L);
+    // 只由dispatcher线程读写
+    private long cachedHead;
+
+    WorkStealingQueue(final int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        }
+        entries = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Add a sequence at the tail, must only be called by the dispatcher thread.
+     *
+     * @param value the sequence to add.
+     * @return false if the queue is full.
+     */
+    boolean offer(final long value)
+    {
+        final long t = tail.get();
+        if (t - cachedHead >= entries.length)
+        {
+            cachedHead = head.get();
+            if (t - cachedHead >= entries.length)
+            {
+                return false;
+            }
+        }
+
+        entries[(int) t & mask] = value;
+        tail.set(t + 1);
+        return true;
+    }
+
+    /**
+     * Take up to max sequences from the head, for the owning worker.
+     *
+     * @param into array to copy the taken sequences to.
+     * @param max  the most sequences to take.
+     * @return the number of sequences taken.
+     */
+    int take(final long[] into, final int max)
+    {
+        return takeFromHead(into, max, false);
+    }
+
+    /**
+     * Take half the queued sequences, rounded down and up to max, from the head, for a worker that has run out of
+     * its own.  A single queued sequence is left for the owner, which is about to take it unless it is busy.
+     *
+     * @param into array to copy the stolen sequences to.
+     * @param max  the most sequences to steal.
+     * @return the number of sequences stolen.
+     */
+    int steal(final long[] into, final int max)
+    {
+        return takeFromHead(into, max, true);
+    }
+
+    /**
+     * Drop the queued sequences, must only be called while no dispatcher or worker is using the queue.
+     */
+    void clear()
+    {
+        final long t = tail.get();
+        head.set(t);
+        cachedHead = t;
+    }
+
+    int size()
+    {
+        return (int) (tail.get() - head.get());
+    }
+
+    private int takeFromHead(final long[] into, final int max, final boolean half)
+    {
+        while (true)
+        {
+            final long h = head.get();
+            final long available = tail.get() - h;
+            final int n = (int) Math.min(max, half ? available >> 1 : available);
+            if (n <= 0)
+            {
+                return 0;
+            }
+
+            // 先读出再CAS：槽位只有在head越过之后才会被覆盖，那样CAS会失败
+            for (int i = 0; i < n; i++)
+            {
+                into[i] = entries[(int) (h + i) & mask];
+            }
+            if (head.compareAndSet(h, h + n))
+            {
+                return n;
+            }
+        }
+    }
+}
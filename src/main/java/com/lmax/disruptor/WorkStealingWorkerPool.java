@@ -0,0 +1,394 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Alternative to {@link WorkerPool} in which workers do not contend on a shared work sequence.  A dispatcher thread
+ * waits on the {@link SequenceBarrier} and hands each available sequence to one worker's own queue, either round
+ * robin or by a hash of the event, and each worker takes batches from its own queue.  A worker that runs out of
+ * work steals half of the queue of another worker, so uneven event costs are absorbed without a CAS per event on a
+ * shared sequence.  A worker only steals from a queue holding at least two events, so an owner that is keeping up is
+ * never robbed of the event it is about to take, but one event may wait behind an owner that is stuck on a slow one.
+ *
+ * <p>Workers complete events out of order, so like an ordered {@link WorkerPool} the pool exposes a single completion
+ * {@link Sequence} from {@link #getWorkerSequences()} that only advances over contiguously processed events.  With a
+ * {@link KeyHasher} events with the same key go to the same worker, but may still be stolen by another when that worker
+ * falls behind, so it gives locality but not per key ordering.</p>
+ *
+ * 每个worker有自己的队列，由dispatcher分发，空闲的worker从其他worker的队列中窃取一半（至少有两个时才窃取）
+ *
+ * @param <T> event to be processed by a pool of workers
+ */
+public final class WorkStealingWorkerPool<T>
+{
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final int SPIN_TRIES = 100;
+    private static final int IDLE_TRIES = 200;
+
+    /**
+     * Chooses the worker for an event when dispatching by key.
+     *
+     * @param <T> event to be processed by a pool of workers
+     */
+    public interface KeyHasher<T>
+    {
+        /**
+         * @param event to be dispatched, must not be modified.
+         * @return a hash of the event's key, events with equal hashes are dispatched to the same worker.
+         */
+        int hash(T event);
+    }
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile boolean running;
+    private final RingBuffer<T> ringBuffer;
+    private final SequenceBarrier sequenceBarrier;
+    private final ExceptionHandler<? super T> exceptionHandler;
+    private final KeyHasher<? super T> keyHasher;
+    private final CompletionSequence completionSequence;
+    private final AbstractSequencer progressSignal;
+    private final Worker[] workers;
+    private final Dispatcher dispatcher = new Dispatcher();
+
+    /**
+     * Create a pool that dispatches events to its workers round robin.
+     * <p>
+     * This option requires a pre-configured {@link RingBuffer} which must have
+     * {@link RingBuffer#addGatingSequences(Sequence...)} called with {@link #getWorkerSequences()} before the pool is
+     * started.
+     *
+     * @param ringBuffer       of events to be consumed.
+     * @param sequenceBarrier  on which the dispatcher will wait.
+     * @param exceptionHandler to callback when an error occurs which is not handled by the {@link WorkHandler}s.
+     * @param workHandlers     to distribute the work load across.
+     */
+    @SafeVarargs
+    public WorkStealingWorkerPool(
+        final RingBuffer<T> ringBuffer,
+        final SequenceBarrier sequenceBarrier,
+        final ExceptionHandler<? super T> exceptionHandler,
+        final WorkHandler<? super T>... workHandlers)
+    {
+        this(ringBuffer, sequenceBarrier, exceptionHandler, null, workHandlers);
+    }
+
+    /**
+     * Create a pool that dispatches events to its workers by a hash of their key.
+     *
+     * @param ringBuffer       of events to be consumed.
+     * @param sequenceBarrier  on which the dispatcher will wait.
+     * @param exceptionHandler to callback when an error occurs which is not handled by the {@link WorkHandler}s.
+     * @param keyHasher        to choose the worker for each event, called on the dispatcher thread.
+     * @param workHandlers     to distribute the work load across.
+     */
+    @SafeVarargs
+    public WorkStealingWorkerPool(
+        final RingBuffer<T> ringBuffer,
+        final SequenceBarrier sequenceBarrier,
+        final ExceptionHandler<? super T> exceptionHandler,
+        final KeyHasher<? super T> keyHasher,
+        final WorkHandler<? super T>... workHandlers)
+    {
+        if (workHandlers.length == 0)
+        {
+            throw new IllegalArgumentException("At least one WorkHandler is required");
+        }
+
+        this.ringBuffer = ringBuffer;
+        this.sequenceBarrier = sequenceBarrier;
+        this.exceptionHandler = exceptionHandler;
+        this.keyHasher = keyHasher;
+        this.completionSequence = new CompletionSequence(ringBuffer.getBufferSize());
+        this.progressSignal = AbstractSequencer.progressSignalFor(sequenceBarrier);
+
+        workers = newWorkers(workHandlers.length);
+        for (int i = 0; i < workHandlers.length; i++)
+        {
+            // 每个队列都能容纳整个RingBuffer，dispatcher不会因为某个worker积压而阻塞
+            workers[i] = new Worker(i, workHandlers[i], new WorkStealingQueue(ringBuffer.getBufferSize()));
+        }
+    }
+
+    /**
+     * Get the sequence to gate the {@link RingBuffer} or the following stage on.
+     *
+     * @return an array holding the single completion {@link Sequence} of the pool.
+     */
+    public Sequence[] getWorkerSequences()
+    {
+        return new Sequence[]{completionSequence.getSequence()};
+    }
+
+    /**
+     * Start the dispatcher and the workers from the current cursor of the {@link RingBuffer}.  When restarting after
+     * {@link #halt()}, sequences that were dispatched but not yet processed are dropped.
+     *
+     * @param executor providing threads for the dispatcher and each of the workers.
+     * @return the {@link RingBuffer} used for the work queue.
+     * @throws IllegalStateException if the pool has already been started and not halted yet
+     */
+    public RingBuffer<T> start(final Executor executor)
+    {
+        if (!started.compareAndSet(false, true))
+        {
+            throw new IllegalStateException("WorkStealingWorkerPool has already been started and cannot be restarted until halted.");
+        }
+
+        final long cursor = ringBuffer.getCursor();
+        completionSequence.getSequence().set(cursor);
+        dispatcher.sequence.set(cursor);
+        // 上次halt时留在队列中的sequence已被上面的cursor越过，重启后不能再处理
+        for (final Worker worker : workers)
+        {
+            worker.queue.clear();
+        }
+        running = true;
+
+        for (final Worker worker : workers)
+        {
+            executor.execute(worker);
+        }
+        executor.execute(dispatcher);
+
+        return ringBuffer;
+    }
+
+    /**
+     * Wait for the {@link RingBuffer} to drain of published events then halt the dispatcher and the workers.
+     */
+    public void drainAndHalt()
+    {
+        while (ringBuffer.getCursor() > completionSequence.getSequence().get())
+        {
+            Thread.yield();
+        }
+
+        halt();
+    }
+
+    /**
+     * Halt the dispatcher and the workers immediately at the end of their current batch.
+     */
+    public void halt()
+    {
+        running = false;
+        sequenceBarrier.alert();
+        started.set(false);
+    }
+
+    public boolean isRunning()
+    {
+        return started.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Worker[] newWorkers(final int size)
+    {
+        return (Worker[]) new WorkStealingWorkerPool<?>.Worker[size];
+    }
+
+    private void process(final Worker worker, final long[] batch, final int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final long sequence = batch[i];
+            T event = null;
+            try
+            {
+                event = ringBuffer.get(sequence);
+                worker.workHandler.onEvent(event);
+            }
+            catch (final Throwable ex)
+            {
+                exceptionHandler.handleEventException(ex, sequence, event);
+            }
+            completionSequence.complete(sequence);
+        }
+
+        if (progressSignal != null)
+        {
+            progressSignal.signalProgress();
+        }
+    }
+
+    private int steal(final Worker thief, final long[] batch)
+    {
+        final Worker[] workers = this.workers;
+        for (int i = 1; i < workers.length; i++)
+        {
+            final Worker victim = workers[(thief.index + i) % workers.length];
+            final int stolen = victim.queue.steal(batch, MAX_BATCH_SIZE);
+            if (stolen != 0)
+            {
+                return stolen;
+            }
+        }
+        return 0;
+    }
+
+    private static int idle(final int counter)
+    {
+        if (counter < SPIN_TRIES)
+        {
+            return counter + 1;
+        }
+        if (counter < IDLE_TRIES)
+        {
+            Thread.yield();
+            return counter + 1;
+        }
+        LockSupport.parkNanos(100L);
+        return counter;
+    }
+
+    private final class Worker implements Runnable
+    {
+        private final int index;
+        private final WorkHandler<? super T> workHandler;
+        private final WorkStealingQueue queue;
+
+        private Worker(final int index, final WorkHandler<? super T> workHandler, final WorkStealingQueue queue)
+        {
+            this.index = index;
+            this.workHandler = workHandler;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run()
+        {
+            notifyStart();
+
+            final long[] batch = new long[MAX_BATCH_SIZE];
+            int counter = 0;
+            while (running)
+            {
+                int count = queue.take(batch, MAX_BATCH_SIZE);
+                if (count == 0)
+                {
+                    count = steal(this, batch);
+                }
+
+                if (count == 0)
+                {
+                    counter = idle(counter);
+                }
+                else
+                {
+                    counter = 0;
+                    process(this, batch, count);
+                }
+            }
+
+            notifyShutdown();
+        }
+
+        private void notifyStart()
+        {
+            if (workHandler instanceof LifecycleAware)
+            {
+                try
+                {
+                    ((LifecycleAware) workHandler).onStart();
+                }
+                catch (final Throwable ex)
+                {
+                    exceptionHandler.handleOnStartException(ex);
+                }
+            }
+        }
+
+        private void notifyShutdown()
+        {
+            if (workHandler instanceof LifecycleAware)
+            {
+                try
+                {
+                    ((LifecycleAware) workHandler).onShutdown();
+                }
+                catch (final Throwable ex)
+                {
+                    exceptionHandler.handleOnShutdownException(ex);
+                }
+            }
+        }
+    }
+
+    private final class Dispatcher implements Runnable
+    {
+        private final Sequence sequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        private int nextWorker;
+
+        @Override
+        public void run()
+        {
+            sequenceBarrier.clearAlert();
+
+            long nextSequence = sequence.get() + 1L;
+            while (true)
+            {
+                try
+                {
+                    final long availableSequence = sequenceBarrier.waitFor(nextSequence);
+                    while (nextSequence <= availableSequence)
+                    {
+                        final WorkStealingQueue queue = workers[workerFor(nextSequence)].queue;
+                        while (!queue.offer(nextSequence))
+                        {
+                            Thread.yield();
+                        }
+                        nextSequence++;
+                    }
+                    sequence.set(availableSequence);
+                }
+                catch (final AlertException | InterruptedException ex)
+                {
+                    if (!running)
+                    {
+                        break;
+                    }
+                }
+                catch (final TimeoutException ex)
+                {
+                    // 没有新事件，继续等待
+                }
+            }
+        }
+
+        private int workerFor(final long sequence)
+        {
+            if (keyHasher != null)
+            {
+                try
+                {
+                    return (keyHasher.hash(ringBuffer.get(sequence)) & Integer.MAX_VALUE) % workers.length;
+                }
+                catch (final Throwable ex)
+                {
+                    exceptionHandler.handleEventException(ex, sequence, ringBuffer.get(sequence));
+                }
+            }
+
+            final int worker = nextWorker;
+            nextWorker = worker + 1 == workers.length ? 0 : worker + 1;
+            return worker;
+        }
+    }
+}
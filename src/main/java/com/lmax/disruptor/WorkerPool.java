@@ -27,6 +27,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * 多个WorkerProcessor可以组成一个WorkerPool
  * workHandlers[i]共享同一个workSequence，所以，同一个WorkerPool内，是互斥消费。
  *
+ * <p>A pool created with {@link #createOrdered(RingBuffer, SequenceBarrier, ExceptionHandler, WorkHandler[])} still
+ * processes events concurrently and out of order, but exposes a single completion {@link Sequence} that only
+ * advances over contiguously completed events, so consumers gating on it see events strictly in sequence order.</p>
+ *
  * @param <T> event to be processed by a pool of workers
  */
 public final class WorkerPool<T>
@@ -36,6 +40,7 @@ public final class WorkerPool<T>
     private final RingBuffer<T> ringBuffer;
     // WorkProcessors are created to wrap each of the provided WorkHandlers
     private final WorkProcessor<?>[] workProcessors;
+    private final CompletionSequence completionSequence;
 
     /**
      * Create a worker pool to enable an array of {@link WorkHandler}s to consume published sequences.
@@ -49,13 +54,25 @@ public final class WorkerPool<T>
      * @param workHandlers     to distribute the work load across.
      */
     @SafeVarargs
+    @SuppressWarnings("varargs")
     public WorkerPool(
         final RingBuffer<T> ringBuffer,
         final SequenceBarrier sequenceBarrier,
         final ExceptionHandler<? super T> exceptionHandler,
         final WorkHandler<? super T>... workHandlers)
+    {
+        this(ringBuffer, sequenceBarrier, exceptionHandler, null, workHandlers);
+    }
+
+    private WorkerPool(
+        final RingBuffer<T> ringBuffer,
+        final SequenceBarrier sequenceBarrier,
+        final ExceptionHandler<? super T> exceptionHandler,
+        final CompletionSequence completionSequence,
+        final WorkHandler<? super T>[] workHandlers)
     {
         this.ringBuffer = ringBuffer;
+        this.completionSequence = completionSequence;
         final int numWorkers = workHandlers.length;
         workProcessors = new WorkProcessor[numWorkers];
 
@@ -66,10 +83,39 @@ public final class WorkerPool<T>
                 sequenceBarrier,
                 workHandlers[i],
                 exceptionHandler,
-                workSequence);
+                workSequence,
+                completionSequence);
         }
     }
 
+    /**
+     * Create a worker pool whose workers process events concurrently, but whose progress is reported in order.
+     * {@link #getWorkerSequences()} returns a single completion sequence that only advances once every event up to
+     * it has been processed, so the {@link RingBuffer} and any following stage gating on it see events strictly in
+     * sequence order, regardless of which worker finished first.
+     * <p>
+     * This option requires a pre-configured {@link RingBuffer} which must have {@link RingBuffer#addGatingSequences(Sequence...)}
+     * called before the work pool is started.
+     *
+     * @param ringBuffer       of events to be consumed.
+     * @param sequenceBarrier  on which the workers will depend.
+     * @param exceptionHandler to callback when an error occurs which is not handled by the {@link WorkHandler}s.
+     * @param workHandlers     to distribute the work load across.
+     * @param <T>              event to be processed by a pool of workers
+     * @return the ordered worker pool.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static <T> WorkerPool<T> createOrdered(
+        final RingBuffer<T> ringBuffer,
+        final SequenceBarrier sequenceBarrier,
+        final ExceptionHandler<? super T> exceptionHandler,
+        final WorkHandler<? super T>... workHandlers)
+    {
+        return new WorkerPool<>(
+            ringBuffer, sequenceBarrier, exceptionHandler, new CompletionSequence(ringBuffer.getBufferSize()), workHandlers);
+    }
+
     /**
      * Construct a work pool with an internal {@link RingBuffer} for convenience.
      * <p>
@@ -86,6 +132,7 @@ public final class WorkerPool<T>
         final WorkHandler<? super T>... workHandlers)
     {
         ringBuffer = RingBuffer.createMultiProducer(eventFactory, 1024, new BlockingWaitStrategy());
+        completionSequence = null;
         final SequenceBarrier barrier = ringBuffer.newBarrier();
         final int numWorkers = workHandlers.length;
         workProcessors = new WorkProcessor[numWorkers];
@@ -104,12 +151,18 @@ public final class WorkerPool<T>
     }
 
     /**
-     * Get an array of {@link Sequence}s representing the progress of the workers.
+     * Get an array of {@link Sequence}s representing the progress of the workers.  For an ordered pool this is
+     * the single completion sequence.
      *
      * @return an array of {@link Sequence}s representing the progress of the workers.
      */
     public Sequence[] getWorkerSequences()
     {
+        if (completionSequence != null)
+        {
+            return new Sequence[]{completionSequence.getSequence()};
+        }
+
         final Sequence[] sequences = new Sequence[workProcessors.length + 1];
         for (int i = 0, size = workProcessors.length; i < size; i++)
         {
@@ -136,6 +189,10 @@ public final class WorkerPool<T>
 
         final long cursor = ringBuffer.getCursor();
         workSequence.set(cursor);
+        if (completionSequence != null)
+        {
+            completionSequence.getSequence().set(cursor);
+        }
 
         for (WorkProcessor<?> processor : workProcessors)
         {
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.util.ThreadHints;
+
+/**
+ * Yielding strategy for producers waiting on a full ring buffer, spinning for a number of attempts and then using
+ * Thread.yield().
+ * <p>
+ * This strategy will use 100% CPU while the ring buffer is full, but will more readily give up the CPU than a busy
+ * spin strategy if the consumers need it.
+ */
+public final class YieldingProducerWaitStrategy implements ProducerWaitStrategy
+{
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void waitForCapacity(final long wrapPoint, final Sequence[] gatingSequences, final int attempt)
+    {
+        if (attempt < SPIN_TRIES)
+        {
+            ThreadHints.onSpinWait();
+        }
+        else
+        {
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking()
+    {
+    }
+}
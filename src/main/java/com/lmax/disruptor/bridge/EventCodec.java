@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.bridge;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes events into and out of replication frames.
+ *
+ * @param <T> the type of event replicated.
+ */
+public interface EventCodec<T>
+{
+    /**
+     * @return upper bound on the number of bytes {@link #encode(Object, ByteBuffer)} writes for one event.
+     */
+    int maxEncodedLength();
+
+    /**
+     * Write the event at the position of the buffer, advancing the position.
+     *
+     * @param event  to encode.
+     * @param buffer with at least {@link #maxEncodedLength()} bytes remaining.
+     */
+    void encode(T event, ByteBuffer buffer);
+
+    /**
+     * Read the event from the buffer, which is positioned at the encoded event and limited to its length.
+     *
+     * @param buffer holding the encoded event.
+     * @param event  preallocated event to decode into.
+     */
+    void decode(ByteBuffer buffer, T event);
+
+    /**
+     * Mark an event as a placeholder for a sequence that was lost in transit, so that sequence numbers on the
+     * receiving ring buffer stay aligned with the sending one.
+     *
+     * @param event preallocated event standing in for the lost one.
+     */
+    void markLost(T event);
+}
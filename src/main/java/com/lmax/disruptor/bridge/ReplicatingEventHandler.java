@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.bridge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.LifecycleAware;
+
+/**
+ * <p>{@link EventHandler} replicating the events it sees to a remote {@link ReplicationReceiver}.  Events are
+ * encoded into a frame which is written once per batch, when <code>endOfBatch</code> is true or the frame is full,
+ * so the cost of replication is paid by this consumer rather than the publishers.</p>
+ *
+ * <p>The channel may be a connected {@link java.nio.channels.SocketChannel} or a connected
+ * {@link java.nio.channels.DatagramChannel}, in which case every frame is one datagram and
+ * <code>maxFrameSize</code> must fit in a datagram.  Frame layout, big endian:</p>
+ *
+ * <pre>
+ * +-------------+---------------+-------+--------+-------+-----+
+ * | frameLength | firstSequence | count | length | event | ... |
+ * | int         | long          | int   | int    | bytes |     |
+ * +-------------+---------------+-------+--------+-------+-----+
+ * </pre>
+ *
+ * <p>Sequences within a frame are contiguous, the receiver uses them to detect lost and duplicated frames.</p>
+ *
+ * @param <T> the type of event replicated.
+ */
+public final class ReplicatingEventHandler<T> implements EventHandler<T>, LifecycleAware
+{
+    static final int FRAME_LENGTH_SIZE = 4;
+    static final int HEADER_SIZE = FRAME_LENGTH_SIZE + 8 + 4;
+    static final int EVENT_LENGTH_SIZE = 4;
+
+    private static final int FIRST_SEQUENCE_OFFSET = FRAME_LENGTH_SIZE;
+    private static final int COUNT_OFFSET = FIRST_SEQUENCE_OFFSET + 8;
+
+    private final WritableByteChannel channel;
+    private final EventCodec<T> codec;
+    private final ByteBuffer frame;
+    private final int maxEventSize;
+    private long nextSequence = -1;
+    private int count;
+    private long framesSent;
+
+    /**
+     * @param channel      connected channel to write frames to.
+     * @param codec        to encode events.
+     * @param maxFrameSize largest frame in bytes, must hold at least one event.
+     */
+    public ReplicatingEventHandler(final WritableByteChannel channel, final EventCodec<T> codec, final int maxFrameSize)
+    {
+        this.maxEventSize = EVENT_LENGTH_SIZE + codec.maxEncodedLength();
+        if (maxFrameSize < HEADER_SIZE + maxEventSize)
+        {
+            throw new IllegalArgumentException("maxFrameSize must be at least " + (HEADER_SIZE + maxEventSize));
+        }
+
+        this.channel = channel;
+        this.codec = codec;
+        this.frame = ByteBuffer.allocateDirect(maxFrameSize);
+    }
+
+    @Override
+    public void onEvent(final T event, final long sequence, final boolean endOfBatch) throws Exception
+    {
+        if (count != 0 && (sequence != nextSequence || frame.remaining() < maxEventSize))
+        {
+            flush();
+        }
+
+        if (count == 0)
+        {
+            frame.clear();
+            frame.position(HEADER_SIZE);
+            frame.putLong(FIRST_SEQUENCE_OFFSET, sequence);
+        }
+
+        final int lengthPosition = frame.position();
+        frame.position(lengthPosition + EVENT_LENGTH_SIZE);
+        codec.encode(event, frame);
+        frame.putInt(lengthPosition, frame.position() - lengthPosition - EVENT_LENGTH_SIZE);
+
+        count++;
+        nextSequence = sequence + 1;
+
+        if (endOfBatch)
+        {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        frame.putInt(COUNT_OFFSET, count);
+        frame.putInt(0, frame.position() - FRAME_LENGTH_SIZE);
+        frame.flip();
+        count = 0;
+
+        while (frame.hasRemaining())
+        {
+            channel.write(frame);
+        }
+        framesSent++;
+    }
+
+    /**
+     * @return the number of frames written, for monitoring the average batch size.
+     */
+    public long getFramesSent()
+    {
+        return framesSent;
+    }
+
+    @Override
+    public void onStart()
+    {
+    }
+
+    @Override
+    public void onShutdown()
+    {
+        if (count != 0)
+        {
+            try
+            {
+                flush();
+            }
+            catch (final IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
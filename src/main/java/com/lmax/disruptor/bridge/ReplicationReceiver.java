@@ -0,0 +1,342 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.bridge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.lmax.disruptor.RingBuffer;
+
+/**
+ * <p>Receiving side of a {@link ReplicatingEventHandler}: reads frames from a channel and publishes the events into
+ * a local {@link RingBuffer} under the same sequence numbers they had on the sending ring buffer.  The receiver must
+ * be the only publisher to the local ring buffer.</p>
+ *
+ * <p>Events with a sequence lower than the next expected one are duplicates and are dropped.  When the sequence is
+ * ahead of the expected one the {@link SequenceGapListener} is notified and the missing sequences are published as
+ * placeholders marked with {@link EventCodec#markLost(Object)}, so consumers of the standby see every sequence.</p>
+ *
+ * <p>A receiver that attaches to a stream already in progress, or that sees a gap larger than the ring buffer, does
+ * not fill the gap, as the number of placeholders has no bound.  With a {@link ResyncHandler} it moves the ring
+ * buffer to the received sequence instead: the consumers are halted, the sequence before the received one is
+ * published as a single lost placeholder and the consumers are restarted from there.  Without a handler the gap is
+ * reported to the {@link SequenceGapListener} and {@link #run()} fails with an {@link IllegalStateException}.</p>
+ *
+ * <p>The channel may be a {@link java.nio.channels.SocketChannel} or a connected
+ * {@link java.nio.channels.DatagramChannel}.  Runs until the channel reaches end of stream or {@link #halt()} is
+ * called.</p>
+ *
+ * @param <T> the type of event replicated.
+ */
+public final class ReplicationReceiver<T> implements Runnable
+{
+    private static final SequenceGapListener IGNORE_GAPS = new SequenceGapListener()
+    {
+        @Override
+        public void onGap(final long expectedSequence, final long receivedSequence)
+        {
+        }
+    };
+
+    private final ReadableByteChannel channel;
+    private final RingBuffer<T> ringBuffer;
+    private final EventCodec<T> codec;
+    private final SequenceGapListener gapListener;
+    private final ResyncHandler resyncHandler;
+    private final ByteBuffer buffer;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile long lostCount;
+    private volatile long duplicateCount;
+    private volatile long resyncCount;
+    private boolean receivedFrame;
+
+    /**
+     * @param channel      to read frames from.
+     * @param ringBuffer   to publish into, its next sequence is the first one expected.
+     * @param codec        to decode events.
+     * @param maxFrameSize largest frame the sender writes, as passed to the {@link ReplicatingEventHandler}.
+     * @param gapListener  notified of lost events, may be null.
+     */
+    public ReplicationReceiver(
+        final ReadableByteChannel channel,
+        final RingBuffer<T> ringBuffer,
+        final EventCodec<T> codec,
+        final int maxFrameSize,
+        final SequenceGapListener gapListener)
+    {
+        this(channel, ringBuffer, codec, maxFrameSize, gapListener, null);
+    }
+
+    /**
+     * @param channel       to read frames from.
+     * @param ringBuffer    to publish into, its next sequence is the first one expected.
+     * @param codec         to decode events.
+     * @param maxFrameSize  largest frame the sender writes, as passed to the {@link ReplicatingEventHandler}.
+     * @param gapListener   notified of lost events, may be null.
+     * @param resyncHandler stops and restarts the consumers when the ring buffer is moved forward, may be null in
+     *                      which case a gap that needs a resync stops the receiver.
+     */
+    public ReplicationReceiver(
+        final ReadableByteChannel channel,
+        final RingBuffer<T> ringBuffer,
+        final EventCodec<T> codec,
+        final int maxFrameSize,
+        final SequenceGapListener gapListener,
+        final ResyncHandler resyncHandler)
+    {
+        this.channel = channel;
+        this.ringBuffer = ringBuffer;
+        this.codec = codec;
+        this.gapListener = gapListener != null ? gapListener : IGNORE_GAPS;
+        this.resyncHandler = resyncHandler;
+        // 两倍大小：流式通道上一个不完整的帧加上一次完整读取
+        this.buffer = ByteBuffer.allocateDirect(2 * maxFrameSize);
+    }
+
+    @Override
+    public void run()
+    {
+        if (!running.compareAndSet(false, true))
+        {
+            throw new IllegalStateException("Thread is already running");
+        }
+
+        try
+        {
+            while (running.get())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    break;
+                }
+
+                buffer.flip();
+                processFrames();
+                buffer.compact();
+            }
+        }
+        catch (final ClosedChannelException e)
+        {
+            if (running.get())
+            {
+                throw new RuntimeException(e);
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Stop receiving, closing the channel to unblock a pending read.
+     */
+    public void halt()
+    {
+        running.set(false);
+        try
+        {
+            channel.close();
+        }
+        catch (final IOException e)
+        {
+            // already stopping, nothing more to do
+        }
+    }
+
+    public boolean isRunning()
+    {
+        return running.get();
+    }
+
+    /**
+     * @return the number of sequences published as lost.
+     */
+    public long getLostCount()
+    {
+        return lostCount;
+    }
+
+    /**
+     * @return the number of duplicated events dropped.
+     */
+    public long getDuplicateCount()
+    {
+        return duplicateCount;
+    }
+
+    /**
+     * @return the number of times the ring buffer was moved forward to the received sequence.
+     */
+    public long getResyncCount()
+    {
+        return resyncCount;
+    }
+
+    private void processFrames()
+    {
+        while (buffer.remaining() >= ReplicatingEventHandler.FRAME_LENGTH_SIZE)
+        {
+            final int frameStart = buffer.position();
+            final int frameSize = ReplicatingEventHandler.FRAME_LENGTH_SIZE + buffer.getInt(frameStart);
+            if (frameSize < ReplicatingEventHandler.HEADER_SIZE || frameSize > buffer.capacity() / 2)
+            {
+                throw new IllegalStateException("Malformed frame of " + frameSize + " bytes");
+            }
+            if (frameStart + frameSize > buffer.limit())
+            {
+                return;
+            }
+
+            final long firstSequence = buffer.getLong(frameStart + ReplicatingEventHandler.FRAME_LENGTH_SIZE);
+            final int count = buffer.getInt(frameStart + ReplicatingEventHandler.FRAME_LENGTH_SIZE + 8);
+            final int limit = buffer.limit();
+            buffer.limit(frameStart + frameSize).position(frameStart + ReplicatingEventHandler.HEADER_SIZE);
+
+            processFrame(firstSequence, count);
+
+            if (buffer.hasRemaining())
+            {
+                throw new IllegalStateException("Malformed frame starting at sequence " + firstSequence);
+            }
+            buffer.limit(limit);
+        }
+    }
+
+    private void processFrame(final long firstSequence, final int count)
+    {
+        final long expectedSequence = ringBuffer.getCursor() + 1;
+
+        if (firstSequence > expectedSequence)
+        {
+            gapListener.onGap(expectedSequence, firstSequence);
+            if (receivedFrame && firstSequence - expectedSequence <= ringBuffer.getBufferSize())
+            {
+                publishLost(firstSequence - expectedSequence);
+            }
+            else if (resyncHandler != null)
+            {
+                resync(expectedSequence, firstSequence);
+            }
+            else
+            {
+                // 没有ResyncHandler时不能移动游标，用占位填满可能要发布无限多的事件，直接失败
+                throw new IllegalStateException(
+                    "Cannot fill gap from " + expectedSequence + " to " + firstSequence + " without a ResyncHandler");
+            }
+        }
+        receivedFrame = true;
+
+        final int skip = (int) Math.min(count, Math.max(0, expectedSequence - firstSequence));
+        for (int i = 0; i < skip; i++)
+        {
+            skipEvent();
+        }
+        duplicateCount += skip;
+
+        int remaining = count - skip;
+        while (remaining > 0)
+        {
+            final int n = Math.min(remaining, ringBuffer.getBufferSize());
+            final long hi = ringBuffer.next(n);
+            final long lo = hi - n + 1;
+            try
+            {
+                for (long sequence = lo; sequence <= hi; sequence++)
+                {
+                    decodeEvent(ringBuffer.get(sequence));
+                }
+            }
+            finally
+            {
+                ringBuffer.publish(lo, hi);
+            }
+            remaining -= n;
+        }
+    }
+
+    private void decodeEvent(final T event)
+    {
+        final int frameEnd = buffer.limit();
+        final int eventStart = buffer.position() + ReplicatingEventHandler.EVENT_LENGTH_SIZE;
+        final int eventEnd = eventStart + buffer.getInt(buffer.position());
+
+        buffer.limit(eventEnd).position(eventStart);
+        try
+        {
+            codec.decode(buffer, event);
+        }
+        finally
+        {
+            buffer.limit(frameEnd).position(eventEnd);
+        }
+    }
+
+    private void skipEvent()
+    {
+        buffer.position(buffer.position() + ReplicatingEventHandler.EVENT_LENGTH_SIZE + buffer.getInt(buffer.position()));
+    }
+
+    private void publishLost(final long missing)
+    {
+        long remaining = missing;
+        while (remaining > 0)
+        {
+            final int n = (int) Math.min(remaining, ringBuffer.getBufferSize());
+            final long hi = ringBuffer.next(n);
+            final long lo = hi - n + 1;
+            for (long sequence = lo; sequence <= hi; sequence++)
+            {
+                codec.markLost(ringBuffer.get(sequence));
+            }
+            ringBuffer.publish(lo, hi);
+            remaining -= n;
+        }
+        lostCount += missing;
+    }
+
+    private void resync(final long expectedSequence, final long receivedSequence)
+    {
+        resyncHandler.beforeResync(expectedSequence, receivedSequence);
+
+        // 消费者已停止，直接把游标移到收到的序号之前，只发布一个丢失占位
+        final long sequence = receivedSequence - 1;
+        codec.markLost(ringBuffer.claimAndGetPreallocated(sequence));
+        ringBuffer.publish(sequence);
+        lostCount += receivedSequence - expectedSequence;
+        resyncCount++;
+
+        resyncHandler.afterResync(receivedSequence);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReplicationReceiver{" +
+            "running=" + running +
+            ", lostCount=" + lostCount +
+            ", duplicateCount=" + duplicateCount +
+            ", resyncCount=" + resyncCount +
+            '}';
+    }
+}
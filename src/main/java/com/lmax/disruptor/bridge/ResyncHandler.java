@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.bridge;
+
+/**
+ * <p>Lets a {@link ReplicationReceiver} move the local ring buffer forward to the sequence of the stream rather than
+ * publishing placeholders for every missing event.  A receiver resyncs on the first frame it receives when that frame
+ * is ahead of the ring buffer, i.e. it attached to a stream already in progress, and on any gap larger than the
+ * ring buffer.</p>
+ *
+ * <p>Moving the cursor is only safe while nothing is consuming from the ring buffer, so the consumers are stopped in
+ * {@link #beforeResync(long, long)} and positioned and restarted in {@link #afterResync(long)}.</p>
+ */
+public interface ResyncHandler
+{
+    /**
+     * Halt every consumer of the ring buffer, they must not be running when this method returns.
+     *
+     * @param expectedSequence the next sequence the ring buffer expected.
+     * @param receivedSequence the sequence received, the ring buffer will continue from it.
+     */
+    void beforeResync(long expectedSequence, long receivedSequence);
+
+    /**
+     * Set the sequence of every consumer to {@code receivedSequence - 1} and restart them.
+     *
+     * @param receivedSequence the next sequence to be published to the ring buffer.
+     */
+    void afterResync(long receivedSequence);
+}
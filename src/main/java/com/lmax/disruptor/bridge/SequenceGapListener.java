@@ -0,0 +1,29 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.bridge;
+
+/**
+ * Notified by a {@link ReplicationReceiver} when the sequence of a received event is ahead of the next expected
+ * sequence, i.e. events were lost in transit.
+ */
+public interface SequenceGapListener
+{
+    /**
+     * @param expectedSequence the first sequence missing.
+     * @param receivedSequence the sequence received, the events in between are published as lost.
+     */
+    void onGap(long expectedSequence, long receivedSequence);
+}
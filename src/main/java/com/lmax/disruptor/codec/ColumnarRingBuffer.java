@@ -0,0 +1,350 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+import java.util.List;
+
+import com.lmax.disruptor.Cursored;
+import com.lmax.disruptor.EventSequencer;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.MultiProducerSequencer;
+import com.lmax.disruptor.PackedMultiProducerSequencer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.Sequencer;
+import com.lmax.disruptor.SingleProducerSequencer;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+
+/**
+ * <p>Ring buffer storing the events of a {@link Schema} column by column: each field has its own primitive array,
+ * indexed by <code>sequence &amp; (bufferSize - 1)</code>.  A handler that reads two fields of a ten field event
+ * only brings those two arrays through the cache, and a loop over one column is a plain array scan.</p>
+ *
+ * <p>Sequencing is the same as {@link com.lmax.disruptor.RingBuffer}: publishers claim with {@link #next()} and
+ * {@link #publish(long)}, event processors wait on {@link #newBarrier(Sequence...)} and gate the publishers with
+ * {@link #addGatingSequences(Sequence...)}.  There are no event objects, so {@link #get(long)} returns the ring
+ * buffer itself and a {@link com.lmax.disruptor.BatchEventProcessor} hands it to its handler with the sequence to
+ * read.  A {@link com.lmax.disruptor.BatchEventHandler} can scan a column from <code>lo</code> to
+ * <code>hi</code> directly.</p>
+ *
+ * <p>{@link FlyweightGenerator#generateColumns(String, Schema)} generates typed accessors by field name:</p>
+ *
+ * <pre>
+ * ColumnarRingBuffer ringBuffer = ColumnarRingBuffer.create(TradeColumns.SCHEMA, ProducerType.SINGLE, 1024, waitStrategy);
+ * TradeColumns trades = new TradeColumns(ringBuffer);
+ *
+ * long sequence = ringBuffer.next();
+ * trades.setPrice(sequence, 2.5).setQuantity(sequence, 100);
+ * ringBuffer.publish(sequence);
+ * </pre>
+ */
+public final class ColumnarRingBuffer implements Cursored, EventSequencer<ColumnarRingBuffer>
+{
+    private final Schema schema;
+    private final Sequencer sequencer;
+    private final int indexMask;
+    private final Object[] columns;
+
+    ColumnarRingBuffer(final Schema schema, final Sequencer sequencer)
+    {
+        this.schema = schema;
+        this.sequencer = sequencer;
+        this.indexMask = sequencer.getBufferSize() - 1;
+
+        final List<Schema.SchemaField> fields = schema.getFields();
+        this.columns = new Object[fields.size()];
+        for (int i = 0; i < columns.length; i++)
+        {
+            columns[i] = newColumn(fields.get(i).getType(), sequencer.getBufferSize());
+        }
+    }
+
+    /**
+     * Create a new columnar ring buffer.
+     *
+     * @param schema       of the events, one column is allocated per field.
+     * @param producerType producer type to use {@link ProducerType}.
+     * @param bufferSize   number of events in the ring buffer, must be a power of 2.
+     * @param waitStrategy used to determine how to wait for new events to become available.
+     * @return a constructed ring buffer.
+     * @throws IllegalArgumentException if bufferSize is less than 1 or not a power of 2
+     */
+    public static ColumnarRingBuffer create(
+        final Schema schema,
+        final ProducerType producerType,
+        final int bufferSize,
+        final WaitStrategy waitStrategy)
+    {
+        final Sequencer sequencer;
+        switch (producerType)
+        {
+            case SINGLE:
+                sequencer = new SingleProducerSequencer(bufferSize, waitStrategy);
+                break;
+            case MULTI:
+                sequencer = new MultiProducerSequencer(bufferSize, waitStrategy);
+                break;
+            case MULTI_PACKED:
+                sequencer = new PackedMultiProducerSequencer(bufferSize, waitStrategy);
+                break;
+            default:
+                throw new IllegalStateException(producerType.toString());
+        }
+
+        return new ColumnarRingBuffer(schema, sequencer);
+    }
+
+    /**
+     * @return the schema of the events.
+     */
+    public Schema getSchema()
+    {
+        return schema;
+    }
+
+    /**
+     * @param sequence of an event.
+     * @return the index of the event in every column.
+     */
+    public int index(final long sequence)
+    {
+        return (int) sequence & indexMask;
+    }
+
+    /**
+     * There are no event objects, the fields of the event at <code>sequence</code> are read and written through
+     * the columns of the ring buffer.
+     *
+     * @param sequence of the event.
+     * @return this ring buffer.
+     */
+    @Override
+    public ColumnarRingBuffer get(final long sequence)
+    {
+        return this;
+    }
+
+    /**
+     * @param name of a field of the schema.
+     * @return the position of the field's column, the position of the field in {@link Schema#getFields()}.
+     * @throws IllegalArgumentException if the schema has no such field.
+     */
+    public int columnIndex(final String name)
+    {
+        final List<Schema.SchemaField> fields = schema.getFields();
+        for (int i = 0; i < fields.size(); i++)
+        {
+            if (fields.get(i).getName().equals(name))
+            {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("No field " + name + " in " + schema.getName());
+    }
+
+    public boolean[] booleanColumn(final String name)
+    {
+        return (boolean[]) column(name, FieldType.BOOLEAN);
+    }
+
+    public byte[] byteColumn(final String name)
+    {
+        return (byte[]) column(name, FieldType.BYTE);
+    }
+
+    public short[] shortColumn(final String name)
+    {
+        return (short[]) column(name, FieldType.SHORT);
+    }
+
+    public char[] charColumn(final String name)
+    {
+        return (char[]) column(name, FieldType.CHAR);
+    }
+
+    public int[] intColumn(final String name)
+    {
+        return (int[]) column(name, FieldType.INT);
+    }
+
+    public float[] floatColumn(final String name)
+    {
+        return (float[]) column(name, FieldType.FLOAT);
+    }
+
+    public long[] longColumn(final String name)
+    {
+        return (long[]) column(name, FieldType.LONG);
+    }
+
+    public double[] doubleColumn(final String name)
+    {
+        return (double[]) column(name, FieldType.DOUBLE);
+    }
+
+    /**
+     * Create a new SequenceBarrier to be used by an EventProcessor to track which messages are available to be
+     * read from the ring buffer given a list of sequences to track.
+     *
+     * @param sequencesToTrack the additional sequences to track
+     * @return A sequence barrier that will track the specified sequences.
+     * @see SequenceBarrier
+     */
+    public SequenceBarrier newBarrier(final Sequence... sequencesToTrack)
+    {
+        return sequencer.newBarrier(sequencesToTrack);
+    }
+
+    /**
+     * Add the specified gating sequences to this instance of the Disruptor.  They will safely and atomically added
+     * to the list of gating sequences.
+     *
+     * @param gatingSequences The sequences to add.
+     */
+    public void addGatingSequences(final Sequence... gatingSequences)
+    {
+        sequencer.addGatingSequences(gatingSequences);
+    }
+
+    /**
+     * Remove the specified sequence from this ring buffer.
+     *
+     * @param sequence to be removed.
+     * @return <tt>true</tt> if this sequence was found, <tt>false</tt> otherwise.
+     */
+    public boolean removeGatingSequence(final Sequence sequence)
+    {
+        return sequencer.removeGatingSequence(sequence);
+    }
+
+    /**
+     * Get the minimum sequence value from all of the gating sequences added to this ring buffer.
+     *
+     * @return The minimum gating sequence or the cursor sequence if no sequences have been added.
+     */
+    public long getMinimumGatingSequence()
+    {
+        return sequencer.getMinimumSequence();
+    }
+
+    @Override
+    public long getCursor()
+    {
+        return sequencer.getCursor();
+    }
+
+    @Override
+    public int getBufferSize()
+    {
+        return sequencer.getBufferSize();
+    }
+
+    @Override
+    public boolean hasAvailableCapacity(final int requiredCapacity)
+    {
+        return sequencer.hasAvailableCapacity(requiredCapacity);
+    }
+
+    @Override
+    public long remainingCapacity()
+    {
+        return sequencer.remainingCapacity();
+    }
+
+    @Override
+    public long next()
+    {
+        return sequencer.next();
+    }
+
+    @Override
+    public long next(final int n)
+    {
+        return sequencer.next(n);
+    }
+
+    @Override
+    public long tryNext() throws InsufficientCapacityException
+    {
+        return sequencer.tryNext();
+    }
+
+    @Override
+    public long tryNext(final int n) throws InsufficientCapacityException
+    {
+        return sequencer.tryNext(n);
+    }
+
+    @Override
+    public void publish(final long sequence)
+    {
+        sequencer.publish(sequence);
+    }
+
+    @Override
+    public void publish(final long lo, final long hi)
+    {
+        sequencer.publish(lo, hi);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColumnarRingBuffer{" +
+            "schema=" + schema +
+            ", sequencer=" + sequencer +
+            '}';
+    }
+
+    private Object column(final String name, final FieldType type)
+    {
+        final int index = columnIndex(name);
+        final FieldType actual = schema.getFields().get(index).getType();
+        if (actual != type)
+        {
+            throw new IllegalArgumentException("Field " + name + " is " + actual + ", not " + type);
+        }
+
+        return columns[index];
+    }
+
+    private static Object newColumn(final FieldType type, final int bufferSize)
+    {
+        switch (type)
+        {
+            case BOOLEAN:
+                return new boolean[bufferSize];
+            case BYTE:
+                return new byte[bufferSize];
+            case SHORT:
+                return new short[bufferSize];
+            case CHAR:
+                return new char[bufferSize];
+            case INT:
+                return new int[bufferSize];
+            case FLOAT:
+                return new float[bufferSize];
+            case LONG:
+                return new long[bufferSize];
+            case DOUBLE:
+                return new double[bufferSize];
+            default:
+                throw new IllegalStateException(type.toString());
+        }
+    }
+}
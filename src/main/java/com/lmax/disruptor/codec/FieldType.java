@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+/**
+ * Fixed size field types supported by a {@link Schema}.  Each maps onto a primitive java type and the
+ * {@link java.nio.ByteBuffer} accessor pair used to read and write it.
+ */
+public enum FieldType
+{
+    BOOLEAN(1, boolean.class, ""),
+    BYTE(1, byte.class, ""),
+    SHORT(2, short.class, "Short"),
+    CHAR(2, char.class, "Char"),
+    INT(4, int.class, "Int"),
+    FLOAT(4, float.class, "Float"),
+    LONG(8, long.class, "Long"),
+    DOUBLE(8, double.class, "Double");
+
+    private final int size;
+    private final Class<?> javaType;
+    private final String accessorSuffix;
+
+    FieldType(final int size, final Class<?> javaType, final String accessorSuffix)
+    {
+        this.size = size;
+        this.javaType = javaType;
+        this.accessorSuffix = accessorSuffix;
+    }
+
+    /**
+     * @return the encoded size in bytes, which is also the alignment of the field.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public Class<?> javaType()
+    {
+        return javaType;
+    }
+
+    /**
+     * @return suffix of the <code>get</code>/<code>put</code> methods of {@link java.nio.ByteBuffer} for this type.
+     */
+    String accessorSuffix()
+    {
+        return accessorSuffix;
+    }
+
+    /**
+     * @param javaType primitive type of a field.
+     * @return the matching field type.
+     * @throws IllegalArgumentException if the type is not a supported primitive.
+     */
+    public static FieldType forJavaType(final Class<?> javaType)
+    {
+        for (final FieldType fieldType : values())
+        {
+            if (fieldType.javaType == javaType)
+            {
+                return fieldType;
+            }
+        }
+
+        throw new IllegalArgumentException("Unsupported field type: " + javaType.getName());
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * <p>Generates the java source of a flyweight over a fixed layout {@link Schema}.  For a schema named
+ * <code>Trade</code> the generated <code>TradeFlyweight</code> has:</p>
+ *
+ * <ul>
+ * <li>a getter and fluent setter per field, reading and writing a {@link java.nio.ByteBuffer} at
+ * <code>offset + fieldOffset</code>,</li>
+ * <li><code>allocate(bufferSize)</code> returning a direct buffer large enough for a ring buffer of that size,
+ * starting on the schema's {@link Schema#getAlignment() alignment} when it is larger than 8,</li>
+ * <li><code>factory(buffer)</code> returning a {@link com.lmax.disruptor.SlotEventFactory} that wraps the
+ * flyweight of each slot over <code>slot * LENGTH</code> of the buffer, so the event data of a
+ * {@link com.lmax.disruptor.RingBuffer} lives contiguously off-heap whatever its
+ * {@link com.lmax.disruptor.SlotAllocation}; its <code>newInstance()</code>, used where an event is created outside
+ * a ring buffer, wraps a flyweight over a buffer of its own,</li>
+ * <li>when the schema was derived from a class, <code>TRANSLATOR</code>, an
+ * {@link com.lmax.disruptor.EventTranslatorOneArg} copying an instance of that class into a slot.</li>
+ * </ul>
+ *
+ * <p>For a {@link ColumnarRingBuffer} the generated <code>TradeColumns</code> has the <code>SCHEMA</code> to create
+ * the ring buffer with, and a getter, fluent setter and column accessor per field, indexing the field's array by
+ * sequence.  When the schema was derived from a class it also has <code>copyFrom(sequence, trade)</code>.</p>
+ *
+ * <p>The generated code uses no reflection.  Generation is meant to run as a build step, from a test or a small
+ * main, with the output checked in or added to a source set:</p>
+ *
+ * <pre>
+ * FlyweightGenerator.write("com.example.codec", Schema.fromClass(Trade.class), Paths.get("src/main/java"));
+ * FlyweightGenerator.writeColumns("com.example.codec", Schema.fromClass(Trade.class), Paths.get("src/main/java"));
+ * </pre>
+ */
+public final class FlyweightGenerator
+{
+    private static final String INDENT = "    ";
+
+    private final StringBuilder out = new StringBuilder(4096);
+    private int depth;
+
+    private FlyweightGenerator()
+    {
+    }
+
+    /**
+     * @param schema of the event.
+     * @return the simple name of the flyweight class generated for the schema.
+     */
+    public static String flyweightName(final Schema schema)
+    {
+        return schema.getName() + "Flyweight";
+    }
+
+    /**
+     * @param packageName of the generated class.
+     * @param schema      of the event.
+     * @return the source of the flyweight class.
+     * @throws IllegalArgumentException if the schema has a source class with a field that has no accessor.
+     */
+    public static String generate(final String packageName, final Schema schema)
+    {
+        return new FlyweightGenerator().generateClass(packageName, schema);
+    }
+
+    /**
+     * Generate the flyweight and write it below <code>sourceRoot</code> in the directory of its package.
+     *
+     * @param packageName of the generated class.
+     * @param schema      of the event.
+     * @param sourceRoot  root of the source tree.
+     * @return the file written.
+     * @throws IOException if the file could not be written.
+     */
+    public static Path write(final String packageName, final Schema schema, final Path sourceRoot) throws IOException
+    {
+        final Path directory = sourceRoot.resolve(packageName.replace('.', '/'));
+        Files.createDirectories(directory);
+
+        final Path file = directory.resolve(flyweightName(schema) + ".java");
+        Files.write(file, generate(packageName, schema).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @param schema of the event.
+     * @return the simple name of the column accessor class generated for the schema.
+     */
+    public static String columnsName(final Schema schema)
+    {
+        return schema.getName() + "Columns";
+    }
+
+    /**
+     * @param packageName of the generated class.
+     * @param schema      of the event.
+     * @return the source of the column accessor class for a {@link ColumnarRingBuffer} of the schema.
+     * @throws IllegalArgumentException if the schema has a source class with a field that has no accessor.
+     */
+    public static String generateColumns(final String packageName, final Schema schema)
+    {
+        return new FlyweightGenerator().generateColumnsClass(packageName, schema);
+    }
+
+    /**
+     * Generate the column accessors and write them below <code>sourceRoot</code> in the directory of its package.
+     *
+     * @param packageName of the generated class.
+     * @param schema      of the event.
+     * @param sourceRoot  root of the source tree.
+     * @return the file written.
+     * @throws IOException if the file could not be written.
+     */
+    public static Path writeColumns(final String packageName, final Schema schema, final Path sourceRoot)
+        throws IOException
+    {
+        final Path directory = sourceRoot.resolve(packageName.replace('.', '/'));
+        Files.createDirectories(directory);
+
+        final Path file = directory.resolve(columnsName(schema) + ".java");
+        Files.write(file, generateColumns(packageName, schema).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String generateClass(final String packageName, final Schema schema)
+    {
+        final String className = flyweightName(schema);
+        // ByteBuffer.allocateDirect只保证8字节对齐，更大的对齐需要Util.allocateDirectAligned
+        final boolean aligned = schema.getAlignment() > 8;
+
+        line("/* Generated by " + FlyweightGenerator.class.getName() + ", do not edit. */");
+        if (!packageName.isEmpty())
+        {
+            line("package " + packageName + ";");
+        }
+        line("");
+        line("import java.nio.ByteBuffer;");
+        line("import java.nio.ByteOrder;");
+        line("");
+        line("import com.lmax.disruptor.SlotEventFactory;");
+        if (schema.getSourceType() != null)
+        {
+            line("import com.lmax.disruptor.EventTranslatorOneArg;");
+        }
+        if (aligned)
+        {
+            line("import com.lmax.disruptor.util.Util;");
+        }
+        line("");
+        line("public final class " + className);
+        open();
+        line("public static final int LENGTH = " + schema.getLength() + ";");
+        if (aligned)
+        {
+            line("public static final int ALIGNMENT = " + schema.getAlignment() + ";");
+        }
+        line("");
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            line("private static final int " + constantName(field) + " = " + field.getOffset() + ";");
+        }
+        line("");
+
+        if (schema.getSourceType() != null)
+        {
+            generateTranslator(schema, className);
+        }
+
+        line("private ByteBuffer buffer;");
+        line("private int offset;");
+        line("");
+
+        line("public " + className + " wrap(final ByteBuffer buffer, final int offset)");
+        open();
+        line("this.buffer = buffer;");
+        line("this.offset = offset;");
+        line("return this;");
+        close();
+        line("");
+        line("public ByteBuffer buffer()");
+        open();
+        line("return buffer;");
+        close();
+        line("");
+        line("public int offset()");
+        open();
+        line("return offset;");
+        close();
+
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            generateAccessors(className, field);
+        }
+
+        line("");
+        line("public static ByteBuffer allocate(final int bufferSize)");
+        open();
+        if (aligned)
+        {
+            line("return Util.allocateDirectAligned(bufferSize * LENGTH, ALIGNMENT).order(ByteOrder.nativeOrder());");
+        }
+        else
+        {
+            line("return ByteBuffer.allocateDirect(bufferSize * LENGTH).order(ByteOrder.nativeOrder());");
+        }
+        close();
+        line("");
+        line("public static SlotEventFactory<" + className + "> factory(final ByteBuffer buffer)");
+        open();
+        line("return new SlotEventFactory<" + className + ">()");
+        open();
+        line("@Override");
+        line("public " + className + " newInstance(final int slot)");
+        open();
+        line("return new " + className + "().wrap(buffer, slot * LENGTH);");
+        close();
+        line("");
+        line("@Override");
+        line("public " + className + " newInstance()");
+        open();
+        line("return new " + className + "().wrap(allocate(1), 0);");
+        close();
+        depth--;
+        line("};");
+        close();
+
+        line("");
+        line("@Override");
+        line("public String toString()");
+        open();
+        line("return \"" + className + "{\" +");
+        depth++;
+        String separator = "";
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            line("\"" + separator + field.getName() + "=\" + " + getterName(field) + "() +");
+            separator = ", ";
+        }
+        line("'}';");
+        depth--;
+        close();
+
+        close();
+        return out.toString();
+    }
+
+    private String generateColumnsClass(final String packageName, final Schema schema)
+    {
+        final String className = columnsName(schema);
+        final Class<?> sourceType = schema.getSourceType();
+
+        line("/* Generated by " + FlyweightGenerator.class.getName() + ", do not edit. */");
+        if (!packageName.isEmpty())
+        {
+            line("package " + packageName + ";");
+        }
+        line("");
+        line("import " + ColumnarRingBuffer.class.getName() + ";");
+        line("import " + FieldType.class.getName() + ";");
+        line("import " + Schema.class.getName() + ";");
+        line("");
+        line("public final class " + className);
+        open();
+        line("public static final Schema SCHEMA = Schema.builder(\"" + schema.getName() + "\")");
+        depth += 2;
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            line(".add(\"" + field.getName() + "\", FieldType." + field.getType().name() + ")");
+        }
+        line(".build();");
+        depth -= 2;
+        line("");
+        line("private final ColumnarRingBuffer ringBuffer;");
+        line("private final int indexMask;");
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            line("private final " + field.getType().javaType().getName() + "[] " + columnName(field) + ";");
+        }
+        line("");
+        line("public " + className + "(final ColumnarRingBuffer ringBuffer)");
+        open();
+        line("this.ringBuffer = ringBuffer;");
+        line("this.indexMask = ringBuffer.getBufferSize() - 1;");
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            line("this." + columnName(field) + " = ringBuffer." + field.getType().javaType().getName() +
+                "Column(\"" + field.getName() + "\");");
+        }
+        close();
+        line("");
+        line("public ColumnarRingBuffer ringBuffer()");
+        open();
+        line("return ringBuffer;");
+        close();
+
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            final String javaType = field.getType().javaType().getName();
+            final String element = columnName(field) + "[(int) sequence & indexMask]";
+
+            line("");
+            line("public " + javaType + " " + getterName(field) + "(final long sequence)");
+            open();
+            line("return " + element + ";");
+            close();
+            line("");
+            line("public " + className + " " + setterName(field) + "(final long sequence, final " + javaType + " value)");
+            open();
+            line(element + " = value;");
+            line("return this;");
+            close();
+            line("");
+            line("public " + javaType + "[] " + columnName(field) + "()");
+            open();
+            line("return " + columnName(field) + ";");
+            close();
+        }
+
+        if (sourceType != null)
+        {
+            line("");
+            line("public " + className + " copyFrom(final long sequence, final " + sourceType.getCanonicalName() + " source)");
+            open();
+            line("final int index = (int) sequence & indexMask;");
+            for (final Schema.SchemaField field : schema.getFields())
+            {
+                line(columnName(field) + "[index] = source." + sourceAccessor(sourceType, field) + ";");
+            }
+            line("return this;");
+            close();
+        }
+
+        close();
+        return out.toString();
+    }
+
+    private void generateTranslator(final Schema schema, final String className)
+    {
+        final Class<?> sourceType = schema.getSourceType();
+        final String sourceName = sourceType.getCanonicalName();
+
+        line("public static final EventTranslatorOneArg<" + className + ", " + sourceName + "> TRANSLATOR =");
+        depth++;
+        line("new EventTranslatorOneArg<" + className + ", " + sourceName + ">()");
+        open();
+        line("@Override");
+        line("public void translateTo(final " + className + " event, final long sequence, final " +
+            sourceName + " source)");
+        open();
+        for (final Schema.SchemaField field : schema.getFields())
+        {
+            line("event." + setterName(field) + "(source." + sourceAccessor(sourceType, field) + ");");
+        }
+        close();
+        depth--;
+        line("};");
+        depth--;
+        line("");
+    }
+
+    private void generateAccessors(final String className, final Schema.SchemaField field)
+    {
+        final FieldType type = field.getType();
+        final String javaType = type.javaType().getName();
+        final String index = "offset + " + constantName(field);
+
+        line("");
+        line("public " + javaType + " " + getterName(field) + "()");
+        open();
+        if (type == FieldType.BOOLEAN)
+        {
+            line("return buffer.get(" + index + ") != 0;");
+        }
+        else
+        {
+            line("return buffer.get" + type.accessorSuffix() + "(" + index + ");");
+        }
+        close();
+        line("");
+        line("public " + className + " " + setterName(field) + "(final " + javaType + " value)");
+        open();
+        if (type == FieldType.BOOLEAN)
+        {
+            line("buffer.put(" + index + ", (byte) (value ? 1 : 0));");
+        }
+        else
+        {
+            line("buffer.put" + type.accessorSuffix() + "(" + index + ", value);");
+        }
+        line("return this;");
+        close();
+    }
+
+    private static String sourceAccessor(final Class<?> sourceType, final Schema.SchemaField field)
+    {
+        final Class<?> javaType = field.getType().javaType();
+        final String[] candidates = javaType == boolean.class ?
+            new String[]{getterName(field), "get" + capitalise(field.getName())} :
+            new String[]{getterName(field)};
+
+        for (final String candidate : candidates)
+        {
+            try
+            {
+                final Method method = sourceType.getMethod(candidate);
+                if (method.getReturnType() == javaType)
+                {
+                    return candidate + "()";
+                }
+            }
+            catch (final NoSuchMethodException e)
+            {
+                // try the next candidate
+            }
+        }
+
+        try
+        {
+            final Field publicField = sourceType.getField(field.getName());
+            if (Modifier.isPublic(publicField.getModifiers()))
+            {
+                return field.getName();
+            }
+        }
+        catch (final NoSuchFieldException e)
+        {
+            // fall through
+        }
+
+        throw new IllegalArgumentException(
+            "No public getter or field for " + field.getName() + " on " + sourceType.getName());
+    }
+
+    private static String getterName(final Schema.SchemaField field)
+    {
+        return (field.getType() == FieldType.BOOLEAN ? "is" : "get") + capitalise(field.getName());
+    }
+
+    private static String setterName(final Schema.SchemaField field)
+    {
+        return "set" + capitalise(field.getName());
+    }
+
+    private static String columnName(final Schema.SchemaField field)
+    {
+        return field.getName() + "Column";
+    }
+
+    private static String constantName(final Schema.SchemaField field)
+    {
+        final String name = field.getName();
+        final StringBuilder constant = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++)
+        {
+            final char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0)
+            {
+                constant.append('_');
+            }
+            constant.append(c);
+        }
+
+        return constant.toString().toUpperCase(Locale.ROOT) + "_OFFSET";
+    }
+
+    private static String capitalise(final String name)
+    {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private void open()
+    {
+        line("{");
+        depth++;
+    }
+
+    private void close()
+    {
+        depth--;
+        line("}");
+    }
+
+    private void line(final String text)
+    {
+        if (!text.isEmpty())
+        {
+            for (int i = 0; i < depth; i++)
+            {
+                out.append(INDENT);
+            }
+            out.append(text);
+        }
+        out.append('\n');
+    }
+}
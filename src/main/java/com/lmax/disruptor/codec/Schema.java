@@ -0,0 +1,320 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Fixed layout of an event encoded into a slot of bytes.</p>
+ *
+ * <p>Fields are laid out largest first so that every field is naturally aligned without padding between fields, the
+ * record length is rounded up to a multiple of 8 so consecutive slots keep that alignment.  Fields of the same size
+ * keep the order they were declared in.</p>
+ *
+ * <p>{@link #alignedTo(int)} rounds the record length up to a larger boundary, e.g. a cache line, so that a producer
+ * writing one slot and a consumer reading its neighbour do not touch the same line.</p>
+ *
+ * <pre>
+ * Schema schema = Schema.builder("Trade")
+ *     .add("price", FieldType.LONG)
+ *     .add("quantity", FieldType.INT)
+ *     .add("side", FieldType.BYTE)
+ *     .build();
+ * </pre>
+ */
+public final class Schema
+{
+    private static final int RECORD_ALIGNMENT = 8;
+
+    private final String name;
+    private final Class<?> sourceType;
+    private final List<SchemaField> fields;
+    private final int length;
+    private final int alignment;
+
+    private Schema(
+        final String name,
+        final Class<?> sourceType,
+        final List<SchemaField> fields,
+        final int length,
+        final int alignment)
+    {
+        this.name = name;
+        this.sourceType = sourceType;
+        this.fields = Collections.unmodifiableList(fields);
+        this.length = length;
+        this.alignment = alignment;
+    }
+
+    /**
+     * @param name of the event, used to name generated classes.
+     * @return a builder for a schema declared field by field.
+     */
+    public static Builder builder(final String name)
+    {
+        return new Builder(name, null);
+    }
+
+    /**
+     * Derive a schema from the instance fields of an event class.  Static and transient fields are ignored, every
+     * other field must be of a primitive type.  Fields of the same size are ordered by name, as the order of
+     * reflected fields is not defined.
+     *
+     * @param eventType the class to derive the schema from.
+     * @return the schema of the class, remembering the class so a translator from it can be generated.
+     * @throws IllegalArgumentException if a field is not of a supported type.
+     */
+    public static Schema fromClass(final Class<?> eventType)
+    {
+        final List<Field> declaredFields = new ArrayList<>();
+        for (final Field field : eventType.getDeclaredFields())
+        {
+            final int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic())
+            {
+                declaredFields.add(field);
+            }
+        }
+
+        Collections.sort(declaredFields, new Comparator<Field>()
+        {
+            @Override
+            public int compare(final Field o1, final Field o2)
+            {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        final Builder builder = new Builder(eventType.getSimpleName(), eventType);
+        for (final Field field : declaredFields)
+        {
+            builder.add(field.getName(), FieldType.forJavaType(field.getType()));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * @return the name of the event.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the class the schema was derived from, or null if it was declared with a {@link Builder}.
+     */
+    public Class<?> getSourceType()
+    {
+        return sourceType;
+    }
+
+    /**
+     * @return the fields in layout order.
+     */
+    public List<SchemaField> getFields()
+    {
+        return fields;
+    }
+
+    /**
+     * @return the length of an encoded record in bytes, including trailing padding.
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return the boundary every record starts on, 8 unless the schema was {@link #alignedTo(int) aligned}.
+     */
+    public int getAlignment()
+    {
+        return alignment;
+    }
+
+    /**
+     * @param alignment a power of 2 of at least 8, typically 64 for a cache line or 128 to also defeat adjacent line
+     *                  prefetch.
+     * @return a schema with the same fields whose record length is padded to a multiple of the alignment, and
+     * whose generated flyweight allocates its buffer starting on that boundary.
+     * @throws IllegalArgumentException if alignment is not a power of 2 or is less than 8.
+     */
+    public Schema alignedTo(final int alignment)
+    {
+        if (alignment < RECORD_ALIGNMENT || Integer.bitCount(alignment) != 1)
+        {
+            throw new IllegalArgumentException("Alignment must be a power of 2 of at least 8: " + alignment);
+        }
+
+        final int alignedLength = (length + alignment - 1) & -alignment;
+        return new Schema(name, sourceType, new ArrayList<>(fields), alignedLength, alignment);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Schema{" +
+            "name='" + name + '\'' +
+            ", fields=" + fields +
+            ", length=" + length +
+            ", alignment=" + alignment +
+            '}';
+    }
+
+    /**
+     * A field of a {@link Schema} and its offset within the record.
+     */
+    public static final class SchemaField
+    {
+        private final String name;
+        private final FieldType type;
+        private final int offset;
+
+        SchemaField(final String name, final FieldType type, final int offset)
+        {
+            this.name = name;
+            this.type = type;
+            this.offset = offset;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public FieldType getType()
+        {
+            return type;
+        }
+
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + ':' + type + '@' + offset;
+        }
+    }
+
+    /**
+     * Declares the fields of a {@link Schema}.
+     */
+    public static final class Builder
+    {
+        private final String name;
+        private final Class<?> sourceType;
+        private final List<String> names = new ArrayList<>();
+        private final List<FieldType> types = new ArrayList<>();
+        private final Set<String> declared = new HashSet<>();
+
+        private Builder(final String name, final Class<?> sourceType)
+        {
+            if (!isJavaIdentifier(name))
+            {
+                throw new IllegalArgumentException("Schema name is not a valid identifier: " + name);
+            }
+
+            this.name = name;
+            this.sourceType = sourceType;
+        }
+
+        /**
+         * @param fieldName name of the field, must be a valid java identifier.
+         * @param type      of the field.
+         * @return this builder.
+         * @throws IllegalArgumentException if the name is not valid or already declared.
+         */
+        public Builder add(final String fieldName, final FieldType type)
+        {
+            if (!isJavaIdentifier(fieldName))
+            {
+                throw new IllegalArgumentException("Field name is not a valid identifier: " + fieldName);
+            }
+            if (!declared.add(fieldName))
+            {
+                throw new IllegalArgumentException("Duplicate field: " + fieldName);
+            }
+
+            names.add(fieldName);
+            types.add(type);
+            return this;
+        }
+
+        /**
+         * @return the schema with its layout computed.
+         */
+        public Schema build()
+        {
+            final List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++)
+            {
+                order.add(i);
+            }
+
+            // 按字段大小降序排列（稳定排序），每个字段都能自然对齐且字段之间没有填充
+            Collections.sort(order, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(final Integer o1, final Integer o2)
+                {
+                    return Integer.compare(types.get(o2).size(), types.get(o1).size());
+                }
+            });
+
+            final List<SchemaField> fields = new ArrayList<>(order.size());
+            int offset = 0;
+            for (final int index : order)
+            {
+                final FieldType type = types.get(index);
+                fields.add(new SchemaField(names.get(index), type, offset));
+                offset += type.size();
+            }
+
+            final int length = Math.max(RECORD_ALIGNMENT, (offset + RECORD_ALIGNMENT - 1) & -RECORD_ALIGNMENT);
+            return new Schema(name, sourceType, fields, length, RECORD_ALIGNMENT);
+        }
+
+        private static boolean isJavaIdentifier(final String value)
+        {
+            if (value == null || value.isEmpty() || !Character.isJavaIdentifierStart(value.charAt(0)))
+            {
+                return false;
+            }
+
+            for (int i = 1; i < value.length(); i++)
+            {
+                if (!Character.isJavaIdentifierPart(value.charAt(i)))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -30,6 +30,9 @@ class ConsumerRepository<T> implements Iterable<ConsumerInfo>
         new IdentityHashMap<>();
     private final Map<Sequence, ConsumerInfo> eventProcessorInfoBySequence =
         new IdentityHashMap<>();
+    // 融合到同一个处理器中的handler，各自有自己的sequence
+    private final Map<EventHandler<?>, Sequence> sequenceByFusedEventHandler =
+        new IdentityHashMap<>();
     private final Collection<ConsumerInfo> consumerInfos = new ArrayList<>();
 
     public void add(
@@ -43,6 +46,22 @@ class ConsumerRepository<T> implements Iterable<ConsumerInfo>
         consumerInfos.add(consumerInfo);
     }
 
+    public void addFused(
+        final EventProcessor eventprocessor,
+        final FusedEventHandler<T> fusedHandler,
+        final EventHandler<? super T>[] handlers,
+        final SequenceBarrier barrier)
+    {
+        add(eventprocessor, fusedHandler, barrier);
+        final EventProcessorInfo<T> consumerInfo = eventProcessorInfoByEventHandler.get(fusedHandler);
+        for (int i = 0; i < handlers.length; i++)
+        {
+            eventProcessorInfoByEventHandler.put(handlers[i], consumerInfo);
+            eventProcessorInfoBySequence.put(fusedHandler.getSequence(i), consumerInfo);
+            sequenceByFusedEventHandler.put(handlers[i], fusedHandler.getSequence(i));
+        }
+    }
+
     public void add(final EventProcessor processor)
     {
         final EventProcessorInfo<T> consumerInfo = new EventProcessorInfo<>(processor, null, null);
@@ -88,6 +107,12 @@ class ConsumerRepository<T> implements Iterable<ConsumerInfo>
 
     public Sequence getSequenceFor(final EventHandler<T> handler)
     {
+        final Sequence fusedSequence = sequenceByFusedEventHandler.get(handler);
+        if (fusedSequence != null)
+        {
+            return fusedSequence;
+        }
+
         return getEventProcessorFor(handler).getSequence();
     }
 
@@ -24,9 +24,13 @@ import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.EventTranslatorThreeArg;
 import com.lmax.disruptor.EventTranslatorTwoArg;
 import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.FusedEventHandler;
+import com.lmax.disruptor.ProducerWaitStrategy;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.Sequence;
 import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.SlotAllocation;
+import com.lmax.disruptor.SlotLayout;
 import com.lmax.disruptor.TimeoutException;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.WorkHandler;
@@ -138,6 +142,106 @@ public class Disruptor<T>
             new BasicExecutor(threadFactory));
     }
 
+    /**
+     * Create a new Disruptor.
+     *
+     * @param eventFactory         the factory to create events in the ring buffer.
+     * @param ringBufferSize       the size of the ring buffer, must be power of 2.
+     * @param threadFactory        a {@link ThreadFactory} to create threads for processors.
+     * @param producerType         the claim strategy to use for the ring buffer.
+     * @param waitStrategy         the wait strategy to use for the ring buffer.
+     * @param producerWaitStrategy the strategy publishers use to wait for capacity when the ring buffer is full.
+     */
+    public Disruptor(
+            final EventFactory<T> eventFactory,
+            final int ringBufferSize,
+            final ThreadFactory threadFactory,
+            final ProducerType producerType,
+            final WaitStrategy waitStrategy,
+            final ProducerWaitStrategy producerWaitStrategy)
+    {
+        this(
+            RingBuffer.create(producerType, eventFactory, ringBufferSize, waitStrategy, producerWaitStrategy),
+            new BasicExecutor(threadFactory));
+    }
+
+    /**
+     * Create a new Disruptor.
+     *
+     * @param eventFactory   the factory to create events in the ring buffer.
+     * @param ringBufferSize the size of the ring buffer, must be power of 2.
+     * @param threadFactory  a {@link ThreadFactory} to create threads for processors.
+     * @param producerType   the claim strategy to use for the ring buffer.
+     * @param waitStrategy   the wait strategy to use for the ring buffer.
+     * @param slotAllocation when and on which thread the events of the ring buffer are created.
+     */
+    public Disruptor(
+            final EventFactory<T> eventFactory,
+            final int ringBufferSize,
+            final ThreadFactory threadFactory,
+            final ProducerType producerType,
+            final WaitStrategy waitStrategy,
+            final SlotAllocation slotAllocation)
+    {
+        this(
+            RingBuffer.create(producerType, eventFactory, ringBufferSize, waitStrategy, slotAllocation),
+            new BasicExecutor(threadFactory));
+    }
+
+    /**
+     * Create a new Disruptor.
+     *
+     * @param eventFactory   the factory to create events in the ring buffer.
+     * @param ringBufferSize the size of the ring buffer, must be power of 2.
+     * @param threadFactory  a {@link ThreadFactory} to create threads for processors.
+     * @param producerType   the claim strategy to use for the ring buffer.
+     * @param waitStrategy   the wait strategy to use for the ring buffer.
+     * @param slotAllocation when and on which thread the events of the ring buffer are created.
+     * @param slotLayout     how the events of the ring buffer are laid out relative to each other.
+     */
+    public Disruptor(
+            final EventFactory<T> eventFactory,
+            final int ringBufferSize,
+            final ThreadFactory threadFactory,
+            final ProducerType producerType,
+            final WaitStrategy waitStrategy,
+            final SlotAllocation slotAllocation,
+            final SlotLayout slotLayout)
+    {
+        this(
+            RingBuffer.create(producerType, eventFactory, ringBufferSize, waitStrategy, slotAllocation, slotLayout),
+            new BasicExecutor(threadFactory));
+    }
+
+    /**
+     * Create a new Disruptor, setting every option of its ring buffer.  Prefer this constructor to the six argument
+     * ones when passing <code>null</code> or a value of a type that matches more than one of them.
+     *
+     * @param eventFactory         the factory to create events in the ring buffer.
+     * @param ringBufferSize       the size of the ring buffer, must be power of 2.
+     * @param threadFactory        a {@link ThreadFactory} to create threads for processors.
+     * @param producerType         the claim strategy to use for the ring buffer.
+     * @param waitStrategy         the wait strategy to use for the ring buffer.
+     * @param producerWaitStrategy the strategy publishers use to wait for capacity when the ring buffer is full.
+     * @param slotAllocation       when and on which thread the events of the ring buffer are created.
+     * @param slotLayout           how the events of the ring buffer are laid out relative to each other.
+     */
+    public Disruptor(
+            final EventFactory<T> eventFactory,
+            final int ringBufferSize,
+            final ThreadFactory threadFactory,
+            final ProducerType producerType,
+            final WaitStrategy waitStrategy,
+            final ProducerWaitStrategy producerWaitStrategy,
+            final SlotAllocation slotAllocation,
+            final SlotLayout slotLayout)
+    {
+        this(
+            RingBuffer.create(
+                producerType, eventFactory, ringBufferSize, waitStrategy, producerWaitStrategy, slotAllocation, slotLayout),
+            new BasicExecutor(threadFactory));
+    }
+
     /**
      * Private constructor helper
      */
@@ -167,6 +271,27 @@ public class Disruptor<T>
         return createEventProcessors(new Sequence[0], handlers);
     }
 
+    /**
+     * <p>Set up event handlers that run one after another on a single thread, as a fused stage. Each event is
+     * passed to the handlers in order, as if set up with <code>handleEventsWith(A).then(B)</code>, but without
+     * crossing threads between the handlers. Each handler keeps its own {@link Sequence}, so later stages can still
+     * use {@link #after(EventHandler[])} with an individual handler.</p>
+     *
+     * <pre><code>dw.handleEventsWithFused(A, B).then(C);</code></pre>
+     *
+     * 多个handler融合在一个线程上顺序执行
+     *
+     * @param handlers the event handlers that will process events, in order.
+     * @return a {@link EventHandlerGroup} that can be used to chain dependencies.
+     * @see FusedEventHandler
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final EventHandlerGroup<T> handleEventsWithFused(final EventHandler<? super T>... handlers)
+    {
+        return createFusedEventProcessor(new Sequence[0], handlers);
+    }
+
     /**
      * <p>Set up custom event processors to handle events from the ring buffer. The Disruptor will
      * automatically start these processors when {@link #start()} is called.</p>
@@ -241,6 +366,25 @@ public class Disruptor<T>
         return createWorkerPool(new Sequence[0], workHandlers);
     }
 
+    /**
+     * Set up an ordered {@link WorkerPool}: each event is processed by one of the work handler threads, concurrently
+     * and in any order, but handlers chained after the pool see events strictly in sequence order.
+     *
+     * <pre><code>dw.handleEventsWithOrderedWorkerPool(A, B).then(C);</code></pre>
+     *
+     * 互斥消费，但后续消费者按顺序看到事件
+     *
+     * @param workHandlers the work handlers that will process events.
+     * @return a {@link EventHandlerGroup} that can be used to chain dependencies.
+     * @see WorkerPool#createOrdered(RingBuffer, SequenceBarrier, ExceptionHandler, WorkHandler[])
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final EventHandlerGroup<T> handleEventsWithOrderedWorkerPool(final WorkHandler<T>... workHandlers)
+    {
+        return createOrderedWorkerPool(new Sequence[0], workHandlers);
+    }
+
     /**
      * <p>Specify an exception handler to be used for any future event handlers.</p>
      *
@@ -581,6 +725,30 @@ public class Disruptor<T>
         return new EventHandlerGroup<>(this, consumerRepository, processorSequences);
     }
 
+    EventHandlerGroup<T> createFusedEventProcessor(
+        final Sequence[] barrierSequences,
+        final EventHandler<? super T>[] eventHandlers)
+    {
+        checkNotStarted();
+
+        final SequenceBarrier barrier = ringBuffer.newBarrier(barrierSequences);
+        final FusedEventHandler<T> fusedHandler = new FusedEventHandler<>(eventHandlers);
+        final BatchEventProcessor<T> batchEventProcessor =
+            new BatchEventProcessor<>(ringBuffer, barrier, fusedHandler);
+
+        if (exceptionHandler != null)
+        {
+            batchEventProcessor.setExceptionHandler(exceptionHandler);
+        }
+
+        consumerRepository.addFused(batchEventProcessor, fusedHandler, eventHandlers, barrier);
+        final Sequence[] processorSequences = {batchEventProcessor.getSequence()};
+
+        updateGatingSequencesForNextInChain(barrierSequences, processorSequences);
+
+        return new EventHandlerGroup<>(this, consumerRepository, processorSequences);
+    }
+
     private void updateGatingSequencesForNextInChain(final Sequence[] barrierSequences, final Sequence[] processorSequences)
     {
         if (processorSequences.length > 0)
@@ -612,7 +780,21 @@ public class Disruptor<T>
         final SequenceBarrier sequenceBarrier = ringBuffer.newBarrier(barrierSequences);
         final WorkerPool<T> workerPool = new WorkerPool<>(ringBuffer, sequenceBarrier, exceptionHandler, workHandlers);
 
+        return addWorkerPool(barrierSequences, workerPool, sequenceBarrier);
+    }
 
+    EventHandlerGroup<T> createOrderedWorkerPool(
+        final Sequence[] barrierSequences, final WorkHandler<? super T>[] workHandlers)
+    {
+        final SequenceBarrier sequenceBarrier = ringBuffer.newBarrier(barrierSequences);
+        final WorkerPool<T> workerPool = WorkerPool.createOrdered(ringBuffer, sequenceBarrier, exceptionHandler, workHandlers);
+
+        return addWorkerPool(barrierSequences, workerPool, sequenceBarrier);
+    }
+
+    private EventHandlerGroup<T> addWorkerPool(
+        final Sequence[] barrierSequences, final WorkerPool<T> workerPool, final SequenceBarrier sequenceBarrier)
+    {
         consumerRepository.add(workerPool, sequenceBarrier);
 
         final Sequence[] workerSequences = workerPool.getWorkerSequences();
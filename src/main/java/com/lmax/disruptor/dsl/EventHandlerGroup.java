@@ -133,6 +133,55 @@ public class EventHandlerGroup<T>
         return handleEventsWithWorkerPool(handlers);
     }
 
+    /**
+     * <p>Set up an ordered worker pool to handle events from the ring buffer, after every {@link EventProcessor}
+     * in this group has processed the event.  See {@link #handleEventsWithOrderedWorkerPool(WorkHandler[])}.</p>
+     *
+     * <pre><code>dw.handleEventsWith(A).thenHandleEventsWithOrderedWorkerPool(B, C).then(D);</code></pre>
+     *
+     * @param handlers the work handlers that will process events. Each work handler instance will provide an extra thread in the worker pool.
+     * @return a {@link EventHandlerGroup} that can be used to set up a event processor barrier over the created worker pool.
+     */
+    @SafeVarargs
+    public final EventHandlerGroup<T> thenHandleEventsWithOrderedWorkerPool(final WorkHandler<? super T>... handlers)
+    {
+        return handleEventsWithOrderedWorkerPool(handlers);
+    }
+
+    /**
+     * <p>Set up event handlers that run one after another on a single thread, after every {@link EventProcessor}
+     * in this group has processed the event. This behaves like <code>then(B).then(C)</code>, but <code>B</code> and
+     * <code>C</code> share one {@link com.lmax.disruptor.BatchEventProcessor}, so cheap stages do not pay for the
+     * event crossing threads. Each handler keeps its own {@link Sequence} for gating and inspection.</p>
+     *
+     * <pre><code>dw.handleEventsWith(A).thenFused(B, C);</code></pre>
+     *
+     * @param handlers the event handlers that will process events, in order.
+     * @return a {@link EventHandlerGroup} that can be used to set up a event processor barrier over the fused stage.
+     * @see com.lmax.disruptor.FusedEventHandler
+     */
+    @SafeVarargs
+    public final EventHandlerGroup<T> thenFused(final EventHandler<? super T>... handlers)
+    {
+        return handleEventsWithFused(handlers);
+    }
+
+    /**
+     * <p>Set up event handlers that run one after another on a single thread, after every {@link EventProcessor}
+     * in this group has processed the event.  See {@link #thenFused(EventHandler[])}.</p>
+     *
+     * <pre><code>dw.after(A).handleEventsWithFused(B, C);</code></pre>
+     *
+     * @param handlers the event handlers that will process events, in order.
+     * @return a {@link EventHandlerGroup} that can be used to set up a event processor barrier over the fused stage.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final EventHandlerGroup<T> handleEventsWithFused(final EventHandler<? super T>... handlers)
+    {
+        return disruptor.createFusedEventProcessor(sequences, handlers);
+    }
+
     /**
      * <p>Set up batch handlers to handle events from the ring buffer. These handlers will only process events
      * after every {@link EventProcessor} in this group has processed the event.</p>
@@ -188,6 +237,26 @@ public class EventHandlerGroup<T>
         return disruptor.createWorkerPool(sequences, handlers);
     }
 
+    /**
+     * <p>Set up an ordered worker pool to handle events from the ring buffer. As with
+     * {@link #handleEventsWithWorkerPool(WorkHandler[])} each event is processed by one of the work handlers,
+     * concurrently and in any order, but the returned group only advances over contiguously completed events, so
+     * handlers added after it see events strictly in sequence order.</p>
+     *
+     * <p>For example to enrich events across the workers <code>B, C</code> and journal them in order in <code>D</code>:</p>
+     *
+     * <pre><code>dw.after(A).handleEventsWithOrderedWorkerPool(B, C).then(D);</code></pre>
+     *
+     * @param handlers the work handlers that will process events. Each work handler instance will provide an extra thread in the worker pool.
+     * @return a {@link EventHandlerGroup} that can be used to set up a event processor barrier over the created worker pool.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final EventHandlerGroup<T> handleEventsWithOrderedWorkerPool(final WorkHandler<? super T>... handlers)
+    {
+        return disruptor.createOrderedWorkerPool(sequences, handlers);
+    }
+
     /**
      * Create a dependency barrier for the processors in this group.
      * This allows custom event processors to have dependencies on
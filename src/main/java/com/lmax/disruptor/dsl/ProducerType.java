@@ -28,5 +28,11 @@ public enum ProducerType
     /**
      * Create a RingBuffer supporting multiple event publishers to the one RingBuffer
      */
-    MULTI
+    MULTI,
+
+    /**
+     * Create a RingBuffer supporting multiple event publishers that tracks published slots in packed words, so
+     * consumers confirm large batches with few reads.  See {@link com.lmax.disruptor.PackedMultiProducerSequencer}.
+     */
+    MULTI_PACKED
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.ipc;
+
+/**
+ * Thrown when a process attached to a {@link SharedRingBuffer} stops making progress for longer than the peer
+ * timeout, either a consumer that stops heart beating while a producer waits on it, or a producer that claimed a
+ * sequence and never published it.
+ */
+public final class DeadPeerException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int consumerIndex;
+
+    DeadPeerException(final String message, final int consumerIndex)
+    {
+        super(message);
+        this.consumerIndex = consumerIndex;
+    }
+
+    /**
+     * @return the index of the dead consumer, or -1 if the dead peer is a producer.
+     */
+    public int getConsumerIndex()
+    {
+        return consumerIndex;
+    }
+}
@@ -0,0 +1,615 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lmax.disruptor.EventPoller.PollState;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.Sequencer;
+import com.lmax.disruptor.util.Util;
+import sun.misc.Unsafe;
+
+/**
+ * <p>Ring buffer of fixed size byte slots shared between processes through a memory-mapped file, typically under
+ * <code>/dev/shm</code>.  The cursor, the availability flags and the sequence of every consumer live in the file
+ * next to the slots, so producers and consumers in different JVMs coordinate with the same lock-free protocol as
+ * {@link com.lmax.disruptor.MultiProducerSequencer} and an {@link com.lmax.disruptor.EventPoller}.</p>
+ *
+ * <p>File layout, each region starting on its own 128 byte line:</p>
+ * <pre>
+ * +--------+--------+------------------------------+-------------------+----------------------------+
+ * | header | cursor | consumer[0..maxConsumers)    | availability      | slots                      |
+ * |        |        | sequence, heartbeat, state   | int per slot      | slotSize bytes per slot    |
+ * +--------+--------+------------------------------+-------------------+----------------------------+
+ * </pre>
+ *
+ * <p>Crash detection is based on a peer timeout fixed when the file is created:</p>
+ * <ul>
+ * <li>consumers write a heartbeat on every poll, a producer that is waiting for space on a consumer whose
+ * heartbeat is older than the timeout fails with {@link DeadPeerException}, after which the consumer can be
+ * removed with {@link #evictConsumer(int)}.</li>
+ * <li>a consumer that finds a sequence claimed but not published for longer than the timeout fails with
+ * {@link DeadPeerException}, as the producer that claimed it has died between claim and publish.</li>
+ * </ul>
+ *
+ * <p>Producers gate only on attached consumers, with no consumer attached they never wait.  A consumer attaches
+ * at the current cursor, so it sees events published after it attached.</p>
+ */
+public final class SharedRingBuffer
+{
+    /**
+     * Callback for {@link Poller#poll(Handler)}.
+     */
+    public interface Handler
+    {
+        /**
+         * @param slot       view over the bytes of the slot, positioned at its start and limited to the slot size.
+         * @param sequence   of the event.
+         * @param endOfBatch whether this is the last available event.
+         * @return false to stop processing the batch after this event.
+         * @throws Exception if the event could not be handled, the sequence is not advanced past it.
+         */
+        boolean onEvent(ByteBuffer slot, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    private static final Unsafe UNSAFE = Util.getUnsafe();
+
+    private static final long MAGIC = 0x4C4D4158_49504331L;
+    private static final int LINE = 128;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SLOT_COUNT_OFFSET = 8;
+    private static final int SLOT_SIZE_OFFSET = 12;
+    private static final int MAX_CONSUMERS_OFFSET = 16;
+    private static final int PEER_TIMEOUT_OFFSET = 24;
+    private static final int CURSOR_OFFSET = LINE;
+    private static final int CONSUMERS_OFFSET = 2 * LINE;
+
+    private static final int CONSUMER_SEQUENCE = 0;
+    private static final int CONSUMER_HEARTBEAT = 8;
+    private static final int CONSUMER_STATE = 16;
+
+    private static final long FREE = 0;
+    private static final long JOINING = 1;
+    private static final long ACTIVE = 2;
+
+    // 映射在进程退出前一直有效，保留引用防止被回收
+    private final MappedByteBuffer mapped;
+    private final long address;
+    private final int bufferSize;
+    private final int indexMask;
+    private final int indexShift;
+    private final int slotSize;
+    private final int maxConsumers;
+    private final long peerTimeoutMillis;
+    private final long availableAddress;
+    private final int slotsOffset;
+    // 本进程内的缓存，不放在共享文件中
+    private final Sequence gatingSequenceCache = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+
+    private final ThreadLocal<ByteBuffer> views = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return mapped.duplicate().order(ByteOrder.nativeOrder());
+        }
+    };
+
+    private SharedRingBuffer(final MappedByteBuffer mapped)
+    {
+        this.mapped = mapped;
+        this.address = Util.getAddressFromDirectByteBuffer(mapped);
+        this.bufferSize = UNSAFE.getInt(address + SLOT_COUNT_OFFSET);
+        this.slotSize = UNSAFE.getInt(address + SLOT_SIZE_OFFSET);
+        this.maxConsumers = UNSAFE.getInt(address + MAX_CONSUMERS_OFFSET);
+        this.peerTimeoutMillis = UNSAFE.getLong(address + PEER_TIMEOUT_OFFSET);
+        // 头部来自共享文件，可能已损坏或被截断，使用前先校验，否则后续的Unsafe访问会越界
+        checkHeader(mapped.capacity(), bufferSize, slotSize, maxConsumers, peerTimeoutMillis);
+        this.indexMask = bufferSize - 1;
+        this.indexShift = Util.log2(bufferSize);
+        this.availableAddress = address + availableOffset(maxConsumers);
+        this.slotsOffset = slotsOffset(bufferSize, maxConsumers);
+    }
+
+    /**
+     * Create the file, replacing any existing file, and attach to it.
+     *
+     * @param file              to create, e.g. under <code>/dev/shm</code>.
+     * @param bufferSize        number of slots, must be a power of 2.
+     * @param slotSize          size of each slot in bytes, rounded up to a multiple of 8.
+     * @param maxConsumers      number of consumer positions reserved in the file.
+     * @param peerTimeoutMillis after which a peer that is not making progress is considered dead, 0 to disable.
+     * @return the ring buffer.
+     * @throws IOException if the file could not be created or mapped.
+     */
+    public static SharedRingBuffer create(
+        final Path file, final int bufferSize, final int slotSize, final int maxConsumers, final long peerTimeoutMillis)
+        throws IOException
+    {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1)
+        {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+        if (slotSize < 1 || maxConsumers < 1 || peerTimeoutMillis < 0)
+        {
+            throw new IllegalArgumentException("slotSize and maxConsumers must be positive, peerTimeoutMillis >= 0");
+        }
+
+        final int alignedSlotSize = (slotSize + 7) & ~7;
+        final long length = slotsOffset(bufferSize, maxConsumers) + (long) bufferSize * alignedSlotSize;
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Mapped file would exceed 2GB: " + length);
+        }
+
+        Files.deleteIfExists(file);
+        final MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(
+            file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+
+        final long address = Util.getAddressFromDirectByteBuffer(mapped);
+        UNSAFE.putInt(address + SLOT_COUNT_OFFSET, bufferSize);
+        UNSAFE.putInt(address + SLOT_SIZE_OFFSET, alignedSlotSize);
+        UNSAFE.putInt(address + MAX_CONSUMERS_OFFSET, maxConsumers);
+        UNSAFE.putLong(address + PEER_TIMEOUT_OFFSET, peerTimeoutMillis);
+        UNSAFE.putLong(address + CURSOR_OFFSET, Sequencer.INITIAL_CURSOR_VALUE);
+
+        final long availableAddress = address + availableOffset(maxConsumers);
+        for (int i = 0; i < bufferSize; i++)
+        {
+            UNSAFE.putInt(availableAddress + i * 4L, -1);
+        }
+
+        // magic最后写入，其它进程看到magic即说明初始化完成
+        UNSAFE.putLongVolatile(null, address + MAGIC_OFFSET, MAGIC);
+        return new SharedRingBuffer(mapped);
+    }
+
+    /**
+     * Attach to a file created by {@link #create(Path, int, int, int, long)}, possibly in another process.
+     *
+     * @param file to attach to.
+     * @return the ring buffer.
+     * @throws IOException           if the file could not be mapped.
+     * @throws IllegalStateException if the file has not been initialised, or its header does not describe a ring
+     *                               buffer that fits in the file.
+     */
+    public static SharedRingBuffer open(final Path file) throws IOException
+    {
+        final MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+
+        if (mapped.capacity() < CONSUMERS_OFFSET ||
+            UNSAFE.getLongVolatile(null, Util.getAddressFromDirectByteBuffer(mapped) + MAGIC_OFFSET) != MAGIC)
+        {
+            throw new IllegalStateException("Not an initialised shared ring buffer: " + file);
+        }
+
+        return new SharedRingBuffer(mapped);
+    }
+
+    /**
+     * @return the highest sequence claimed by any producer.
+     */
+    public long getCursor()
+    {
+        return UNSAFE.getLongVolatile(null, address + CURSOR_OFFSET);
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    public int getSlotSize()
+    {
+        return slotSize;
+    }
+
+    /**
+     * Claim the next sequence, waiting for attached consumers to free a slot.
+     *
+     * @return the claimed sequence.
+     * @throws DeadPeerException if the wait is on a consumer that has stopped heart beating.
+     */
+    public long next()
+    {
+        return next(1);
+    }
+
+    /**
+     * Claim the next n sequences.
+     *
+     * @param n number of slots to claim.
+     * @return the highest claimed sequence.
+     * @throws DeadPeerException if the wait is on a consumer that has stopped heart beating.
+     */
+    public long next(final int n)
+    {
+        if (n < 1 || n > bufferSize)
+        {
+            throw new IllegalArgumentException("n must be > 0 and <= bufferSize");
+        }
+
+        long current;
+        long next;
+
+        do
+        {
+            current = getCursor();
+            next = current + n;
+
+            final long wrapPoint = next - bufferSize;
+            final long cachedGatingSequence = gatingSequenceCache.get();
+
+            if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current)
+            {
+                final long gatingSequence = getMinimumConsumerSequence(current);
+
+                if (wrapPoint > gatingSequence)
+                {
+                    checkConsumersAlive(wrapPoint);
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+
+                gatingSequenceCache.set(gatingSequence);
+            }
+            else if (UNSAFE.compareAndSwapLong(null, address + CURSOR_OFFSET, current, next))
+            {
+                break;
+            }
+        }
+        while (true);
+
+        return next;
+    }
+
+    /**
+     * Claim the next sequence if a slot is free.
+     *
+     * @return the claimed sequence.
+     * @throws InsufficientCapacityException if no slot is free.
+     */
+    public long tryNext() throws InsufficientCapacityException
+    {
+        long current;
+        long next;
+
+        do
+        {
+            current = getCursor();
+            next = current + 1;
+
+            if (next - bufferSize > getMinimumConsumerSequence(current))
+            {
+                throw InsufficientCapacityException.INSTANCE;
+            }
+        }
+        while (!UNSAFE.compareAndSwapLong(null, address + CURSOR_OFFSET, current, next));
+
+        return next;
+    }
+
+    /**
+     * @param sequence claimed from {@link #next()}.
+     * @return a view positioned over the slot of the sequence, valid on the calling thread until the next call.
+     */
+    public ByteBuffer slot(final long sequence)
+    {
+        final int position = slotsOffset + ((int) sequence & indexMask) * slotSize;
+        final ByteBuffer view = views.get();
+        view.limit(position + slotSize).position(position);
+        return view;
+    }
+
+    public void publish(final long sequence)
+    {
+        setAvailable(sequence);
+    }
+
+    public void publish(final long lo, final long hi)
+    {
+        for (long l = lo; l <= hi; l++)
+        {
+            setAvailable(l);
+        }
+    }
+
+    public boolean isAvailable(final long sequence)
+    {
+        final long flagAddress = availableAddress + ((int) sequence & indexMask) * 4L;
+        return UNSAFE.getIntVolatile(null, flagAddress) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * Attach a consumer at the given position in the file.  The consumer sees events published after this call.
+     *
+     * @param consumerIndex position in the file, from 0 to maxConsumers - 1.
+     * @return the poller for the consumer, it must be polled at least once per peer timeout.
+     * @throws IllegalStateException if the position is already taken.
+     */
+    public Poller newPoller(final int consumerIndex)
+    {
+        final long consumerAddress = consumerAddress(consumerIndex);
+        if (!UNSAFE.compareAndSwapLong(null, consumerAddress + CONSUMER_STATE, FREE, JOINING))
+        {
+            throw new IllegalStateException("Consumer " + consumerIndex + " is already attached");
+        }
+
+        UNSAFE.putLongVolatile(null, consumerAddress + CONSUMER_HEARTBEAT, System.currentTimeMillis());
+        UNSAFE.putLongVolatile(null, consumerAddress + CONSUMER_SEQUENCE, getCursor());
+        UNSAFE.putLongVolatile(null, consumerAddress + CONSUMER_STATE, ACTIVE);
+        // 与SequenceGroups.addSequences相同：ACTIVE之前没看到本消费者的生产者可能已经越过了上面读到的cursor，
+        // 发布ACTIVE之后重新读取cursor，从之后开始消费，被覆盖的槽位不会被读取
+        UNSAFE.putLongVolatile(null, consumerAddress + CONSUMER_SEQUENCE, getCursor());
+
+        return new Poller(consumerIndex, consumerAddress);
+    }
+
+    /**
+     * @param consumerIndex position in the file.
+     * @return true if the consumer is attached and has heart beaten within the peer timeout.
+     */
+    public boolean isConsumerAlive(final int consumerIndex)
+    {
+        final long consumerAddress = consumerAddress(consumerIndex);
+        return UNSAFE.getLongVolatile(null, consumerAddress + CONSUMER_STATE) == ACTIVE &&
+            !isStale(UNSAFE.getLongVolatile(null, consumerAddress + CONSUMER_HEARTBEAT), System.currentTimeMillis());
+    }
+
+    /**
+     * Detach a consumer, typically one reported by {@link DeadPeerException}, so producers stop gating on it.
+     *
+     * @param consumerIndex position in the file.
+     */
+    public void evictConsumer(final int consumerIndex)
+    {
+        UNSAFE.putLongVolatile(null, consumerAddress(consumerIndex) + CONSUMER_STATE, FREE);
+    }
+
+    private long getMinimumConsumerSequence(final long minimum)
+    {
+        long result = minimum;
+        for (int i = 0; i < maxConsumers; i++)
+        {
+            final long consumerAddress = address + CONSUMERS_OFFSET + (long) i * LINE;
+            if (UNSAFE.getLongVolatile(null, consumerAddress + CONSUMER_STATE) == ACTIVE)
+            {
+                result = Math.min(result, UNSAFE.getLongVolatile(null, consumerAddress + CONSUMER_SEQUENCE));
+            }
+        }
+
+        return result;
+    }
+
+    private void checkConsumersAlive(final long wrapPoint)
+    {
+        if (peerTimeoutMillis == 0)
+        {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < maxConsumers; i++)
+        {
+            final long consumerAddress = address + CONSUMERS_OFFSET + (long) i * LINE;
+            if (UNSAFE.getLongVolatile(null, consumerAddress + CONSUMER_STATE) == ACTIVE &&
+                UNSAFE.getLongVolatile(null, consumerAddress + CONSUMER_SEQUENCE) < wrapPoint &&
+                isStale(UNSAFE.getLongVolatile(null, consumerAddress + CONSUMER_HEARTBEAT), now))
+            {
+                throw new DeadPeerException("Consumer " + i + " has stopped heart beating", i);
+            }
+        }
+    }
+
+    private boolean isStale(final long heartbeat, final long now)
+    {
+        return peerTimeoutMillis != 0 && now - heartbeat > peerTimeoutMillis;
+    }
+
+    private void setAvailable(final long sequence)
+    {
+        final long flagAddress = availableAddress + ((int) sequence & indexMask) * 4L;
+        UNSAFE.putOrderedInt(null, flagAddress, (int) (sequence >>> indexShift));
+    }
+
+    private long getHighestPublishedSequence(final long lowerBound, final long availableSequence)
+    {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++)
+        {
+            if (!isAvailable(sequence))
+            {
+                return sequence - 1;
+            }
+        }
+
+        return availableSequence;
+    }
+
+    private long consumerAddress(final int consumerIndex)
+    {
+        if (consumerIndex < 0 || consumerIndex >= maxConsumers)
+        {
+            throw new IllegalArgumentException("consumerIndex must be between 0 and " + (maxConsumers - 1));
+        }
+
+        return address + CONSUMERS_OFFSET + (long) consumerIndex * LINE;
+    }
+
+    private static void checkHeader(
+        final int capacity, final int bufferSize, final int slotSize, final int maxConsumers, final long peerTimeoutMillis)
+    {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1 ||
+            slotSize < 1 || (slotSize & 7) != 0 ||
+            maxConsumers < 1 || peerTimeoutMillis < 0)
+        {
+            throw new IllegalStateException(
+                "Corrupt shared ring buffer header: bufferSize=" + bufferSize + ", slotSize=" + slotSize +
+                ", maxConsumers=" + maxConsumers + ", peerTimeoutMillis=" + peerTimeoutMillis);
+        }
+
+        final long slotsOffset = (CONSUMERS_OFFSET + (long) maxConsumers * LINE + bufferSize * 4L + LINE - 1) & -LINE;
+        final long length = slotsOffset + (long) bufferSize * slotSize;
+        if (capacity < length)
+        {
+            throw new IllegalStateException("Shared ring buffer needs " + length + " bytes, file has " + capacity);
+        }
+    }
+
+    private static int availableOffset(final int maxConsumers)
+    {
+        return CONSUMERS_OFFSET + maxConsumers * LINE;
+    }
+
+    private static int slotsOffset(final int bufferSize, final int maxConsumers)
+    {
+        return (availableOffset(maxConsumers) + bufferSize * 4 + LINE - 1) & -LINE;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SharedRingBuffer{" +
+            "bufferSize=" + bufferSize +
+            ", slotSize=" + slotSize +
+            ", maxConsumers=" + maxConsumers +
+            ", peerTimeoutMillis=" + peerTimeoutMillis +
+            ", cursor=" + getCursor() +
+            '}';
+    }
+
+    /**
+     * Consumer attached to a {@link SharedRingBuffer}, the shared memory counterpart of
+     * {@link com.lmax.disruptor.EventPoller}.  Not thread safe.
+     */
+    public final class Poller
+    {
+        private final int consumerIndex;
+        private final long sequenceAddress;
+        private final long heartbeatAddress;
+        private final long stateAddress;
+        private long stalledSince;
+
+        private Poller(final int consumerIndex, final long consumerAddress)
+        {
+            this.consumerIndex = consumerIndex;
+            this.sequenceAddress = consumerAddress + CONSUMER_SEQUENCE;
+            this.heartbeatAddress = consumerAddress + CONSUMER_HEARTBEAT;
+            this.stateAddress = consumerAddress + CONSUMER_STATE;
+        }
+
+        /**
+         * Process the available events, heart beating as a side effect.
+         *
+         * @param handler for the events.
+         * @return {@link PollState#PROCESSING} if events were handled, otherwise {@link PollState#IDLE}.
+         * @throws Exception         thrown by the handler.
+         * @throws DeadPeerException if the next sequence has been claimed but not published within the peer timeout.
+         */
+        public PollState poll(final Handler handler) throws Exception
+        {
+            final long now = System.currentTimeMillis();
+            UNSAFE.putOrderedLong(null, heartbeatAddress, now);
+
+            final long currentSequence = UNSAFE.getLongVolatile(null, sequenceAddress);
+            long nextSequence = currentSequence + 1;
+            final long cursor = getCursor();
+            final long availableSequence =
+                nextSequence <= cursor ? getHighestPublishedSequence(nextSequence, cursor) : currentSequence;
+
+            if (nextSequence > availableSequence)
+            {
+                checkStalled(nextSequence <= cursor, nextSequence, now);
+                return PollState.IDLE;
+            }
+
+            stalledSince = 0;
+            long processedSequence = currentSequence;
+            try
+            {
+                boolean processNextEvent;
+                do
+                {
+                    processNextEvent = handler.onEvent(slot(nextSequence), nextSequence, nextSequence == availableSequence);
+                    processedSequence = nextSequence;
+                    nextSequence++;
+                }
+                while (nextSequence <= availableSequence && processNextEvent);
+            }
+            finally
+            {
+                UNSAFE.putOrderedLong(null, sequenceAddress, processedSequence);
+            }
+
+            return PollState.PROCESSING;
+        }
+
+        private void checkStalled(final boolean claimed, final long sequence, final long now)
+        {
+            if (!claimed || peerTimeoutMillis == 0)
+            {
+                stalledSince = 0;
+            }
+            else if (stalledSince == 0)
+            {
+                stalledSince = now;
+            }
+            else if (now - stalledSince > peerTimeoutMillis)
+            {
+                throw new DeadPeerException("Sequence " + sequence + " was claimed but never published", -1);
+            }
+        }
+
+        /**
+         * @return the last sequence processed by this consumer.
+         */
+        public long getSequence()
+        {
+            return UNSAFE.getLongVolatile(null, sequenceAddress);
+        }
+
+        public int getConsumerIndex()
+        {
+            return consumerIndex;
+        }
+
+        /**
+         * Detach the consumer so producers stop gating on it.
+         */
+        public void close()
+        {
+            UNSAFE.putLongVolatile(null, stateAddress, FREE);
+        }
+    }
+}
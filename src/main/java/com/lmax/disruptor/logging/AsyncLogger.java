@@ -0,0 +1,239 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.IgnoreExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+/**
+ * <p>Asynchronous record logger: publishing threads copy the record into a preallocated {@link LogEvent}
+ * and a single background {@link com.lmax.disruptor.BatchEventProcessor} writes batches of records to a
+ * {@link FileChannel} through a {@link FileChannelLogEventHandler}.</p>
+ *
+ * <p>Records are published with {@link RingBuffer#tryPublishEvent(EventTranslatorTwoArg, Object, Object)}; only
+ * when the ring buffer is full is the configured {@link QueueFullPolicy} applied.  The steady state path does not
+ * allocate.</p>
+ *
+ * <p>Failures writing to the channel are reported through an {@link IgnoreExceptionHandler} rather than halting
+ * the writer, as a halted writer would stall every publisher once the ring buffer filled.</p>
+ *
+ * <pre>
+ * AsyncLogger logger = new AsyncLogger(channel, 64 * 1024, DaemonThreadFactory.INSTANCE);
+ * logger.start();
+ * logger.log(LogLevel.INFO, "started");
+ * ...
+ * logger.shutdown(1, TimeUnit.SECONDS);
+ * </pre>
+ */
+public final class AsyncLogger
+{
+    private static final long DRAIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final EventTranslatorTwoArg<LogEvent, LogLevel, CharSequence> TRANSLATOR =
+        new EventTranslatorTwoArg<LogEvent, LogLevel, CharSequence>()
+        {
+            @Override
+            public void translateTo(
+                final LogEvent event, final long sequence, final LogLevel level, final CharSequence message)
+            {
+                event.setValues(level, System.currentTimeMillis(), message);
+            }
+        };
+
+    private final Disruptor<LogEvent> disruptor;
+    private final RingBuffer<LogEvent> ringBuffer;
+    private final FileChannelLogEventHandler handler;
+    private final QueueFullPolicy queueFullPolicy;
+    private final LogLevel discardThreshold;
+    private final AtomicLong discardedCount = new AtomicLong();
+    private final AtomicLong synchronousCount = new AtomicLong();
+
+    /**
+     * Create a logger with the full option set.
+     *
+     * @param handler          writing the records, it is registered as the only consumer of the ring buffer.
+     * @param ringBufferSize   number of preallocated records, must be a power of 2.
+     * @param threadFactory    to create the background writer thread.
+     * @param waitStrategy     used by the background writer while the ring buffer is empty.
+     * @param queueFullPolicy  applied when a record can not be queued.
+     * @param discardThreshold records below this level are dropped under {@link QueueFullPolicy#DISCARD_BELOW_LEVEL}.
+     */
+    public AsyncLogger(
+        final FileChannelLogEventHandler handler,
+        final int ringBufferSize,
+        final ThreadFactory threadFactory,
+        final WaitStrategy waitStrategy,
+        final QueueFullPolicy queueFullPolicy,
+        final LogLevel discardThreshold)
+    {
+        this.handler = handler;
+        this.queueFullPolicy = queueFullPolicy;
+        this.discardThreshold = discardThreshold;
+
+        disruptor = new Disruptor<>(LogEvent.FACTORY, ringBufferSize, threadFactory, ProducerType.MULTI, waitStrategy);
+        disruptor.setDefaultExceptionHandler(new IgnoreExceptionHandler());
+        disruptor.handleEventsWith(handler);
+        ringBuffer = disruptor.getRingBuffer();
+    }
+
+    /**
+     * Create a logger writing to <code>channel</code> that blocks publishers while the ring buffer is full.
+     *
+     * @param channel        to write records to.
+     * @param ringBufferSize number of preallocated records, must be a power of 2.
+     * @param threadFactory  to create the background writer thread.
+     */
+    public AsyncLogger(final FileChannel channel, final int ringBufferSize, final ThreadFactory threadFactory)
+    {
+        this(
+            new FileChannelLogEventHandler(channel), ringBufferSize, threadFactory,
+            new BlockingWaitStrategy(), QueueFullPolicy.BLOCK, LogLevel.TRACE);
+    }
+
+    /**
+     * Start the background writer.  Records logged before this call are queued, subject to the
+     * {@link QueueFullPolicy}.
+     */
+    public void start()
+    {
+        disruptor.start();
+    }
+
+    /**
+     * Queue a record for writing.  The message is copied before this method returns.
+     *
+     * @param level   of the record.
+     * @param message of the record.
+     */
+    public void log(final LogLevel level, final CharSequence message)
+    {
+        if (!ringBuffer.tryPublishEvent(TRANSLATOR, level, message))
+        {
+            handleQueueFull(level, message);
+        }
+    }
+
+    private void handleQueueFull(final LogLevel level, final CharSequence message)
+    {
+        switch (queueFullPolicy)
+        {
+            case DISCARD_BELOW_LEVEL:
+                if (level.isLessSevereThan(discardThreshold))
+                {
+                    discardedCount.incrementAndGet();
+                    return;
+                }
+                ringBuffer.publishEvent(TRANSLATOR, level, message);
+                break;
+            case SYNCHRONOUS:
+                writeDirect(level, message);
+                break;
+            case BLOCK:
+            default:
+                ringBuffer.publishEvent(TRANSLATOR, level, message);
+                break;
+        }
+    }
+
+    private void writeDirect(final LogLevel level, final CharSequence message)
+    {
+        try
+        {
+            handler.writeDirect(level, System.currentTimeMillis(), message);
+            synchronousCount.incrementAndGet();
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Wait for queued records to be written and stop the background writer.  Publishing must have stopped
+     * before calling this method.  If the records are not written within the timeout the writer is halted
+     * and the remaining records are lost.
+     *
+     * @param timeout  how long to wait for the queued records to drain, <code>-1</code> waits indefinitely.
+     * @param timeUnit of the timeout.
+     * @return true if all queued records were written.
+     */
+    public boolean shutdown(final long timeout, final TimeUnit timeUnit)
+    {
+        // 不用Disruptor.shutdown：它只检查已经在运行的消费者，刚start的写线程可能还没跑起来就被halt
+        final long timeOutAt = System.nanoTime() + timeUnit.toNanos(timeout);
+        boolean drained = true;
+        while (ringBuffer.getCursor() > disruptor.getSequenceValueFor(handler))
+        {
+            if (timeout >= 0 && System.nanoTime() - timeOutAt > 0)
+            {
+                drained = false;
+                break;
+            }
+            LockSupport.parkNanos(DRAIN_PARK_NANOS);
+        }
+
+        disruptor.halt();
+        return drained;
+    }
+
+    /**
+     * @return the number of records dropped under {@link QueueFullPolicy#DISCARD_BELOW_LEVEL}.
+     */
+    public long getDiscardedCount()
+    {
+        return discardedCount.get();
+    }
+
+    /**
+     * @return the number of records written on the publishing thread under {@link QueueFullPolicy#SYNCHRONOUS}.
+     */
+    public long getSynchronousCount()
+    {
+        return synchronousCount.get();
+    }
+
+    /**
+     * @return the ring buffer the records are queued on, useful for monitoring remaining capacity.
+     */
+    public RingBuffer<LogEvent> getRingBuffer()
+    {
+        return ringBuffer;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AsyncLogger{" +
+            "queueFullPolicy=" + queueFullPolicy +
+            ", discardThreshold=" + discardThreshold +
+            ", discardedCount=" + discardedCount +
+            ", synchronousCount=" + synchronousCount +
+            ", disruptor=" + disruptor +
+            '}';
+    }
+}
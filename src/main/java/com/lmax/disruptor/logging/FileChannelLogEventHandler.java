@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.LifecycleAware;
+
+/**
+ * {@link EventHandler} that batches {@link LogEvent}s into a direct buffer and writes them to a
+ * {@link FileChannel} once per batch, i.e. when <code>endOfBatch</code> is true or the buffer fills.
+ * <p>
+ * It also supports writing a record directly from a publishing thread, which {@link AsyncLogger} uses for
+ * {@link QueueFullPolicy#SYNCHRONOUS}.  Direct writes use their own buffer and share a lock with the batch
+ * writes, so the two never interleave within a record.
+ */
+public final class FileChannelLogEventHandler implements EventHandler<LogEvent>, LifecycleAware
+{
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Object writeLock = new Object();
+    private final FileChannel channel;
+    private final boolean forceOnShutdown;
+    private final LogEventEncoder batchEncoder;
+    private final LogEventEncoder directEncoder;
+    private final LogEvent directEvent = new LogEvent();
+
+    /**
+     * @param channel         to write records to.
+     * @param bufferSize      in bytes of the buffer used to batch writes, must be at least 256.
+     * @param forceOnShutdown whether to {@link FileChannel#force(boolean)} the content when the processor stops.
+     */
+    public FileChannelLogEventHandler(final FileChannel channel, final int bufferSize, final boolean forceOnShutdown)
+    {
+        this.channel = channel;
+        this.forceOnShutdown = forceOnShutdown;
+        this.batchEncoder = new LogEventEncoder(channel, writeLock, bufferSize);
+        this.directEncoder = new LogEventEncoder(channel, writeLock, bufferSize);
+    }
+
+    public FileChannelLogEventHandler(final FileChannel channel)
+    {
+        this(channel, DEFAULT_BUFFER_SIZE, false);
+    }
+
+    @Override
+    public void onEvent(final LogEvent event, final long sequence, final boolean endOfBatch) throws Exception
+    {
+        try
+        {
+            batchEncoder.encode(event);
+        }
+        finally
+        {
+            event.clear();
+        }
+
+        if (endOfBatch)
+        {
+            batchEncoder.flush();
+        }
+    }
+
+    /**
+     * Encode and write a record on the calling thread, without going through the ring buffer.
+     *
+     * @param level     of the record.
+     * @param timestamp of the record in milliseconds.
+     * @param message   of the record.
+     * @throws IOException if the record could not be written.
+     */
+    public void writeDirect(final LogLevel level, final long timestamp, final CharSequence message) throws IOException
+    {
+        synchronized (directEvent)
+        {
+            directEvent.setValues(level, timestamp, message);
+            try
+            {
+                directEncoder.encode(directEvent);
+                directEncoder.flush();
+            }
+            finally
+            {
+                directEvent.clear();
+            }
+        }
+    }
+
+    @Override
+    public void onStart()
+    {
+    }
+
+    @Override
+    public void onShutdown()
+    {
+        try
+        {
+            batchEncoder.flush();
+            if (forceOnShutdown)
+            {
+                channel.force(false);
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import com.lmax.disruptor.EventFactory;
+
+/**
+ * Preallocated log record held in each slot of the ring buffer.  The message is copied into a
+ * {@link StringBuilder} owned by the event, so publishing a record does not allocate once the
+ * builder has grown to the typical message size.
+ */
+public final class LogEvent
+{
+    static final int INITIAL_MESSAGE_SIZE = 128;
+
+    /**
+     * Builders that have grown beyond this are trimmed back when the event is cleared so that one very
+     * large message does not pin memory in every slot it passes through.  It is the capacity a builder
+     * reaches after growing twice from {@link #INITIAL_MESSAGE_SIZE}, as {@link StringBuilder} grows to
+     * <code>2 * capacity + 2</code>, so messages up to about four times the typical size are reused as is.
+     */
+    static final int MAX_REUSABLE_MESSAGE_SIZE = 2 * (2 * INITIAL_MESSAGE_SIZE + 2) + 2;
+
+    public static final EventFactory<LogEvent> FACTORY = new EventFactory<LogEvent>()
+    {
+        @Override
+        public LogEvent newInstance()
+        {
+            return new LogEvent();
+        }
+    };
+
+    private final StringBuilder message = new StringBuilder(INITIAL_MESSAGE_SIZE);
+    private LogLevel level;
+    private long timestamp;
+
+    public void setValues(final LogLevel level, final long timestamp, final CharSequence message)
+    {
+        this.level = level;
+        this.timestamp = timestamp;
+        this.message.setLength(0);
+        this.message.append(message);
+    }
+
+    public LogLevel getLevel()
+    {
+        return level;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public StringBuilder getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Release the message content once the record has been written.
+     */
+    public void clear()
+    {
+        if (message.capacity() > MAX_REUSABLE_MESSAGE_SIZE)
+        {
+            message.setLength(MAX_REUSABLE_MESSAGE_SIZE);
+            message.trimToSize();
+        }
+        message.setLength(0);
+        level = null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LogEvent{" +
+            "level=" + level +
+            ", timestamp=" + timestamp +
+            ", message=" + message +
+            '}';
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes {@link LogEvent}s as UTF-8 lines into a reusable direct buffer and writes the buffer to a
+ * {@link FileChannel} when asked to flush or when a record does not fit.  Not thread safe, each writing thread
+ * needs its own encoder.  Writes to the channel are serialised on the supplied lock, which is held for the whole
+ * of a record too large for the buffer, so encoders sharing a channel never interleave within a record.
+ */
+final class LogEventEncoder
+{
+    private static final int MIN_BUFFER_SIZE = 256;
+    private static final int HEADER_SPACE = 32;
+    private static final int CHUNK_SIZE = 256;
+
+    private final FileChannel channel;
+    private final Object writeLock;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final char[] chunk = new char[CHUNK_SIZE];
+    private final CharBuffer chars = CharBuffer.wrap(chunk);
+    private final byte[] digits = new byte[20];
+
+    LogEventEncoder(final FileChannel channel, final Object writeLock, final int bufferSize)
+    {
+        if (bufferSize < MIN_BUFFER_SIZE)
+        {
+            throw new IllegalArgumentException("bufferSize must not be less than " + MIN_BUFFER_SIZE);
+        }
+
+        this.channel = channel;
+        this.writeLock = writeLock;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Append a record as <code>timestamp LEVEL message\n</code>.  A record that does not fit in what is left of
+     * the buffer is written out in pieces while holding the write lock, so no other encoder's write can land
+     * inside it.
+     *
+     * @param event the record to encode.
+     * @throws IOException if the buffer filled and could not be written out.
+     */
+    void encode(final LogEvent event) throws IOException
+    {
+        final int recordStart = buffer.position();
+        if (!putRecord(event, false))
+        {
+            // 放不下：丢弃已写入的部分，先写出之前的记录；空缓冲区仍放不下时持锁分段写出这一条
+            buffer.position(recordStart);
+            flush();
+            if (!putRecord(event, false))
+            {
+                buffer.clear();
+                synchronized (writeLock)
+                {
+                    putRecord(event, true);
+                    write();
+                }
+            }
+        }
+    }
+
+    void flush() throws IOException
+    {
+        synchronized (writeLock)
+        {
+            write();
+        }
+    }
+
+    /**
+     * Write the buffer to the channel, the caller holds the write lock.
+     */
+    private void write() throws IOException
+    {
+        buffer.flip();
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+        finally
+        {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * @param spill whether to write out the buffer when it fills, only with the write lock held and the buffer
+     *              empty at the start of the record.
+     * @return false if the record did not fit and spill was false, leaving part of it in the buffer.
+     */
+    private boolean putRecord(final LogEvent event, final boolean spill) throws IOException
+    {
+        if (buffer.remaining() < HEADER_SPACE)
+        {
+            return false;
+        }
+
+        putLong(event.getTimestamp());
+        buffer.put((byte) ' ');
+        buffer.put(event.getLevel().encodedName());
+        buffer.put((byte) ' ');
+        boolean fits = putMessage(event.getMessage(), spill);
+
+        if (fits && !buffer.hasRemaining())
+        {
+            if (spill)
+            {
+                write();
+            }
+            else
+            {
+                fits = false;
+            }
+        }
+        if (fits)
+        {
+            buffer.put((byte) '\n');
+        }
+        return fits;
+    }
+
+    private boolean putMessage(final StringBuilder message, final boolean spill) throws IOException
+    {
+        final int length = message.length();
+        int offset = 0;
+
+        encoder.reset();
+        chars.clear();
+        while (true)
+        {
+            // 分块拷贝到复用的char数组，跨块的代理对会被compact保留到下一块
+            final int count = Math.min(length - offset, chars.remaining());
+            message.getChars(offset, offset + count, chunk, chars.position());
+            chars.position(chars.position() + count);
+            offset += count;
+
+            chars.flip();
+            final boolean endOfInput = offset == length;
+            CoderResult result = encoder.encode(chars, buffer, endOfInput);
+            while (result.isOverflow())
+            {
+                if (!spill)
+                {
+                    return false;
+                }
+                write();
+                result = encoder.encode(chars, buffer, endOfInput);
+            }
+            chars.compact();
+
+            if (endOfInput)
+            {
+                break;
+            }
+        }
+
+        while (encoder.flush(buffer).isOverflow())
+        {
+            if (!spill)
+            {
+                return false;
+            }
+            write();
+        }
+        return true;
+    }
+
+    private void putLong(long value)
+    {
+        if (value < 0)
+        {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+
+        int position = digits.length;
+        do
+        {
+            digits[--position] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        while (value != 0);
+
+        buffer.put(digits, position, digits.length - position);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Severity of a {@link LogEvent}, ordered from least to most severe.
+ */
+public enum LogLevel
+{
+    TRACE, DEBUG, INFO, WARN, ERROR;
+
+    // 预先编码好的级别名称，写文件时直接拷贝，避免每条记录都去编码
+    private final byte[] encodedName = name().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Check if this level is less severe than the supplied level.
+     *
+     * @param level to compare against.
+     * @return true if this level is strictly below <code>level</code>.
+     */
+    public boolean isLessSevereThan(final LogLevel level)
+    {
+        return ordinal() < level.ordinal();
+    }
+
+    byte[] encodedName()
+    {
+        return encodedName;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+/**
+ * What an {@link AsyncLogger} does with a record when the ring buffer has no free slot.
+ */
+public enum QueueFullPolicy
+{
+    /**
+     * Wait for the background writer to free a slot.
+     */
+    BLOCK,
+
+    /**
+     * Drop records below the configured threshold level, wait for a slot for the rest.
+     */
+    DISCARD_BELOW_LEVEL,
+
+    /**
+     * Write the record on the calling thread, bypassing the ring buffer.  Records written this way
+     * may appear ahead of earlier records that are still queued.
+     */
+    SYNCHRONOUS
+}
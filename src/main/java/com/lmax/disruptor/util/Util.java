@@ -20,6 +20,8 @@ import com.lmax.disruptor.Sequence;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedExceptionAction;
 
@@ -140,6 +142,47 @@ public final class Util
         return r;
     }
 
+    /**
+     * Get the native address of the first byte of a direct buffer.
+     *
+     * @param buffer a direct or mapped buffer.
+     * @return the address of the buffer's memory.
+     * @throws IllegalArgumentException if the buffer is not direct.
+     */
+    public static long getAddressFromDirectByteBuffer(ByteBuffer buffer)
+    {
+        if (!buffer.isDirect())
+        {
+            throw new IllegalArgumentException("Buffer is not direct: " + buffer);
+        }
+        return THE_UNSAFE.getLong(buffer, BufferAddress.OFFSET);
+    }
+
+    /**
+     * Allocate a direct buffer whose first byte is aligned to a boundary, e.g. a cache line, which
+     * {@link ByteBuffer#allocateDirect(int)} does not guarantee.
+     *
+     * @param capacity  of the returned buffer in bytes.
+     * @param alignment a power of 2, the boundary to align to.
+     * @return a direct buffer of the capacity starting on the boundary, in big endian order.
+     * @throws IllegalArgumentException if alignment is not a power of 2.
+     */
+    public static ByteBuffer allocateDirectAligned(int capacity, int alignment)
+    {
+        if (alignment < 1 || Integer.bitCount(alignment) != 1)
+        {
+            throw new IllegalArgumentException("alignment must be a power of 2");
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(capacity + alignment - 1);
+        final long address = getAddressFromDirectByteBuffer(buffer);
+        final int offset = (int) (-address & (alignment - 1));
+
+        buffer.position(offset);
+        buffer.limit(offset + capacity);
+        return buffer.slice();
+    }
+
     public static long awaitNanos(Object mutex, long timeoutNanos) throws InterruptedException
     {
         long millis = timeoutNanos / 1_000_000;
@@ -151,4 +194,22 @@ public final class Util
 
         return timeoutNanos - (t1 - t0);
     }
+
+    // 单独的holder类，只有用到直接缓冲区地址时才查找字段，找不到时也不影响Util的其它功能
+    private static final class BufferAddress
+    {
+        private static final long OFFSET;
+
+        static
+        {
+            try
+            {
+                OFFSET = THE_UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            }
+            catch (NoSuchFieldException e)
+            {
+                throw new RuntimeException("Unable to find direct buffer address", e);
+            }
+        }
+    }
 }
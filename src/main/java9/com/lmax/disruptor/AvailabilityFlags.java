@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Java 9+ version of the class, packaged under <code>META-INF/versions/9</code>: the availability flags are written
+ * with release and read with acquire semantics through a {@link VarHandle} instead of <code>sun.misc.Unsafe</code>.
+ */
+final class AvailabilityFlags
+{
+    private static final VarHandle AVAILABLE_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private AvailabilityFlags()
+    {
+    }
+
+    static void set(final int[] availableBuffer, final int index, final int flag)
+    {
+        // release写，等价于putOrderedInt
+        AVAILABLE_ARRAY.setRelease(availableBuffer, index, flag);
+    }
+
+    static boolean isSet(final int[] availableBuffer, final int index, final int flag)
+    {
+        // acquire读即可与发布方的release写配对，不需要完整的volatile读
+        return (int) AVAILABLE_ARRAY.getAcquire(availableBuffer, index) == flag;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.columnar;
+
+import static com.lmax.disruptor.support.PerfTestUtil.failIfNot;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.lmax.disruptor.BatchEventHandler;
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.DataProvider;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequenced;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.codec.ColumnarRingBuffer;
+import com.lmax.disruptor.dsl.ProducerType;
+
+/**
+ * <pre>
+ *
+ * Compare a ColumnarRingBuffer of the eight field Order with a RingBuffer of Order objects, for handlers that read
+ * two of the fields (price * quantity).
+ *
+ * scan:     single thread, repeated passes over every slot of a 1M slot ring buffer.  The object ring buffer brings
+ *           whole events through the cache, the columnar one only the price and quantity columns.
+ *
+ * pipeline: 1 publisher writing all eight fields, 1 event processor with a BatchEventHandler summing the two.
+ *
+ * +----+    +-----+
+ * | P1 |--->| EP1 |
+ * +----+    +-----+
+ *
+ * Objects:  RB[i] -> | header | id | timestamp | accountId | price | quantity | ... |   (anywhere on the heap)
+ * Columnar: price[]    | p0 | p1 | p2 | ... |
+ *           quantity[] | q0 | q1 | q2 | ... |
+ *
+ * P1  - Publisher 1
+ * EP1 - EventProcessor 1
+ *
+ * </pre>
+ */
+public final class ColumnarScanThroughputTest
+{
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+    private static final int SCAN_PASSES = 50;
+    private static final int PIPELINE_BUFFER_SIZE = 1 << 16;
+    private static final long PIPELINE_ITERATIONS = 1000L * 1000L * 20L;
+    private static final int RUNS = 5;
+
+    private static double scanObjects(final RingBuffer<Order> ringBuffer)
+    {
+        double sum = 0;
+        for (int i = 0; i < SCAN_BUFFER_SIZE; i++)
+        {
+            final Order order = ringBuffer.get(i);
+            sum += order.getPrice() * order.getQuantity();
+        }
+        return sum;
+    }
+
+    private static double scanColumns(final OrderColumns orders)
+    {
+        final double[] price = orders.priceColumn();
+        final int[] quantity = orders.quantityColumn();
+        double sum = 0;
+        for (int i = 0; i < SCAN_BUFFER_SIZE; i++)
+        {
+            sum += price[i] * quantity[i];
+        }
+        return sum;
+    }
+
+    private static void scan() throws Exception
+    {
+        final RingBuffer<Order> objects = RingBuffer.createSingleProducer(Order.EVENT_FACTORY, SCAN_BUFFER_SIZE);
+        final OrderColumns columns = new OrderColumns(
+            ColumnarRingBuffer.create(OrderColumns.SCHEMA, ProducerType.SINGLE, SCAN_BUFFER_SIZE, new SleepingWaitStrategy()));
+        final Order order = new Order();
+        for (int i = 0; i < SCAN_BUFFER_SIZE; i++)
+        {
+            objects.get(i).set(i, i * 0.25, i & 127);
+            order.set(i, i * 0.25, i & 127);
+            columns.copyFrom(i, order);
+        }
+
+        for (int run = 0; run < RUNS; run++)
+        {
+            double objectSum = 0;
+            long start = System.nanoTime();
+            for (int pass = 0; pass < SCAN_PASSES; pass++)
+            {
+                objectSum += scanObjects(objects);
+            }
+            final long objectNanos = System.nanoTime() - start;
+
+            double columnSum = 0;
+            start = System.nanoTime();
+            for (int pass = 0; pass < SCAN_PASSES; pass++)
+            {
+                columnSum += scanColumns(columns);
+            }
+            final long columnNanos = System.nanoTime() - start;
+
+            if (objectSum != columnSum)
+            {
+                throw new IllegalStateException(objectSum + " != " + columnSum);
+            }
+            System.out.format(
+                "Run %d, scan     objects=%,d events/sec  columnar=%,d events/sec%n",
+                run, eventsPerSecond(SCAN_PASSES * (long) SCAN_BUFFER_SIZE, objectNanos),
+                eventsPerSecond(SCAN_PASSES * (long) SCAN_BUFFER_SIZE, columnNanos));
+        }
+    }
+
+    private static long pipelineObjects() throws Exception
+    {
+        final RingBuffer<Order> ringBuffer = RingBuffer.createSingleProducer(
+            Order.EVENT_FACTORY, PIPELINE_BUFFER_SIZE, new SleepingWaitStrategy());
+        final ObjectSummingHandler handler = new ObjectSummingHandler();
+        final BatchEventProcessor<Order> processor =
+            new BatchEventProcessor<>(ringBuffer, ringBuffer.newBarrier(), handler);
+        ringBuffer.addGatingSequences(processor.getSequence());
+
+        return runPipeline(processor, handler.latch, ringBuffer, new Publisher()
+        {
+            @Override
+            public void publish(final long sequence, final long i)
+            {
+                ringBuffer.get(sequence).set(i, i * 0.25, (int) i & 127);
+            }
+        }, handler);
+    }
+
+    private static long pipelineColumns() throws Exception
+    {
+        final ColumnarRingBuffer ringBuffer = ColumnarRingBuffer.create(
+            OrderColumns.SCHEMA, ProducerType.SINGLE, PIPELINE_BUFFER_SIZE, new SleepingWaitStrategy());
+        final OrderColumns orders = new OrderColumns(ringBuffer);
+        final ColumnSummingHandler handler = new ColumnSummingHandler(orders);
+        final BatchEventProcessor<ColumnarRingBuffer> processor =
+            new BatchEventProcessor<>(ringBuffer, ringBuffer.newBarrier(), handler);
+        ringBuffer.addGatingSequences(processor.getSequence());
+        final Order order = new Order();
+
+        return runPipeline(processor, handler.latch, ringBuffer, new Publisher()
+        {
+            @Override
+            public void publish(final long sequence, final long i)
+            {
+                order.set(i, i * 0.25, (int) i & 127);
+                orders.copyFrom(sequence, order);
+            }
+        }, handler);
+    }
+
+    private static long runPipeline(
+        final BatchEventProcessor<?> processor,
+        final CountDownLatch latch,
+        final Sequenced ringBuffer,
+        final Publisher publisher,
+        final SummingHandler handler) throws Exception
+    {
+        final Thread thread = new Thread(processor);
+        thread.setDaemon(true);
+        thread.start();
+
+        final long start = System.nanoTime();
+        for (long i = 0; i < PIPELINE_ITERATIONS; i++)
+        {
+            final long sequence = ringBuffer.next();
+            publisher.publish(sequence, i);
+            ringBuffer.publish(sequence);
+        }
+        latch.await();
+        final long nanos = System.nanoTime() - start;
+        processor.halt();
+        thread.join();
+
+        long expected = 0;
+        for (long i = 0; i < PIPELINE_ITERATIONS; i++)
+        {
+            expected += (long) (i * 0.25 * ((int) i & 127));
+        }
+        failIfNot(expected, handler.getSum());
+
+        return eventsPerSecond(PIPELINE_ITERATIONS, nanos);
+    }
+
+    private static long eventsPerSecond(final long events, final long nanos)
+    {
+        return events * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private interface Publisher
+    {
+        void publish(long sequence, long i);
+    }
+
+    private abstract static class SummingHandler
+    {
+        protected final CountDownLatch latch = new CountDownLatch(1);
+        protected long sum;
+
+        long getSum()
+        {
+            return sum;
+        }
+
+        protected void checkDone(final long hi)
+        {
+            if (hi == PIPELINE_ITERATIONS - 1)
+            {
+                latch.countDown();
+            }
+        }
+    }
+
+    private static final class ObjectSummingHandler extends SummingHandler
+        implements EventHandler<Order>, BatchEventHandler<Order>
+    {
+        @Override
+        public void onEvent(final Order event, final long sequence, final boolean endOfBatch)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onBatch(final DataProvider<? extends Order> dataProvider, final long lo, final long hi)
+        {
+            for (long sequence = lo; sequence <= hi; sequence++)
+            {
+                final Order order = dataProvider.get(sequence);
+                sum += (long) (order.getPrice() * order.getQuantity());
+            }
+            checkDone(hi);
+        }
+
+        @Override
+        public int getMaxBatchSize()
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private static final class ColumnSummingHandler extends SummingHandler
+        implements EventHandler<ColumnarRingBuffer>, BatchEventHandler<ColumnarRingBuffer>
+    {
+        private final double[] price;
+        private final int[] quantity;
+        private final int indexMask;
+
+        private ColumnSummingHandler(final OrderColumns orders)
+        {
+            this.price = orders.priceColumn();
+            this.quantity = orders.quantityColumn();
+            this.indexMask = orders.ringBuffer().getBufferSize() - 1;
+        }
+
+        @Override
+        public void onEvent(final ColumnarRingBuffer event, final long sequence, final boolean endOfBatch)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onBatch(final DataProvider<? extends ColumnarRingBuffer> dataProvider, final long lo, final long hi)
+        {
+            for (long sequence = lo; sequence <= hi; sequence++)
+            {
+                final int index = (int) sequence & indexMask;
+                sum += (long) (price[index] * quantity[index]);
+            }
+            checkDone(hi);
+        }
+
+        @Override
+        public int getMaxBatchSize()
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        System.out.println("Order: 8 fields, handlers read price and quantity");
+        scan();
+        for (int run = 0; run < RUNS; run++)
+        {
+            System.out.format(
+                "Run %d, pipeline objects=%,d events/sec  columnar=%,d events/sec%n",
+                run, pipelineObjects(), pipelineColumns());
+        }
+    }
+}
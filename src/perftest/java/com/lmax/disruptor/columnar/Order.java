@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.columnar;
+
+import com.lmax.disruptor.EventFactory;
+
+/**
+ * Eight field event, the source of the schema of {@link OrderColumns} and the event of the object slot ring buffer
+ * it is compared with.  The scans read only price and quantity.
+ */
+public final class Order
+{
+    public static final EventFactory<Order> EVENT_FACTORY = new EventFactory<Order>()
+    {
+        @Override
+        public Order newInstance()
+        {
+            return new Order();
+        }
+    };
+
+    private long id;
+    private long timestamp;
+    private long accountId;
+    private double price;
+    private int quantity;
+    private int instrumentId;
+    private short venue;
+    private byte side;
+
+    public void set(final long id, final double price, final int quantity)
+    {
+        this.id = id;
+        this.timestamp = id << 10;
+        this.accountId = id & 1023;
+        this.price = price;
+        this.quantity = quantity;
+        this.instrumentId = (int) id & 63;
+        this.venue = (short) (id & 7);
+        this.side = (byte) (id & 1);
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public long getAccountId()
+    {
+        return accountId;
+    }
+
+    public double getPrice()
+    {
+        return price;
+    }
+
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public int getInstrumentId()
+    {
+        return instrumentId;
+    }
+
+    public short getVenue()
+    {
+        return venue;
+    }
+
+    public byte getSide()
+    {
+        return side;
+    }
+}
@@ -0,0 +1,192 @@
+/* Generated by com.lmax.disruptor.codec.FlyweightGenerator, do not edit. */
+package com.lmax.disruptor.columnar;
+
+import com.lmax.disruptor.codec.ColumnarRingBuffer;
+import com.lmax.disruptor.codec.FieldType;
+import com.lmax.disruptor.codec.Schema;
+
+public final class OrderColumns
+{
+    public static final Schema SCHEMA = Schema.builder("Order")
+            .add("accountId", FieldType.LONG)
+            .add("id", FieldType.LONG)
+            .add("price", FieldType.DOUBLE)
+            .add("timestamp", FieldType.LONG)
+            .add("instrumentId", FieldType.INT)
+            .add("quantity", FieldType.INT)
+            .add("venue", FieldType.SHORT)
+            .add("side", FieldType.BYTE)
+            .build();
+
+    private final ColumnarRingBuffer ringBuffer;
+    private final int indexMask;
+    private final long[] accountIdColumn;
+    private final long[] idColumn;
+    private final double[] priceColumn;
+    private final long[] timestampColumn;
+    private final int[] instrumentIdColumn;
+    private final int[] quantityColumn;
+    private final short[] venueColumn;
+    private final byte[] sideColumn;
+
+    public OrderColumns(final ColumnarRingBuffer ringBuffer)
+    {
+        this.ringBuffer = ringBuffer;
+        this.indexMask = ringBuffer.getBufferSize() - 1;
+        this.accountIdColumn = ringBuffer.longColumn("accountId");
+        this.idColumn = ringBuffer.longColumn("id");
+        this.priceColumn = ringBuffer.doubleColumn("price");
+        this.timestampColumn = ringBuffer.longColumn("timestamp");
+        this.instrumentIdColumn = ringBuffer.intColumn("instrumentId");
+        this.quantityColumn = ringBuffer.intColumn("quantity");
+        this.venueColumn = ringBuffer.shortColumn("venue");
+        this.sideColumn = ringBuffer.byteColumn("side");
+    }
+
+    public ColumnarRingBuffer ringBuffer()
+    {
+        return ringBuffer;
+    }
+
+    public long getAccountId(final long sequence)
+    {
+        return accountIdColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setAccountId(final long sequence, final long value)
+    {
+        accountIdColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public long[] accountIdColumn()
+    {
+        return accountIdColumn;
+    }
+
+    public long getId(final long sequence)
+    {
+        return idColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setId(final long sequence, final long value)
+    {
+        idColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public long[] idColumn()
+    {
+        return idColumn;
+    }
+
+    public double getPrice(final long sequence)
+    {
+        return priceColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setPrice(final long sequence, final double value)
+    {
+        priceColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public double[] priceColumn()
+    {
+        return priceColumn;
+    }
+
+    public long getTimestamp(final long sequence)
+    {
+        return timestampColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setTimestamp(final long sequence, final long value)
+    {
+        timestampColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public long[] timestampColumn()
+    {
+        return timestampColumn;
+    }
+
+    public int getInstrumentId(final long sequence)
+    {
+        return instrumentIdColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setInstrumentId(final long sequence, final int value)
+    {
+        instrumentIdColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public int[] instrumentIdColumn()
+    {
+        return instrumentIdColumn;
+    }
+
+    public int getQuantity(final long sequence)
+    {
+        return quantityColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setQuantity(final long sequence, final int value)
+    {
+        quantityColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public int[] quantityColumn()
+    {
+        return quantityColumn;
+    }
+
+    public short getVenue(final long sequence)
+    {
+        return venueColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setVenue(final long sequence, final short value)
+    {
+        venueColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public short[] venueColumn()
+    {
+        return venueColumn;
+    }
+
+    public byte getSide(final long sequence)
+    {
+        return sideColumn[(int) sequence & indexMask];
+    }
+
+    public OrderColumns setSide(final long sequence, final byte value)
+    {
+        sideColumn[(int) sequence & indexMask] = value;
+        return this;
+    }
+
+    public byte[] sideColumn()
+    {
+        return sideColumn;
+    }
+
+    public OrderColumns copyFrom(final long sequence, final com.lmax.disruptor.columnar.Order source)
+    {
+        final int index = (int) sequence & indexMask;
+        accountIdColumn[index] = source.getAccountId();
+        idColumn[index] = source.getId();
+        priceColumn[index] = source.getPrice();
+        timestampColumn[index] = source.getTimestamp();
+        instrumentIdColumn[index] = source.getInstrumentId();
+        quantityColumn[index] = source.getQuantity();
+        venueColumn[index] = source.getVenue();
+        sideColumn[index] = source.getSide();
+        return this;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.ipc;
+
+import com.lmax.disruptor.AbstractPerfTestDisruptor;
+import com.lmax.disruptor.EventPoller.PollState;
+import com.lmax.disruptor.PerfTestContext;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import com.lmax.disruptor.util.PaddedLong;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <pre>
+ * UniCast a series of items between 1 publisher and 1 event processor through a memory-mapped file.
+ * The publisher and the poller use separate mappings of the file, as two processes would.
+ *
+ * +----+    +---------------------+    +-----+
+ * | P1 |--->| /dev/shm mapped file|<---| EP1 |
+ * +----+    +---------------------+    +-----+
+ *
+ * P1  - Publisher 1
+ * EP1 - EventProcessor 1, polling a SharedRingBuffer.Poller
+ * </pre>
+ */
+public final class OneToOneSharedRingBufferThroughputTest extends AbstractPerfTestDisruptor
+{
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final int SLOT_SIZE = 64;
+    private static final long ITERATIONS = 1000L * 1000L * 10L;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(DaemonThreadFactory.INSTANCE);
+    private final Path file;
+    private final SharedRingBuffer producer;
+    private final SharedRingBuffer consumer;
+
+    public OneToOneSharedRingBufferThroughputTest() throws Exception
+    {
+        final File shm = new File("/dev/shm");
+        file = shm.isDirectory() ?
+            Files.createTempFile(shm.toPath(), "perf-ring", ".dat") :
+            Files.createTempFile("perf-ring", ".dat");
+        file.toFile().deleteOnExit();
+
+        producer = SharedRingBuffer.create(file, BUFFER_SIZE, SLOT_SIZE, 1, 0);
+        consumer = SharedRingBuffer.open(file);
+    }
+
+    @Override
+    protected int getRequiredProcessorCount()
+    {
+        return 2;
+    }
+
+    @Override
+    protected PerfTestContext runDisruptorPass() throws Exception
+    {
+        final PerfTestContext perfTestContext = new PerfTestContext();
+        final SharedRingBuffer.Poller poller = consumer.newPoller(0);
+        final long expectedSequence = poller.getSequence() + ITERATIONS;
+        final SummingHandler handler = new SummingHandler();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while (poller.getSequence() < expectedSequence)
+                    {
+                        if (poller.poll(handler) == PollState.IDLE)
+                        {
+                            Thread.yield();
+                        }
+                    }
+                }
+                catch (final Exception e)
+                {
+                    throw new RuntimeException(e);
+                }
+                finally
+                {
+                    latch.countDown();
+                }
+            }
+        });
+
+        final long start = System.currentTimeMillis();
+        final SharedRingBuffer rb = producer;
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            final long sequence = rb.next();
+            rb.slot(sequence).putLong(i);
+            rb.publish(sequence);
+        }
+
+        latch.await();
+        perfTestContext.setDisruptorOps((ITERATIONS * 1000L) / (System.currentTimeMillis() - start));
+        perfTestContext.setBatchData(handler.batches.get(), ITERATIONS);
+        poller.close();
+
+        return perfTestContext;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new OneToOneSharedRingBufferThroughputTest().testImplementations();
+    }
+
+    private static final class SummingHandler implements SharedRingBuffer.Handler
+    {
+        private final PaddedLong total = new PaddedLong();
+        private final PaddedLong batches = new PaddedLong();
+
+        @Override
+        public boolean onEvent(final ByteBuffer slot, final long sequence, final boolean endOfBatch)
+        {
+            total.set(total.get() + slot.getLong(slot.position()));
+            if (endOfBatch)
+            {
+                batches.increment();
+            }
+            return true;
+        }
+    }
+}
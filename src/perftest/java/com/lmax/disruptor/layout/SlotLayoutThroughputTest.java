@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.layout;
+
+import static com.lmax.disruptor.support.PerfTestUtil.failIfNot;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.lmax.disruptor.AbstractPerfTestDisruptor;
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.PerfTestContext;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.SlotAllocation;
+import com.lmax.disruptor.SlotLayout;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.Operation;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.support.ValueMutationEventHandler;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ *
+ * Small (one long) events between 1 publisher and 1 or 3 event processors, run with each {@link SlotLayout}.
+ * With {@link SlotLayout#COMPACT} several events share a cache line, so the publisher writing slot N + 1
+ * invalidates the line the event processors are reading slot N from.
+ *
+ *           +-----+
+ *    +----->| EP1 |
+ *    |      +-----+
+ *    |
+ * +----+    +-----+
+ * | P1 |--->| EP2 |   (1P3C only)
+ * +----+    +-----+
+ *    |
+ *    |      +-----+
+ *    +----->| EP3 |   (1P3C only)
+ *           +-----+
+ *
+ * Heap layout of the events:
+ *
+ * COMPACT:  | E0 | E1 | E2 | E3 | E4 | ...        four events per 64 byte line
+ * PADDED:   | E0 | filler     | E1 | filler     | ...  128 bytes between events
+ *
+ * P1  - Publisher 1
+ * EP1 - EventProcessor 1
+ * EP2 - EventProcessor 2
+ * EP3 - EventProcessor 3
+ *
+ * </pre>
+ */
+public final class SlotLayoutThroughputTest extends AbstractPerfTestDisruptor
+{
+    private static final int BUFFER_SIZE = 1024 * 8;
+    private static final long ITERATIONS = 1000L * 1000L * 100L;
+    private static final Operation[] OPERATIONS = {Operation.ADDITION, Operation.SUBTRACTION, Operation.AND};
+
+    private final int numEventProcessors;
+    private final ExecutorService executor;
+    private final long[] results;
+    private final RingBuffer<ValueEvent> ringBuffer;
+    private final ValueMutationEventHandler[] handlers;
+    private final BatchEventProcessor<?>[] batchEventProcessors;
+
+    public SlotLayoutThroughputTest(final SlotLayout slotLayout, final int numEventProcessors)
+    {
+        this.numEventProcessors = numEventProcessors;
+        this.executor = Executors.newFixedThreadPool(numEventProcessors, DaemonThreadFactory.INSTANCE);
+        this.results = new long[numEventProcessors];
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            for (int p = 0; p < numEventProcessors; p++)
+            {
+                results[p] = OPERATIONS[p].op(results[p], i);
+            }
+        }
+
+        this.ringBuffer = RingBuffer.create(
+            ProducerType.SINGLE, ValueEvent.EVENT_FACTORY, BUFFER_SIZE, new YieldingWaitStrategy(),
+            SlotAllocation.EAGER, slotLayout);
+        final SequenceBarrier sequenceBarrier = ringBuffer.newBarrier();
+
+        this.handlers = new ValueMutationEventHandler[numEventProcessors];
+        this.batchEventProcessors = new BatchEventProcessor[numEventProcessors];
+        for (int p = 0; p < numEventProcessors; p++)
+        {
+            handlers[p] = new ValueMutationEventHandler(OPERATIONS[p]);
+            batchEventProcessors[p] = new BatchEventProcessor<ValueEvent>(ringBuffer, sequenceBarrier, handlers[p]);
+            ringBuffer.addGatingSequences(batchEventProcessors[p].getSequence());
+        }
+    }
+
+    @Override
+    protected int getRequiredProcessorCount()
+    {
+        return numEventProcessors + 1;
+    }
+
+    @Override
+    protected PerfTestContext runDisruptorPass() throws InterruptedException
+    {
+        PerfTestContext perfTestContext = new PerfTestContext();
+        CountDownLatch latch = new CountDownLatch(numEventProcessors);
+        for (int i = 0; i < numEventProcessors; i++)
+        {
+            handlers[i].reset(latch, batchEventProcessors[i].getSequence().get() + ITERATIONS);
+            executor.submit(batchEventProcessors[i]);
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setValue(i);
+            ringBuffer.publish(sequence);
+        }
+
+        latch.await();
+        perfTestContext.setDisruptorOps((ITERATIONS * 1000L) / (System.currentTimeMillis() - start));
+        long batches = 0;
+        for (int i = 0; i < numEventProcessors; i++)
+        {
+            batchEventProcessors[i].halt();
+            failIfNot(results[i], handlers[i].getValue());
+            batches += handlers[i].getBatchesProcessed();
+        }
+        perfTestContext.setBatchData(batches, ITERATIONS * numEventProcessors);
+
+        return perfTestContext;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        for (final int numEventProcessors : new int[]{1, 3})
+        {
+            for (final SlotLayout slotLayout : SlotLayout.values())
+            {
+                System.out.println("1P" + numEventProcessors + "C " + slotLayout);
+                new SlotLayoutThroughputTest(slotLayout, numEventProcessors).testImplementations();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.lmax.disruptor.AbstractPerfTestDisruptor;
+import com.lmax.disruptor.PerfTestContext;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ * Three publishers logging through an {@link AsyncLogger} to a file, compare with
+ * {@link BlockingQueueLoggerThroughputTest}.
+ *
+ * +----+
+ * | P1 |------+
+ * +----+      |
+ *             v
+ * +----+    +====+    +-----+    +------+
+ * | P2 |--->| RB |--->| EP1 |--->| file |
+ * +----+    +====+    +-----+    +------+
+ *             ^
+ * +----+      |
+ * | P3 |------+
+ * +----+
+ *
+ * EP1 - FileChannelLogEventHandler, writes once per batch
+ * </pre>
+ */
+public final class AsyncLoggerThroughputTest extends AbstractPerfTestDisruptor
+{
+    static final int NUM_PUBLISHERS = 3;
+    static final int BUFFER_SIZE = 1024 * 64;
+    static final long ITERATIONS = 1000L * 1000L * 10L;
+    static final String MESSAGE = "order accepted: instrument=EURUSD side=BUY quantity=1000000 price=1.1234";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(NUM_PUBLISHERS, DaemonThreadFactory.INSTANCE);
+    private final CyclicBarrier cyclicBarrier = new CyclicBarrier(NUM_PUBLISHERS + 1);
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected int getRequiredProcessorCount()
+    {
+        return 4;
+    }
+
+    @Override
+    protected PerfTestContext runDisruptorPass() throws Exception
+    {
+        PerfTestContext perfTestContext = new PerfTestContext();
+        final File file = File.createTempFile("async-logger-perf", ".log");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            final AsyncLogger logger = new AsyncLogger(
+                new FileChannelLogEventHandler(channel), BUFFER_SIZE, DaemonThreadFactory.INSTANCE,
+                new YieldingWaitStrategy(), QueueFullPolicy.BLOCK, LogLevel.TRACE);
+            logger.start();
+
+            Future<?>[] futures = new Future[NUM_PUBLISHERS];
+            for (int i = 0; i < NUM_PUBLISHERS; i++)
+            {
+                futures[i] = executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            cyclicBarrier.await();
+                            for (long i = 0, n = ITERATIONS / NUM_PUBLISHERS; i < n; i++)
+                            {
+                                logger.log(LogLevel.INFO, MESSAGE);
+                            }
+                        }
+                        catch (Exception ex)
+                        {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                });
+            }
+
+            long start = System.currentTimeMillis();
+            cyclicBarrier.await();
+
+            for (int i = 0; i < NUM_PUBLISHERS; i++)
+            {
+                futures[i].get();
+            }
+            logger.shutdown(-1, TimeUnit.MILLISECONDS);
+
+            perfTestContext.setDisruptorOps((ITERATIONS * 1000L) / (System.currentTimeMillis() - start));
+        }
+        finally
+        {
+            file.delete();
+        }
+
+        return perfTestContext;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new AsyncLoggerThroughputTest().testImplementations();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import static com.lmax.disruptor.logging.AsyncLoggerThroughputTest.BUFFER_SIZE;
+import static com.lmax.disruptor.logging.AsyncLoggerThroughputTest.ITERATIONS;
+import static com.lmax.disruptor.logging.AsyncLoggerThroughputTest.MESSAGE;
+import static com.lmax.disruptor.logging.AsyncLoggerThroughputTest.NUM_PUBLISHERS;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.lmax.disruptor.AbstractPerfTestQueue;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ * The same workload as {@link AsyncLoggerThroughputTest} through an {@link ArrayBlockingQueue}, the way a
+ * conventional async appender is built: a record object is allocated per message and the writer thread
+ * drains the queue, writing to the file each time it empties.  Uses the same encoder as the Disruptor logger so
+ * only the hand-off differs.
+ * </pre>
+ */
+public final class BlockingQueueLoggerThroughputTest extends AbstractPerfTestQueue
+{
+    private final ExecutorService executor =
+        Executors.newFixedThreadPool(NUM_PUBLISHERS + 1, DaemonThreadFactory.INSTANCE);
+    private final CyclicBarrier cyclicBarrier = new CyclicBarrier(NUM_PUBLISHERS + 1);
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected int getRequiredProcessorCount()
+    {
+        return 4;
+    }
+
+    @Override
+    protected long runQueuePass() throws Exception
+    {
+        final BlockingQueue<LogEvent> queue = new ArrayBlockingQueue<LogEvent>(BUFFER_SIZE);
+        final File file = File.createTempFile("queue-logger-perf", ".log");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            final LogEventEncoder encoder =
+                new LogEventEncoder(channel, new Object(), FileChannelLogEventHandler.DEFAULT_BUFFER_SIZE);
+
+            Future<?> writer = executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        final List<LogEvent> batch = new ArrayList<LogEvent>(BUFFER_SIZE);
+                        final long expected = (ITERATIONS / NUM_PUBLISHERS) * NUM_PUBLISHERS;
+                        long written = 0;
+                        while (written < expected)
+                        {
+                            batch.add(queue.take());
+                            queue.drainTo(batch);
+                            for (int i = 0, size = batch.size(); i < size; i++)
+                            {
+                                encoder.encode(batch.get(i));
+                            }
+                            encoder.flush();
+                            written += batch.size();
+                            batch.clear();
+                        }
+                    }
+                    catch (Exception ex)
+                    {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+
+            Future<?>[] futures = new Future[NUM_PUBLISHERS];
+            for (int i = 0; i < NUM_PUBLISHERS; i++)
+            {
+                futures[i] = executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            cyclicBarrier.await();
+                            for (long i = 0, n = ITERATIONS / NUM_PUBLISHERS; i < n; i++)
+                            {
+                                final LogEvent event = new LogEvent();
+                                event.setValues(LogLevel.INFO, System.currentTimeMillis(), MESSAGE);
+                                queue.put(event);
+                            }
+                        }
+                        catch (Exception ex)
+                        {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                });
+            }
+
+            long start = System.currentTimeMillis();
+            cyclicBarrier.await();
+
+            for (int i = 0; i < NUM_PUBLISHERS; i++)
+            {
+                futures[i].get();
+            }
+            writer.get();
+
+            return (ITERATIONS * 1000L) / (System.currentTimeMillis() - start);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new BlockingQueueLoggerThroughputTest().testImplementations();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.raw;
+
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.MultiProducerSequencer;
+import com.lmax.disruptor.PackedMultiProducerSequencer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.Sequencer;
+
+/**
+ * <pre>
+ * Cost of marking a batch published and of the consumer confirming it, per event, for the availability tracking
+ * of {@link MultiProducerSequencer} (one int flag per slot) against {@link PackedMultiProducerSequencer}
+ * (one bit per slot, scanned a word at a time).
+ *
+ * +----+  next(n)    +====+  getHighestPublishedSequence(lo, hi)   +-----+
+ * | P1 |------------>| SQ |<---------------------------------------| EP1 |
+ * +----+  publish    +====+                                        +-----+
+ *        (lo, hi)
+ *
+ * P1  - Publisher 1
+ * SQ  - Sequencer
+ * EP1 - EventProcessor 1, run on the publishing thread so only the availability structure is measured
+ *
+ * Swept over batch sizes 1 to 4096.
+ * </pre>
+ */
+public final class MultiProducerAvailabilityScanTest
+{
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final long EVENTS = 1000L * 1000L * 100L;
+    private static final int RUNS = 5;
+    private static final int[] BATCH_SIZES = {1, 4, 16, 64, 256, 1024, 4096};
+
+    private static long run(final Sequencer sequencer, final Sequence gatingSequence, final int batchSize)
+    {
+        final long iterations = EVENTS / batchSize;
+        long confirmed = 0;
+
+        final long start = System.nanoTime();
+        for (long i = 0; i < iterations; i++)
+        {
+            final long hi = sequencer.next(batchSize);
+            final long lo = hi - (batchSize - 1);
+            sequencer.publish(lo, hi);
+
+            final long available = sequencer.getHighestPublishedSequence(lo, hi);
+            confirmed += available - lo + 1;
+            gatingSequence.set(available);
+        }
+        final long duration = System.nanoTime() - start;
+
+        if (confirmed != iterations * batchSize)
+        {
+            throw new IllegalStateException("Confirmed " + confirmed + " of " + (iterations * batchSize));
+        }
+
+        return (confirmed * 1000L * 1000L * 1000L) / duration;
+    }
+
+    private static long bestOf(final boolean packed, final int batchSize)
+    {
+        long best = 0;
+        for (int i = 0; i < RUNS; i++)
+        {
+            final Sequencer sequencer = packed ?
+                new PackedMultiProducerSequencer(BUFFER_SIZE, new BusySpinWaitStrategy()) :
+                new MultiProducerSequencer(BUFFER_SIZE, new BusySpinWaitStrategy());
+            final Sequence gatingSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+            sequencer.addGatingSequences(gatingSequence);
+
+            best = Math.max(best, run(sequencer, gatingSequence, batchSize));
+        }
+
+        return best;
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.format("%10s %20s %20s%n", "batch", "int flags ops/sec", "packed bits ops/sec");
+        for (final int batchSize : BATCH_SIZES)
+        {
+            final long flags = bestOf(false, batchSize);
+            final long packed = bestOf(true, batchSize);
+            System.out.format("%10d %,20d %,20d%n", batchSize, flags, packed);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.raw;
+
+import java.lang.reflect.Field;
+
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.MultiProducerSequencer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.Sequencer;
+
+/**
+ * <pre>
+ * Cost per operation of the memory accesses on the hot paths of {@link Sequence} and {@link MultiProducerSequencer},
+ * to compare the sun.misc.Unsafe implementation (Java 8) with the VarHandle one a multi-release jar selects on
+ * Java 9+:
+ *
+ *   java -cp disruptor.jar:disruptor-perf.jar ...        (picks META-INF/versions/9 on Java 9+)
+ *   java -cp build/classes/java/main:...                 (Unsafe version on any JVM)
+ *
+ * get/set        - acquire read + release write of a sequence, e.g. an event processor's progress
+ * addAndGet      - atomic add, CAS loop with Unsafe, single getAndAdd with VarHandle
+ * compareAndSet  - successful CAS, as on MultiProducerSequencer.next()
+ * publish/scan   - release write then acquire read of the availability flag of each slot
+ *
+ * On x86 acquire and release are plain moves either way, the barrier savings only show on weakly ordered
+ * hardware, e.g. aarch64 or POWER.
+ * </pre>
+ */
+public final class SequenceAccessTest
+{
+    private static final long ITERATIONS = 1000L * 1000L * 100L;
+    private static final int RUNS = 5;
+
+    private static double getSet(final Sequence sequence)
+    {
+        final long start = System.nanoTime();
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            sequence.set(sequence.get() + 1);
+        }
+        return perOperation(start);
+    }
+
+    private static double addAndGet(final Sequence sequence)
+    {
+        final long start = System.nanoTime();
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            sequence.addAndGet(1);
+        }
+        return perOperation(start);
+    }
+
+    private static double compareAndSet(final Sequence sequence)
+    {
+        final long start = System.nanoTime();
+        long value = sequence.get();
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            sequence.compareAndSet(value, value + 1);
+            value++;
+        }
+        return perOperation(start);
+    }
+
+    private static double publishAndScan(final Sequencer sequencer, final Sequence gatingSequence)
+    {
+        final int batchSize = 64;
+        final long start = System.nanoTime();
+        for (long i = 0; i < ITERATIONS / batchSize; i++)
+        {
+            final long hi = sequencer.next(batchSize);
+            final long lo = hi - (batchSize - 1);
+            sequencer.publish(lo, hi);
+            final long available = sequencer.getHighestPublishedSequence(lo, hi);
+            gatingSequence.set(available);
+        }
+        return perOperation(start);
+    }
+
+    private static double perOperation(final long start)
+    {
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.println("Sequence implementation: " + (hasVarHandleField() ? "VarHandle" : "Unsafe") +
+            ", java.version=" + System.getProperty("java.version") + ", os.arch=" + System.getProperty("os.arch"));
+
+        final Sequence sequence = new Sequence();
+        final MultiProducerSequencer sequencer = new MultiProducerSequencer(1024 * 64, new BusySpinWaitStrategy());
+        final Sequence gatingSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        sequencer.addGatingSequences(gatingSequence);
+
+        System.out.format("%6s %14s %14s %14s %14s%n", "run", "get/set ns", "addAndGet ns", "CAS ns", "publish/scan ns");
+        for (int run = 0; run < RUNS; run++)
+        {
+            System.out.format(
+                "%6d %14.2f %14.2f %14.2f %14.2f%n",
+                run, getSet(sequence), addAndGet(sequence), compareAndSet(sequence),
+                publishAndScan(sequencer, gatingSequence));
+        }
+    }
+
+    private static boolean hasVarHandleField()
+    {
+        for (final Field field : Sequence.class.getDeclaredFields())
+        {
+            if ("java.lang.invoke.VarHandle".equals(field.getType().getName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.sequenced;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventProcessor;
+import com.lmax.disruptor.EventProcessorScheduler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ *
+ * Many small ring buffers, one per session, each with a single consumer, fed round robin by one publisher.
+ *
+ * threads:   one BatchEventProcessor per ring buffer, each on its own thread, BlockingWaitStrategy.
+ * scheduled: one ScheduledEventProcessor per ring buffer, all on an EventProcessorScheduler with 2 threads.
+ *
+ *            +-----+    +-----+
+ *       +--->| RB1 |--->| EP1 |---+
+ *       |    +-----+    +-----+   |
+ * +----+|      ...        ...     |  threads:   64 threads
+ * | P1 |+                         +
+ * +----+|    +-----+    +-----+   |  scheduled: 2 threads
+ *       +--->| RB64|--->| EP64|---+
+ *            +-----+    +-----+
+ *
+ * P1  - Publisher 1
+ * RB  - RingBuffer per session
+ * EP  - EventProcessor per session
+ *
+ * </pre>
+ */
+public final class ManyRingsScheduledThroughputTest
+{
+    private static final int RING_COUNT = 64;
+    private static final int BUFFER_SIZE = 256;
+    private static final long ITERATIONS = 1000L * 1000L * 4L;
+    private static final int RUNS = 5;
+
+    private static long run(final boolean scheduled) throws Exception
+    {
+        final EventProcessorScheduler scheduler = new EventProcessorScheduler(DaemonThreadFactory.INSTANCE, 2);
+        final CountDownLatch latch = new CountDownLatch(RING_COUNT);
+        final long perRing = ITERATIONS / RING_COUNT;
+        @SuppressWarnings("unchecked")
+        final RingBuffer<ValueEvent>[] ringBuffers = new RingBuffer[RING_COUNT];
+        final EventProcessor[] processors = new EventProcessor[RING_COUNT];
+
+        for (int i = 0; i < RING_COUNT; i++)
+        {
+            final RingBuffer<ValueEvent> ringBuffer =
+                RingBuffer.createSingleProducer(ValueEvent.EVENT_FACTORY, BUFFER_SIZE, new BlockingWaitStrategy());
+            final CountingHandler handler = new CountingHandler(latch, perRing - 1);
+            processors[i] = scheduled ?
+                scheduler.newProcessor(ringBuffer, ringBuffer.newBarrier(), handler) :
+                new BatchEventProcessor<>(ringBuffer, ringBuffer.newBarrier(), handler);
+            ringBuffer.addGatingSequences(processors[i].getSequence());
+            ringBuffers[i] = ringBuffer;
+        }
+
+        if (scheduled)
+        {
+            scheduler.start();
+        }
+        for (final EventProcessor processor : processors)
+        {
+            if (scheduled)
+            {
+                processor.run();
+            }
+            else
+            {
+                DaemonThreadFactory.INSTANCE.newThread(processor).start();
+            }
+        }
+
+        final long start = System.nanoTime();
+        for (long n = 0; n < perRing; n++)
+        {
+            for (final RingBuffer<ValueEvent> ringBuffer : ringBuffers)
+            {
+                final long sequence = ringBuffer.next();
+                ringBuffer.get(sequence).setValue(n);
+                ringBuffer.publish(sequence);
+            }
+        }
+        latch.await();
+        final long nanos = System.nanoTime() - start;
+
+        for (final EventProcessor processor : processors)
+        {
+            processor.halt();
+        }
+        scheduler.halt();
+
+        return perRing * RING_COUNT * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private static final class CountingHandler implements EventHandler<ValueEvent>
+    {
+        private final CountDownLatch latch;
+        private final long lastSequence;
+
+        private CountingHandler(final CountDownLatch latch, final long lastSequence)
+        {
+            this.latch = latch;
+            this.lastSequence = lastSequence;
+        }
+
+        @Override
+        public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch)
+        {
+            if (sequence == lastSequence)
+            {
+                latch.countDown();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        System.out.format("%d ring buffers, %d events%n", RING_COUNT, ITERATIONS);
+        for (int i = 0; i < RUNS; i++)
+        {
+            System.out.format(
+                "Run %d, threads=%,d ops/sec scheduled=%,d ops/sec%n",
+                i, run(false), run(true));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.sequenced;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.FlatCombiningPublisher;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ *
+ * Many publishers publishing single events to one event processor, at 8, 16, 32 and 64 publishers.
+ *
+ * cas:       multi producer ring buffer, each publisher claims with the CAS loop in MultiProducerSequencer.next().
+ * combining: single producer ring buffer, all publishers publish through one FlatCombiningPublisher.
+ *
+ * +----+
+ * | P1 |------+
+ * +----+      |
+ *   ..        v
+ * +----+    +-----+
+ * | Pn |--->| EP1 |
+ * +----+    +-----+
+ *
+ * P1..Pn - Publishers
+ * EP1    - EventProcessor 1
+ *
+ * </pre>
+ */
+public final class ManyToOneFlatCombiningThroughputTest
+{
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final long ITERATIONS = 1000L * 1000L * 8L;
+    private static final int[] PUBLISHER_COUNTS = {8, 16, 32, 64};
+    private static final int RUNS = 3;
+
+    private static final EventTranslatorOneArg<ValueEvent, Object> TRANSLATOR = new EventTranslatorOneArg<ValueEvent, Object>()
+    {
+        @Override
+        public void translateTo(final ValueEvent event, final long sequence, final Object arg0)
+        {
+            event.setValue(sequence);
+        }
+    };
+
+    private static long run(final int publisherCount, final boolean combining) throws Exception
+    {
+        final RingBuffer<ValueEvent> ringBuffer = combining ?
+            RingBuffer.createSingleProducer(ValueEvent.EVENT_FACTORY, BUFFER_SIZE, new YieldingWaitStrategy()) :
+            RingBuffer.createMultiProducer(ValueEvent.EVENT_FACTORY, BUFFER_SIZE, new YieldingWaitStrategy());
+        final FlatCombiningPublisher<ValueEvent> publisher = ringBuffer.newFlatCombiningPublisher(publisherCount);
+        final long perPublisher = ITERATIONS / publisherCount;
+        final long lastSequence = perPublisher * publisherCount - 1;
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final BatchEventProcessor<ValueEvent> processor = new BatchEventProcessor<>(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<ValueEvent>()
+            {
+                @Override
+                public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    if (sequence == lastSequence)
+                    {
+                        latch.countDown();
+                    }
+                }
+            });
+        ringBuffer.addGatingSequences(processor.getSequence());
+        DaemonThreadFactory.INSTANCE.newThread(processor).start();
+
+        final CyclicBarrier barrier = new CyclicBarrier(publisherCount + 1);
+        for (int p = 0; p < publisherCount; p++)
+        {
+            DaemonThreadFactory.INSTANCE.newThread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        barrier.await();
+                    }
+                    catch (final Exception e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+
+                    for (long i = 0; i < perPublisher; i++)
+                    {
+                        if (combining)
+                        {
+                            publisher.publishEvent(TRANSLATOR, null);
+                        }
+                        else
+                        {
+                            ringBuffer.publishEvent(TRANSLATOR, null);
+                        }
+                    }
+                }
+            }).start();
+        }
+
+        barrier.await();
+        final long start = System.nanoTime();
+        latch.await();
+        final long opsPerSecond = (lastSequence + 1) * 1000000000L / (System.nanoTime() - start);
+        processor.halt();
+
+        return opsPerSecond;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        for (int i = 0; i < RUNS; i++)
+        {
+            for (final int publisherCount : PUBLISHER_COUNTS)
+            {
+                System.out.format(
+                    "Run %d, publishers=%d, cas=%,d ops/sec combining=%,d ops/sec%n",
+                    i, publisherCount, run(publisherCount, false), run(publisherCount, true));
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.sequenced;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.LiteBlockingWaitStrategy;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TargetedBlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ *
+ * Pipeline a series of stages from a publisher to five event processors at a low event rate, comparing blocking
+ * wait strategies by latency from publication to the last stage and by the CPU time all threads burn.
+ *
+ * +----+    +-----+    +-----+    +-----+    +-----+    +-----+
+ * | P1 |--->| EP1 |--->| EP2 |--->| EP3 |--->| EP4 |--->| EP5 |
+ * +----+    +-----+    +-----+    +-----+    +-----+    +-----+
+ *
+ * disruptor.handleEventsWith(EP1).then(EP2).then(EP3).then(EP4).then(EP5)
+ *
+ * BlockingWaitStrategy and LiteBlockingWaitStrategy wake all five stages on each publication and stages 2 to 5
+ * then spin until the stage before them has finished the event.  TargetedBlockingWaitStrategy wakes each stage
+ * once, when the stage before it finishes.
+ *
+ * P1  - Publisher 1, one event every PUBLISH_INTERVAL_NANOS
+ * EP1 - EventProcessor 1 ... EP5 - EventProcessor 5, each does a little work per event
+ *
+ * </pre>
+ */
+public final class OneToFiveStagePipelineWakeUpTest
+{
+    private static final int STAGES = 5;
+    private static final int BUFFER_SIZE = 1024;
+    private static final int EVENTS = 5000;
+    private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int RUNS = 3;
+
+    private static void run(final WaitStrategy waitStrategy) throws Exception
+    {
+        final Disruptor<ValueEvent> disruptor = new Disruptor<>(
+            ValueEvent.EVENT_FACTORY, BUFFER_SIZE, DaemonThreadFactory.INSTANCE, ProducerType.SINGLE, waitStrategy);
+        final long[] latencies = new long[EVENTS];
+        final CountDownLatch done = new CountDownLatch(1);
+
+        disruptor
+            .handleEventsWith(new StageHandler())
+            .then(new StageHandler())
+            .then(new StageHandler())
+            .then(new StageHandler())
+            .then(new EventHandler<ValueEvent>()
+            {
+                @Override
+                public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    latencies[(int) sequence] = System.nanoTime() - event.getValue();
+                    if (sequence == EVENTS - 1)
+                    {
+                        done.countDown();
+                    }
+                }
+            });
+        final RingBuffer<ValueEvent> ringBuffer = disruptor.start();
+
+        final long cpuBefore = totalCpuTime();
+        long nextPublish = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++)
+        {
+            while (System.nanoTime() < nextPublish)
+            {
+                LockSupport.parkNanos(nextPublish - System.nanoTime());
+            }
+            nextPublish += PUBLISH_INTERVAL_NANOS;
+
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setValue(System.nanoTime());
+            ringBuffer.publish(sequence);
+        }
+        done.await();
+        final long cpu = totalCpuTime() - cpuBefore;
+        disruptor.shutdown(5, TimeUnit.SECONDS);
+
+        Arrays.sort(latencies);
+        long sum = 0;
+        for (final long latency : latencies)
+        {
+            sum += latency;
+        }
+        System.out.format(
+            "%-32s mean=%,8d ns  p99=%,10d ns  max=%,12d ns  cpu=%,6d ms%n",
+            waitStrategy.getClass().getSimpleName(), sum / EVENTS, latencies[(int) (EVENTS * 0.99)],
+            latencies[EVENTS - 1], TimeUnit.NANOSECONDS.toMillis(cpu));
+    }
+
+    private static long totalCpuTime()
+    {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (final long id : threads.getAllThreadIds())
+        {
+            total += Math.max(0, threads.getThreadCpuTime(id));
+        }
+        return total;
+    }
+
+    private static final class StageHandler implements EventHandler<ValueEvent>
+    {
+        private long value;
+
+        @Override
+        public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch)
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                value += event.getValue() ^ i;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        System.out.println(
+            "1P" + STAGES + "-stage pipeline, " + EVENTS + " events, one every " +
+            TimeUnit.NANOSECONDS.toMicros(PUBLISH_INTERVAL_NANOS) + "us");
+        for (int i = 0; i < RUNS; i++)
+        {
+            run(new BlockingWaitStrategy());
+            run(new LiteBlockingWaitStrategy());
+            run(new TargetedBlockingWaitStrategy());
+        }
+    }
+}
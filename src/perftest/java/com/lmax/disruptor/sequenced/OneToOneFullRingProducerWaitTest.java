@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.sequenced;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lmax.disruptor.BlockingProducerWaitStrategy;
+import com.lmax.disruptor.BusySpinProducerWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.ParkingProducerWaitStrategy;
+import com.lmax.disruptor.ProducerWaitStrategy;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.YieldingProducerWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ *
+ * Publish as fast as possible to a small ring buffer whose consumer stalls periodically, comparing producer wait
+ * strategies by the CPU time the producer burns while the ring buffer is full and by how long each blocked claim
+ * takes after the consumer frees capacity.
+ *
+ * +----+    +-----+
+ * | P1 |--->| EP1 |
+ * +----+    +-----+
+ *
+ * EP1 pauses for STALL_NANOS every STALL_INTERVAL events, so P1 finds the ring buffer full once per stall.  The
+ * blocked time reported is summed over all claims by the sequencer; the overshoot is the part of it not explained
+ * by the stalls, i.e. how late the producer noticed the freed capacity.
+ *
+ * P1  - Publisher 1
+ * EP1 - EventProcessor 1
+ *
+ * </pre>
+ */
+public final class OneToOneFullRingProducerWaitTest
+{
+    private static final int BUFFER_SIZE = 256;
+    private static final int EVENTS = 200 * 1024;
+    private static final int STALL_INTERVAL = 1024;
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int RUNS = 3;
+
+    private static void run(final ProducerWaitStrategy producerWaitStrategy) throws Exception
+    {
+        final Disruptor<ValueEvent> disruptor = new Disruptor<>(
+            ValueEvent.EVENT_FACTORY, BUFFER_SIZE, DaemonThreadFactory.INSTANCE, ProducerType.SINGLE,
+            new SleepingWaitStrategy(), producerWaitStrategy);
+        final CountDownLatch done = new CountDownLatch(1);
+        disruptor.handleEventsWith(new EventHandler<ValueEvent>()
+        {
+            @Override
+            public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch)
+            {
+                if ((sequence + 1) % STALL_INTERVAL == 0)
+                {
+                    final long end = System.nanoTime() + STALL_NANOS;
+                    while (System.nanoTime() < end)
+                    {
+                        LockSupport.parkNanos(end - System.nanoTime());
+                    }
+                }
+                if (sequence == EVENTS - 1)
+                {
+                    done.countDown();
+                }
+            }
+        });
+        final RingBuffer<ValueEvent> ringBuffer = disruptor.start();
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long cpuBefore = threads.getCurrentThreadCpuTime();
+        final long start = System.nanoTime();
+        for (long i = 0; i < EVENTS; i++)
+        {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setValue(i);
+            ringBuffer.publish(sequence);
+        }
+        final long producerCpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+        done.await();
+        final long elapsed = System.nanoTime() - start;
+        disruptor.shutdown(5, TimeUnit.SECONDS);
+
+        final long blocked = ringBuffer.getProducerBlockedCount();
+        final long blockedNanos = ringBuffer.getProducerBlockedNanos();
+        final long stalls = EVENTS / STALL_INTERVAL;
+        System.out.format(
+            "%-32s elapsed=%,6d ms  producer cpu=%,6d ms  blocked claims=%,7d  blocked=%,6d ms  overshoot/stall=%,8d ns%n",
+            producerWaitStrategy.getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+            TimeUnit.NANOSECONDS.toMillis(producerCpu), blocked, TimeUnit.NANOSECONDS.toMillis(blockedNanos),
+            Math.max(0, blockedNanos - stalls * STALL_NANOS) / stalls);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        System.out.println(
+            "1P1C, " + EVENTS + " events, ring of " + BUFFER_SIZE + ", consumer stalls " +
+            TimeUnit.NANOSECONDS.toMicros(STALL_NANOS) + "us every " + STALL_INTERVAL + " events");
+        for (int i = 0; i < RUNS; i++)
+        {
+            run(new ParkingProducerWaitStrategy());
+            run(new ParkingProducerWaitStrategy(1000, TimeUnit.MICROSECONDS.toNanos(500)));
+            run(new YieldingProducerWaitStrategy());
+            run(new BusySpinProducerWaitStrategy());
+            run(new BlockingProducerWaitStrategy());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.sequenced;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.CoalescingPublisher;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ *
+ * Latency of bursts of single events from three publishers going to one event processor, from the time each event
+ * is handed to the publisher to the time the event processor sees it.  Each publisher publishes bursts of 8 events
+ * and then pauses.
+ *
+ * direct:     each event claimed and published with next()/publish().
+ * batch 8:    CoalescingPublisher with a batch size of the burst size, one claim per burst.
+ * linger:     CoalescingPublisher with a batch size of 64 and 10us linger time, flushed from the pause loop, so a
+ *             burst waits for the linger time and several bursts may share a claim.
+ *
+ * +----+
+ * | P1 |------+
+ * +----+      |
+ *             v
+ * +----+    +-----+
+ * | P2 |--->| EP1 |
+ * +----+    +-----+
+ *             ^
+ * +----+      |
+ * | P3 |------+
+ * +----+
+ *
+ * P1  - Publisher 1
+ * P2  - Publisher 2
+ * P3  - Publisher 3
+ * EP1 - EventProcessor 1, recording the latency of each event
+ *
+ * </pre>
+ */
+public final class ThreeToOneSequencedCoalescingLatencyTest
+{
+    private static final int NUM_PUBLISHERS = 3;
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final int BURST_SIZE = 8;
+    private static final int BURSTS = 20000;
+    private static final long PAUSE_NANOS = 20000;
+    private static final int RUNS = 3;
+
+    private static final int DIRECT = 0;
+    private static final int BATCH = 1;
+    private static final int LINGER = 2;
+
+    private static final EventTranslatorOneArg<ValueEvent, Long> TRANSLATOR = new EventTranslatorOneArg<ValueEvent, Long>()
+    {
+        @Override
+        public void translateTo(final ValueEvent event, final long sequence, final Long startNanos)
+        {
+            event.setValue(startNanos);
+        }
+    };
+
+    private static long[] run(final int mode) throws Exception
+    {
+        final int eventCount = NUM_PUBLISHERS * BURSTS * BURST_SIZE;
+        final RingBuffer<ValueEvent> ringBuffer =
+            RingBuffer.createMultiProducer(ValueEvent.EVENT_FACTORY, BUFFER_SIZE, new BusySpinWaitStrategy());
+        final long[] latencies = new long[eventCount];
+        final CountDownLatch latch = new CountDownLatch(1);
+        final BatchEventProcessor<ValueEvent> processor = new BatchEventProcessor<>(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<ValueEvent>()
+            {
+                @Override
+                public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    latencies[(int) sequence] = System.nanoTime() - event.getValue();
+                    if (sequence == eventCount - 1)
+                    {
+                        latch.countDown();
+                    }
+                }
+            });
+        ringBuffer.addGatingSequences(processor.getSequence());
+        DaemonThreadFactory.INSTANCE.newThread(processor).start();
+
+        final CyclicBarrier barrier = new CyclicBarrier(NUM_PUBLISHERS);
+        final Thread[] publishers = new Thread[NUM_PUBLISHERS];
+        for (int p = 0; p < NUM_PUBLISHERS; p++)
+        {
+            publishers[p] = DaemonThreadFactory.INSTANCE.newThread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        barrier.await();
+                        publish(ringBuffer, mode);
+                    }
+                    catch (final Exception e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            publishers[p].start();
+        }
+
+        latch.await();
+        processor.halt();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void publish(final RingBuffer<ValueEvent> ringBuffer, final int mode)
+    {
+        final CoalescingPublisher<ValueEvent> publisher = mode == LINGER ?
+            ringBuffer.newCoalescingPublisher(64, 10000) :
+            ringBuffer.newCoalescingPublisher(BURST_SIZE, Long.MAX_VALUE);
+
+        for (int burst = 0; burst < BURSTS; burst++)
+        {
+            for (int i = 0; i < BURST_SIZE; i++)
+            {
+                if (mode == DIRECT)
+                {
+                    ringBuffer.publishEvent(TRANSLATOR, System.nanoTime());
+                }
+                else
+                {
+                    publisher.publishEvent(TRANSLATOR, System.nanoTime());
+                }
+            }
+
+            final long pauseEnd = System.nanoTime() + PAUSE_NANOS;
+            while (System.nanoTime() < pauseEnd)
+            {
+                publisher.flushIfLingering();
+            }
+        }
+        publisher.flush();
+    }
+
+    private static void print(final String name, final long[] latencies)
+    {
+        long total = 0;
+        for (final long latency : latencies)
+        {
+            total += latency;
+        }
+        System.out.format(
+            "%-8s mean %7dns  50%% %7dns  99%% %7dns  99.9%% %8dns%n",
+            name,
+            total / latencies.length,
+            latencies[latencies.length / 2],
+            latencies[(int) (latencies.length * 0.99)],
+            latencies[(int) (latencies.length * 0.999)]);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        for (int i = 0; i < RUNS; i++)
+        {
+            print("direct", run(DIRECT));
+            print("batch 8", run(BATCH));
+            print("linger", run(LINGER));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.startup;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SlotAllocation;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.ValueEvent;
+
+/**
+ * <pre>
+ * Time to construct a RingBuffer of 1K to 64M slots with each {@link SlotAllocation}.
+ *
+ * EAGER     - every event created on the constructing thread
+ * PARALLEL  - every event created on the common fork join pool
+ * LAZY      - construction only, events are created on first access
+ * LAZY+OWN  - construction, then every event created by {@link RingBuffer#preallocate()} on the thread that will
+ *             use them, i.e. the total start up cost moved off the constructing thread
+ *
+ * Run with a heap large enough for the largest ring, e.g. -Xmx4g for 64M slots, or pass the largest
+ * size to run as the first argument.
+ * </pre>
+ */
+public final class RingBufferStartupTest
+{
+    private static final int MIN_SIZE = 1 << 10;
+    private static final int MAX_SIZE = 1 << 26;
+    private static final int RUNS = 3;
+
+    private static long timeConstruction(final int bufferSize, final SlotAllocation slotAllocation, final boolean own)
+        throws InterruptedException
+    {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++)
+        {
+            System.gc();
+
+            final long start = System.nanoTime();
+            final RingBuffer<ValueEvent> ringBuffer = RingBuffer.create(
+                ProducerType.SINGLE, ValueEvent.EVENT_FACTORY, bufferSize, new BlockingWaitStrategy(), slotAllocation);
+            if (own)
+            {
+                final Thread owner = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        ringBuffer.preallocate();
+                    }
+                });
+                owner.start();
+                owner.join();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+
+            if (ringBuffer.get(bufferSize - 1) == null)
+            {
+                throw new IllegalStateException("Slot not allocated");
+            }
+        }
+
+        return best;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : MAX_SIZE;
+
+        System.out.format("%12s %14s %14s %14s %14s%n", "slots", "EAGER ms", "PARALLEL ms", "LAZY ms", "LAZY+OWN ms");
+        for (int bufferSize = MIN_SIZE; bufferSize <= maxSize; bufferSize <<= 2)
+        {
+            final long eager = timeConstruction(bufferSize, SlotAllocation.EAGER, false);
+            final long parallel = timeConstruction(bufferSize, SlotAllocation.PARALLEL, false);
+            final long lazy = timeConstruction(bufferSize, SlotAllocation.LAZY, false);
+            final long owned = timeConstruction(bufferSize, SlotAllocation.LAZY, true);
+
+            System.out.format(
+                "%,12d %14.3f %14.3f %14.3f %14.3f%n",
+                bufferSize, eager / 1e6, parallel / 1e6, lazy / 1e6, owned / 1e6);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.support;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.lmax.disruptor.BatchEventHandler;
+import com.lmax.disruptor.BatchStartAware;
+import com.lmax.disruptor.DataProvider;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.util.PaddedLong;
+
+public final class ValueAdditionBatchEventHandler
+    implements EventHandler<ValueEvent>, BatchEventHandler<ValueEvent>, BatchStartAware
+{
+    private final PaddedLong value = new PaddedLong();
+    private final PaddedLong batchesProcessed = new PaddedLong();
+    private final int maxBatchSize;
+    private long count;
+    private CountDownLatch latch;
+
+    public ValueAdditionBatchEventHandler(final int maxBatchSize)
+    {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getValue()
+    {
+        return value.get();
+    }
+
+    public long getBatchesProcessed()
+    {
+        return batchesProcessed.get();
+    }
+
+    public void reset(final CountDownLatch latch, final long expectedCount)
+    {
+        value.set(0L);
+        this.latch = latch;
+        count = expectedCount;
+        batchesProcessed.set(0);
+    }
+
+    @Override
+    public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch) throws Exception
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void onBatch(final DataProvider<? extends ValueEvent> dataProvider, final long lo, final long hi)
+    {
+        long sum = value.get();
+        for (long sequence = lo; sequence <= hi; sequence++)
+        {
+            sum += dataProvider.get(sequence).getValue();
+        }
+        value.set(sum);
+
+        if (count >= lo && count <= hi)
+        {
+            latch.countDown();
+        }
+    }
+
+    @Override
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    @Override
+    public void onBatchStart(long batchSize)
+    {
+        batchesProcessed.increment();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.support;
+
+import java.util.concurrent.CyclicBarrier;
+
+import com.lmax.disruptor.CoalescingPublisher;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+
+public final class ValueCoalescingPublisher implements Runnable
+{
+    private static final EventTranslatorOneArg<ValueEvent, Object> TRANSLATOR = new EventTranslatorOneArg<ValueEvent, Object>()
+    {
+        @Override
+        public void translateTo(final ValueEvent event, final long sequence, final Object arg0)
+        {
+            event.setValue(sequence);
+        }
+    };
+
+    private final CyclicBarrier cyclicBarrier;
+    private final RingBuffer<ValueEvent> ringBuffer;
+    private final long iterations;
+    private final int batchSize;
+
+    public ValueCoalescingPublisher(
+        final CyclicBarrier cyclicBarrier,
+        final RingBuffer<ValueEvent> ringBuffer,
+        final long iterations,
+        final int batchSize)
+    {
+        this.cyclicBarrier = cyclicBarrier;
+        this.ringBuffer = ringBuffer;
+        this.iterations = iterations;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            final CoalescingPublisher<ValueEvent> publisher = ringBuffer.newCoalescingPublisher(batchSize, Long.MAX_VALUE);
+            cyclicBarrier.await();
+
+            for (long i = 0; i < iterations; i++)
+            {
+                publisher.publishEvent(TRANSLATOR, null);
+            }
+            publisher.flush();
+        }
+        catch (Exception ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.workhandler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.WorkStealingWorkerPool;
+import com.lmax.disruptor.WorkerPool;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ *
+ * Events with skewed processing costs spread over four workers: one event in 64 costs 100 times as much as the
+ * others.
+ *
+ * shared:   WorkerPool, every worker claims each event with a CAS on the shared work sequence.
+ * stealing: WorkStealingWorkerPool dispatching round robin, idle workers steal from workers held up by an
+ *           expensive event.
+ * keyed:    WorkStealingWorkerPool dispatching by key where half the events have the same key, so one worker is
+ *           given half the work and the others have to steal it.
+ *
+ *             +-----+
+ *        +--->| W1  |
+ *        |    +-----+
+ * +----+ |      ..
+ * | P1 |-+
+ * +----+ |      ..
+ *        |    +-----+
+ *        +--->| W4  |
+ *             +-----+
+ *
+ * P1  - Publisher 1
+ * W1  - Worker 1, spinning for the cost of each event
+ *
+ * </pre>
+ */
+public final class OneToFourWorkStealingSkewedCostThroughputTest
+{
+    private static final int NUM_WORKERS = 4;
+    private static final int BUFFER_SIZE = 1024 * 8;
+    private static final long ITERATIONS = 1000L * 1000L * 2L;
+    private static final int CHEAP_ROUNDS = 20;
+    private static final int EXPENSIVE_ROUNDS = 2000;
+    private static final int RUNS = 3;
+
+    private static final int SHARED = 0;
+    private static final int STEALING = 1;
+    private static final int KEYED = 2;
+
+    private static final WorkStealingWorkerPool.KeyHasher<ValueEvent> HOT_KEY = new WorkStealingWorkerPool.KeyHasher<ValueEvent>()
+    {
+        @Override
+        public int hash(final ValueEvent event)
+        {
+            return (event.getValue() & 1) == 0 ? 0 : (int) (event.getValue() >>> 1);
+        }
+    };
+
+    private static long run(final int mode) throws Exception
+    {
+        final ExecutorService executor = Executors.newCachedThreadPool(DaemonThreadFactory.INSTANCE);
+        final RingBuffer<ValueEvent> ringBuffer =
+            RingBuffer.createSingleProducer(ValueEvent.EVENT_FACTORY, BUFFER_SIZE, new YieldingWaitStrategy());
+        final SkewedCostHandler[] handlers = new SkewedCostHandler[NUM_WORKERS];
+        for (int i = 0; i < NUM_WORKERS; i++)
+        {
+            handlers[i] = new SkewedCostHandler();
+        }
+
+        final WorkerPool<ValueEvent> workerPool;
+        final WorkStealingWorkerPool<ValueEvent> stealingPool;
+        final Sequence[] sequences;
+        if (mode == SHARED)
+        {
+            workerPool = new WorkerPool<>(ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(), handlers);
+            stealingPool = null;
+            sequences = workerPool.getWorkerSequences();
+        }
+        else
+        {
+            workerPool = null;
+            stealingPool = new WorkStealingWorkerPool<>(
+                ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(), mode == KEYED ? HOT_KEY : null, handlers);
+            sequences = stealingPool.getWorkerSequences();
+        }
+        ringBuffer.addGatingSequences(sequences);
+
+        final long start = System.nanoTime();
+        if (workerPool != null)
+        {
+            workerPool.start(executor);
+        }
+        else
+        {
+            stealingPool.start(executor);
+        }
+
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setValue(i);
+            ringBuffer.publish(sequence);
+        }
+
+        if (workerPool != null)
+        {
+            workerPool.drainAndHalt();
+        }
+        else
+        {
+            stealingPool.drainAndHalt();
+        }
+        final long opsPerSecond = ITERATIONS * 1000000000L / (System.nanoTime() - start);
+
+        long processed = 0;
+        for (final SkewedCostHandler handler : handlers)
+        {
+            processed += handler.count;
+        }
+        if (processed != ITERATIONS)
+        {
+            throw new IllegalStateException("Processed " + processed + " of " + ITERATIONS);
+        }
+        executor.shutdownNow();
+
+        return opsPerSecond;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        for (int i = 0; i < RUNS; i++)
+        {
+            System.out.format(
+                "Run %d, shared=%,d ops/sec stealing=%,d ops/sec keyed=%,d ops/sec%n",
+                i, run(SHARED), run(STEALING), run(KEYED));
+        }
+    }
+
+    private static final class SkewedCostHandler implements WorkHandler<ValueEvent>
+    {
+        private volatile long count;
+        private long sink;
+
+        @Override
+        public void onEvent(final ValueEvent event)
+        {
+            final long value = event.getValue();
+            final int rounds = (value & 63) == 0 ? EXPENSIVE_ROUNDS : CHEAP_ROUNDS;
+            long result = value;
+            for (int i = 0; i < rounds; i++)
+            {
+                result = result * 6364136223846793005L + 1442695040888963407L;
+            }
+            sink += result;
+            count = count + 1;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.workhandler;
+
+import static com.lmax.disruptor.support.PerfTestUtil.failIfNot;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.lmax.disruptor.AbstractPerfTestDisruptor;
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.PerfTestContext;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.WorkerPool;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.support.ValueEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import com.lmax.disruptor.util.PaddedLong;
+
+/**
+ * <pre>
+ *
+ * CPU heavy enrichment spread over an ordered worker pool, followed by a stage that must see the enriched events
+ * in sequence order.
+ *
+ *             +-----+
+ *        +--->| WP1 |---+
+ *        |    +-----+   |
+ * +----+ |    +-----+   |  +----+    +-----+
+ * | P1 |-+--->| WP2 |---+->| CS |--->| EP1 |
+ * +----+ |    +-----+   |  +----+    +-----+
+ *        |    +-----+   |
+ *        +--->| WP3 |---+
+ *             +-----+
+ *
+ * P1  - Publisher 1
+ * WP1 - Ordered WorkerPool, each event enriched by one of the workers, in any order
+ * CS  - Completion sequence of the pool, advances over contiguously completed events only
+ * EP1 - EventProcessor 1, fails the run if it sees an event out of order or before it was enriched
+ *
+ * </pre>
+ */
+public final class OneToThreeOrderedWorkerPoolThenOneThroughputTest
+    extends AbstractPerfTestDisruptor
+{
+    private static final int NUM_WORKERS = 3;
+    private static final int BUFFER_SIZE = 1024 * 8;
+    private static final long ITERATIONS = 1000L * 1000L * 10L;
+    private static final int ENRICHMENT_ROUNDS = 200;
+    private final ExecutorService executor = Executors.newFixedThreadPool(NUM_WORKERS + 1, DaemonThreadFactory.INSTANCE);
+
+    private final EnrichingWorkHandler[] handlers = new EnrichingWorkHandler[NUM_WORKERS];
+
+    {
+        for (int i = 0; i < NUM_WORKERS; i++)
+        {
+            handlers[i] = new EnrichingWorkHandler();
+        }
+    }
+
+    private final RingBuffer<ValueEvent> ringBuffer =
+        RingBuffer.createSingleProducer(ValueEvent.EVENT_FACTORY, BUFFER_SIZE, new YieldingWaitStrategy());
+
+    private final WorkerPool<ValueEvent> workerPool =
+        WorkerPool.createOrdered(ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(), handlers);
+
+    private final OrderCheckingEventHandler orderCheckingHandler = new OrderCheckingEventHandler();
+    private final BatchEventProcessor<ValueEvent> batchEventProcessor = new BatchEventProcessor<>(
+        ringBuffer, ringBuffer.newBarrier(workerPool.getWorkerSequences()), orderCheckingHandler);
+
+    {
+        ringBuffer.addGatingSequences(batchEventProcessor.getSequence());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected int getRequiredProcessorCount()
+    {
+        return 5;
+    }
+
+    @Override
+    protected PerfTestContext runDisruptorPass() throws InterruptedException
+    {
+        PerfTestContext perfTestContext = new PerfTestContext();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        orderCheckingHandler.reset(latch, ITERATIONS);
+        workerPool.start(executor);
+        executor.submit(batchEventProcessor);
+        long start = System.currentTimeMillis();
+
+        for (long i = 0; i < ITERATIONS; i++)
+        {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setValue(i);
+            ringBuffer.publish(sequence);
+        }
+
+        latch.await();
+        perfTestContext.setDisruptorOps((ITERATIONS * 1000L) / (System.currentTimeMillis() - start));
+        workerPool.halt();
+        batchEventProcessor.halt();
+
+        failIfNot(0L, orderCheckingHandler.getFailures());
+
+        return perfTestContext;
+    }
+
+    private static long enrich(final long value)
+    {
+        long x = value + 1;
+        for (int i = 0; i < ENRICHMENT_ROUNDS; i++)
+        {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+        }
+        return x;
+    }
+
+    private static final class EnrichingWorkHandler implements WorkHandler<ValueEvent>
+    {
+        private final PaddedLong result = new PaddedLong();
+
+        @Override
+        public void onEvent(final ValueEvent event)
+        {
+            result.set(result.get() + enrich(event.getValue()));
+            event.setValue(-(event.getValue() + 1));
+        }
+    }
+
+    private static final class OrderCheckingEventHandler implements EventHandler<ValueEvent>
+    {
+        private final PaddedLong failures = new PaddedLong();
+        private long expected;
+        private long count;
+        private CountDownLatch latch;
+
+        public void reset(final CountDownLatch latch, final long expectedCount)
+        {
+            failures.set(0L);
+            expected = 0;
+            count = expectedCount;
+            this.latch = latch;
+        }
+
+        public long getFailures()
+        {
+            return failures.get();
+        }
+
+        @Override
+        public void onEvent(final ValueEvent event, final long sequence, final boolean endOfBatch)
+        {
+            if (event.getValue() != -(expected + 1))
+            {
+                failures.increment();
+            }
+
+            if (++expected == count)
+            {
+                latch.countDown();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new OneToThreeOrderedWorkerPoolThenOneThroughputTest().testImplementations();
+    }
+}
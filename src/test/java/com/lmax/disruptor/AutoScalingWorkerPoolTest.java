@@ -0,0 +1,205 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AutoScalingWorkerPoolTest
+{
+    private static final int EVENTS = 400;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(DaemonThreadFactory.INSTANCE);
+    private final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(
+        new EventFactory<AtomicLong>()
+        {
+            @Override
+            public AtomicLong newInstance()
+            {
+                return new AtomicLong();
+            }
+        }, 1024, new BlockingWaitStrategy());
+    private final AtomicLongArray counts = new AtomicLongArray(EVENTS);
+    private final SlowHandlerFactory handlerFactory = new SlowHandlerFactory();
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldStartWithMinimumWorkers() throws Exception
+    {
+        final AutoScalingWorkerPool<AtomicLong> pool = newPool(2, 4);
+        pool.start(executor);
+
+        assertThat(pool.getWorkerCount(), is(2));
+        pool.halt();
+    }
+
+    @Test
+    public void shouldAddWorkersWhileLaggingAndRetireThemWhenIdle() throws Exception
+    {
+        final AutoScalingWorkerPool<AtomicLong> pool = newPool(1, 4);
+        pool.start(executor);
+
+        handlerFactory.nanosPerEvent = TimeUnit.MILLISECONDS.toNanos(1);
+        publish(0, EVENTS);
+        awaitWorkerCount(pool, 4);
+        assertThat(pool.getWorkerCount(), is(4));
+
+        handlerFactory.nanosPerEvent = 0;
+        awaitWorkerCount(pool, 1);
+        assertThat(pool.getWorkerCount(), is(1));
+
+        pool.drainAndHalt();
+        for (int i = 0; i < EVENTS; i++)
+        {
+            assertThat(counts.get(i), is(1L));
+        }
+    }
+
+    @Test
+    public void shouldNotLoseEventsWhileScalingUpAndDown() throws Exception
+    {
+        final AutoScalingWorkerPool<AtomicLong> pool = newPool(1, 3);
+        pool.start(executor);
+        handlerFactory.nanosPerEvent = TimeUnit.MICROSECONDS.toNanos(200);
+
+        for (int burst = 0; burst < 4; burst++)
+        {
+            publish(burst * EVENTS / 4, (burst + 1) * EVENTS / 4);
+            Thread.sleep(40);
+        }
+
+        pool.drainAndHalt();
+        for (int i = 0; i < EVENTS; i++)
+        {
+            assertThat(counts.get(i), is(1L));
+        }
+    }
+
+    @Test
+    public void shouldStopRetiredWorkersWaitingInAQuietPeriod() throws Exception
+    {
+        final AutoScalingWorkerPool<AtomicLong> pool = newPool(1, 3);
+        pool.start(executor);
+
+        handlerFactory.nanosPerEvent = TimeUnit.MILLISECONDS.toNanos(1);
+        publish(0, EVENTS / 2);
+        awaitWorkerCount(pool, 3);
+        handlerFactory.nanosPerEvent = 0;
+
+        // 不再发布事件，退役的worker都在等待各自申请的sequence
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handlerFactory.shutdowns.get() != 2 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(1);
+        }
+        assertThat(handlerFactory.shutdowns.get(), is(2L));
+        assertThat(pool.getWorkerCount(), is(1));
+
+        publish(EVENTS / 2, EVENTS);
+        pool.drainAndHalt();
+        for (int i = 0; i < EVENTS; i++)
+        {
+            assertThat(counts.get(i), is(1L));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectScaleDownLagNotBelowScaleUpLag() throws Exception
+    {
+        new AutoScalingWorkerPool<>(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(), handlerFactory, 1, 2, 8, 8, 1000);
+    }
+
+    private AutoScalingWorkerPool<AtomicLong> newPool(final int minWorkers, final int maxWorkers)
+    {
+        final AutoScalingWorkerPool<AtomicLong> pool = new AutoScalingWorkerPool<>(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(), handlerFactory,
+            minWorkers, maxWorkers, 16, 0, TimeUnit.MILLISECONDS.toNanos(10));
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        return pool;
+    }
+
+    private void publish(final int from, final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).set(i);
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    private static void awaitWorkerCount(final AutoScalingWorkerPool<?> pool, final int count) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getWorkerCount() != count && System.nanoTime() < deadline)
+        {
+            Thread.sleep(1);
+        }
+    }
+
+    private final class SlowHandlerFactory implements AutoScalingWorkerPool.WorkHandlerFactory<AtomicLong>
+    {
+        private final AtomicLong shutdowns = new AtomicLong();
+        private volatile long nanosPerEvent;
+
+        @Override
+        public WorkHandler<AtomicLong> newWorkHandler()
+        {
+            return new SlowHandler();
+        }
+
+        private final class SlowHandler implements WorkHandler<AtomicLong>, LifecycleAware
+        {
+            @Override
+            public void onEvent(final AtomicLong event)
+            {
+                counts.incrementAndGet((int) event.get());
+                if (nanosPerEvent > 0)
+                {
+                    LockSupport.parkNanos(nanosPerEvent);
+                }
+            }
+
+            @Override
+            public void onStart()
+            {
+            }
+
+            @Override
+            public void onShutdown()
+            {
+                shutdowns.incrementAndGet();
+            }
+        }
+    }
+}
@@ -188,6 +188,95 @@ public final class BatchEventProcessorTest
         assertEquals(Arrays.asList(3L, 2L, 1L), batchSizes);
     }
 
+    @Test
+    public void shouldDispatchWholeBatchToBatchEventHandler()
+        throws Exception
+    {
+        final ChunkRecordingHandler handler = new ChunkRecordingHandler(Integer.MAX_VALUE, -1L, 9L);
+
+        runUntilProcessed(handler, 10);
+
+        assertEquals(Arrays.asList(Arrays.asList(0L, 9L)), handler.chunks);
+        assertEquals(0, handler.onEventCalls);
+    }
+
+    @Test
+    public void shouldSplitBatchAtMaxBatchSize()
+        throws Exception
+    {
+        final ChunkRecordingHandler handler = new ChunkRecordingHandler(4, -1L, 9L);
+
+        runUntilProcessed(handler, 10);
+
+        assertEquals(
+            Arrays.asList(Arrays.asList(0L, 3L), Arrays.asList(4L, 7L), Arrays.asList(8L, 9L)),
+            handler.chunks);
+    }
+
+    @Test
+    public void shouldReportFirstEventAndSkipChunkWhenBatchEventHandlerThrows()
+        throws Exception
+    {
+        final ChunkRecordingHandler handler = new ChunkRecordingHandler(4, 4L, 9L);
+        final List<Long> failedSequences = new ArrayList<Long>();
+        final BatchEventProcessor<StubEvent> batchEventProcessor =
+            new BatchEventProcessor<StubEvent>(ringBuffer, sequenceBarrier, handler);
+        batchEventProcessor.setExceptionHandler(new ExceptionHandler<StubEvent>()
+        {
+            @Override
+            public void handleEventException(final Throwable ex, final long sequence, final StubEvent event)
+            {
+                failedSequences.add(sequence);
+            }
+
+            @Override
+            public void handleOnStartException(final Throwable ex)
+            {
+            }
+
+            @Override
+            public void handleOnShutdownException(final Throwable ex)
+            {
+            }
+        });
+
+        run(batchEventProcessor, handler, 10);
+
+        assertEquals(Arrays.asList(4L), failedSequences);
+        assertEquals(
+            Arrays.asList(Arrays.asList(0L, 3L), Arrays.asList(4L, 7L), Arrays.asList(8L, 9L)),
+            handler.chunks);
+        assertEquals(9L, batchEventProcessor.getSequence().get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMaxBatchSizeBelowOne()
+    {
+        new BatchEventProcessor<StubEvent>(ringBuffer, sequenceBarrier, new ChunkRecordingHandler(0, -1L, 0L));
+    }
+
+    private void runUntilProcessed(final ChunkRecordingHandler handler, final int events)
+        throws Exception
+    {
+        run(new BatchEventProcessor<StubEvent>(ringBuffer, sequenceBarrier, handler), handler, events);
+    }
+
+    private void run(
+        final BatchEventProcessor<StubEvent> batchEventProcessor, final ChunkRecordingHandler handler, final int events)
+        throws Exception
+    {
+        ringBuffer.addGatingSequences(batchEventProcessor.getSequence());
+        final long hi = ringBuffer.next(events);
+        ringBuffer.publish(hi - (events - 1), hi);
+
+        Thread thread = new Thread(batchEventProcessor);
+        thread.start();
+        assertTrue(handler.lastChunkLatch.await(2, TimeUnit.SECONDS));
+
+        batchEventProcessor.halt();
+        thread.join();
+    }
+
     @Test
     public void shouldAlwaysHalt() throws InterruptedException
     {
@@ -274,4 +363,47 @@ public final class BatchEventProcessorTest
             return stopLatch.await(time, unit);
         }
     }
+
+    private static final class ChunkRecordingHandler implements EventHandler<StubEvent>, BatchEventHandler<StubEvent>
+    {
+        private final List<List<Long>> chunks = new ArrayList<List<Long>>();
+        private final CountDownLatch lastChunkLatch = new CountDownLatch(1);
+        private final int maxBatchSize;
+        private final long failingLo;
+        private final long lastSequence;
+        private int onEventCalls;
+
+        private ChunkRecordingHandler(final int maxBatchSize, final long failingLo, final long lastSequence)
+        {
+            this.maxBatchSize = maxBatchSize;
+            this.failingLo = failingLo;
+            this.lastSequence = lastSequence;
+        }
+
+        @Override
+        public void onEvent(StubEvent event, long sequence, boolean endOfBatch)
+        {
+            onEventCalls++;
+        }
+
+        @Override
+        public void onBatch(final DataProvider<? extends StubEvent> dataProvider, final long lo, final long hi)
+        {
+            chunks.add(Arrays.asList(lo, hi));
+            if (hi == lastSequence)
+            {
+                lastChunkLatch.countDown();
+            }
+            if (lo == failingLo)
+            {
+                throw new IllegalStateException("chunk " + lo);
+            }
+        }
+
+        @Override
+        public int getMaxBatchSize()
+        {
+            return maxBatchSize;
+        }
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.StubEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+public class BlockingProducerWaitStrategyTest
+{
+    @Test
+    public void shouldReturnWithoutWaitingWhenCapacityIsAvailable()
+    {
+        final BlockingProducerWaitStrategy strategy = new BlockingProducerWaitStrategy(TimeUnit.SECONDS.toNanos(10));
+        final long start = System.nanoTime();
+
+        strategy.waitForCapacity(5, new Sequence[]{new Sequence(5)}, 0);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void shouldRecheckCapacityWithoutSignal()
+    {
+        final BlockingProducerWaitStrategy strategy = new BlockingProducerWaitStrategy(TimeUnit.MILLISECONDS.toNanos(1));
+        final long start = System.nanoTime();
+
+        strategy.waitForCapacity(5, new Sequence[]{new Sequence(0)}, 0);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void shouldWakeProducerWhenEventProcessorAdvances() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Disruptor<StubEvent> disruptor = new Disruptor<>(
+            StubEvent.EVENT_FACTORY, 4, DaemonThreadFactory.INSTANCE, ProducerType.SINGLE,
+            new BlockingWaitStrategy(), new BlockingProducerWaitStrategy(TimeUnit.SECONDS.toNanos(30)));
+        disruptor.handleEventsWith(new EventHandler<StubEvent>()
+        {
+            @Override
+            public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch) throws Exception
+            {
+                release.await();
+            }
+        });
+        final RingBuffer<StubEvent> ringBuffer = disruptor.start();
+
+        for (int i = 0; i < 4; i++)
+        {
+            ringBuffer.publish(ringBuffer.next());
+        }
+
+        final Thread producer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ringBuffer.publish(ringBuffer.next());
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        Thread.sleep(20);
+        assertThat(producer.isAlive(), is(true));
+
+        release.countDown();
+        producer.join(5000);
+
+        assertThat(producer.isAlive(), is(false));
+        assertThat(ringBuffer.getProducerBlockedCount(), is(1L));
+        disruptor.shutdown();
+    }
+}
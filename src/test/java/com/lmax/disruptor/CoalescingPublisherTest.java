@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.support.StubEvent;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CoalescingPublisherTest
+{
+    private static final EventTranslatorOneArg<StubEvent, Integer> VALUE_TRANSLATOR =
+        new EventTranslatorOneArg<StubEvent, Integer>()
+        {
+            @Override
+            public void translateTo(final StubEvent event, final long sequence, final Integer value)
+            {
+                event.setValue(value);
+            }
+        };
+
+    private final RingBuffer<StubEvent> ringBuffer = RingBuffer.createMultiProducer(StubEvent.EVENT_FACTORY, 16);
+
+    @Test
+    public void shouldNotPublishUntilBatchIsFull() throws Exception
+    {
+        final CoalescingPublisher<StubEvent> publisher = ringBuffer.newCoalescingPublisher(4, Long.MAX_VALUE);
+
+        for (int i = 0; i < 3; i++)
+        {
+            publisher.publishEvent(VALUE_TRANSLATOR, i);
+        }
+        assertThat(ringBuffer.getCursor(), is(-1L));
+        assertThat(publisher.getStagedCount(), is(3));
+
+        publisher.publishEvent(VALUE_TRANSLATOR, 3);
+        assertThat(ringBuffer.getCursor(), is(3L));
+        assertThat(publisher.getStagedCount(), is(0));
+        for (int i = 0; i < 4; i++)
+        {
+            assertThat(ringBuffer.get(i).getValue(), is(i));
+        }
+    }
+
+    @Test
+    public void shouldPublishStagedEventsOnFlush() throws Exception
+    {
+        final CoalescingPublisher<StubEvent> publisher = ringBuffer.newCoalescingPublisher(8, Long.MAX_VALUE);
+
+        publisher.publishEvent(StubEvent.TRANSLATOR, 7, "seven");
+        publisher.publishEvent(VALUE_TRANSLATOR, 8);
+        publisher.flush();
+
+        assertThat(ringBuffer.getCursor(), is(1L));
+        assertThat(ringBuffer.get(0).getValue(), is(7));
+        assertThat(ringBuffer.get(0).getTestString(), is("seven"));
+        assertThat(ringBuffer.get(1).getValue(), is(8));
+    }
+
+    @Test
+    public void shouldPublishEachEventWithNoLingerTime() throws Exception
+    {
+        final CoalescingPublisher<StubEvent> publisher = ringBuffer.newCoalescingPublisher(8, 0);
+
+        publisher.publishEvent(VALUE_TRANSLATOR, 1);
+        assertThat(ringBuffer.getCursor(), is(0L));
+        publisher.publishEvent(VALUE_TRANSLATOR, 2);
+        assertThat(ringBuffer.getCursor(), is(1L));
+    }
+
+    @Test
+    public void shouldFlushEventsThatHaveLingered() throws Exception
+    {
+        final CoalescingPublisher<StubEvent> publisher =
+            ringBuffer.newCoalescingPublisher(8, TimeUnit.MILLISECONDS.toNanos(10));
+
+        publisher.publishEvent(VALUE_TRANSLATOR, 1);
+        assertThat(publisher.flushIfLingering(), is(false));
+        assertThat(ringBuffer.getCursor(), is(-1L));
+
+        Thread.sleep(20);
+        assertThat(publisher.flushIfLingering(), is(true));
+        assertThat(ringBuffer.getCursor(), is(0L));
+        assertThat(publisher.flushIfLingering(), is(false));
+    }
+
+    @Test
+    public void shouldPublishBatchWhenTranslatorThrows() throws Exception
+    {
+        final CoalescingPublisher<StubEvent> publisher = ringBuffer.newCoalescingPublisher(4, Long.MAX_VALUE);
+        final EventTranslator<StubEvent> failingTranslator = new EventTranslator<StubEvent>()
+        {
+            @Override
+            public void translateTo(final StubEvent event, final long sequence)
+            {
+                throw new IllegalStateException();
+            }
+        };
+
+        publisher.publishEvent(VALUE_TRANSLATOR, 1);
+        publisher.publishEvent(failingTranslator);
+        try
+        {
+            publisher.flush();
+            fail("Translator exception should be rethrown");
+        }
+        catch (final IllegalStateException e)
+        {
+            // expected
+        }
+
+        assertThat(ringBuffer.getCursor(), is(1L));
+        assertThat(publisher.getStagedCount(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBatchSizeLargerThanBuffer() throws Exception
+    {
+        ringBuffer.newCoalescingPublisher(17, 0);
+    }
+
+    @Test
+    public void shouldPublishAllEventsFromConcurrentPublishers() throws Exception
+    {
+        final int publishers = 3;
+        final int iterations = 10000;
+        final long[] sum = new long[1];
+        final BatchEventProcessor<StubEvent> processor = new BatchEventProcessor<>(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<StubEvent>()
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    sum[0] += event.getValue();
+                }
+            });
+        ringBuffer.addGatingSequences(processor.getSequence());
+        final Thread processorThread = new Thread(processor);
+        processorThread.start();
+
+        final Thread[] threads = new Thread[publishers];
+        for (int p = 0; p < publishers; p++)
+        {
+            threads[p] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    final CoalescingPublisher<StubEvent> publisher = ringBuffer.newCoalescingPublisher(5, Long.MAX_VALUE);
+                    for (int i = 1; i <= iterations; i++)
+                    {
+                        publisher.publishEvent(VALUE_TRANSLATOR, i);
+                    }
+                    publisher.flush();
+                }
+            });
+            threads[p].start();
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        final long lastSequence = publishers * iterations - 1;
+        while (processor.getSequence().get() < lastSequence)
+        {
+            Thread.yield();
+        }
+        processor.halt();
+        processorThread.join();
+
+        assertThat(sum[0], is((long) publishers * iterations * (iterations + 1) / 2));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CompletionSequenceTest
+{
+    private final CompletionSequence completionSequence = new CompletionSequence(8);
+
+    @Test
+    public void shouldAdvanceOverContiguousCompletions()
+    {
+        completionSequence.complete(0);
+        completionSequence.complete(1);
+
+        assertThat(completionSequence.getSequence().get(), is(1L));
+    }
+
+    @Test
+    public void shouldHoldBackCompletionsUntilTheGapIsFilled()
+    {
+        completionSequence.complete(2);
+        completionSequence.complete(1);
+
+        assertThat(completionSequence.getSequence().get(), is(-1L));
+
+        completionSequence.complete(0);
+
+        assertThat(completionSequence.getSequence().get(), is(2L));
+    }
+
+    @Test
+    public void shouldNotMistakeAPreviousLapForACompletion()
+    {
+        for (long sequence = 0; sequence < 8; sequence++)
+        {
+            completionSequence.complete(sequence);
+        }
+
+        completionSequence.complete(9);
+
+        assertThat(completionSequence.getSequence().get(), is(7L));
+
+        completionSequence.complete(8);
+
+        assertThat(completionSequence.getSequence().get(), is(9L));
+    }
+
+    @Test
+    public void shouldAdvanceContiguouslyWhenCompletedConcurrently() throws Exception
+    {
+        final int workers = 4;
+        final long iterations = 100000;
+        final CompletionSequence completionSequence = new CompletionSequence(1024);
+        final Sequence claimSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        final Thread[] threads = new Thread[workers];
+
+        for (int i = 0; i < workers; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    long sequence;
+                    while ((sequence = claimSequence.incrementAndGet()) < iterations)
+                    {
+                        // the claim may not lap the completion, as a ring buffer gating on it would not allow it
+                        while (sequence - completionSequence.getSequence().get() > 1024)
+                        {
+                            Thread.yield();
+                        }
+                        completionSequence.complete(sequence);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertThat(completionSequence.getSequence().get(), is(iterations - 1));
+    }
+}
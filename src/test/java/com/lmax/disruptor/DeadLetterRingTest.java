@@ -0,0 +1,399 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class DeadLetterRingTest
+{
+    private static final EventFactory<AtomicLong> FACTORY = new EventFactory<AtomicLong>()
+    {
+        @Override
+        public AtomicLong newInstance()
+        {
+            return new AtomicLong();
+        }
+    };
+
+    private static final EventTranslatorOneArg<AtomicLong, AtomicLong> COPY =
+        new EventTranslatorOneArg<AtomicLong, AtomicLong>()
+        {
+            @Override
+            public void translateTo(final AtomicLong payload, final long sequence, final AtomicLong event)
+            {
+                payload.set(event.get());
+            }
+        };
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(DaemonThreadFactory.INSTANCE);
+    private final RecordingExceptionHandler fallback = new RecordingExceptionHandler();
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldKeepProcessingAndRetryFailedEventsOnTheSide() throws Exception
+    {
+        final RetryRecorder retries = new RetryRecorder(0, 4);
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = newDeadLetterRing(retries, 16, 3);
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createSingleProducer(FACTORY, 64);
+        final FailingHandler handler = new FailingHandler(5, 20);
+        final BatchEventProcessor<AtomicLong> processor =
+            new BatchEventProcessor<AtomicLong>(ringBuffer, ringBuffer.newBarrier(), handler);
+        final DeadLetterRing<AtomicLong, AtomicLong>.Source source = deadLetters.newExceptionHandler(fallback);
+        processor.setExceptionHandler(source);
+        ringBuffer.addGatingSequences(processor.getSequence());
+
+        deadLetters.start(executor);
+        executor.execute(processor);
+        for (long i = 0; i < 20; i++)
+        {
+            publish(ringBuffer, i);
+        }
+
+        assertTrue(handler.seenAll.await(2, TimeUnit.SECONDS));
+        assertTrue(retries.recovered.await(2, TimeUnit.SECONDS));
+        assertThat(retries.values, is(Arrays.asList(0L, 5L, 10L, 15L)));
+        assertThat(source.getDeadLetteredCount(), is(4L));
+        awaitRecovered(source, 4L);
+        assertThat(source.getDroppedCount(), is(0L));
+        assertThat(fallback.sequences.size(), is(0));
+
+        processor.halt();
+        deadLetters.halt();
+    }
+
+    @Test
+    public void shouldBackOffBetweenRetriesUntilRecovered() throws Exception
+    {
+        final RetryRecorder retries = new RetryRecorder(2, 1);
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = newDeadLetterRing(retries, 8, 5);
+        final DeadLetterRing<AtomicLong, AtomicLong>.Source source = deadLetters.newExceptionHandler(fallback);
+        deadLetters.start(executor);
+
+        final long start = System.nanoTime();
+        source.handleEventException(new IllegalStateException(), 0, new AtomicLong(42));
+
+        assertTrue(retries.recovered.await(2, TimeUnit.SECONDS));
+        // 退避为1ms、2ms、4ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(7));
+        assertThat(retries.attempts, is(Arrays.asList(1, 2, 3)));
+        assertThat(retries.values, is(Arrays.asList(42L, 42L, 42L)));
+        awaitRecovered(source, 1L);
+        assertThat(source.getRequeuedCount(), is(2L));
+        assertThat(source.getExhaustedCount(), is(0L));
+
+        deadLetters.halt();
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxAttempts() throws Exception
+    {
+        final RetryRecorder retries = new RetryRecorder(Integer.MAX_VALUE, 1);
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = newDeadLetterRing(retries, 8, 3);
+        final DeadLetterRing<AtomicLong, AtomicLong>.Source source = deadLetters.newExceptionHandler(fallback);
+        deadLetters.start(executor);
+
+        source.handleEventException(new IllegalStateException(), 0, new AtomicLong(7));
+
+        assertTrue(retries.exhausted.await(2, TimeUnit.SECONDS));
+        assertThat(retries.attempts, is(Arrays.asList(1, 2, 3)));
+        assertThat(retries.exhaustedValue, is(7L));
+        assertTrue(retries.lastCause.getMessage().endsWith("3"));
+        assertThat(source.getRequeuedCount(), is(2L));
+        assertThat(source.getExhaustedCount(), is(1L));
+        assertThat(source.getRecoveredCount(), is(0L));
+
+        deadLetters.halt();
+    }
+
+    @Test
+    public void shouldRetryLettersInTheOrderTheyFallDue() throws Exception
+    {
+        final RetryRecorder retries = new RetryRecorder(1, 2);
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = new DeadLetterRing<AtomicLong, AtomicLong>(
+            FACTORY, 8, COPY, retries, 3, TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.SECONDS.toNanos(10));
+        final DeadLetterRing<AtomicLong, AtomicLong>.Source source = deadLetters.newExceptionHandler(fallback);
+        deadLetters.start(executor);
+
+        source.handleEventException(new IllegalStateException(), 0, new AtomicLong(1));
+        final long end = System.currentTimeMillis() + 2000;
+        while (retries.attempts.isEmpty() && System.currentTimeMillis() < end)
+        {
+            Thread.yield();
+        }
+        // 第一封信第一次重试失败，下次在200ms后；第二封信100ms后到期，应先重试
+        source.handleEventException(new IllegalStateException(), 1, new AtomicLong(2));
+
+        assertTrue(retries.recovered.await(2, TimeUnit.SECONDS));
+        assertThat(retries.values, is(Arrays.asList(1L, 2L, 1L)));
+        awaitRecovered(source, 2L);
+
+        deadLetters.halt();
+    }
+
+    @Test
+    public void shouldHaltWithoutWaitingForBackoffAndKeepPendingLetters() throws Exception
+    {
+        final RetryRecorder retries = new RetryRecorder(0, 1);
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = new DeadLetterRing<AtomicLong, AtomicLong>(
+            FACTORY, 8, COPY, retries, 3, TimeUnit.SECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(10));
+        final DeadLetterRing<AtomicLong, AtomicLong>.Source source = deadLetters.newExceptionHandler(fallback);
+        deadLetters.start(executor);
+        source.handleEventException(new IllegalStateException(), 0, new AtomicLong(3));
+        final long started = System.currentTimeMillis() + 2000;
+        while (!deadLetters.isRunning() && System.currentTimeMillis() < started)
+        {
+            Thread.yield();
+        }
+
+        deadLetters.halt();
+
+        final long end = System.currentTimeMillis() + 2000;
+        while (deadLetters.isRunning() && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(1);
+        }
+        assertThat(deadLetters.isRunning(), is(false));
+        assertThat(deadLetters.getBacklog(), is(1L));
+        assertThat(retries.attempts.size(), is(0));
+        assertThat(source.getDroppedCount(), is(0L));
+    }
+
+    @Test
+    public void shouldPassToFallbackWhenDeadLetterRingIsFull() throws Exception
+    {
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = newDeadLetterRing(new RetryRecorder(0, 1), 2, 3);
+        final DeadLetterRing<AtomicLong, AtomicLong>.Source source = deadLetters.newExceptionHandler(fallback);
+
+        for (long i = 0; i < 3; i++)
+        {
+            source.handleEventException(new IllegalStateException(), i, new AtomicLong(i));
+        }
+
+        assertThat(source.getDeadLetteredCount(), is(2L));
+        assertThat(source.getDroppedCount(), is(1L));
+        assertThat(fallback.sequences, is(Arrays.asList(2L)));
+        assertThat(deadLetters.getBacklog(), is(2L));
+    }
+
+    @Test
+    public void shouldPassToFallbackWhenCopyFails() throws Exception
+    {
+        final RetryRecorder retries = new RetryRecorder(0, 1);
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = new DeadLetterRing<AtomicLong, AtomicLong>(
+            FACTORY, 8,
+            new EventTranslatorOneArg<AtomicLong, AtomicLong>()
+            {
+                @Override
+                public void translateTo(final AtomicLong payload, final long sequence, final AtomicLong event)
+                {
+                    if (event.get() == 0)
+                    {
+                        throw new IllegalArgumentException();
+                    }
+                    payload.set(event.get());
+                }
+            },
+            retries, 3, 0, 0);
+        final DeadLetterRing<AtomicLong, AtomicLong>.Source source = deadLetters.newExceptionHandler(fallback);
+        deadLetters.start(executor);
+
+        source.handleEventException(new IllegalStateException(), 0, new AtomicLong(0));
+        source.handleEventException(new IllegalStateException(), 1, new AtomicLong(1));
+
+        assertTrue(retries.recovered.await(2, TimeUnit.SECONDS));
+        assertThat(retries.values, is(Arrays.asList(1L)));
+        assertThat(fallback.sequences, is(Arrays.asList(0L)));
+        assertThat(source.getDroppedCount(), is(1L));
+
+        deadLetters.halt();
+    }
+
+    @Test
+    public void shouldPublishRecoveredLettersBackToTheRing() throws Exception
+    {
+        final RetryRecorder retries = new RetryRecorder(0, 1);
+        final DeadLetterRing<AtomicLong, AtomicLong> deadLetters = newDeadLetterRing(retries, 8, 3);
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(FACTORY, 64);
+        deadLetters.publishRecoveredTo(ringBuffer, new EventTranslatorOneArg<AtomicLong, AtomicLong>()
+        {
+            @Override
+            public void translateTo(final AtomicLong event, final long sequence, final AtomicLong payload)
+            {
+                event.set(payload.get() + 1000);
+            }
+        });
+        final FailingHandler handler = new FailingHandler(7, 1007);
+        final BatchEventProcessor<AtomicLong> processor =
+            new BatchEventProcessor<AtomicLong>(ringBuffer, ringBuffer.newBarrier(), handler);
+        processor.setExceptionHandler(deadLetters.newExceptionHandler(fallback));
+        ringBuffer.addGatingSequences(processor.getSequence());
+
+        deadLetters.start(executor);
+        executor.execute(processor);
+        publish(ringBuffer, 7);
+
+        assertTrue(handler.seenAll.await(2, TimeUnit.SECONDS));
+        assertThat(handler.values, is(Arrays.asList(7L, 1007L)));
+
+        processor.halt();
+        deadLetters.halt();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMaxAttemptsBelowOne()
+    {
+        newDeadLetterRing(new RetryRecorder(0, 1), 8, 0);
+    }
+
+    private static DeadLetterRing<AtomicLong, AtomicLong> newDeadLetterRing(
+        final RetryRecorder retries, final int bufferSize, final int maxAttempts)
+    {
+        return new DeadLetterRing<AtomicLong, AtomicLong>(
+            FACTORY, bufferSize, COPY, retries, maxAttempts,
+            TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(4));
+    }
+
+    private static void awaitRecovered(final DeadLetterRing<?, ?>.Source source, final long count)
+    {
+        // 计数在onRetry返回后才增加
+        final long end = System.currentTimeMillis() + 2000;
+        while (source.getRecoveredCount() < count && System.currentTimeMillis() < end)
+        {
+            Thread.yield();
+        }
+        assertThat(source.getRecoveredCount(), is(count));
+    }
+
+    private static void publish(final RingBuffer<AtomicLong> ringBuffer, final long value)
+    {
+        final long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).set(value);
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * Throws for multiples of a divisor below 1000, counting down once it has seen the last value.
+     */
+    private static final class FailingHandler implements EventHandler<AtomicLong>
+    {
+        private final List<Long> values = new CopyOnWriteArrayList<Long>();
+        private final CountDownLatch seenAll = new CountDownLatch(1);
+        private final long divisor;
+        private final long lastValue;
+
+        private FailingHandler(final long divisor, final long lastValue)
+        {
+            this.divisor = divisor;
+            this.lastValue = lastValue;
+        }
+
+        @Override
+        public void onEvent(final AtomicLong event, final long sequence, final boolean endOfBatch)
+        {
+            final long value = event.get();
+            values.add(value);
+            if (value == lastValue - 1 || value == lastValue)
+            {
+                seenAll.countDown();
+            }
+            if (value < 1000 && value % divisor == 0)
+            {
+                throw new IllegalStateException("failed " + value);
+            }
+        }
+    }
+
+    private static final class RetryRecorder implements DeadLetterRing.RetryHandler<AtomicLong>
+    {
+        private final List<Long> values = new CopyOnWriteArrayList<Long>();
+        private final List<Integer> attempts = new CopyOnWriteArrayList<Integer>();
+        private final CountDownLatch recovered;
+        private final CountDownLatch exhausted = new CountDownLatch(1);
+        private final int failures;
+        private int failed;
+        private volatile long exhaustedValue;
+        private volatile Throwable lastCause;
+
+        private RetryRecorder(final int failures, final int expectedRecoveries)
+        {
+            this.failures = failures;
+            this.recovered = new CountDownLatch(expectedRecoveries);
+        }
+
+        @Override
+        public void onRetry(final AtomicLong payload, final int attempt)
+        {
+            values.add(payload.get());
+            attempts.add(attempt);
+            if (failed < failures)
+            {
+                failed++;
+                throw new IllegalStateException("attempt " + attempt);
+            }
+            recovered.countDown();
+        }
+
+        @Override
+        public void onExhausted(final AtomicLong payload, final Throwable lastCause)
+        {
+            this.exhaustedValue = payload.get();
+            this.lastCause = lastCause;
+            exhausted.countDown();
+        }
+    }
+
+    private static final class RecordingExceptionHandler implements ExceptionHandler<Object>
+    {
+        private final List<Long> sequences = new ArrayList<Long>();
+
+        @Override
+        public void handleEventException(final Throwable ex, final long sequence, final Object event)
+        {
+            sequences.add(sequence);
+        }
+
+        @Override
+        public void handleOnStartException(final Throwable ex)
+        {
+        }
+
+        @Override
+        public void handleOnShutdownException(final Throwable ex)
+        {
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class DeadlineAwareTest
+{
+    private static final long EXPIRED = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+    private static final long LIVE = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+
+    private final RingBuffer<DeadlineEvent> ringBuffer = RingBuffer.createSingleProducer(DeadlineEvent.FACTORY, 256);
+
+    @Test
+    public void shouldSkipExpiredPrefixWithOrderedDeadlines() throws Exception
+    {
+        final long[] deadlines = new long[200];
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            deadlines[i] = i < 100 ? EXPIRED : LIVE;
+        }
+        final RecordingHandler handler = new RecordingHandler(true);
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, deadlines);
+
+        assertThat(handler.handled.size(), is(100));
+        assertThat(handler.handled.get(0), is(100L));
+        assertThat(handler.handled.get(99), is(199L));
+        assertThat(processor.getExpiredCount(), is(100L));
+        assertThat(processor.getSequence().get(), is(199L));
+        // 没有事件在块的末尾被丢弃，只有最后一个事件标记endOfBatch
+        assertThat(handler.endOfBatch, is(asList(199L)));
+    }
+
+    @Test
+    public void shouldEndBatchEarlyOnlyWhenTheRestIsShed() throws Exception
+    {
+        final long[] deadlines = new long[3 * BatchEventProcessor.DEADLINE_CHUNK_SIZE];
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            deadlines[i] = i < BatchEventProcessor.DEADLINE_CHUNK_SIZE + 10 ? LIVE : EXPIRED;
+        }
+        final RecordingHandler handler = new RecordingHandler(false);
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, deadlines);
+
+        assertThat(handler.handled.size(), is(BatchEventProcessor.DEADLINE_CHUNK_SIZE + 10));
+        assertThat(handler.endOfBatch, is(asList(BatchEventProcessor.DEADLINE_CHUNK_SIZE + 9L)));
+        assertThat(processor.getExpiredCount(), is(2L * BatchEventProcessor.DEADLINE_CHUNK_SIZE - 10L));
+    }
+
+    @Test
+    public void shouldDispatchTheEventPromisedToEndTheBatchEvenIfItExpiresLater() throws Exception
+    {
+        final int chunk = BatchEventProcessor.DEADLINE_CHUNK_SIZE;
+        final long[] deadlines = new long[2 * chunk];
+        final long soon = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            deadlines[i] = i < chunk ? LIVE : soon;
+        }
+        final RecordingHandler handler = new RecordingHandler(false);
+        // 第一块的最后一个事件处理完时，第二块已全部过期
+        handler.sleepAfter = chunk - 1L;
+        handler.sleepMillis = 400;
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, deadlines);
+
+        assertThat(handler.handled.size(), is(chunk + 1));
+        assertThat(handler.handled.get(chunk), is(2L * chunk - 1L));
+        assertThat(handler.endOfBatch, is(asList(2L * chunk - 1L)));
+        assertThat(processor.getExpiredCount(), is(chunk - 1L));
+    }
+
+    @Test
+    public void shouldNotCountExpiredEventsInBatchStart() throws Exception
+    {
+        final long[] deadlines = new long[] {EXPIRED, EXPIRED, LIVE, EXPIRED, LIVE};
+        final BatchStartRecordingHandler handler = new BatchStartRecordingHandler();
+
+        run(handler, deadlines);
+
+        assertThat(handler.batchSizes, is(asList(2L)));
+        assertThat(handler.handled, is(asList(2L, 4L)));
+    }
+
+    @Test
+    public void shouldSkipWholeChunksWithOrderedDeadlinesWithoutReadingThem() throws Exception
+    {
+        final long[] deadlines = new long[3 * BatchEventProcessor.DEADLINE_CHUNK_SIZE];
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            deadlines[i] = i < 2 * BatchEventProcessor.DEADLINE_CHUNK_SIZE ? EXPIRED : LIVE;
+        }
+        final RecordingHandler handler = new RecordingHandler(true);
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, deadlines);
+
+        assertThat(processor.getExpiredCount(), is(2L * BatchEventProcessor.DEADLINE_CHUNK_SIZE));
+        assertThat(handler.handled.size(), is(BatchEventProcessor.DEADLINE_CHUNK_SIZE));
+        // 两个全过期的块各只读最后一个事件，未过期的块读最后一个和二分查找的若干个
+        assertTrue(handler.deadlineReads < 2 + 2 * 7);
+    }
+
+    @Test
+    public void shouldCheckEachEventWithUnorderedDeadlines() throws Exception
+    {
+        final long[] deadlines = new long[10];
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            deadlines[i] = (i % 3 == 0) ? EXPIRED : LIVE;
+        }
+        final RecordingHandler handler = new RecordingHandler(false);
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, deadlines);
+
+        assertThat(handler.handled, is(asList(1L, 2L, 4L, 5L, 7L, 8L)));
+        assertThat(handler.endOfBatch, is(asList(8L)));
+        assertThat(processor.getExpiredCount(), is(4L));
+        assertThat(processor.getSequence().get(), is(9L));
+    }
+
+    @Test
+    public void shouldRouteExpiredEventsToExpiredEventHandler() throws Exception
+    {
+        final long[] deadlines = new long[] {EXPIRED, LIVE, EXPIRED, LIVE, EXPIRED, EXPIRED};
+        final ExpiryRecordingHandler handler = new ExpiryRecordingHandler(false);
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, deadlines);
+
+        assertThat(handler.handled, is(asList(1L, 3L)));
+        assertThat(handler.expired, is(asList(0L, 2L, 4L, 5L)));
+        assertThat(handler.endOfBatch, is(asList(3L)));
+        assertThat(processor.getExpiredCount(), is(4L));
+    }
+
+    @Test
+    public void shouldRouteExpiredPrefixToExpiredEventHandlerWithOrderedDeadlines() throws Exception
+    {
+        final long[] deadlines = new long[] {EXPIRED, EXPIRED, EXPIRED, LIVE, LIVE};
+        final ExpiryRecordingHandler handler = new ExpiryRecordingHandler(true);
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, deadlines);
+
+        assertThat(handler.handled, is(asList(3L, 4L)));
+        assertThat(handler.expired, is(asList(0L, 1L, 2L)));
+        assertThat(processor.getExpiredCount(), is(3L));
+    }
+
+    @Test
+    public void shouldNeverExpireMaxValueDeadline() throws Exception
+    {
+        final RecordingHandler handler = new RecordingHandler(false);
+
+        final BatchEventProcessor<DeadlineEvent> processor = run(handler, new long[] {Long.MAX_VALUE, Long.MAX_VALUE});
+
+        assertThat(handler.handled, is(asList(0L, 1L)));
+        assertThat(processor.getExpiredCount(), is(0L));
+    }
+
+    @Test
+    public void shouldPassThrowingExpiredEventHandlerToExceptionHandler() throws Exception
+    {
+        final long[] deadlines = new long[] {LIVE, EXPIRED, LIVE};
+        final ExpiryRecordingHandler handler = new ExpiryRecordingHandler(false);
+        handler.throwOnExpiry = true;
+        final List<Long> failed = new ArrayList<Long>();
+        final BatchEventProcessor<DeadlineEvent> processor =
+            new BatchEventProcessor<DeadlineEvent>(ringBuffer, ringBuffer.newBarrier(), handler);
+        processor.setExceptionHandler(new ExceptionHandler<DeadlineEvent>()
+        {
+            @Override
+            public void handleEventException(final Throwable ex, final long sequence, final DeadlineEvent event)
+            {
+                failed.add(sequence);
+            }
+
+            @Override
+            public void handleOnStartException(final Throwable ex)
+            {
+            }
+
+            @Override
+            public void handleOnShutdownException(final Throwable ex)
+            {
+            }
+        });
+
+        run(processor, deadlines);
+
+        assertThat(failed, is(asList(1L)));
+        assertThat(handler.handled, is(asList(0L, 2L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBatchEventHandlerThatIsDeadlineAware()
+    {
+        new BatchEventProcessor<DeadlineEvent>(ringBuffer, ringBuffer.newBarrier(), new BatchDeadlineHandler());
+    }
+
+    private BatchEventProcessor<DeadlineEvent> run(final EventHandler<DeadlineEvent> handler, final long[] deadlines)
+        throws Exception
+    {
+        final BatchEventProcessor<DeadlineEvent> processor =
+            new BatchEventProcessor<DeadlineEvent>(ringBuffer, ringBuffer.newBarrier(), handler);
+        run(processor, deadlines);
+        return processor;
+    }
+
+    private void run(final BatchEventProcessor<DeadlineEvent> processor, final long[] deadlines) throws Exception
+    {
+        ringBuffer.addGatingSequences(processor.getSequence());
+        for (final long deadline : deadlines)
+        {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).deadline = deadline;
+            ringBuffer.publish(sequence);
+        }
+
+        final Thread thread = new Thread(processor);
+        thread.start();
+        final long end = System.currentTimeMillis() + 2000;
+        while (processor.getSequence().get() < deadlines.length - 1 && System.currentTimeMillis() < end)
+        {
+            Thread.yield();
+        }
+        processor.halt();
+        thread.join();
+    }
+
+    private static List<Long> asList(final Long... values)
+    {
+        return Arrays.asList(values);
+    }
+
+    private static final class DeadlineEvent
+    {
+        private static final EventFactory<DeadlineEvent> FACTORY = new EventFactory<DeadlineEvent>()
+        {
+            @Override
+            public DeadlineEvent newInstance()
+            {
+                return new DeadlineEvent();
+            }
+        };
+
+        private long deadline;
+    }
+
+    private static class RecordingHandler implements EventHandler<DeadlineEvent>, DeadlineAware<DeadlineEvent>
+    {
+        final List<Long> handled = new ArrayList<Long>();
+        final List<Long> endOfBatch = new ArrayList<Long>();
+        private final boolean ordered;
+        int deadlineReads;
+        long sleepAfter = -1L;
+        long sleepMillis;
+
+        RecordingHandler(final boolean ordered)
+        {
+            this.ordered = ordered;
+        }
+
+        @Override
+        public void onEvent(final DeadlineEvent event, final long sequence, final boolean endOfBatch)
+        {
+            handled.add(sequence);
+            if (endOfBatch)
+            {
+                this.endOfBatch.add(sequence);
+            }
+            if (sequence == sleepAfter)
+            {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleepMillis));
+            }
+        }
+
+        @Override
+        public long getDeadline(final DeadlineEvent event)
+        {
+            deadlineReads++;
+            return event.deadline;
+        }
+
+        @Override
+        public boolean isDeadlineOrdered()
+        {
+            return ordered;
+        }
+    }
+
+    private static final class ExpiryRecordingHandler extends RecordingHandler implements ExpiredEventHandler<DeadlineEvent>
+    {
+        final List<Long> expired = new ArrayList<Long>();
+        boolean throwOnExpiry;
+
+        ExpiryRecordingHandler(final boolean ordered)
+        {
+            super(ordered);
+        }
+
+        @Override
+        public void onExpired(final DeadlineEvent event, final long sequence)
+        {
+            expired.add(sequence);
+            if (throwOnExpiry)
+            {
+                throw new IllegalStateException("expired " + sequence);
+            }
+        }
+    }
+
+    private static final class BatchStartRecordingHandler extends RecordingHandler implements BatchStartAware
+    {
+        final List<Long> batchSizes = new ArrayList<Long>();
+
+        BatchStartRecordingHandler()
+        {
+            super(false);
+        }
+
+        @Override
+        public void onBatchStart(final long batchSize)
+        {
+            batchSizes.add(batchSize);
+        }
+    }
+
+    private static final class BatchDeadlineHandler extends RecordingHandler implements BatchEventHandler<DeadlineEvent>
+    {
+        BatchDeadlineHandler()
+        {
+            super(true);
+        }
+
+        @Override
+        public void onBatch(final DataProvider<? extends DeadlineEvent> dataProvider, final long lo, final long hi)
+        {
+        }
+
+        @Override
+        public int getMaxBatchSize()
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
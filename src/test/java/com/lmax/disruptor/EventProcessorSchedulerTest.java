@@ -0,0 +1,405 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.support.DummySequenceBarrier;
+import com.lmax.disruptor.support.StubEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventProcessorSchedulerTest
+{
+    private final EventProcessorScheduler scheduler = new EventProcessorScheduler(
+        DaemonThreadFactory.INSTANCE, 2, 4, TimeUnit.MICROSECONDS.toNanos(100));
+
+    @After
+    public void tearDown()
+    {
+        scheduler.halt();
+    }
+
+    @Test
+    public void shouldProcessEventsOfManyProcessorsOnTheSchedulerThreads() throws Exception
+    {
+        final int processorCount = 20;
+        final int eventCount = 50;
+        final CountDownLatch latch = new CountDownLatch(processorCount * eventCount);
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final List<RingBuffer<StubEvent>> ringBuffers = new ArrayList<>();
+
+        scheduler.start();
+        for (int i = 0; i < processorCount; i++)
+        {
+            final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+            final ScheduledEventProcessor<StubEvent> processor = scheduler.newProcessor(
+                ringBuffer, ringBuffer.newBarrier(), new EventHandler<StubEvent>()
+                {
+                    @Override
+                    public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                    {
+                        threads.add(Thread.currentThread());
+                        latch.countDown();
+                    }
+                });
+            ringBuffer.addGatingSequences(processor.getSequence());
+            processor.run();
+            ringBuffers.add(ringBuffer);
+        }
+
+        for (int n = 0; n < eventCount; n++)
+        {
+            for (final RingBuffer<StubEvent> ringBuffer : ringBuffers)
+            {
+                ringBuffer.publishEvent(StubEvent.TRANSLATOR, n, "");
+            }
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(threads.size() <= 2, is(true));
+        assertFalse(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void shouldProcessBoundedBatchesAndMarkTheirLastEvent() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        for (int i = 0; i < 10; i++)
+        {
+            ringBuffer.publishEvent(StubEvent.TRANSLATOR, i, "");
+        }
+
+        final RecordingHandler handler = new RecordingHandler(10);
+        final ScheduledEventProcessor<StubEvent> processor =
+            scheduler.newProcessor(ringBuffer, ringBuffer.newBarrier(), handler);
+        processor.run();
+        scheduler.start();
+
+        assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+        assertThat(handler.batchSizes.toString(), is("[4, 4, 2]"));
+        assertThat(handler.endOfBatchSequences.toString(), is("[3, 7, 9]"));
+        final long timeout = System.currentTimeMillis() + 5000;
+        while (processor.getSequence().get() != 9L && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(1);
+        }
+        assertThat(processor.getSequence().get(), is(9L));
+    }
+
+    @Test
+    public void shouldCallLifecycleMethodsOnTheSchedulerThread() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final RecordingHandler handler = new RecordingHandler(1);
+        final ScheduledEventProcessor<StubEvent> processor =
+            scheduler.newProcessor(ringBuffer, ringBuffer.newBarrier(), handler);
+        scheduler.start();
+        processor.run();
+
+        ringBuffer.publishEvent(StubEvent.TRANSLATOR, 0, "");
+        assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+        processor.halt();
+        assertTrue(handler.shutdownLatch.await(5, TimeUnit.SECONDS));
+
+        assertThat(handler.startThread, is(handler.shutdownThread));
+        assertThat(handler.startThread == Thread.currentThread(), is(false));
+        waitUntilStopped(processor);
+    }
+
+    @Test
+    public void shouldReportExceptionsAndMoveOnToTheNextEvent() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final List<Long> failedSequences = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        final ScheduledEventProcessor<StubEvent> processor = scheduler.newProcessor(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<StubEvent>()
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    latch.countDown();
+                    if (sequence == 1)
+                    {
+                        throw new IllegalStateException();
+                    }
+                }
+            });
+        processor.setExceptionHandler(new CollectingExceptionHandler(failedSequences));
+        for (int i = 0; i < 3; i++)
+        {
+            ringBuffer.publishEvent(StubEvent.TRANSLATOR, i, "");
+        }
+        processor.run();
+        scheduler.start();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(failedSequences.toString(), is("[1]"));
+        assertTrue(processor.isRunning());
+    }
+
+    @Test
+    public void shouldStopOnlyTheFailingProcessorWhenTheExceptionHandlerThrows() throws Exception
+    {
+        final EventProcessorScheduler singleThreadScheduler = new EventProcessorScheduler(DaemonThreadFactory.INSTANCE, 1);
+        try
+        {
+            final RingBuffer<StubEvent> failingRingBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+            final RecordingHandler failingHandler = new RecordingHandler(1)
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    throw new IllegalStateException("expected");
+                }
+            };
+            final ScheduledEventProcessor<StubEvent> failing = singleThreadScheduler.newProcessor(
+                failingRingBuffer, failingRingBuffer.newBarrier(), failingHandler);
+            failing.setExceptionHandler(new ExceptionHandler<StubEvent>()
+            {
+                @Override
+                public void handleEventException(final Throwable ex, final long sequence, final StubEvent event)
+                {
+                    throw new RuntimeException(ex);
+                }
+
+                @Override
+                public void handleOnStartException(final Throwable ex)
+                {
+                }
+
+                @Override
+                public void handleOnShutdownException(final Throwable ex)
+                {
+                }
+            });
+
+            final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+            final RecordingHandler handler = new RecordingHandler(2);
+            final ScheduledEventProcessor<StubEvent> processor =
+                singleThreadScheduler.newProcessor(ringBuffer, ringBuffer.newBarrier(), handler);
+
+            singleThreadScheduler.start();
+            failing.run();
+            processor.run();
+            failingRingBuffer.publishEvent(StubEvent.TRANSLATOR, 0, "");
+            ringBuffer.publishEvent(StubEvent.TRANSLATOR, 0, "");
+
+            assertTrue(failingHandler.shutdownLatch.await(5, TimeUnit.SECONDS));
+            waitUntilStopped(failing);
+            assertThat(failing.getSequence().get(), is(-1L));
+
+            ringBuffer.publishEvent(StubEvent.TRANSLATOR, 1, "");
+            assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+            assertTrue(processor.isRunning());
+        }
+        finally
+        {
+            singleThreadScheduler.halt();
+        }
+    }
+
+    @Test
+    public void shouldBeStartedByTheDisruptor() throws Exception
+    {
+        final Disruptor<StubEvent> disruptor = new Disruptor<>(StubEvent.EVENT_FACTORY, 16, DaemonThreadFactory.INSTANCE);
+        final RecordingHandler handler = new RecordingHandler(3);
+        final ScheduledEventProcessor<StubEvent> processor =
+            scheduler.newProcessor(disruptor.getRingBuffer(), disruptor.getRingBuffer().newBarrier(), handler);
+        disruptor.handleEventsWith(processor);
+        scheduler.start();
+        disruptor.start();
+
+        for (int i = 0; i < 3; i++)
+        {
+            disruptor.publishEvent(StubEvent.TRANSLATOR, i, "");
+        }
+
+        assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+        disruptor.shutdown(5, TimeUnit.SECONDS);
+        disruptor.halt();
+        assertTrue(handler.shutdownLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBarrierNotCreatedByARingBuffer()
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        scheduler.newProcessor(ringBuffer, new DummySequenceBarrier(), new RecordingHandler(1));
+    }
+
+    @Test
+    public void shouldRejectHandlersItCannotHonour()
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final List<EventHandler<StubEvent>> handlers = new ArrayList<>();
+        handlers.add(new TimeoutNoOpHandler());
+        handlers.add(new BatchNoOpHandler());
+        handlers.add(new DeadlineNoOpHandler());
+
+        for (final EventHandler<StubEvent> handler : handlers)
+        {
+            try
+            {
+                scheduler.newProcessor(ringBuffer, ringBuffer.newBarrier(), handler);
+                fail("Should have rejected " + handler);
+            }
+            catch (final IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    private static void waitUntilStopped(final EventProcessor processor) throws InterruptedException
+    {
+        final long timeout = System.currentTimeMillis() + 5000;
+        while (processor.isRunning() && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(1);
+        }
+        assertFalse(processor.isRunning());
+    }
+
+    private static class RecordingHandler implements EventHandler<StubEvent>, BatchStartAware, LifecycleAware
+    {
+        final CountDownLatch latch;
+        final CountDownLatch shutdownLatch = new CountDownLatch(1);
+        final List<Long> batchSizes = new ArrayList<>();
+        final List<Long> endOfBatchSequences = new ArrayList<>();
+        volatile Thread startThread;
+        volatile Thread shutdownThread;
+
+        RecordingHandler(final int expectedEvents)
+        {
+            latch = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+        {
+            if (endOfBatch)
+            {
+                endOfBatchSequences.add(sequence);
+            }
+            latch.countDown();
+        }
+
+        @Override
+        public void onBatchStart(final long batchSize)
+        {
+            batchSizes.add(batchSize);
+        }
+
+        @Override
+        public void onStart()
+        {
+            startThread = Thread.currentThread();
+        }
+
+        @Override
+        public void onShutdown()
+        {
+            shutdownThread = Thread.currentThread();
+            shutdownLatch.countDown();
+        }
+    }
+
+    private static final class CollectingExceptionHandler implements ExceptionHandler<StubEvent>
+    {
+        private final List<Long> failedSequences;
+
+        private CollectingExceptionHandler(final List<Long> failedSequences)
+        {
+            this.failedSequences = failedSequences;
+        }
+
+        @Override
+        public void handleEventException(final Throwable ex, final long sequence, final StubEvent event)
+        {
+            failedSequences.add(sequence);
+        }
+
+        @Override
+        public void handleOnStartException(final Throwable ex)
+        {
+        }
+
+        @Override
+        public void handleOnShutdownException(final Throwable ex)
+        {
+        }
+    }
+
+    private static class NoOpHandler implements EventHandler<StubEvent>
+    {
+        @Override
+        public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+        {
+        }
+    }
+
+    private static final class TimeoutNoOpHandler extends NoOpHandler implements TimeoutHandler
+    {
+        @Override
+        public void onTimeout(final long sequence)
+        {
+        }
+    }
+
+    private static final class BatchNoOpHandler extends NoOpHandler implements BatchEventHandler<StubEvent>
+    {
+        @Override
+        public void onBatch(final DataProvider<? extends StubEvent> dataProvider, final long lo, final long hi)
+        {
+        }
+
+        @Override
+        public int getMaxBatchSize()
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private static final class DeadlineNoOpHandler extends NoOpHandler implements DeadlineAware<StubEvent>
+    {
+        @Override
+        public long getDeadline(final StubEvent event)
+        {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public boolean isDeadlineOrdered()
+        {
+            return true;
+        }
+    }
+}
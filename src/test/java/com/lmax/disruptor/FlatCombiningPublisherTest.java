@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.support.StubEvent;
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class FlatCombiningPublisherTest
+{
+    private static final EventTranslatorOneArg<StubEvent, Integer> VALUE_TRANSLATOR =
+        new EventTranslatorOneArg<StubEvent, Integer>()
+        {
+            @Override
+            public void translateTo(final StubEvent event, final long sequence, final Integer value)
+            {
+                event.setValue(value);
+            }
+        };
+
+    @Test
+    public void shouldPublishEventFromSingleThread() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final FlatCombiningPublisher<StubEvent> publisher = ringBuffer.newFlatCombiningPublisher(4);
+
+        publisher.publishEvent(VALUE_TRANSLATOR, 3);
+        publisher.publishEvent(StubEvent.TRANSLATOR, 4, "four");
+
+        assertThat(ringBuffer.getCursor(), is(1L));
+        assertThat(ringBuffer.get(0).getValue(), is(3));
+        assertThat(ringBuffer.get(1).getValue(), is(4));
+        assertThat(ringBuffer.get(1).getTestString(), is("four"));
+    }
+
+    @Test
+    public void shouldRethrowTranslatorExceptionAndStillPublish() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final FlatCombiningPublisher<StubEvent> publisher = ringBuffer.newFlatCombiningPublisher(4);
+
+        try
+        {
+            publisher.publishEvent(new EventTranslator<StubEvent>()
+            {
+                @Override
+                public void translateTo(final StubEvent event, final long sequence)
+                {
+                    throw new IllegalStateException();
+                }
+            });
+            fail("Translator exception should be rethrown");
+        }
+        catch (final IllegalStateException e)
+        {
+            // expected
+        }
+
+        assertThat(ringBuffer.getCursor(), is(0L));
+        publisher.publishEvent(VALUE_TRANSLATOR, 1);
+        assertThat(ringBuffer.getCursor(), is(1L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectMoreThreadsThanSlots() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final FlatCombiningPublisher<StubEvent> publisher = ringBuffer.newFlatCombiningPublisher(1);
+
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                publisher.publishEvent(VALUE_TRANSLATOR, 1);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        publisher.publishEvent(VALUE_TRANSLATOR, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMoreThreadsThanBufferSize() throws Exception
+    {
+        RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16).newFlatCombiningPublisher(17);
+    }
+
+    @Test
+    public void shouldPublishAllEventsFromConcurrentPublishersOnSingleProducerRing() throws Exception
+    {
+        final int publishers = 8;
+        final int iterations = 5000;
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 64);
+        final FlatCombiningPublisher<StubEvent> publisher = ringBuffer.newFlatCombiningPublisher(publishers);
+        final long[] sum = new long[1];
+        final BatchEventProcessor<StubEvent> processor = new BatchEventProcessor<>(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<StubEvent>()
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    sum[0] += event.getValue();
+                }
+            });
+        ringBuffer.addGatingSequences(processor.getSequence());
+        final Thread processorThread = new Thread(processor);
+        processorThread.start();
+
+        final CyclicBarrier barrier = new CyclicBarrier(publishers);
+        final Thread[] threads = new Thread[publishers];
+        for (int p = 0; p < publishers; p++)
+        {
+            threads[p] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        barrier.await();
+                    }
+                    catch (final Exception e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = 1; i <= iterations; i++)
+                    {
+                        publisher.publishEvent(VALUE_TRANSLATOR, i);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        final long lastSequence = publishers * iterations - 1;
+        assertThat(ringBuffer.getCursor(), is(lastSequence));
+        while (processor.getSequence().get() < lastSequence)
+        {
+            Thread.yield();
+        }
+        processor.halt();
+        processorThread.join();
+
+        assertThat(sum[0], is((long) publishers * iterations * (iterations + 1) / 2));
+    }
+}
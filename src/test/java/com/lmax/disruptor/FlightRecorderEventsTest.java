@@ -0,0 +1,255 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.support.StubEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Records with JFR through reflection, since the tests also build for Java 8.
+ */
+public class FlightRecorderEventsTest
+{
+    private static final String[] EVENT_NAMES =
+    {
+        "ProducerStall", "ConsumerWait", "BatchProcessed", "HandlerException", "ProcessorLifecycle"
+    };
+
+    @Before
+    public void setUp()
+    {
+        assumeTrue(FlightRecorderEvents.isAvailable());
+    }
+
+    @Test
+    public void shouldRecordBatchesExceptionsAndLifecycle() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final CountDownLatch done = new CountDownLatch(5);
+        final BatchEventProcessor<StubEvent> processor = new BatchEventProcessor<StubEvent>(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<StubEvent>()
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    done.countDown();
+                    if (sequence == 2)
+                    {
+                        throw new IllegalStateException("failed 2");
+                    }
+                }
+            });
+        processor.setExceptionHandler(new IgnoreExceptionHandler());
+        ringBuffer.addGatingSequences(processor.getSequence());
+
+        final List<Object> events = record(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < 5; i++)
+                {
+                    ringBuffer.publish(ringBuffer.next());
+                }
+                final Thread thread = new Thread(processor);
+                thread.start();
+                try
+                {
+                    assertTrue(done.await(2, TimeUnit.SECONDS));
+                    while (processor.getSequence().get() < 4)
+                    {
+                        Thread.yield();
+                    }
+                    processor.halt();
+                    thread.join();
+                }
+                catch (final InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        assertThat(values(events, "ProcessorLifecycle", "state"), is(asList("started", "stopped")));
+        assertThat(values(events, "HandlerException", "sequence"), is(asList(2L)));
+        // 抛异常的那一批只记录HandlerException，之后从3开始的一批正常记录
+        assertThat(values(events, "BatchProcessed", "firstSequence"), is(asList(3L)));
+        assertThat(values(events, "BatchProcessed", "batchSize"), is(asList(2L)));
+    }
+
+    @Test
+    public void shouldRecordProducerStallUntilCapacityIsFreed() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 4);
+        final Sequence consumer = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        ringBuffer.addGatingSequences(consumer);
+
+        final List<Object> events = record(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < 4; i++)
+                {
+                    ringBuffer.publish(ringBuffer.next());
+                }
+                final Thread producer = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        ringBuffer.publish(ringBuffer.next());
+                    }
+                });
+                producer.start();
+                try
+                {
+                    Thread.sleep(20);
+                    consumer.set(0);
+                    producer.join();
+                }
+                catch (final InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        assertThat(values(events, "ProducerStall", "bufferSize"), is(asList(4)));
+        assertThat(values(events, "ProducerStall", "requested"), is(asList(1)));
+    }
+
+    @Test
+    public void shouldRecordConsumerWaitOnlyWhenItHadToWait() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16);
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+
+        final List<Object> events = record(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ringBuffer.publish(ringBuffer.next());
+                final Thread consumer = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            barrier.waitFor(0);
+                            barrier.waitFor(1);
+                        }
+                        catch (final Exception e)
+                        {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                consumer.start();
+                try
+                {
+                    Thread.sleep(20);
+                    ringBuffer.publish(ringBuffer.next());
+                    consumer.join();
+                }
+                catch (final InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        assertThat(values(events, "ConsumerWait", "sequence"), is(asList(1L)));
+        assertThat(values(events, "ConsumerWait", "availableSequence"), is(asList(1L)));
+    }
+
+    /**
+     * Run an action with the Disruptor events enabled at a zero threshold and return the recorded events.
+     */
+    private static List<Object> record(final Runnable action) throws Exception
+    {
+        final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        final Object recording = recordingClass.getConstructor().newInstance();
+        final Method enable = recordingClass.getMethod("enable", String.class);
+        for (final String name : EVENT_NAMES)
+        {
+            final Object settings = enable.invoke(recording, "com.lmax.disruptor." + name);
+            settings.getClass().getMethod("withThreshold", Duration.class).invoke(settings, Duration.ZERO);
+        }
+
+        final Path file = Files.createTempFile("disruptor", ".jfr");
+        try
+        {
+            recordingClass.getMethod("start").invoke(recording);
+            action.run();
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+
+            final Object all = Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", Path.class).invoke(null, file);
+            return new ArrayList<Object>((List<?>) all);
+        }
+        finally
+        {
+            recordingClass.getMethod("close").invoke(recording);
+            new File(file.toString()).delete();
+        }
+    }
+
+    private static List<Object> values(final List<Object> events, final String name, final String field) throws Exception
+    {
+        final List<Object> values = new ArrayList<Object>();
+        for (final Object event : events)
+        {
+            final Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+            final Object type = recordedEvent.getMethod("getEventType").invoke(event);
+            final Object typeName = type.getClass().getMethod("getName").invoke(type);
+            if (("com.lmax.disruptor." + name).equals(typeName))
+            {
+                values.add(recordedEvent.getMethod("getValue", String.class).invoke(event, field));
+            }
+        }
+        return values;
+    }
+
+    private static List<Object> asList(final Object... values)
+    {
+        final List<Object> list = new ArrayList<Object>();
+        for (final Object value : values)
+        {
+            list.add(value);
+        }
+        return list;
+    }
+}
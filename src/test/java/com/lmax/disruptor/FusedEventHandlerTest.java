@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.support.DummyEventHandler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public final class FusedEventHandlerTest
+{
+    private final DummyEventHandler<int[]> eh1 = new DummyEventHandler<int[]>();
+    private final DummyEventHandler<int[]> eh2 = new DummyEventHandler<int[]>();
+
+    @Test
+    public void shouldCallHandlersInOrderForEachEvent() throws Exception
+    {
+        final List<String> calls = new ArrayList<String>();
+        final FusedEventHandler<int[]> fusedEventHandler = new FusedEventHandler<int[]>(
+            new RecordingEventHandler("a", calls), new RecordingEventHandler("b", calls));
+
+        fusedEventHandler.onEvent(new int[]{1}, 0L, false);
+        fusedEventHandler.onEvent(new int[]{2}, 1L, true);
+
+        assertThat(calls.toString(), is("[a0, b0, a1, b1]"));
+    }
+
+    @Test
+    public void shouldAdvanceEachHandlerSequenceAtEndOfBatch() throws Exception
+    {
+        final FusedEventHandler<int[]> fusedEventHandler = new FusedEventHandler<int[]>(eh1, eh2);
+
+        fusedEventHandler.onEvent(new int[]{7}, 0L, false);
+
+        assertThat(fusedEventHandler.getSequence(0).get(), is(-1L));
+        assertThat(fusedEventHandler.getSequence(1).get(), is(-1L));
+
+        fusedEventHandler.onEvent(new int[]{7}, 1L, true);
+
+        assertThat(fusedEventHandler.getSequence(0).get(), is(1L));
+        assertThat(fusedEventHandler.getSequence(1).get(), is(1L));
+        assertThat(eh2.lastSequence, is(1L));
+    }
+
+    @Test
+    public void shouldAdvanceAHandlerSequenceBeforeTheNextHandlerRuns() throws Exception
+    {
+        final long[] seenByNext = new long[2];
+        final AtomicReference<FusedEventHandler<int[]>> fused = new AtomicReference<FusedEventHandler<int[]>>();
+        fused.set(new FusedEventHandler<int[]>(eh1, new EventHandler<int[]>()
+        {
+            @Override
+            public void onEvent(final int[] event, final long sequence, final boolean endOfBatch)
+            {
+                seenByNext[0] = fused.get().getSequence(0).get();
+                seenByNext[1] = fused.get().getSequence(1).get();
+            }
+        }));
+
+        fused.get().onEvent(new int[]{7}, 0L, true);
+
+        assertThat(seenByNext[0], is(0L));
+        assertThat(seenByNext[1], is(-1L));
+        assertThat(fused.get().getSequence(1).get(), is(0L));
+    }
+
+    @Test
+    public void shouldSkipLaterHandlersAndAdvanceSequencesWhenHandlerThrows() throws Exception
+    {
+        final RuntimeException failure = new RuntimeException();
+        final EventHandler<int[]> throwingHandler = new EventHandler<int[]>()
+        {
+            @Override
+            public void onEvent(final int[] event, final long sequence, final boolean endOfBatch)
+            {
+                throw failure;
+            }
+        };
+        final FusedEventHandler<int[]> fusedEventHandler = new FusedEventHandler<int[]>(eh1, throwingHandler, eh2);
+
+        try
+        {
+            fusedEventHandler.onEvent(new int[]{7}, 4L, false);
+            fail("Exception should have been rethrown to the processor");
+        }
+        catch (final RuntimeException e)
+        {
+            assertThat(e, is(failure));
+        }
+
+        assertThat(eh1.lastSequence, is(4L));
+        assertThat(eh2.lastEvent == null, is(true));
+        assertThat(fusedEventHandler.getSequence(0).get(), is(4L));
+        assertThat(fusedEventHandler.getSequence(1).get(), is(4L));
+        assertThat(fusedEventHandler.getSequence(2).get(), is(4L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectHandlerThatNeedsItsOwnProcessor() throws Exception
+    {
+        new FusedEventHandler<int[]>(eh1, new TimeoutEventHandler());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSequenceReportingHandler() throws Exception
+    {
+        new FusedEventHandler<int[]>(new SequenceReportingEventHandler<int[]>()
+        {
+            @Override
+            public void setSequenceCallback(final Sequence sequenceCallback)
+            {
+            }
+
+            @Override
+            public void onEvent(final int[] event, final long sequence, final boolean endOfBatch)
+            {
+            }
+        }, eh2);
+    }
+
+    @Test
+    public void shouldCallLifecycleMethodsOfEachHandler() throws Exception
+    {
+        final FusedEventHandler<int[]> fusedEventHandler = new FusedEventHandler<int[]>(eh1, eh2);
+
+        fusedEventHandler.onStart();
+        fusedEventHandler.onShutdown();
+
+        assertThat(eh1.startCalls, is(1));
+        assertThat(eh2.startCalls, is(1));
+        assertThat(eh1.shutdownCalls, is(1));
+        assertThat(eh2.shutdownCalls, is(1));
+    }
+
+    private static final class TimeoutEventHandler implements EventHandler<int[]>, TimeoutHandler
+    {
+        @Override
+        public void onEvent(final int[] event, final long sequence, final boolean endOfBatch)
+        {
+        }
+
+        @Override
+        public void onTimeout(final long sequence)
+        {
+        }
+    }
+
+    private static final class RecordingEventHandler implements EventHandler<int[]>
+    {
+        private final String name;
+        private final List<String> calls;
+
+        private RecordingEventHandler(final String name, final List<String> calls)
+        {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Override
+        public void onEvent(final int[] event, final long sequence, final boolean endOfBatch)
+        {
+            calls.add(name + sequence);
+        }
+    }
+}
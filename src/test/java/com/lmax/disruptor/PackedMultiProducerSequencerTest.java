@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class PackedMultiProducerSequencerTest
+{
+    private final Sequencer publisher = new PackedMultiProducerSequencer(1024, new BlockingWaitStrategy());
+
+    @Test
+    public void shouldOnlyAllowMessagesToBeAvailableIfSpecificallyPublished() throws Exception
+    {
+        publisher.publish(3);
+        publisher.publish(5);
+
+        assertThat(publisher.isAvailable(0), is(false));
+        assertThat(publisher.isAvailable(1), is(false));
+        assertThat(publisher.isAvailable(2), is(false));
+        assertThat(publisher.isAvailable(3), is(true));
+        assertThat(publisher.isAvailable(4), is(false));
+        assertThat(publisher.isAvailable(5), is(true));
+        assertThat(publisher.isAvailable(6), is(false));
+    }
+
+    @Test
+    public void shouldFindHighestPublishedSequenceAcrossWords() throws Exception
+    {
+        final long hi = publisher.next(300);
+        publisher.publish(0, 199);
+        publisher.publish(201, hi);
+
+        assertThat(publisher.getHighestPublishedSequence(0, hi), is(199L));
+        assertThat(publisher.getHighestPublishedSequence(70, 150), is(150L));
+
+        publisher.publish(200);
+        assertThat(publisher.getHighestPublishedSequence(0, hi), is(hi));
+        assertThat(publisher.getHighestPublishedSequence(64, 64), is(64L));
+    }
+
+    @Test
+    public void shouldReportNothingPublishedWhenLowerBoundIsMissing() throws Exception
+    {
+        final long hi = publisher.next(10);
+        publisher.publish(1, hi);
+
+        assertThat(publisher.getHighestPublishedSequence(0, hi), is(-1L));
+    }
+
+    @Test
+    public void shouldDistinguishLapsOfTheSameSlot() throws Exception
+    {
+        final Sequence gatingSequence = new Sequence();
+        publisher.addGatingSequences(gatingSequence);
+
+        for (int lap = 0; lap < 4; lap++)
+        {
+            final long hi = publisher.next(1024);
+            final long lo = hi - 1023;
+
+            assertThat(publisher.getHighestPublishedSequence(lo, hi), is(lo - 1));
+
+            publisher.publish(lo, lo + 499);
+            assertThat(publisher.getHighestPublishedSequence(lo, hi), is(lo + 499));
+            assertThat(publisher.isAvailable(lo + 500), is(false));
+
+            for (long sequence = lo + 500; sequence <= hi; sequence++)
+            {
+                publisher.publish(sequence);
+            }
+            assertThat(publisher.getHighestPublishedSequence(lo, hi), is(hi));
+
+            gatingSequence.set(hi);
+        }
+    }
+
+    @Test
+    public void shouldHandleBuffersSmallerThanAWord() throws Exception
+    {
+        final Sequencer small = new PackedMultiProducerSequencer(8, new BlockingWaitStrategy());
+        final Sequence gatingSequence = new Sequence();
+        small.addGatingSequences(gatingSequence);
+
+        long hi = small.next(6);
+        small.publish(0, hi);
+        gatingSequence.set(3);
+
+        hi = small.next(4);
+        small.publish(6, 8);
+
+        assertThat(small.getHighestPublishedSequence(4, hi), is(8L));
+        assertThat(small.isAvailable(9), is(false));
+
+        small.publish(9);
+        assertThat(small.getHighestPublishedSequence(4, hi), is(9L));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class ParkingProducerWaitStrategyTest
+{
+    @Test
+    public void shouldParkForOneNanosecondByDefault()
+    {
+        final ParkingProducerWaitStrategy strategy = new ParkingProducerWaitStrategy();
+
+        assertThat(strategy.parkNanos(0), is(1L));
+        assertThat(strategy.parkNanos(1000), is(1L));
+    }
+
+    @Test
+    public void shouldDoubleParkUpToMaximum()
+    {
+        final ParkingProducerWaitStrategy strategy = new ParkingProducerWaitStrategy(1000, 5000);
+
+        assertThat(strategy.parkNanos(0), is(1000L));
+        assertThat(strategy.parkNanos(1), is(2000L));
+        assertThat(strategy.parkNanos(2), is(4000L));
+        assertThat(strategy.parkNanos(3), is(5000L));
+        assertThat(strategy.parkNanos(Integer.MAX_VALUE), is(5000L));
+    }
+
+    @Test
+    public void shouldNotOverflowForLongParks()
+    {
+        final ParkingProducerWaitStrategy strategy = new ParkingProducerWaitStrategy(1L << 40, Long.MAX_VALUE);
+
+        assertThat(strategy.parkNanos(22), is(1L << 62));
+        assertThat(strategy.parkNanos(23), is(Long.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMaximumBelowMinimum()
+    {
+        new ParkingProducerWaitStrategy(1000, 10);
+    }
+}
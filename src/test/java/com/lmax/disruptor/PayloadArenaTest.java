@@ -0,0 +1,205 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.support.LongEvent;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadArenaTest
+{
+    private static final PayloadArena.Translator<LongEvent, Long> FILL_TRANSLATOR =
+        new PayloadArena.Translator<LongEvent, Long>()
+        {
+            @Override
+            public void translateTo(final LongEvent event, final long sequence, final ByteBuffer payload, final Long value)
+            {
+                event.set(value);
+                while (payload.hasRemaining())
+                {
+                    payload.put((byte) value.longValue());
+                }
+            }
+        };
+
+    @Test
+    public void shouldReadPayloadReservedForSequence() throws Exception
+    {
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 8);
+        final PayloadArena<LongEvent> arena = new PayloadArena<>(ringBuffer, 64);
+
+        arena.publishEvent(FILL_TRANSLATOR, 3, 7L);
+        arena.publishEvent(FILL_TRANSLATOR, 0, 8L);
+        arena.publishEvent(FILL_TRANSLATOR, 5, 9L);
+
+        assertPayload(arena, 0, 3, (byte) 7);
+        assertPayload(arena, 1, 0, (byte) 8);
+        assertPayload(arena, 2, 5, (byte) 9);
+        assertThat(arena.getLength(2), is(5));
+    }
+
+    @Test
+    public void shouldNotSplitPayloadAcrossEndOfArena() throws Exception
+    {
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 8);
+        final Sequence gatingSequence = new Sequence();
+        ringBuffer.addGatingSequences(gatingSequence);
+        final PayloadArena<LongEvent> arena = new PayloadArena<>(ringBuffer, 16);
+
+        arena.publishEvent(FILL_TRANSLATOR, 10, 1L);
+        gatingSequence.set(0);
+        arena.publishEvent(FILL_TRANSLATOR, 12, 2L);
+
+        assertThat(arena.get(1).position(), is(0));
+        assertPayload(arena, 1, 12, (byte) 2);
+    }
+
+    @Test
+    public void shouldWaitForSlowestConsumerBeforeReusingSpace() throws Exception
+    {
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 8);
+        final Sequence gatingSequence = new Sequence();
+        ringBuffer.addGatingSequences(gatingSequence);
+        final PayloadArena<LongEvent> arena = new PayloadArena<>(ringBuffer, 16);
+
+        arena.publishEvent(FILL_TRANSLATOR, 16, 1L);
+
+        final CountDownLatch published = new CountDownLatch(1);
+        final Thread publisher = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                arena.publishEvent(FILL_TRANSLATOR, 1, 2L);
+                published.countDown();
+            }
+        });
+        publisher.start();
+
+        assertFalse(published.await(50, TimeUnit.MILLISECONDS));
+
+        gatingSequence.set(0);
+
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        assertPayload(arena, 1, 1, (byte) 2);
+        publisher.join();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPayloadLargerThanCapacity() throws Exception
+    {
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 8);
+        final PayloadArena<LongEvent> arena = new PayloadArena<>(ringBuffer, 16);
+
+        arena.publishEvent(FILL_TRANSLATOR, 17, 1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCapacityThatIsNotAPowerOfTwo() throws Exception
+    {
+        new PayloadArena<>(RingBuffer.createSingleProducer(LongEvent.FACTORY, 8), 100);
+    }
+
+    @Test
+    public void shouldTransferPayloadsFromMultipleProducers() throws Exception
+    {
+        final int producers = 2;
+        final int iterations = 20000;
+        final RingBuffer<LongEvent> ringBuffer =
+            RingBuffer.createMultiProducer(LongEvent.FACTORY, 64, new YieldingWaitStrategy());
+        final PayloadArena<LongEvent> arena = new PayloadArena<>(ringBuffer, 16 * 1024);
+
+        final AtomicLong errors = new AtomicLong();
+        final CountDownLatch consumed = new CountDownLatch(producers * iterations);
+        final BatchEventProcessor<LongEvent> processor = new BatchEventProcessor<>(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<LongEvent>()
+            {
+                @Override
+                public void onEvent(final LongEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    final ByteBuffer payload = arena.get(sequence);
+                    if (payload.remaining() != lengthFor(event.get()))
+                    {
+                        errors.incrementAndGet();
+                    }
+                    while (payload.hasRemaining())
+                    {
+                        if (payload.get() != (byte) event.get())
+                        {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    consumed.countDown();
+                }
+            });
+        ringBuffer.addGatingSequences(processor.getSequence());
+        final Thread consumer = new Thread(processor);
+        consumer.start();
+
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++)
+        {
+            final long base = p * iterations;
+            threads[p] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (long i = base; i < base + iterations; i++)
+                    {
+                        arena.publishEvent(FILL_TRANSLATOR, lengthFor(i), i);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        assertTrue(consumed.await(30, TimeUnit.SECONDS));
+        assertThat(errors.get(), is(0L));
+
+        processor.halt();
+        consumer.join();
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+    }
+
+    private static int lengthFor(final long value)
+    {
+        return (int) (value % 300);
+    }
+
+    private static void assertPayload(
+        final PayloadArena<LongEvent> arena, final long sequence, final int length, final byte expected)
+    {
+        final ByteBuffer payload = arena.get(sequence);
+        assertThat(payload.remaining(), is(length));
+        while (payload.hasRemaining())
+        {
+            assertThat(payload.get(), is(expected));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.LongEvent;
+import com.lmax.disruptor.support.ThreadAllocation;
+
+/**
+ * Checks that {@link BatchEventProcessor}, {@link WorkProcessor} and {@link EventPoller} allocate nothing per event
+ * once compiled.  The processors wait with a {@link SleepingWaitStrategy}, as the lock based strategies allocate a
+ * condition node each time a consumer blocks.
+ */
+public class ProcessorAllocationTest
+{
+    private static final int BUFFER_SIZE = 1024;
+    private static final int EVENTS_PER_ITERATION = 256;
+    private static final int ITERATIONS = 4000;
+
+    private static final EventTranslator<LongEvent> TRANSLATOR = new EventTranslator<LongEvent>()
+    {
+        @Override
+        public void translateTo(final LongEvent event, final long sequence)
+        {
+            event.set(sequence);
+        }
+    };
+
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final ThreadFactory threadFactory = new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            threads.add(thread);
+            return thread;
+        }
+    };
+    private final Disruptor<LongEvent> disruptor = new Disruptor<>(
+        LongEvent.FACTORY, BUFFER_SIZE, threadFactory, ProducerType.SINGLE, new SleepingWaitStrategy());
+
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(ThreadAllocation.isSupported());
+    }
+
+    @After
+    public void tearDown()
+    {
+        disruptor.halt();
+    }
+
+    @Test
+    public void shouldNotAllocateInBatchEventProcessor()
+    {
+        disruptor.handleEventsWith(new SummingHandler()).then(new SummingHandler());
+
+        assertConsumersDoNotAllocate(disruptor.start());
+    }
+
+    @Test
+    public void shouldNotAllocateInWorkProcessor()
+    {
+        disruptor.handleEventsWithWorkerPool(new SummingHandler(), new SummingHandler());
+
+        assertConsumersDoNotAllocate(disruptor.start());
+    }
+
+    @Test
+    public void shouldNotAllocateInEventPoller()
+    {
+        final RingBuffer<LongEvent> ringBuffer = disruptor.getRingBuffer();
+        final EventPoller<LongEvent> poller = ringBuffer.newPoller();
+        ringBuffer.addGatingSequences(poller.getSequence());
+        final EventPoller.Handler<LongEvent> handler = new EventPoller.Handler<LongEvent>()
+        {
+            private long sum;
+
+            @Override
+            public boolean onEvent(final LongEvent event, final long sequence, final boolean endOfBatch)
+            {
+                sum += event.get();
+                return true;
+            }
+        };
+
+        final long allocated = ThreadAllocation.allocatedBytes(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < EVENTS_PER_ITERATION; i++)
+                {
+                    ringBuffer.publishEvent(TRANSLATOR);
+                }
+                try
+                {
+                    poller.poll(handler);
+                }
+                catch (final Exception e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, ITERATIONS);
+
+        assertThat(allocated, is(0L));
+    }
+
+    private void assertConsumersDoNotAllocate(final RingBuffer<LongEvent> ringBuffer)
+    {
+        final long allocated = ThreadAllocation.allocatedBytes(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < EVENTS_PER_ITERATION; i++)
+                {
+                    ringBuffer.publishEvent(TRANSLATOR);
+                }
+                // 等待消费者处理完，保证测量的是这一轮的分配
+                final long cursor = ringBuffer.getCursor();
+                while (ringBuffer.getMinimumGatingSequence() < cursor)
+                {
+                    LockSupport.parkNanos(1000L);
+                }
+            }
+        }, ITERATIONS, threads.toArray(new Thread[0]));
+
+        assertThat(allocated, is(0L));
+    }
+
+    private static final class SummingHandler implements EventHandler<LongEvent>, WorkHandler<LongEvent>
+    {
+        private long sum;
+
+        @Override
+        public void onEvent(final LongEvent event, final long sequence, final boolean endOfBatch)
+        {
+            sum += event.get();
+        }
+
+        @Override
+        public void onEvent(final LongEvent event)
+        {
+            sum += event.get();
+        }
+    }
+}
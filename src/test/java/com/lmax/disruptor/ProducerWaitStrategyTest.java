@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.StubEvent;
+
+@RunWith(Parameterized.class)
+public class ProducerWaitStrategyTest
+{
+    private static final int BUFFER_SIZE = 4;
+
+    private final ProducerWaitStrategy producerWaitStrategy;
+    private final RingBuffer<StubEvent> ringBuffer;
+    private final Sequence gatingSequence = new Sequence();
+
+    public ProducerWaitStrategyTest(final ProducerType producerType, final ProducerWaitStrategy producerWaitStrategy)
+    {
+        this.producerWaitStrategy = producerWaitStrategy;
+        this.ringBuffer = RingBuffer.create(
+            producerType, StubEvent.EVENT_FACTORY, BUFFER_SIZE, new BlockingWaitStrategy(), producerWaitStrategy);
+        ringBuffer.addGatingSequences(gatingSequence);
+    }
+
+    @Parameters
+    public static Collection<Object[]> generateData()
+    {
+        Object[][] strategies =
+            {
+                {ProducerType.SINGLE, new ParkingProducerWaitStrategy()},
+                {ProducerType.MULTI, new ParkingProducerWaitStrategy(1000, 1000000)},
+                {ProducerType.MULTI_PACKED, new YieldingProducerWaitStrategy()},
+                {ProducerType.SINGLE, new BusySpinProducerWaitStrategy()},
+                {ProducerType.SINGLE, new BlockingProducerWaitStrategy()},
+                {ProducerType.MULTI, new BlockingProducerWaitStrategy()},
+            };
+        return Arrays.asList(strategies);
+    }
+
+    @Test
+    public void shouldNotRecordBlockedTimeWhenCapacityIsAvailable()
+    {
+        ringBuffer.publish(ringBuffer.next(BUFFER_SIZE));
+
+        assertThat(ringBuffer.getProducerBlockedCount(), is(0L));
+        assertThat(ringBuffer.getProducerBlockedNanos(), is(0L));
+    }
+
+    @Test
+    public void shouldHoldUpProducerUntilCapacityIsFreedAndRecordTheWait() throws Exception
+    {
+        ringBuffer.publish(ringBuffer.next(BUFFER_SIZE));
+
+        final long[] claimed = new long[1];
+        final Thread producer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                claimed[0] = ringBuffer.next();
+                ringBuffer.publish(claimed[0]);
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        Thread.sleep(20);
+        assertThat(producer.isAlive(), is(true));
+
+        gatingSequence.set(0);
+        producerWaitStrategy.signalAllWhenBlocking();
+        producer.join(5000);
+
+        assertThat(producer.isAlive(), is(false));
+        assertThat(claimed[0], is((long) BUFFER_SIZE));
+        assertThat(ringBuffer.getProducerBlockedCount(), is(1L));
+        assertTrue(ringBuffer.getProducerBlockedNanos() > 0);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.LongEvent;
+import com.lmax.disruptor.support.ThreadAllocation;
+
+/**
+ * Checks that every publish path of {@link RingBuffer} allocates nothing once compiled.  Arguments, argument arrays
+ * and translator arrays are allocated up front, as a garbage free publisher would, so only the ring buffer's own
+ * allocation is counted.
+ */
+@RunWith(Parameterized.class)
+public class RingBufferAllocationTest
+{
+    private static final int ITERATIONS = 1000000;
+    private static final int BATCH_SIZE = 4;
+
+    private static final Long ARG = 1L;
+    private static final Long[] ARGS = {1L, 2L, 3L, 4L};
+    private static final Object[] VARARGS = {1L, 2L, 3L};
+    private static final Object[][] VARARGS_BATCH = {VARARGS, VARARGS, VARARGS, VARARGS};
+
+    private static final EventTranslator<LongEvent> TRANSLATOR = new EventTranslator<LongEvent>()
+    {
+        @Override
+        public void translateTo(final LongEvent event, final long sequence)
+        {
+            event.set(sequence);
+        }
+    };
+
+    private static final EventTranslatorOneArg<LongEvent, Long> ONE_ARG = new EventTranslatorOneArg<LongEvent, Long>()
+    {
+        @Override
+        public void translateTo(final LongEvent event, final long sequence, final Long arg0)
+        {
+            event.set(arg0);
+        }
+    };
+
+    private static final EventTranslatorTwoArg<LongEvent, Long, Long> TWO_ARG =
+        new EventTranslatorTwoArg<LongEvent, Long, Long>()
+        {
+            @Override
+            public void translateTo(final LongEvent event, final long sequence, final Long arg0, final Long arg1)
+            {
+                event.set(arg0 + arg1);
+            }
+        };
+
+    private static final EventTranslatorThreeArg<LongEvent, Long, Long, Long> THREE_ARG =
+        new EventTranslatorThreeArg<LongEvent, Long, Long, Long>()
+        {
+            @Override
+            public void translateTo(
+                final LongEvent event, final long sequence, final Long arg0, final Long arg1, final Long arg2)
+            {
+                event.set(arg0 + arg1 + arg2);
+            }
+        };
+
+    private static final EventTranslatorVararg<LongEvent> VARARG = new EventTranslatorVararg<LongEvent>()
+    {
+        @Override
+        public void translateTo(final LongEvent event, final long sequence, final Object... args)
+        {
+            event.set((Long) args[0]);
+        }
+    };
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final EventTranslator<LongEvent>[] TRANSLATORS =
+        new EventTranslator[]{TRANSLATOR, TRANSLATOR, TRANSLATOR, TRANSLATOR};
+
+    private final RingBuffer<LongEvent> ringBuffer;
+
+    public RingBufferAllocationTest(final ProducerType producerType)
+    {
+        // 没有gating sequence，发布永远不会因队列满而等待
+        ringBuffer = RingBuffer.create(producerType, LongEvent.FACTORY, 1024, new BlockingWaitStrategy());
+    }
+
+    @Parameters
+    public static Collection<Object[]> generateData()
+    {
+        Object[][] producerTypes =
+            {
+                {ProducerType.SINGLE},
+                {ProducerType.MULTI},
+                {ProducerType.MULTI_PACKED},
+            };
+        return Arrays.asList(producerTypes);
+    }
+
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(ThreadAllocation.isSupported());
+    }
+
+    @Test
+    public void shouldNotAllocateWhenClaimingAndPublishing()
+    {
+        assertNoAllocation(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final long sequence = ringBuffer.next();
+                ringBuffer.get(sequence).set(sequence);
+                ringBuffer.publish(sequence);
+            }
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenPublishingEvent()
+    {
+        assertNoAllocation(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ringBuffer.publishEvent(TRANSLATOR);
+                ringBuffer.publishEvent(ONE_ARG, ARG);
+                ringBuffer.publishEvent(TWO_ARG, ARG, ARG);
+                ringBuffer.publishEvent(THREE_ARG, ARG, ARG, ARG);
+                ringBuffer.publishEvent(VARARG, VARARGS);
+            }
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenTryPublishingEvent()
+    {
+        assertNoAllocation(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ringBuffer.tryPublishEvent(TRANSLATOR);
+                ringBuffer.tryPublishEvent(ONE_ARG, ARG);
+                ringBuffer.tryPublishEvent(TWO_ARG, ARG, ARG);
+                ringBuffer.tryPublishEvent(THREE_ARG, ARG, ARG, ARG);
+                ringBuffer.tryPublishEvent(VARARG, VARARGS);
+            }
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenPublishingEvents()
+    {
+        assertNoAllocation(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ringBuffer.publishEvents(TRANSLATORS);
+                ringBuffer.publishEvents(TRANSLATORS, 1, BATCH_SIZE - 1);
+                ringBuffer.publishEvents(ONE_ARG, ARGS);
+                ringBuffer.publishEvents(ONE_ARG, 1, BATCH_SIZE - 1, ARGS);
+                ringBuffer.publishEvents(TWO_ARG, ARGS, ARGS);
+                ringBuffer.publishEvents(TWO_ARG, 1, BATCH_SIZE - 1, ARGS, ARGS);
+                ringBuffer.publishEvents(THREE_ARG, ARGS, ARGS, ARGS);
+                ringBuffer.publishEvents(THREE_ARG, 1, BATCH_SIZE - 1, ARGS, ARGS, ARGS);
+                ringBuffer.publishEvents(VARARG, VARARGS_BATCH);
+                ringBuffer.publishEvents(VARARG, 1, BATCH_SIZE - 1, VARARGS_BATCH);
+            }
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenTryPublishingEvents()
+    {
+        assertNoAllocation(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ringBuffer.tryPublishEvents(TRANSLATORS);
+                ringBuffer.tryPublishEvents(TRANSLATORS, 1, BATCH_SIZE - 1);
+                ringBuffer.tryPublishEvents(ONE_ARG, ARGS);
+                ringBuffer.tryPublishEvents(ONE_ARG, 1, BATCH_SIZE - 1, ARGS);
+                ringBuffer.tryPublishEvents(TWO_ARG, ARGS, ARGS);
+                ringBuffer.tryPublishEvents(TWO_ARG, 1, BATCH_SIZE - 1, ARGS, ARGS);
+                ringBuffer.tryPublishEvents(THREE_ARG, ARGS, ARGS, ARGS);
+                ringBuffer.tryPublishEvents(THREE_ARG, 1, BATCH_SIZE - 1, ARGS, ARGS, ARGS);
+                ringBuffer.tryPublishEvents(VARARG, VARARGS_BATCH);
+                ringBuffer.tryPublishEvents(VARARG, 1, BATCH_SIZE - 1, VARARGS_BATCH);
+            }
+        });
+    }
+
+    private static void assertNoAllocation(final Runnable operation)
+    {
+        assertThat(ThreadAllocation.allocatedBytes(operation, ITERATIONS), is(0L));
+    }
+}
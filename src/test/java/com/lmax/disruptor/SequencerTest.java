@@ -40,6 +40,7 @@ public class SequencerTest
             {
                 {ProducerType.SINGLE, new BlockingWaitStrategy()},
                 {ProducerType.MULTI, new BlockingWaitStrategy()},
+                {ProducerType.MULTI_PACKED, new BlockingWaitStrategy()},
             };
         return Arrays.asList(allocators);
     }
@@ -273,6 +274,8 @@ public class SequencerTest
                 return new SingleProducerSequencer(bufferSize, waitStrategy);
             case MULTI:
                 return new MultiProducerSequencer(bufferSize, waitStrategy);
+            case MULTI_PACKED:
+                return new PackedMultiProducerSequencer(bufferSize, waitStrategy);
             default:
                 throw new IllegalStateException(producerType.toString());
         }
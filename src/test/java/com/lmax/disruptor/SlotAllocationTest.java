@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.lmax.disruptor.dsl.ProducerType;
+
+public class SlotAllocationTest
+{
+    private final AtomicInteger created = new AtomicInteger();
+    private final EventFactory<OwnedEvent> factory = new EventFactory<OwnedEvent>()
+    {
+        @Override
+        public OwnedEvent newInstance()
+        {
+            created.incrementAndGet();
+            return new OwnedEvent(Thread.currentThread());
+        }
+    };
+
+    @Test
+    public void shouldCreateEveryEventInParallel() throws Exception
+    {
+        final int bufferSize = 1 << 16;
+        final RingBuffer<OwnedEvent> ringBuffer = RingBuffer.create(
+            ProducerType.SINGLE, factory, bufferSize, new BlockingWaitStrategy(), SlotAllocation.PARALLEL);
+
+        assertThat(created.get(), is(bufferSize));
+
+        final Set<OwnedEvent> events = Collections.newSetFromMap(new IdentityHashMap<OwnedEvent, Boolean>());
+        for (int i = 0; i < bufferSize; i++)
+        {
+            assertThat(ringBuffer.get(i), notNullValue());
+            events.add(ringBuffer.get(i));
+        }
+        assertThat(events.size(), is(bufferSize));
+    }
+
+    @Test
+    public void shouldCreateEventsOnFirstAccess() throws Exception
+    {
+        final RingBuffer<OwnedEvent> ringBuffer = RingBuffer.create(
+            ProducerType.MULTI, factory, 8, new BlockingWaitStrategy(), SlotAllocation.LAZY);
+        assertThat(created.get(), is(0));
+
+        final long sequence = ringBuffer.next();
+        final OwnedEvent event = ringBuffer.get(sequence);
+        ringBuffer.publish(sequence);
+
+        assertThat(created.get(), is(1));
+        assertThat(ringBuffer.get(sequence), sameInstance(event));
+    }
+
+    @Test
+    public void shouldReuseLazilyCreatedEventsOnTheNextLap() throws Exception
+    {
+        final RingBuffer<OwnedEvent> ringBuffer = RingBuffer.create(
+            ProducerType.SINGLE, factory, 4, new BlockingWaitStrategy(), SlotAllocation.LAZY);
+
+        final OwnedEvent[] events = new OwnedEvent[8];
+        for (int i = 0; i < events.length; i++)
+        {
+            final long sequence = ringBuffer.next();
+            events[i] = ringBuffer.get(sequence);
+            ringBuffer.publish(sequence);
+        }
+
+        assertThat(created.get(), is(4));
+        assertThat(events[4], sameInstance(events[0]));
+        assertThat(events[7], sameInstance(events[3]));
+    }
+
+    @Test
+    public void shouldPreallocateRemainingSlotsOnTheCallingThread() throws Exception
+    {
+        final RingBuffer<OwnedEvent> ringBuffer = RingBuffer.create(
+            ProducerType.SINGLE, factory, 16, new BlockingWaitStrategy(), SlotAllocation.LAZY);
+        final OwnedEvent touched = ringBuffer.get(3);
+
+        final Thread owner = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ringBuffer.preallocate();
+            }
+        });
+        owner.start();
+        owner.join();
+
+        assertThat(created.get(), is(16));
+        assertThat(ringBuffer.get(3), sameInstance(touched));
+        for (int i = 0; i < 16; i++)
+        {
+            if (i != 3)
+            {
+                assertThat(ringBuffer.get(i).owner, sameInstance(owner));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotCreateEventsWhenPreallocatingAnEagerRingBuffer() throws Exception
+    {
+        final RingBuffer<OwnedEvent> ringBuffer = RingBuffer.create(
+            ProducerType.SINGLE, factory, 16, new BlockingWaitStrategy(), SlotAllocation.EAGER);
+
+        ringBuffer.preallocate();
+
+        assertThat(created.get(), is(16));
+    }
+
+    @Test
+    public void shouldCreateEachEventOnceWhenRacingForTheSameSlots() throws Exception
+    {
+        final int bufferSize = 1 << 12;
+        final RingBuffer<OwnedEvent> ringBuffer = RingBuffer.create(
+            ProducerType.MULTI, factory, bufferSize, new BlockingWaitStrategy(), SlotAllocation.LAZY);
+
+        final OwnedEvent[][] seen = new OwnedEvent[2][bufferSize];
+        final Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final OwnedEvent[] events = seen[t];
+            threads[t] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < bufferSize; i++)
+                    {
+                        events[i] = ringBuffer.get(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        for (int i = 0; i < bufferSize; i++)
+        {
+            assertThat(seen[0][i], sameInstance(seen[1][i]));
+            assertThat(ringBuffer.get(i), sameInstance(seen[0][i]));
+        }
+    }
+
+    private static final class OwnedEvent
+    {
+        private final Thread owner;
+
+        private OwnedEvent(final Thread owner)
+        {
+            this.owner = owner;
+        }
+    }
+}
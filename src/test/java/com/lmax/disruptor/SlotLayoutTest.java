@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.StubEvent;
+
+public class SlotLayoutTest
+{
+    @Test
+    public void shouldKeepEveryEventOfAPaddedRingBufferDistinct() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.create(
+            ProducerType.SINGLE, StubEvent.EVENT_FACTORY, 16, new BlockingWaitStrategy(),
+            SlotAllocation.EAGER, SlotLayout.PADDED);
+
+        for (int i = 0; i < 16; i++)
+        {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).setValue(i);
+            ringBuffer.publish(sequence);
+        }
+
+        for (int i = 0; i < 16; i++)
+        {
+            assertThat(ringBuffer.get(i).getValue(), is(i));
+            assertThat(ringBuffer.get(i + 16), sameInstance(ringBuffer.get(i)));
+        }
+    }
+
+    @Test
+    public void shouldLazilyCreateEventsOfAPaddedRingBuffer() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.create(
+            ProducerType.MULTI, StubEvent.EVENT_FACTORY, 8, new BlockingWaitStrategy(),
+            SlotAllocation.LAZY, SlotLayout.PADDED);
+
+        final StubEvent first = ringBuffer.get(1);
+        ringBuffer.preallocate();
+
+        assertThat(ringBuffer.get(1), sameInstance(first));
+        for (int i = 0; i < 8; i++)
+        {
+            ringBuffer.get(i).setValue(i);
+        }
+        for (int i = 0; i < 8; i++)
+        {
+            assertThat(ringBuffer.get(i).getValue(), is(i));
+        }
+    }
+
+    @Test
+    public void shouldFillPaddedRingBufferInParallel() throws Exception
+    {
+        final int bufferSize = 1 << 16;
+        final RingBuffer<StubEvent> ringBuffer = RingBuffer.create(
+            ProducerType.SINGLE, StubEvent.EVENT_FACTORY, bufferSize, new BlockingWaitStrategy(),
+            SlotAllocation.PARALLEL, SlotLayout.PADDED);
+
+        for (int i = 0; i < bufferSize; i++)
+        {
+            ringBuffer.get(i).setValue(i);
+        }
+        for (int i = 0; i < bufferSize; i++)
+        {
+            assertThat(ringBuffer.get(i).getValue(), is(i));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import static com.lmax.disruptor.support.WaitStrategyTestUtil.assertWaitForWithDelayOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.DummySequenceBarrier;
+import com.lmax.disruptor.support.StubEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+public class TargetedBlockingWaitStrategyTest
+{
+    private final TargetedBlockingWaitStrategy waitStrategy = new TargetedBlockingWaitStrategy();
+
+    @Test
+    public void shouldWaitForValue() throws Exception
+    {
+        assertWaitForWithDelayOf(50, waitStrategy);
+    }
+
+    @Test
+    public void shouldOnlyWakeWaiterWhoseDependentSequenceHasAdvanced() throws Exception
+    {
+        final Sequence cursor = new Sequence(10);
+        final Sequence first = new Sequence();
+        final Sequence second = new Sequence();
+        final Thread firstWaiter = startWaiter(cursor, first);
+        final Thread secondWaiter = startWaiter(cursor, second);
+        awaitParked(firstWaiter);
+        awaitParked(secondWaiter);
+
+        first.set(0);
+        waitStrategy.signalAllWhenBlocking();
+
+        firstWaiter.join(5000);
+        assertThat(firstWaiter.isAlive(), is(false));
+        Thread.sleep(50);
+        assertThat(secondWaiter.isAlive(), is(true));
+
+        second.set(0);
+        waitStrategy.signalAllWhenBlocking();
+        secondWaiter.join(5000);
+        assertThat(secondWaiter.isAlive(), is(false));
+    }
+
+    @Test
+    public void shouldWakeAndUnregisterWaiterWhenBarrierIsAlerted() throws Exception
+    {
+        final RingBuffer<StubEvent> ringBuffer =
+            RingBuffer.createSingleProducer(StubEvent.EVENT_FACTORY, 16, waitStrategy);
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+        final Thread waiter = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    barrier.waitFor(0);
+                }
+                catch (final Throwable e)
+                {
+                    thrown.set(e);
+                }
+            }
+        });
+        waiter.start();
+        awaitParked(waiter);
+        assertThat(waitStrategy.getRegisteredWaiterCount(), is(1));
+
+        barrier.alert();
+        waiter.join(5000);
+
+        assertTrue(thrown.get() instanceof AlertException);
+        assertThat(waitStrategy.getRegisteredWaiterCount(), is(0));
+    }
+
+    @Test
+    public void shouldWakeEachStageOfPipelineAsTheStageBeforeItAdvances() throws Exception
+    {
+        final Disruptor<StubEvent> disruptor = new Disruptor<>(
+            StubEvent.EVENT_FACTORY, 64, DaemonThreadFactory.INSTANCE, ProducerType.SINGLE, waitStrategy);
+        final int events = 1000;
+        final CountDownLatch done = new CountDownLatch(events);
+        final AtomicLong outOfOrder = new AtomicLong();
+
+        disruptor
+            .handleEventsWith(new StageHandler(0))
+            .then(new StageHandler(1))
+            .handleEventsWithWorkerPool(new StageWorkHandler(2), new StageWorkHandler(2))
+            .then(new EventHandler<StubEvent>()
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    if (event.getValue() != 3)
+                    {
+                        outOfOrder.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            });
+        disruptor.start();
+
+        for (int i = 0; i < events; i++)
+        {
+            disruptor.getRingBuffer().publishEvent(StubEvent.TRANSLATOR, 0, "");
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertThat(outOfOrder.get(), is(0L));
+        disruptor.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldWakeNextStageWhenHandlerThrows() throws Exception
+    {
+        final Disruptor<StubEvent> disruptor = new Disruptor<>(
+            StubEvent.EVENT_FACTORY, 64, DaemonThreadFactory.INSTANCE, ProducerType.SINGLE, waitStrategy);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        disruptor.setDefaultExceptionHandler(new IgnoreExceptionHandler());
+        disruptor
+            .handleEventsWith(new EventHandler<StubEvent>()
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    throw new RuntimeException();
+                }
+            })
+            .then(new EventHandler<StubEvent>()
+            {
+                @Override
+                public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+                {
+                    done.countDown();
+                }
+            });
+        disruptor.start();
+
+        disruptor.getRingBuffer().publishEvent(StubEvent.TRANSLATOR, 0, "");
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        disruptor.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    private Thread startWaiter(final Sequence cursor, final Sequence dependent)
+    {
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    waitStrategy.waitFor(0, cursor, dependent, new DummySequenceBarrier());
+                }
+                catch (final Exception e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitParked(final Thread thread) throws InterruptedException
+    {
+        while (thread.getState() != Thread.State.TIMED_WAITING)
+        {
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class StageHandler implements EventHandler<StubEvent>
+    {
+        private final int stage;
+
+        private StageHandler(final int stage)
+        {
+            this.stage = stage;
+        }
+
+        @Override
+        public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+        {
+            if (event.getValue() == stage)
+            {
+                event.setValue(stage + 1);
+            }
+        }
+    }
+
+    private static final class StageWorkHandler implements WorkHandler<StubEvent>
+    {
+        private final int stage;
+
+        private StageWorkHandler(final int stage)
+        {
+            this.stage = stage;
+        }
+
+        @Override
+        public void onEvent(final StubEvent event)
+        {
+            if (event.getValue() == stage)
+            {
+                event.setValue(stage + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.support.StubEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(Parameterized.class)
+public class WatermarkTest
+{
+    private static final int BUFFER_SIZE = 16;
+
+    private final ProducerType producerType;
+    private final RingBuffer<StubEvent> ringBuffer;
+    private final RecordingListener listener = new RecordingListener();
+    private final PausingHandler handler = new PausingHandler();
+    private final BatchEventProcessor<StubEvent> processor;
+
+    public WatermarkTest(final ProducerType producerType)
+    {
+        this.producerType = producerType;
+        ringBuffer = RingBuffer.create(producerType, StubEvent.EVENT_FACTORY, BUFFER_SIZE, new YieldingWaitStrategy());
+        processor = new BatchEventProcessor<>(ringBuffer, ringBuffer.newBarrier(), handler);
+        ringBuffer.addGatingSequences(processor.getSequence());
+    }
+
+    @Parameters
+    public static Collection<Object[]> generateData()
+    {
+        Object[][] producerTypes =
+            {
+                {ProducerType.SINGLE},
+                {ProducerType.MULTI},
+                {ProducerType.MULTI_PACKED},
+            };
+        return Arrays.asList(producerTypes);
+    }
+
+    @After
+    public void tearDown()
+    {
+        handler.paused = false;
+        processor.halt();
+    }
+
+    @Test
+    public void shouldSignalHighWatermarkOnceWhenReached() throws Exception
+    {
+        ringBuffer.setWatermarkListener(listener, 12, 4);
+        startProcessor();
+
+        publish(11);
+        assertThat(listener.events(), is(Arrays.<String>asList()));
+
+        publish(1);
+        assertThat(listener.events(), is(Arrays.asList("high 12")));
+
+        publish(3);
+        assertThat(listener.events(), is(Arrays.asList("high 12")));
+    }
+
+    @Test
+    public void shouldSignalLowWatermarkWhenProcessorsCatchUp() throws Exception
+    {
+        ringBuffer.setWatermarkListener(listener, 12, 4);
+        startProcessor();
+
+        publish(12);
+        handler.paused = false;
+        listener.awaitEvents(2);
+
+        // 处理器可能在12个事件发布完之前就拿到一批，低水位回调时还剩不超过低水位的事件
+        final List<String> events = listener.events();
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0), is("high 12"));
+        assertTrue(events.get(1).startsWith("low "));
+        assertTrue(Long.parseLong(events.get(1).substring(4)) <= 4);
+    }
+
+    @Test
+    public void shouldAlternateBetweenHighAndLowWatermark() throws Exception
+    {
+        ringBuffer.setWatermarkListener(listener, 8, 2);
+        startProcessor();
+
+        for (int i = 0; i < 3; i++)
+        {
+            handler.paused = true;
+            publish(8);
+            handler.paused = false;
+            listener.awaitEvents(2 * (i + 1));
+        }
+
+        // 处理器可能在8个事件发布完之前就拿到一批，此时低水位回调时还剩少量事件
+        final List<String> events = listener.events();
+        assertThat(events.size(), is(6));
+        for (int i = 0; i < events.size(); i += 2)
+        {
+            assertThat(events.get(i), is("high 8"));
+            assertTrue(events.get(i + 1).startsWith("low "));
+            assertTrue(Long.parseLong(events.get(i + 1).substring(4)) <= 2);
+        }
+    }
+
+    @Test
+    public void shouldCheckHighWatermarkOnTryNext() throws Exception
+    {
+        ringBuffer.setWatermarkListener(listener, 4, 1);
+
+        for (int i = 0; i < 4; i++)
+        {
+            ringBuffer.publish(ringBuffer.tryNext());
+        }
+
+        assertThat(listener.events(), is(Arrays.asList("high 4")));
+    }
+
+    @Test
+    public void shouldNotSignalAfterListenerIsRemoved() throws Exception
+    {
+        ringBuffer.setWatermarkListener(listener, 4, 1);
+        ringBuffer.removeWatermarkListener();
+
+        publish(BUFFER_SIZE);
+
+        assertThat(listener.events(), is(Arrays.<String>asList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectLowWatermarkNotBelowHighWatermark() throws Exception
+    {
+        ringBuffer.setWatermarkListener(listener, 4, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectHighWatermarkAboveBufferSize() throws Exception
+    {
+        ringBuffer.setWatermarkListener(listener, BUFFER_SIZE + 1, 4);
+    }
+
+    @Test
+    public void shouldAlternateWithConcurrentProducers() throws Exception
+    {
+        assumeTrue(producerType != ProducerType.SINGLE);
+
+        handler.paused = false;
+        handler.nanosPerEvent = 1000;
+        ringBuffer.setWatermarkListener(listener, 12, 4);
+        startProcessor();
+
+        final Thread[] producers = new Thread[3];
+        for (int p = 0; p < producers.length; p++)
+        {
+            producers[p] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    publish(2000);
+                }
+            });
+            producers[p].start();
+        }
+        for (final Thread producer : producers)
+        {
+            producer.join();
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((processor.getSequence().get() != ringBuffer.getCursor() || listener.events().size() % 2 != 0) &&
+            System.nanoTime() < deadline)
+        {
+            Thread.yield();
+        }
+
+        final List<String> events = listener.events();
+        assertTrue(events.size() > 0);
+        for (int i = 0; i < events.size(); i++)
+        {
+            assertThat(events.get(i).startsWith(i % 2 == 0 ? "high" : "low"), is(true));
+        }
+        assertThat(events.size() % 2, is(0));
+    }
+
+    private void startProcessor()
+    {
+        DaemonThreadFactory.INSTANCE.newThread(processor).start();
+    }
+
+    private void publish(final int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            ringBuffer.publish(ringBuffer.next());
+        }
+    }
+
+    private static final class RecordingListener implements WatermarkListener
+    {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public synchronized void onHighWatermark(final long occupancy)
+        {
+            events.add("high " + occupancy);
+        }
+
+        @Override
+        public synchronized void onLowWatermark(final long occupancy)
+        {
+            events.add("low " + occupancy);
+        }
+
+        synchronized List<String> events()
+        {
+            return new ArrayList<>(events);
+        }
+
+        void awaitEvents(final int count) throws InterruptedException
+        {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events().size() < count && System.nanoTime() < deadline)
+            {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static final class PausingHandler implements EventHandler<StubEvent>
+    {
+        private volatile boolean paused = true;
+        private volatile long nanosPerEvent;
+
+        @Override
+        public void onEvent(final StubEvent event, final long sequence, final boolean endOfBatch)
+        {
+            while (paused)
+            {
+                LockSupport.parkNanos(100_000);
+            }
+            if (nanosPerEvent > 0)
+            {
+                final long end = System.nanoTime() + nanosPerEvent;
+                while (System.nanoTime() < end)
+                {
+                    // busy spin
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WorkStealingQueueTest
+{
+    private final WorkStealingQueue queue = new WorkStealingQueue(8);
+    private final long[] batch = new long[8];
+
+    @Test
+    public void shouldTakeInTheOrderOffered()
+    {
+        queue.offer(3);
+        queue.offer(5);
+        queue.offer(7);
+
+        assertThat(queue.take(batch, 2), is(2));
+        assertThat(batch[0], is(3L));
+        assertThat(batch[1], is(5L));
+        assertThat(queue.take(batch, 2), is(1));
+        assertThat(batch[0], is(7L));
+        assertThat(queue.take(batch, 2), is(0));
+    }
+
+    @Test
+    public void shouldStealHalfOfTheQueue()
+    {
+        for (long i = 0; i < 5; i++)
+        {
+            queue.offer(i);
+        }
+
+        assertThat(queue.steal(batch, 8), is(2));
+        assertThat(batch[1], is(1L));
+        assertThat(queue.size(), is(3));
+        assertThat(queue.steal(batch, 8), is(1));
+        assertThat(queue.steal(batch, 8), is(1));
+        assertThat(queue.steal(batch, 8), is(0));
+        assertThat(queue.take(batch, 8), is(1));
+        assertThat(batch[0], is(4L));
+    }
+
+    @Test
+    public void shouldRejectOfferWhenFullUntilTaken()
+    {
+        for (long i = 0; i < 8; i++)
+        {
+            assertThat(queue.offer(i), is(true));
+        }
+        assertThat(queue.offer(8), is(false));
+
+        queue.take(batch, 1);
+
+        assertThat(queue.offer(8), is(true));
+        assertThat(queue.take(batch, 8), is(8));
+        assertThat(batch[7], is(8L));
+    }
+
+    @Test
+    public void shouldDropQueuedSequencesWhenCleared()
+    {
+        for (long i = 0; i < 8; i++)
+        {
+            queue.offer(i);
+        }
+
+        queue.clear();
+
+        assertThat(queue.size(), is(0));
+        assertThat(queue.take(batch, 8), is(0));
+        for (long i = 8; i < 16; i++)
+        {
+            assertThat(queue.offer(i), is(true));
+        }
+        assertThat(queue.take(batch, 8), is(8));
+        assertThat(batch[0], is(8L));
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor;
+
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WorkStealingWorkerPoolTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool(DaemonThreadFactory.INSTANCE);
+
+    @Test
+    public void shouldProcessEachEventExactlyOnce() throws Exception
+    {
+        final int events = 20000;
+        final AtomicLongArray counts = new AtomicLongArray(events);
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(EVENT_FACTORY, 256);
+        final WorkStealingWorkerPool<AtomicLong> pool = new WorkStealingWorkerPool<>(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(),
+            new CountingHandler(counts), new CountingHandler(counts), new CountingHandler(counts));
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        pool.start(executor);
+
+        for (int i = 0; i < events; i++)
+        {
+            publish(ringBuffer, i);
+        }
+        pool.drainAndHalt();
+
+        for (int i = 0; i < events; i++)
+        {
+            assertThat(counts.get(i), is(1L));
+        }
+        assertThat(pool.getWorkerSequences()[0].get(), is(events - 1L));
+    }
+
+    @Test
+    public void shouldStealFromWorkerThatIsStuck() throws Exception
+    {
+        final AtomicLongArray counts = new AtomicLongArray(64);
+        final BlockingHandler stuck = new BlockingHandler();
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(EVENT_FACTORY, 64);
+        final WorkStealingWorkerPool<AtomicLong> pool = new WorkStealingWorkerPool<>(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(), stuck, new CountingHandler(counts));
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        pool.start(executor);
+
+        // 第一个事件分给第一个worker，它会卡在这个事件上
+        publish(ringBuffer, 0);
+        while (!stuck.entered)
+        {
+            Thread.yield();
+        }
+
+        // 之后分给第一个worker的事件，除最后一个外都应被第二个worker窃取
+        for (int i = 1; i <= 20; i++)
+        {
+            publish(ringBuffer, i);
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (processed(counts) < 19 && System.nanoTime() < deadline)
+        {
+            Thread.yield();
+        }
+        assertThat(processed(counts), is(19L));
+        assertThat(pool.getWorkerSequences()[0].get(), is(-1L));
+
+        stuck.release = true;
+        pool.drainAndHalt();
+        assertThat(pool.getWorkerSequences()[0].get(), is(20L));
+    }
+
+    @Test
+    public void shouldNotProcessSequencesLeftQueuedByAHaltWhenRestarted() throws Exception
+    {
+        final AtomicLongArray counts = new AtomicLongArray(8);
+        final StoppableHandler handler = new StoppableHandler(counts);
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(EVENT_FACTORY, 8);
+        final WorkStealingWorkerPool<AtomicLong> pool = new WorkStealingWorkerPool<>(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(), handler);
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        pool.start(executor);
+
+        // worker卡在第一个事件上，其余事件留在它的队列中
+        publish(ringBuffer, 0);
+        while (!handler.entered)
+        {
+            Thread.yield();
+        }
+        for (int i = 1; i <= 3; i++)
+        {
+            publish(ringBuffer, i);
+        }
+        // 给dispatcher时间把它们放入队列
+        Thread.sleep(50);
+        pool.halt();
+        handler.release = true;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handler.shutdownCount == 0 && System.nanoTime() < deadline)
+        {
+            Thread.yield();
+        }
+        assertThat(handler.shutdownCount, is(1));
+
+        pool.start(executor);
+        publish(ringBuffer, 4);
+        pool.drainAndHalt();
+
+        assertThat(counts.get(0), is(1L));
+        for (int i = 1; i <= 3; i++)
+        {
+            assertThat(counts.get(i), is(0L));
+        }
+        assertThat(counts.get(4), is(1L));
+    }
+
+    @Test
+    public void shouldDispatchByKeyHash() throws Exception
+    {
+        final long[] workerOfKey = new long[4];
+        Arrays.fill(workerOfKey, -1);
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(EVENT_FACTORY, 256);
+        final WorkHandler<AtomicLong>[] handlers = new RecordingHandler[2];
+        for (int i = 0; i < handlers.length; i++)
+        {
+            handlers[i] = new RecordingHandler(i, workerOfKey);
+        }
+        final WorkStealingWorkerPool<AtomicLong> pool = new WorkStealingWorkerPool<>(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(),
+            new WorkStealingWorkerPool.KeyHasher<AtomicLong>()
+            {
+                @Override
+                public int hash(final AtomicLong event)
+                {
+                    return (int) event.get();
+                }
+            },
+            handlers);
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        pool.start(executor);
+
+        // 逐个发布并等待处理完，这样不会有窃取
+        for (int i = 0; i < 40; i++)
+        {
+            publish(ringBuffer, i % 4);
+            while (pool.getWorkerSequences()[0].get() < i)
+            {
+                Thread.yield();
+            }
+        }
+        pool.halt();
+
+        for (int key = 0; key < 4; key++)
+        {
+            assertThat(workerOfKey[key], is((long) key % 2));
+        }
+    }
+
+    @Test
+    public void shouldCompleteEventsWhoseHandlerThrows() throws Exception
+    {
+        final CountingExceptionHandler exceptionHandler = new CountingExceptionHandler();
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(EVENT_FACTORY, 16);
+        final WorkStealingWorkerPool<AtomicLong> pool = new WorkStealingWorkerPool<>(
+            ringBuffer, ringBuffer.newBarrier(), exceptionHandler,
+            new WorkHandler<AtomicLong>()
+            {
+                @Override
+                public void onEvent(final AtomicLong event)
+                {
+                    throw new IllegalStateException();
+                }
+            });
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        pool.start(executor);
+
+        for (int i = 0; i < 40; i++)
+        {
+            ringBuffer.publish(ringBuffer.next());
+        }
+        pool.drainAndHalt();
+
+        assertThat(pool.getWorkerSequences()[0].get(), is(39L));
+        assertThat(exceptionHandler.count.get(), is(40L));
+    }
+
+    private static void publish(final RingBuffer<AtomicLong> ringBuffer, final long value)
+    {
+        final long sequence = ringBuffer.next();
+        ringBuffer.get(sequence).set(value);
+        ringBuffer.publish(sequence);
+    }
+
+    private static long processed(final AtomicLongArray counts)
+    {
+        long processed = 0;
+        for (int i = 0; i < counts.length(); i++)
+        {
+            processed += counts.get(i);
+        }
+        return processed;
+    }
+
+    private static final EventFactory<AtomicLong> EVENT_FACTORY = new EventFactory<AtomicLong>()
+    {
+        @Override
+        public AtomicLong newInstance()
+        {
+            return new AtomicLong();
+        }
+    };
+
+    private static final class CountingExceptionHandler implements ExceptionHandler<Object>
+    {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void handleEventException(final Throwable ex, final long sequence, final Object event)
+        {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void handleOnStartException(final Throwable ex)
+        {
+        }
+
+        @Override
+        public void handleOnShutdownException(final Throwable ex)
+        {
+        }
+    }
+
+    private static final class CountingHandler implements WorkHandler<AtomicLong>
+    {
+        private final AtomicLongArray counts;
+
+        private CountingHandler(final AtomicLongArray counts)
+        {
+            this.counts = counts;
+        }
+
+        @Override
+        public void onEvent(final AtomicLong event)
+        {
+            counts.incrementAndGet((int) event.get());
+        }
+    }
+
+    private static final class BlockingHandler implements WorkHandler<AtomicLong>
+    {
+        private volatile boolean entered;
+        private volatile boolean release;
+
+        @Override
+        public void onEvent(final AtomicLong event)
+        {
+            entered = true;
+            while (!release)
+            {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static final class StoppableHandler implements WorkHandler<AtomicLong>, LifecycleAware
+    {
+        private final AtomicLongArray counts;
+        private volatile boolean entered;
+        private volatile boolean release;
+        private volatile int shutdownCount;
+
+        private StoppableHandler(final AtomicLongArray counts)
+        {
+            this.counts = counts;
+        }
+
+        @Override
+        public void onEvent(final AtomicLong event)
+        {
+            counts.incrementAndGet((int) event.get());
+            entered = true;
+            while (!release)
+            {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void onStart()
+        {
+        }
+
+        @Override
+        public void onShutdown()
+        {
+            shutdownCount++;
+        }
+    }
+
+    private static final class RecordingHandler implements WorkHandler<AtomicLong>
+    {
+        private final int worker;
+        private final long[] workerOfKey;
+
+        private RecordingHandler(final int worker, final long[] workerOfKey)
+        {
+            this.worker = worker;
+            this.workerOfKey = workerOfKey;
+        }
+
+        @Override
+        public void onEvent(final AtomicLong event)
+        {
+            workerOfKey[(int) event.get()] = worker;
+        }
+    }
+}
@@ -2,9 +2,12 @@ package com.lmax.disruptor;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
@@ -56,6 +59,141 @@ public class WorkerPoolTest
         assertThat(ringBuffer.get(1).get(), is(0L));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldOnlyAdvanceOrderedPoolOverContiguouslyCompletedEvents() throws Exception
+    {
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createSingleProducer(new AtomicLongEventFactory(), 8);
+        final CountDownLatch[] release = {new CountDownLatch(1), new CountDownLatch(1)};
+        final CountDownLatch[] processed = {new CountDownLatch(1), new CountDownLatch(1)};
+        final WorkerPool<AtomicLong> pool = WorkerPool.createOrdered(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(),
+            new LatchedWorkHandler(release, processed), new LatchedWorkHandler(release, processed));
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        final Sequence completion = pool.getWorkerSequences()[0];
+
+        pool.start(Executors.newCachedThreadPool(DaemonThreadFactory.INSTANCE));
+        for (long i = 0; i < 2; i++)
+        {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).set(i);
+            ringBuffer.publish(sequence);
+        }
+
+        release[1].countDown();
+        assertTrue(processed[1].await(5, TimeUnit.SECONDS));
+        assertThat(completion.get(), is(-1L));
+
+        release[0].countDown();
+        assertTrue(processed[0].await(5, TimeUnit.SECONDS));
+        final long timeout = System.currentTimeMillis() + 5000;
+        while (completion.get() != 1L && System.currentTimeMillis() < timeout)
+        {
+            Thread.yield();
+        }
+        assertThat(completion.get(), is(1L));
+
+        pool.drainAndHalt();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldReleaseEventsFromOrderedPoolToTheNextStageInSequenceOrder() throws Exception
+    {
+        final int iterations = 10000;
+        final RingBuffer<AtomicLong> ringBuffer = RingBuffer.createMultiProducer(
+            new AtomicLongEventFactory(), 64, new SleepingWaitStrategy());
+        final WorkerPool<AtomicLong> pool = WorkerPool.createOrdered(
+            ringBuffer, ringBuffer.newBarrier(), new FatalExceptionHandler(),
+            new NegatingWorkHandler(), new NegatingWorkHandler(), new NegatingWorkHandler());
+        final CheckingEventHandler checker = new CheckingEventHandler(iterations);
+        final BatchEventProcessor<AtomicLong> nextStage =
+            new BatchEventProcessor<>(ringBuffer, ringBuffer.newBarrier(pool.getWorkerSequences()), checker);
+        ringBuffer.addGatingSequences(nextStage.getSequence());
+
+        final Executor executor = Executors.newCachedThreadPool(DaemonThreadFactory.INSTANCE);
+        pool.start(executor);
+        executor.execute(nextStage);
+        for (long i = 1; i <= iterations; i++)
+        {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).set(i);
+            ringBuffer.publish(sequence);
+        }
+
+        assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+        nextStage.halt();
+        pool.halt();
+
+        assertThat(checker.outOfOrder, is(0));
+        assertThat(checker.unprocessed, is(0));
+    }
+
+    private static class LatchedWorkHandler implements WorkHandler<AtomicLong>
+    {
+        private final CountDownLatch[] release;
+        private final CountDownLatch[] processed;
+
+        LatchedWorkHandler(final CountDownLatch[] release, final CountDownLatch[] processed)
+        {
+            this.release = release;
+            this.processed = processed;
+        }
+
+        @Override
+        public void onEvent(final AtomicLong event) throws Exception
+        {
+            final int index = (int) event.get();
+            release[index].await();
+            processed[index].countDown();
+        }
+    }
+
+    private static class NegatingWorkHandler implements WorkHandler<AtomicLong>
+    {
+        @Override
+        public void onEvent(final AtomicLong event) throws Exception
+        {
+            if ((event.get() & 7) == 0)
+            {
+                Thread.yield();
+            }
+            event.set(-event.get());
+        }
+    }
+
+    private static class CheckingEventHandler implements EventHandler<AtomicLong>
+    {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final int iterations;
+        private long expected = 1;
+        private int outOfOrder;
+        private int unprocessed;
+
+        CheckingEventHandler(final int iterations)
+        {
+            this.iterations = iterations;
+        }
+
+        @Override
+        public void onEvent(final AtomicLong event, final long sequence, final boolean endOfBatch) throws Exception
+        {
+            final long value = event.get();
+            if (value > 0)
+            {
+                unprocessed++;
+            }
+            if (Math.abs(value) != expected)
+            {
+                outOfOrder++;
+            }
+            if (expected++ == iterations)
+            {
+                done.countDown();
+            }
+        }
+    }
+
     private static class AtomicLongWorkHandler implements WorkHandler<AtomicLong>
     {
         @Override
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.bridge;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.support.LongEvent;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplicationTest
+{
+    private static final EventCodec<LongEvent> CODEC = new EventCodec<LongEvent>()
+    {
+        @Override
+        public int maxEncodedLength()
+        {
+            return 8;
+        }
+
+        @Override
+        public void encode(final LongEvent event, final ByteBuffer buffer)
+        {
+            buffer.putLong(event.get());
+        }
+
+        @Override
+        public void decode(final ByteBuffer buffer, final LongEvent event)
+        {
+            event.set(buffer.getLong());
+        }
+
+        @Override
+        public void markLost(final LongEvent event)
+        {
+            event.set(-1L);
+        }
+    };
+
+    @Test
+    public void shouldReplicateOverTcpPreservingSequences() throws Exception
+    {
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final SocketChannel sender = SocketChannel.open(server.getLocalAddress());
+            final SocketChannel receiver = server.accept();
+
+            replicate(sender, receiver, 64 * 1024, 10000);
+        }
+    }
+
+    @Test
+    public void shouldReplicateOverUdpPreservingSequences() throws Exception
+    {
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (DatagramChannel sender = DatagramChannel.open().bind(new InetSocketAddress(loopback, 0));
+             DatagramChannel receiver = DatagramChannel.open().bind(new InetSocketAddress(loopback, 0)))
+        {
+            sender.connect(receiver.getLocalAddress());
+            receiver.connect(sender.getLocalAddress());
+
+            replicate(sender, receiver, 1400, 200);
+        }
+    }
+
+    @Test
+    public void shouldFillGapsAndDropDuplicates() throws Exception
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final WritableByteChannel channel = Channels.newChannel(stream);
+        final ReplicatingEventHandler<LongEvent> handler = new ReplicatingEventHandler<>(channel, CODEC, 256);
+
+        send(handler, 0, 1, 2);
+        send(handler, 5, 6);
+        send(handler, 1, 2);
+        send(handler, 6, 7);
+
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 16);
+        final List<String> gaps = new ArrayList<>();
+        final ReplicationReceiver<LongEvent> receiver = new ReplicationReceiver<>(
+            Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), ringBuffer, CODEC, 256,
+            new SequenceGapListener()
+            {
+                @Override
+                public void onGap(final long expectedSequence, final long receivedSequence)
+                {
+                    gaps.add(expectedSequence + "->" + receivedSequence);
+                }
+            });
+
+        receiver.run();
+
+        assertThat(ringBuffer.getCursor(), is(7L));
+        final long[] expected = {100, 101, 102, -1, -1, 105, 106, 107};
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertThat(ringBuffer.get(i).get(), is(expected[i]));
+        }
+        assertThat(gaps.size(), is(1));
+        assertThat(gaps.get(0), is("3->5"));
+        assertThat(receiver.getLostCount(), is(2L));
+        assertThat(receiver.getDuplicateCount(), is(3L));
+    }
+
+    @Test
+    public void shouldResyncOnFirstFrameAndOnGapsLargerThanTheRingBuffer() throws Exception
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ReplicatingEventHandler<LongEvent> handler =
+            new ReplicatingEventHandler<>(Channels.newChannel(stream), CODEC, 256);
+
+        send(handler, 100, 101, 102);
+        send(handler, 105);
+        send(handler, 140, 141);
+
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 16);
+        final Sequence consumer = new Sequence();
+        ringBuffer.addGatingSequences(consumer);
+        final List<String> resyncs = new ArrayList<>();
+        final ReplicationReceiver<LongEvent> receiver = new ReplicationReceiver<>(
+            Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), ringBuffer, CODEC, 256, null,
+            new ResyncHandler()
+            {
+                @Override
+                public void beforeResync(final long expectedSequence, final long receivedSequence)
+                {
+                    resyncs.add(expectedSequence + "->" + receivedSequence);
+                }
+
+                @Override
+                public void afterResync(final long receivedSequence)
+                {
+                    consumer.set(receivedSequence - 1);
+                }
+            });
+
+        receiver.run();
+
+        assertThat(resyncs.size(), is(2));
+        assertThat(resyncs.get(0), is("0->100"));
+        assertThat(resyncs.get(1), is("106->140"));
+        assertThat(receiver.getResyncCount(), is(2L));
+        assertThat(ringBuffer.getCursor(), is(141L));
+        assertThat(consumer.get(), is(139L));
+        assertThat(ringBuffer.get(102).get(), is(202L));
+        assertThat(ringBuffer.get(103).get(), is(-1L));
+        assertThat(ringBuffer.get(104).get(), is(-1L));
+        assertThat(ringBuffer.get(105).get(), is(205L));
+        assertThat(ringBuffer.get(140).get(), is(240L));
+        assertThat(ringBuffer.get(141).get(), is(241L));
+        assertThat(receiver.getLostCount(), is(100L + 2L + 34L));
+    }
+
+    @Test
+    public void shouldFailWithoutResyncHandlerWhenFirstFrameIsAhead() throws Exception
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ReplicatingEventHandler<LongEvent> handler =
+            new ReplicatingEventHandler<>(Channels.newChannel(stream), CODEC, 256);
+
+        send(handler, 100, 101);
+
+        assertReceiveFails(stream, "0->100");
+    }
+
+    @Test
+    public void shouldFailWithoutResyncHandlerOnGapLargerThanTheRingBuffer() throws Exception
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ReplicatingEventHandler<LongEvent> handler =
+            new ReplicatingEventHandler<>(Channels.newChannel(stream), CODEC, 256);
+
+        send(handler, 0, 1);
+        send(handler, 40);
+
+        assertReceiveFails(stream, "2->40");
+    }
+
+    @Test
+    public void shouldSplitBatchesLargerThanAFrame() throws Exception
+    {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ReplicatingEventHandler<LongEvent> handler =
+            new ReplicatingEventHandler<>(Channels.newChannel(stream), CODEC, 64);
+
+        send(handler, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+        assertThat(handler.getFramesSent(), is(3L));
+
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 16);
+        new ReplicationReceiver<>(
+            Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), ringBuffer, CODEC, 64, null).run();
+
+        assertThat(ringBuffer.getCursor(), is(9L));
+        assertThat(ringBuffer.get(9).get(), is(109L));
+    }
+
+    private static void assertReceiveFails(final ByteArrayOutputStream stream, final String expectedGap)
+    {
+        final RingBuffer<LongEvent> ringBuffer = RingBuffer.createSingleProducer(LongEvent.FACTORY, 16);
+        final List<String> gaps = new ArrayList<>();
+        final ReplicationReceiver<LongEvent> receiver = new ReplicationReceiver<>(
+            Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), ringBuffer, CODEC, 256,
+            new SequenceGapListener()
+            {
+                @Override
+                public void onGap(final long expectedSequence, final long receivedSequence)
+                {
+                    gaps.add(expectedSequence + "->" + receivedSequence);
+                }
+            });
+        final long cursor = ringBuffer.getCursor();
+
+        try
+        {
+            receiver.run();
+            fail("Receiver should not fill a gap that needs a resync");
+        }
+        catch (final IllegalStateException e)
+        {
+            // expected
+        }
+
+        assertThat(gaps.size(), is(1));
+        assertThat(gaps.get(0), is(expectedGap));
+        assertThat(receiver.getLostCount(), is(0L));
+        assertThat(receiver.isRunning(), is(false));
+        assertTrue(ringBuffer.getCursor() < cursor + 3);
+    }
+
+    private static void send(final ReplicatingEventHandler<LongEvent> handler, final long... sequences)
+        throws Exception
+    {
+        final LongEvent event = new LongEvent();
+        for (int i = 0; i < sequences.length; i++)
+        {
+            event.set(100 + sequences[i]);
+            handler.onEvent(event, sequences[i], i == sequences.length - 1);
+        }
+    }
+
+    private static void replicate(
+        final WritableByteChannel senderChannel,
+        final ReadableByteChannel receiverChannel,
+        final int maxFrameSize,
+        final int iterations) throws Exception
+    {
+        final CountDownLatch received = new CountDownLatch(iterations);
+        final long[] mismatches = new long[1];
+        final Disruptor<LongEvent> standby =
+            new Disruptor<>(LongEvent.FACTORY, 1024, DaemonThreadFactory.INSTANCE);
+        standby.handleEventsWith(new EventHandler<LongEvent>()
+        {
+            @Override
+            public void onEvent(final LongEvent event, final long sequence, final boolean endOfBatch)
+            {
+                if (event.get() != sequence * 2)
+                {
+                    mismatches[0]++;
+                }
+                received.countDown();
+            }
+        });
+        final RingBuffer<LongEvent> standbyRing = standby.start();
+        final ReplicationReceiver<LongEvent> receiver =
+            new ReplicationReceiver<>(receiverChannel, standbyRing, CODEC, maxFrameSize, null);
+        final Thread receiverThread = new Thread(receiver);
+        receiverThread.start();
+
+        final Disruptor<LongEvent> primary =
+            new Disruptor<>(LongEvent.FACTORY, 1024, DaemonThreadFactory.INSTANCE);
+        primary.handleEventsWith(new ReplicatingEventHandler<>(senderChannel, CODEC, maxFrameSize));
+        final RingBuffer<LongEvent> primaryRing = primary.start();
+
+        for (int i = 0; i < iterations; i++)
+        {
+            final long sequence = primaryRing.next();
+            primaryRing.get(sequence).set(sequence * 2);
+            primaryRing.publish(sequence);
+        }
+
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        assertThat(mismatches[0], is(0L));
+        assertThat(standbyRing.getCursor(), is(iterations - 1L));
+        assertThat(receiver.getLostCount(), is(0L));
+
+        primary.shutdown();
+        receiver.halt();
+        receiverThread.join();
+        standby.halt();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+import com.lmax.disruptor.BatchEventHandler;
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.DataProvider;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarRingBufferTest
+{
+    private final Schema schema = Schema.builder("Quote")
+        .add("bid", FieldType.DOUBLE)
+        .add("size", FieldType.INT)
+        .add("stale", FieldType.BOOLEAN)
+        .build();
+    private final ColumnarRingBuffer ringBuffer =
+        ColumnarRingBuffer.create(schema, ProducerType.SINGLE, 8, new BlockingWaitStrategy());
+
+    @Test
+    public void shouldAllocateOneColumnPerField()
+    {
+        assertThat(ringBuffer.doubleColumn("bid").length, is(8));
+        assertThat(ringBuffer.intColumn("size").length, is(8));
+        assertThat(ringBuffer.booleanColumn("stale").length, is(8));
+        assertThat(ringBuffer.columnIndex("size"), is(1));
+        assertThat(ringBuffer.intColumn("size"), sameInstance(ringBuffer.intColumn("size")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectColumnOfWrongType()
+    {
+        ringBuffer.longColumn("bid");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownColumn()
+    {
+        ringBuffer.doubleColumn("ask");
+    }
+
+    @Test
+    public void shouldIndexColumnsBySequenceAndReturnItselfAsEvent()
+    {
+        assertThat(ringBuffer.index(3), is(3));
+        assertThat(ringBuffer.index(11), is(3));
+        assertThat(ringBuffer.get(11), sameInstance(ringBuffer));
+    }
+
+    @Test
+    public void shouldGateProducerOnEventProcessors() throws Exception
+    {
+        final BatchEventProcessor<ColumnarRingBuffer> processor = new BatchEventProcessor<>(
+            ringBuffer, ringBuffer.newBarrier(), new EventHandler<ColumnarRingBuffer>()
+            {
+                @Override
+                public void onEvent(final ColumnarRingBuffer event, final long sequence, final boolean endOfBatch)
+                {
+                }
+            });
+        ringBuffer.addGatingSequences(processor.getSequence());
+
+        ringBuffer.publish(ringBuffer.next(8));
+
+        assertThat(ringBuffer.hasAvailableCapacity(1), is(false));
+        assertThat(ringBuffer.remainingCapacity(), is(0L));
+        assertThat(ringBuffer.removeGatingSequence(processor.getSequence()), is(true));
+        assertThat(ringBuffer.hasAvailableCapacity(1), is(true));
+    }
+
+    @Test
+    public void shouldScanColumnsInBatchEventHandler() throws Exception
+    {
+        final double[] bid = ringBuffer.doubleColumn("bid");
+        final int[] size = ringBuffer.intColumn("size");
+        final CountDownLatch done = new CountDownLatch(1);
+        final double[] notional = new double[1];
+
+        final BatchEventProcessor<ColumnarRingBuffer> processor = new BatchEventProcessor<>(
+            ringBuffer, ringBuffer.newBarrier(), new SummingHandler(bid, size, notional, done, 19));
+        ringBuffer.addGatingSequences(processor.getSequence());
+        final Thread thread = new Thread(processor);
+        thread.start();
+
+        double expected = 0;
+        for (int i = 0; i < 20; i++)
+        {
+            final long sequence = ringBuffer.next();
+            final int index = ringBuffer.index(sequence);
+            bid[index] = i + 0.5;
+            size[index] = i;
+            ringBuffer.publish(sequence);
+            expected += (i + 0.5) * i;
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        processor.halt();
+        thread.join();
+
+        assertThat(notional[0], is(expected));
+    }
+
+    private static final class SummingHandler
+        implements EventHandler<ColumnarRingBuffer>, BatchEventHandler<ColumnarRingBuffer>
+    {
+        private final double[] bid;
+        private final int[] size;
+        private final double[] notional;
+        private final CountDownLatch done;
+        private final long lastSequence;
+
+        private SummingHandler(
+            final double[] bid, final int[] size, final double[] notional, final CountDownLatch done, final long lastSequence)
+        {
+            this.bid = bid;
+            this.size = size;
+            this.notional = notional;
+            this.done = done;
+            this.lastSequence = lastSequence;
+        }
+
+        @Override
+        public void onEvent(final ColumnarRingBuffer event, final long sequence, final boolean endOfBatch)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onBatch(final DataProvider<? extends ColumnarRingBuffer> dataProvider, final long lo, final long hi)
+        {
+            final ColumnarRingBuffer ringBuffer = dataProvider.get(lo);
+            for (long sequence = lo; sequence <= hi; sequence++)
+            {
+                final int index = ringBuffer.index(sequence);
+                notional[0] += bid[index] * size[index];
+            }
+            if (hi == lastSequence)
+            {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public int getMaxBatchSize()
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SlotAllocation;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FlyweightGeneratorTest
+{
+    @Test
+    public void shouldGenerateAccessorsForEachField() throws Exception
+    {
+        final Schema schema = Schema.builder("Quote")
+            .add("bidPrice", FieldType.LONG)
+            .add("stale", FieldType.BOOLEAN)
+            .build();
+
+        final String source = FlyweightGenerator.generate("com.example", schema);
+
+        assertThat(source, containsString("public final class QuoteFlyweight"));
+        assertThat(source, containsString("private static final int BID_PRICE_OFFSET = 0;"));
+        assertThat(source, containsString("return buffer.getLong(offset + BID_PRICE_OFFSET);"));
+        assertThat(source, containsString("public QuoteFlyweight setStale(final boolean value)"));
+        assertThat(source, containsString("return buffer.get(offset + STALE_OFFSET) != 0;"));
+    }
+
+    @Test
+    public void shouldAllocateAlignedBufferForAlignedSchema() throws Exception
+    {
+        final Schema schema = Schema.builder("Tick").add("price", FieldType.LONG).build();
+
+        final String unaligned = FlyweightGenerator.generate("com.example", schema);
+        final String aligned = FlyweightGenerator.generate("com.example", schema.alignedTo(64));
+
+        assertThat(unaligned, containsString("ByteBuffer.allocateDirect(bufferSize * LENGTH)"));
+        assertThat(aligned, containsString("public static final int LENGTH = 64;"));
+        assertThat(aligned, containsString("Util.allocateDirectAligned(bufferSize * LENGTH, ALIGNMENT)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSourceClassWithoutAccessors() throws Exception
+    {
+        FlyweightGenerator.generate("com.example", Schema.fromClass(Hidden.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldCompileFlyweightThatTranslatesEventsIntoOffHeapSlots() throws Exception
+    {
+        final Path sourceRoot = Files.createTempDirectory("flyweight-src");
+        final Path classes = Files.createTempDirectory("flyweight-classes");
+        final Path file = FlyweightGenerator.write("com.lmax.disruptor.codec", Schema.fromClass(Trade.class), sourceRoot);
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final int result = compiler.run(
+            null, null, null,
+            "-classpath", System.getProperty("java.class.path"),
+            "-d", classes.toString(),
+            file.toString());
+        assertThat(result, is(0));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader()))
+        {
+            final Class<?> flyweightType = loader.loadClass("com.lmax.disruptor.codec.TradeFlyweight");
+            final int length = flyweightType.getField("LENGTH").getInt(null);
+            final ByteBuffer buffer = (ByteBuffer) flyweightType.getMethod("allocate", int.class).invoke(null, 4);
+            final EventFactory<Object> factory =
+                (EventFactory<Object>) flyweightType.getMethod("factory", ByteBuffer.class).invoke(null, buffer);
+            final EventTranslatorOneArg<Object, Trade> translator =
+                (EventTranslatorOneArg<Object, Trade>) flyweightType.getField("TRANSLATOR").get(null);
+
+            final RingBuffer<Object> ringBuffer = RingBuffer.createSingleProducer(factory, 4);
+            ringBuffer.publishEvent(translator, new Trade(1L, 2.5, 3, true, (byte) 4));
+            ringBuffer.publishEvent(translator, new Trade(5L, 6.5, 7, false, (byte) 8));
+
+            assertThat(buffer.capacity(), is(4 * length));
+
+            final Object second = ringBuffer.get(1);
+            assertThat((Integer) flyweightType.getMethod("offset").invoke(second), is(length));
+            assertThat((Long) flyweightType.getMethod("getId").invoke(second), is(5L));
+            assertThat((Double) flyweightType.getMethod("getPrice").invoke(second), is(6.5));
+            assertThat((Integer) flyweightType.getMethod("getQuantity").invoke(second), is(7));
+            assertThat((Boolean) flyweightType.getMethod("isBuy").invoke(second), is(false));
+            assertThat((Byte) flyweightType.getMethod("getVenue").invoke(second), is((byte) 8));
+
+            final Object first = ringBuffer.get(0);
+            assertThat((Boolean) flyweightType.getMethod("isBuy").invoke(first), is(true));
+            assertThat(buffer.getLong(0), is(1L));
+
+            // LAZY下槽位按访问顺序创建，flyweight的偏移仍由槽号决定
+            final ByteBuffer lazyBuffer = (ByteBuffer) flyweightType.getMethod("allocate", int.class).invoke(null, 4);
+            final RingBuffer<Object> lazyRingBuffer = RingBuffer.create(
+                ProducerType.SINGLE,
+                (EventFactory<Object>) flyweightType.getMethod("factory", ByteBuffer.class).invoke(null, lazyBuffer),
+                4, new BlockingWaitStrategy(), SlotAllocation.LAZY);
+            assertThat((Integer) flyweightType.getMethod("offset").invoke(lazyRingBuffer.get(3)), is(3 * length));
+            assertThat((Integer) flyweightType.getMethod("offset").invoke(lazyRingBuffer.get(1)), is(length));
+
+            // 不在环形缓冲区中的事件有自己的缓冲区
+            final Object standalone = factory.newInstance();
+            flyweightType.getMethod("setId", long.class).invoke(standalone, 9L);
+            assertThat((Long) flyweightType.getMethod("getId").invoke(standalone), is(9L));
+            assertThat(((ByteBuffer) flyweightType.getMethod("buffer").invoke(standalone)).capacity(), is(length));
+            assertThat(buffer.getLong(0), is(1L));
+        }
+        finally
+        {
+            deleteRecursively(sourceRoot.toFile());
+            deleteRecursively(classes.toFile());
+        }
+    }
+
+    @Test
+    public void shouldGenerateColumnAccessorsForEachField() throws Exception
+    {
+        final Schema schema = Schema.builder("Quote")
+            .add("bidPrice", FieldType.LONG)
+            .add("stale", FieldType.BOOLEAN)
+            .build();
+
+        final String source = FlyweightGenerator.generateColumns("com.example", schema);
+
+        assertThat(source, containsString("public final class QuoteColumns"));
+        assertThat(source, containsString(".add(\"bidPrice\", FieldType.LONG)"));
+        assertThat(source, containsString("this.bidPriceColumn = ringBuffer.longColumn(\"bidPrice\");"));
+        assertThat(source, containsString("return bidPriceColumn[(int) sequence & indexMask];"));
+        assertThat(source, containsString("public QuoteColumns setStale(final long sequence, final boolean value)"));
+    }
+
+    @Test
+    public void shouldCompileColumnsThatCopyEventsIntoColumnarRingBuffer() throws Exception
+    {
+        final Path sourceRoot = Files.createTempDirectory("columns-src");
+        final Path classes = Files.createTempDirectory("columns-classes");
+        final Path file = FlyweightGenerator.writeColumns("com.lmax.disruptor.codec", Schema.fromClass(Trade.class), sourceRoot);
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final int result = compiler.run(
+            null, null, null,
+            "-classpath", System.getProperty("java.class.path"),
+            "-d", classes.toString(),
+            file.toString());
+        assertThat(result, is(0));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader()))
+        {
+            final Class<?> columnsType = loader.loadClass("com.lmax.disruptor.codec.TradeColumns");
+            final Schema schema = (Schema) columnsType.getField("SCHEMA").get(null);
+            final ColumnarRingBuffer ringBuffer =
+                ColumnarRingBuffer.create(schema, ProducerType.SINGLE, 4, new BlockingWaitStrategy());
+            final Object columns = columnsType.getConstructor(ColumnarRingBuffer.class).newInstance(ringBuffer);
+
+            for (int i = 0; i < 6; i++)
+            {
+                final long sequence = ringBuffer.next();
+                columnsType.getMethod("copyFrom", long.class, Trade.class)
+                    .invoke(columns, sequence, new Trade(i, i * 1.5, i * 10, i % 2 == 0, (byte) i));
+                ringBuffer.publish(sequence);
+            }
+
+            assertThat((Long) columnsType.getMethod("getId", long.class).invoke(columns, 5L), is(5L));
+            assertThat((Double) columnsType.getMethod("getPrice", long.class).invoke(columns, 5L), is(7.5));
+            assertThat((Integer) columnsType.getMethod("getQuantity", long.class).invoke(columns, 4L), is(40));
+            assertThat((Boolean) columnsType.getMethod("isBuy", long.class).invoke(columns, 4L), is(true));
+            assertThat(ringBuffer.byteColumn("venue")[1], is((byte) 5));
+
+            columnsType.getMethod("setQuantity", long.class, int.class).invoke(columns, 6L, 99);
+            assertThat(ringBuffer.intColumn("quantity")[2], is(99));
+        }
+        finally
+        {
+            deleteRecursively(sourceRoot.toFile());
+            deleteRecursively(classes.toFile());
+        }
+    }
+
+    private static void deleteRecursively(final File file)
+    {
+        final File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (final File child : children)
+            {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static final class Hidden
+    {
+        private long value;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SchemaTest
+{
+    @Test
+    public void shouldLayOutFieldsLargestFirstAndPadToEightBytes() throws Exception
+    {
+        final Schema schema = Schema.builder("Trade")
+            .add("side", FieldType.BYTE)
+            .add("quantity", FieldType.INT)
+            .add("price", FieldType.LONG)
+            .add("venue", FieldType.SHORT)
+            .build();
+
+        final List<Schema.SchemaField> fields = schema.getFields();
+        assertField(fields.get(0), "price", 0);
+        assertField(fields.get(1), "quantity", 8);
+        assertField(fields.get(2), "venue", 12);
+        assertField(fields.get(3), "side", 14);
+        assertThat(schema.getLength(), is(16));
+    }
+
+    @Test
+    public void shouldDeriveSchemaFromInstanceFieldsOfClass() throws Exception
+    {
+        final Schema schema = Schema.fromClass(Trade.class);
+
+        assertThat(schema.getName(), is("Trade"));
+        assertThat(schema.getSourceType() == Trade.class, is(true));
+        assertThat(schema.getFields().size(), is(5));
+        assertField(schema.getFields().get(0), "id", 0);
+        assertField(schema.getFields().get(1), "price", 8);
+        assertField(schema.getFields().get(2), "quantity", 16);
+        assertField(schema.getFields().get(3), "buy", 20);
+        assertField(schema.getFields().get(4), "venue", 21);
+        assertThat(schema.getLength(), is(24));
+    }
+
+    @Test
+    public void shouldPadRecordLengthToAlignment() throws Exception
+    {
+        final Schema schema = Schema.builder("Tick")
+            .add("price", FieldType.LONG)
+            .add("size", FieldType.INT)
+            .build()
+            .alignedTo(64);
+
+        assertThat(schema.getLength(), is(64));
+        assertThat(schema.getAlignment(), is(64));
+        assertField(schema.getFields().get(1), "size", 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAlignmentSmallerThanEightBytes() throws Exception
+    {
+        Schema.builder("Tick").add("price", FieldType.LONG).build().alignedTo(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDuplicateFields() throws Exception
+    {
+        Schema.builder("Trade").add("price", FieldType.LONG).add("price", FieldType.INT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPrimitiveFields() throws Exception
+    {
+        Schema.fromClass(Named.class);
+    }
+
+    private static void assertField(final Schema.SchemaField field, final String name, final int offset)
+    {
+        assertThat(field.getName(), is(name));
+        assertThat(field.getOffset(), is(offset));
+    }
+
+    static final class Named
+    {
+        String name;
+    }
+}
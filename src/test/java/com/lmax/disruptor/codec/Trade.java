@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.codec;
+
+public final class Trade
+{
+    private static final long UNUSED = 0;
+
+    private long id;
+    private double price;
+    private int quantity;
+    private boolean buy;
+    private byte venue;
+
+    public Trade(final long id, final double price, final int quantity, final boolean buy, final byte venue)
+    {
+        this.id = id;
+        this.price = price;
+        this.quantity = quantity;
+        this.buy = buy;
+        this.venue = venue;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public double getPrice()
+    {
+        return price;
+    }
+
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public boolean isBuy()
+    {
+        return buy;
+    }
+
+    public byte getVenue()
+    {
+        return venue;
+    }
+}
@@ -26,7 +26,10 @@ import com.lmax.disruptor.FatalExceptionHandler;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.Sequence;
 import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.SlotAllocation;
+import com.lmax.disruptor.SlotLayout;
 import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.YieldingProducerWaitStrategy;
 import com.lmax.disruptor.dsl.stubs.DelayedEventHandler;
 import com.lmax.disruptor.dsl.stubs.EventHandlerStub;
 import com.lmax.disruptor.dsl.stubs.EvilEqualsEventHandler;
@@ -282,6 +285,79 @@ public class DisruptorTest
         ensureTwoEventsProcessedAccordingToDependencies(countDownLatch, eventHandler1);
     }
 
+    @Test
+    public void shouldRunFusedHandlersOnOneThreadAfterTheirDependency() throws Exception
+    {
+        final DelayedEventHandler eventHandler1 = createDelayedEventHandler();
+        final CountDownLatch countDownLatch = new CountDownLatch(2);
+        final EventHandler<TestEvent> eventHandler2 = new EventHandlerStub<TestEvent>(new CountDownLatch(2));
+        final EventHandler<TestEvent> eventHandler3 = new EventHandlerStub<TestEvent>(countDownLatch);
+
+        disruptor.handleEventsWith(eventHandler1).thenFused(eventHandler2, eventHandler3);
+
+        ensureTwoEventsProcessedAccordingToDependencies(countDownLatch, eventHandler1);
+        assertThat(executor.getExecutionCount(), is(2));
+    }
+
+    @Test
+    public void shouldAllowGatingOnAnIndividualFusedHandler() throws Exception
+    {
+        final CountDownLatch countDownLatch = new CountDownLatch(2);
+        final EventHandler<TestEvent> eventHandler1 = new EventHandlerStub<TestEvent>(new CountDownLatch(2));
+        final EventHandler<TestEvent> eventHandler2 = new EventHandlerStub<TestEvent>(new CountDownLatch(2));
+
+        disruptor.handleEventsWithFused(eventHandler1, eventHandler2);
+        disruptor.after(eventHandler1).then(new EventHandlerStub<TestEvent>(countDownLatch));
+
+        publishEvent();
+        publishEvent();
+
+        assertThatCountDownLatchIsZero(countDownLatch);
+        final long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_IN_SECONDS);
+        while (disruptor.getSequenceValueFor(eventHandler2) != 1L && System.currentTimeMillis() < timeout)
+        {
+            yield();
+        }
+        assertThat(disruptor.getSequenceValueFor(eventHandler1), is(1L));
+        assertThat(disruptor.getSequenceValueFor(eventHandler2), is(1L));
+        assertThat(disruptor.getBarrierFor(eventHandler2), is(disruptor.getBarrierFor(eventHandler1)));
+    }
+
+    @Test
+    public void shouldCreateDisruptorWithEveryRingBufferOption() throws Exception
+    {
+        disruptor = new Disruptor<TestEvent>(
+            TestEvent.EVENT_FACTORY, 4, executor, ProducerType.MULTI, new BlockingWaitStrategy(),
+            new YieldingProducerWaitStrategy(), SlotAllocation.LAZY, SlotLayout.PADDED);
+        final CountDownLatch countDownLatch = new CountDownLatch(6);
+        disruptor.handleEventsWith(new EventHandlerStub<TestEvent>(countDownLatch));
+
+        for (int i = 0; i < 6; i++)
+        {
+            publishEvent();
+        }
+
+        assertThatCountDownLatchIsZero(countDownLatch);
+        assertThat(disruptor.getBufferSize(), is(4L));
+    }
+
+    @Test
+    public void shouldReleaseStagesGatedOnALaterFusedHandlerWhenAnEarlierOneThrows() throws Exception
+    {
+        final AtomicReference<Throwable> eventHandled = new AtomicReference<Throwable>();
+        final CountDownLatch countDownLatch = new CountDownLatch(1);
+        final EventHandler<TestEvent> eventHandler2 = new EventHandlerStub<TestEvent>(new CountDownLatch(1));
+
+        disruptor.setDefaultExceptionHandler(new StubExceptionHandler(eventHandled));
+        disruptor.handleEventsWithFused(new ExceptionThrowingEventHandler(new RuntimeException()), eventHandler2);
+        disruptor.after(eventHandler2).then(new EventHandlerStub<TestEvent>(countDownLatch));
+
+        publishEvent();
+
+        waitFor(eventHandled);
+        assertThatCountDownLatchIsZero(countDownLatch);
+    }
+
     @Test
     public void should()
         throws Exception
@@ -634,6 +710,50 @@ public class DisruptorTest
         delayedEventHandler.processEvent();
     }
 
+    @Test
+    public void shouldSupportUsingOrderedWorkerPoolAsDependency() throws Exception
+    {
+        final TestWorkHandler workHandler1 = createTestWorkHandler();
+        final TestWorkHandler workHandler2 = createTestWorkHandler();
+        final DelayedEventHandler delayedEventHandler = createDelayedEventHandler();
+        disruptor.handleEventsWithOrderedWorkerPool(workHandler1, workHandler2).then(delayedEventHandler);
+
+        publishEvent();
+        publishEvent();
+
+        assertThat(disruptor.getBarrierFor(delayedEventHandler).getCursor(), equalTo(-1L));
+
+        workHandler2.processEvent();
+        workHandler1.processEvent();
+
+        delayedEventHandler.processEvent();
+        delayedEventHandler.processEvent();
+    }
+
+    @Test
+    public void shouldSupportUsingOrderedWorkerPoolWithADependency() throws Exception
+    {
+        final TestWorkHandler workHandler1 = createTestWorkHandler();
+        final TestWorkHandler workHandler2 = createTestWorkHandler();
+        final DelayedEventHandler delayedEventHandler = createDelayedEventHandler();
+        final CountDownLatch countDownLatch = new CountDownLatch(2);
+        final EventHandler<TestEvent> handlerWithBarrier = new EventHandlerStub<TestEvent>(countDownLatch);
+        disruptor.handleEventsWith(delayedEventHandler)
+            .thenHandleEventsWithOrderedWorkerPool(workHandler1, workHandler2)
+            .then(handlerWithBarrier);
+
+        publishEvent();
+        publishEvent();
+
+        delayedEventHandler.processEvent();
+        delayedEventHandler.processEvent();
+
+        workHandler1.processEvent();
+        workHandler2.processEvent();
+
+        assertThatCountDownLatchIsZero(countDownLatch);
+    }
+
     @Test
     public void shouldSupportUsingWorkerPoolWithADependency() throws Exception
     {
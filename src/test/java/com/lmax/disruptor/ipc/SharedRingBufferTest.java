@@ -0,0 +1,334 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.ipc;
+
+import com.lmax.disruptor.EventPoller.PollState;
+import com.lmax.disruptor.InsufficientCapacityException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SharedRingBufferTest
+{
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        final File shm = new File("/dev/shm");
+        file = shm.isDirectory() ?
+            Files.createTempFile(shm.toPath(), "shared-ring", ".dat") :
+            Files.createTempFile("shared-ring", ".dat");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void shouldPublishThroughOneMappingAndConsumeThroughAnother() throws Exception
+    {
+        final SharedRingBuffer producer = SharedRingBuffer.create(file, 8, 16, 2, 0);
+        final SharedRingBuffer consumer = SharedRingBuffer.open(file);
+        final SharedRingBuffer.Poller poller = consumer.newPoller(0);
+
+        for (long i = 0; i < 20; i++)
+        {
+            final long sequence = producer.next();
+            producer.slot(sequence).putLong(i * 3);
+            producer.publish(sequence);
+
+            final List<Long> values = new ArrayList<>();
+            assertThat(poller.poll(new CollectingHandler(values)), is(PollState.PROCESSING));
+            assertThat(values.size(), is(1));
+            assertThat(values.get(0), is(i * 3));
+        }
+
+        assertThat(poller.getSequence(), is(19L));
+        assertThat(poller.poll(new CollectingHandler(new ArrayList<Long>())), is(PollState.IDLE));
+    }
+
+    @Test
+    public void shouldGateProducerOnAttachedConsumers() throws Exception
+    {
+        final SharedRingBuffer ringBuffer = SharedRingBuffer.create(file, 4, 8, 1, 0);
+        final SharedRingBuffer.Poller poller = SharedRingBuffer.open(file).newPoller(0);
+
+        for (int i = 0; i < 4; i++)
+        {
+            ringBuffer.publish(ringBuffer.tryNext());
+        }
+
+        try
+        {
+            ringBuffer.tryNext();
+            fail("Ring buffer should be full");
+        }
+        catch (final InsufficientCapacityException e)
+        {
+            // expected
+        }
+
+        final List<Long> values = new ArrayList<>();
+        poller.poll(new CollectingHandler(values));
+        assertThat(values.size(), is(4));
+        assertThat(ringBuffer.tryNext(), is(4L));
+    }
+
+    @Test
+    public void shouldNotReportUnpublishedSequencesInOrder() throws Exception
+    {
+        final SharedRingBuffer ringBuffer = SharedRingBuffer.create(file, 8, 8, 1, 0);
+        final SharedRingBuffer.Poller poller = ringBuffer.newPoller(0);
+
+        final long first = ringBuffer.next();
+        final long second = ringBuffer.next();
+        ringBuffer.publish(second);
+
+        final List<Long> values = new ArrayList<>();
+        assertThat(poller.poll(new CollectingHandler(values)), is(PollState.IDLE));
+
+        ringBuffer.publish(first);
+        assertThat(poller.poll(new CollectingHandler(values)), is(PollState.PROCESSING));
+        assertThat(values.size(), is(2));
+    }
+
+    @Test
+    public void shouldDetectConsumerThatStoppedHeartBeating() throws Exception
+    {
+        final SharedRingBuffer ringBuffer = SharedRingBuffer.create(file, 4, 8, 2, 50);
+        ringBuffer.newPoller(1);
+
+        for (int i = 0; i < 4; i++)
+        {
+            ringBuffer.publish(ringBuffer.next());
+        }
+
+        try
+        {
+            ringBuffer.next();
+            fail("Dead consumer should have been detected");
+        }
+        catch (final DeadPeerException e)
+        {
+            assertThat(e.getConsumerIndex(), is(1));
+        }
+
+        assertFalse(ringBuffer.isConsumerAlive(1));
+        ringBuffer.evictConsumer(1);
+        assertThat(ringBuffer.next(), is(4L));
+    }
+
+    @Test
+    public void shouldDetectProducerThatDiedBetweenClaimAndPublish() throws Exception
+    {
+        final SharedRingBuffer ringBuffer = SharedRingBuffer.create(file, 8, 8, 1, 50);
+        final SharedRingBuffer.Poller poller = SharedRingBuffer.open(file).newPoller(0);
+        final CollectingHandler handler = new CollectingHandler(new ArrayList<Long>());
+
+        ringBuffer.next();
+
+        assertThat(poller.poll(handler), is(PollState.IDLE));
+        Thread.sleep(100);
+        try
+        {
+            poller.poll(handler);
+            fail("Dead producer should have been detected");
+        }
+        catch (final DeadPeerException e)
+        {
+            assertThat(e.getConsumerIndex(), is(-1));
+        }
+    }
+
+    @Test
+    public void shouldNotAttachTwoConsumersAtTheSamePosition() throws Exception
+    {
+        final SharedRingBuffer ringBuffer = SharedRingBuffer.create(file, 8, 8, 1, 0);
+        final SharedRingBuffer.Poller poller = ringBuffer.newPoller(0);
+        assertTrue(ringBuffer.isConsumerAlive(0));
+
+        try
+        {
+            SharedRingBuffer.open(file).newPoller(0);
+            fail("Position should be taken");
+        }
+        catch (final IllegalStateException e)
+        {
+            // expected
+        }
+
+        poller.close();
+        SharedRingBuffer.open(file).newPoller(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectFileThatWasNotCreated() throws Exception
+    {
+        Files.write(file, new byte[1024]);
+        SharedRingBuffer.open(file);
+    }
+
+    @Test
+    public void shouldRejectFileWithCorruptHeader() throws Exception
+    {
+        SharedRingBuffer.create(file, 16, 8, 1, 0);
+
+        assertOpenFails(8, 12);
+        assertOpenFails(12, 12);
+        assertOpenFails(16, 0);
+        assertOpenFails(8, 1 << 20);
+        assertOpenFails(12, 1 << 20);
+    }
+
+    @Test
+    public void shouldRejectTruncatedFile() throws Exception
+    {
+        SharedRingBuffer.create(file, 16, 8, 1, 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            channel.truncate(channel.size() - 8);
+        }
+
+        try
+        {
+            SharedRingBuffer.open(file);
+            fail("Truncated file should have been rejected");
+        }
+        catch (final IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldTransferEventsBetweenThreadsWithMultipleProducers() throws Exception
+    {
+        final int producers = 2;
+        final long iterations = 100000;
+        final SharedRingBuffer ringBuffer = SharedRingBuffer.create(file, 64, 8, 1, 0);
+        final SharedRingBuffer.Poller poller = SharedRingBuffer.open(file).newPoller(0);
+
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++)
+        {
+            threads[p] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        final SharedRingBuffer producer = SharedRingBuffer.open(file);
+                        for (long i = 1; i <= iterations; i++)
+                        {
+                            final long sequence = producer.next();
+                            producer.slot(sequence).putLong(i);
+                            producer.publish(sequence);
+                        }
+                    }
+                    catch (final Exception e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        final long[] sum = new long[1];
+        final SharedRingBuffer.Handler handler = new SharedRingBuffer.Handler()
+        {
+            @Override
+            public boolean onEvent(final ByteBuffer slot, final long sequence, final boolean endOfBatch)
+            {
+                sum[0] += slot.getLong(slot.position());
+                return true;
+            }
+        };
+
+        final long lastSequence = producers * iterations - 1;
+        while (poller.getSequence() < lastSequence)
+        {
+            if (poller.poll(handler) == PollState.IDLE)
+            {
+                Thread.yield();
+            }
+        }
+
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertThat(sum[0], is(producers * iterations * (iterations + 1) / 2));
+    }
+
+    private void assertOpenFails(final int offset, final int value) throws Exception
+    {
+        final ByteBuffer original = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            channel.read(original, offset);
+            original.flip();
+            channel.write((ByteBuffer) ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(value).flip(), offset);
+            try
+            {
+                SharedRingBuffer.open(file);
+                fail("Header field at " + offset + " set to " + value + " should have been rejected");
+            }
+            catch (final IllegalStateException e)
+            {
+                // expected
+            }
+            channel.write(original, offset);
+        }
+    }
+
+    private static final class CollectingHandler implements SharedRingBuffer.Handler
+    {
+        private final List<Long> values;
+
+        private CollectingHandler(final List<Long> values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public boolean onEvent(final ByteBuffer slot, final long sequence, final boolean endOfBatch)
+        {
+            values.add(slot.getLong(slot.position()));
+            return true;
+        }
+    }
+}
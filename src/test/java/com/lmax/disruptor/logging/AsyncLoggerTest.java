@@ -0,0 +1,213 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.logging;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.util.DaemonThreadFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class AsyncLoggerTest
+{
+    private File file;
+    private FileChannel channel;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        file = File.createTempFile("async-logger", ".log");
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        channel.close();
+        file.delete();
+    }
+
+    @Test
+    public void shouldWriteRecordsInOrderOnShutdown() throws Exception
+    {
+        final AsyncLogger logger = new AsyncLogger(channel, 8, DaemonThreadFactory.INSTANCE);
+        logger.start();
+
+        for (int i = 0; i < 100; i++)
+        {
+            logger.log(LogLevel.INFO, "message " + i);
+        }
+
+        assertTrue(logger.shutdown(5, TimeUnit.SECONDS));
+
+        final List<String> lines = readLines();
+        assertThat(lines.size(), is(100));
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(lines.get(i), lines.get(i).endsWith(" INFO message " + i));
+        }
+    }
+
+    @Test
+    public void shouldEncodeMessagesLargerThanTheWriteBuffer() throws Exception
+    {
+        final StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+        {
+            message.append("\u00e9\u4e2d\ud83d\ude00");
+        }
+
+        final AsyncLogger logger = new AsyncLogger(
+            new FileChannelLogEventHandler(channel, 256, false), 8, DaemonThreadFactory.INSTANCE,
+            new BlockingWaitStrategy(), QueueFullPolicy.BLOCK, LogLevel.TRACE);
+        logger.start();
+        logger.log(LogLevel.WARN, message);
+        assertTrue(logger.shutdown(5, TimeUnit.SECONDS));
+
+        final List<String> lines = readLines();
+        assertThat(lines.size(), is(1));
+        assertTrue(lines.get(0).endsWith(" WARN " + message));
+    }
+
+    @Test
+    public void shouldDiscardRecordsBelowThresholdWhenFull() throws Exception
+    {
+        final AsyncLogger logger = new AsyncLogger(
+            new FileChannelLogEventHandler(channel), 4, DaemonThreadFactory.INSTANCE,
+            new BlockingWaitStrategy(), QueueFullPolicy.DISCARD_BELOW_LEVEL, LogLevel.INFO);
+
+        // Not started, so nothing is consumed and the fifth record finds the ring buffer full.
+        for (int i = 0; i < 4; i++)
+        {
+            logger.log(LogLevel.INFO, "queued " + i);
+        }
+        logger.log(LogLevel.DEBUG, "dropped");
+
+        assertThat(logger.getDiscardedCount(), is(1L));
+
+        logger.start();
+        assertTrue(logger.shutdown(5, TimeUnit.SECONDS));
+        assertThat(readLines().size(), is(4));
+    }
+
+    @Test
+    public void shouldWriteOnCallingThreadWhenFullAndSynchronous() throws Exception
+    {
+        final AsyncLogger logger = new AsyncLogger(
+            new FileChannelLogEventHandler(channel), 4, DaemonThreadFactory.INSTANCE,
+            new BlockingWaitStrategy(), QueueFullPolicy.SYNCHRONOUS, LogLevel.TRACE);
+
+        for (int i = 0; i < 4; i++)
+        {
+            logger.log(LogLevel.INFO, "queued " + i);
+        }
+        logger.log(LogLevel.ERROR, "direct");
+
+        assertThat(logger.getSynchronousCount(), is(1L));
+        assertThat(readLines().size(), is(1));
+
+        logger.start();
+        assertTrue(logger.shutdown(5, TimeUnit.SECONDS));
+
+        final List<String> lines = readLines();
+        assertThat(lines.size(), is(5));
+        assertTrue(lines.get(0).endsWith(" ERROR direct"));
+        assertTrue(lines.get(4).endsWith(" INFO queued 3"));
+    }
+
+    @Test
+    public void shouldNotInterleaveOversizedBatchAndDirectRecords() throws Exception
+    {
+        final FileChannelLogEventHandler handler = new FileChannelLogEventHandler(channel, 256, false);
+        final int records = 200;
+        final String padding = repeat('x', 700);
+
+        final Thread direct = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    for (int i = 0; i < records; i++)
+                    {
+                        handler.writeDirect(LogLevel.ERROR, i, "direct " + i + " " + padding);
+                    }
+                }
+                catch (final Exception e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        direct.start();
+
+        final LogEvent event = new LogEvent();
+        for (int i = 0; i < records; i++)
+        {
+            // 小记录和超过缓冲区的记录交替，使大记录在缓冲区中间开始
+            event.setValues(LogLevel.INFO, i, (i % 2 == 0) ? "batch " + i : "batch " + i + " " + padding);
+            handler.onEvent(event, i, i % 5 == 4);
+        }
+        direct.join();
+        handler.onShutdown();
+
+        final List<String> lines = readLines();
+        assertThat(lines.size(), is(2 * records));
+        int batch = 0;
+        for (final String line : lines)
+        {
+            if (line.contains(" INFO "))
+            {
+                final String expected = (batch % 2 == 0) ? "batch " + batch : "batch " + batch + " " + padding;
+                assertThat(line, is(batch + " INFO " + expected));
+                batch++;
+            }
+            else
+            {
+                assertTrue(line, line.matches("\\d+ ERROR direct \\d+ x{700}"));
+            }
+        }
+        assertThat(batch, is(records));
+    }
+
+    private static String repeat(final char c, final int count)
+    {
+        final StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++)
+        {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private List<String> readLines() throws Exception
+    {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
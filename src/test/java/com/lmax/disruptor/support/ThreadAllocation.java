@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 LMAX Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lmax.disruptor.support;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes allocated on the heap by a thread, using the HotSpot extension of
+ * {@link java.lang.management.ThreadMXBean}.  Used by the allocation regression tests to check that the publish
+ * and consume paths are garbage free once compiled.
+ */
+public final class ThreadAllocation
+{
+    private static final int MAX_WARM_UP_ROUNDS = 20;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private ThreadAllocation()
+    {
+    }
+
+    /**
+     * @return true if the JVM can count the bytes allocated by a thread.
+     */
+    public static boolean isSupported()
+    {
+        return THREADS != null;
+    }
+
+    /**
+     * @param thread to count for, must be alive.
+     * @return the bytes allocated by the thread since it started.
+     */
+    public static long allocatedBytes(final Thread thread)
+    {
+        return THREADS.getThreadAllocatedBytes(thread.getId());
+    }
+
+    /**
+     * Run the operation on the calling thread until a round of <code>iterations</code> runs allocates nothing, so
+     * the JIT has compiled it and escape analysis has had its chance, then count what one more round allocates.
+     *
+     * @param operation  to measure.
+     * @param iterations number of runs per round.
+     * @return the bytes allocated by the measured round.
+     */
+    public static long allocatedBytes(final Runnable operation, final int iterations)
+    {
+        return allocatedBytes(operation, iterations, Thread.currentThread());
+    }
+
+    /**
+     * As {@link #allocatedBytes(Runnable, int)}, counting what the given threads allocate instead, e.g. the threads
+     * of the event processors that consume what the operation publishes.  The operation must wait for them to
+     * finish its work before returning.
+     *
+     * @param operation  to measure.
+     * @param iterations number of runs per round.
+     * @param threads    whose allocation is counted, must be alive.
+     * @return the bytes allocated by the threads during the measured round.
+     */
+    public static long allocatedBytes(final Runnable operation, final int iterations, final Thread... threads)
+    {
+        for (int round = 0; round < MAX_WARM_UP_ROUNDS; round++)
+        {
+            final long before = allocatedBytes(threads);
+            repeat(operation, iterations);
+            if (allocatedBytes(threads) == before)
+            {
+                break;
+            }
+        }
+
+        final long before = allocatedBytes(threads);
+        repeat(operation, iterations);
+        return allocatedBytes(threads) - before;
+    }
+
+    private static long allocatedBytes(final Thread[] threads)
+    {
+        long total = 0;
+        for (final Thread thread : threads)
+        {
+            total += allocatedBytes(thread);
+        }
+        return total;
+    }
+
+    private static void repeat(final Runnable operation, final int iterations)
+    {
+        for (int i = 0; i < iterations; i++)
+        {
+            operation.run();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean()
+    {
+        try
+        {
+            final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean)
+            {
+                final com.sun.management.ThreadMXBean hotSpotThreads = (com.sun.management.ThreadMXBean) threads;
+                if (hotSpotThreads.isThreadAllocatedMemorySupported())
+                {
+                    hotSpotThreads.setThreadAllocatedMemoryEnabled(true);
+                    return hotSpotThreads;
+                }
+            }
+        }
+        catch (final LinkageError e)
+        {
+            // com.sun.management不可用（非HotSpot JVM）
+        }
+
+        return null;
+    }
+}
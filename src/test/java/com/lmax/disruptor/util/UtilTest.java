@@ -17,6 +17,8 @@ package com.lmax.disruptor.util;
 
 import com.lmax.disruptor.Sequence;
 
+import java.nio.ByteBuffer;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -52,4 +54,28 @@ public final class UtilTest
 
         Assert.assertEquals(Long.MAX_VALUE, Util.getMinimumSequence(sequences));
     }
+
+    @Test
+    public void shouldAllocateDirectBufferOnAlignedBoundary()
+    {
+        for (int i = 0; i < 16; i++)
+        {
+            final ByteBuffer buffer = Util.allocateDirectAligned(1000, 128);
+
+            Assert.assertEquals(1000, buffer.capacity());
+            Assert.assertEquals(0L, Util.getAddressFromDirectByteBuffer(buffer) & 127);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAlignmentThatIsNotPowerOfTwo()
+    {
+        Util.allocateDirectAligned(1000, 96);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAddressOfHeapBuffer()
+    {
+        Util.getAddressFromDirectByteBuffer(ByteBuffer.allocate(16));
+    }
 }